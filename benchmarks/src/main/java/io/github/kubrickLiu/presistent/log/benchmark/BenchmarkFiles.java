@@ -0,0 +1,60 @@
+package io.github.kubrickLiu.presistent.log.benchmark;
+
+import io.github.kubrickLiu.presistent.log.UnifiedLog;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * benchmark 使用的临时目录与测试数据
+ */
+final class BenchmarkFiles {
+
+    private static final int FILL_BATCH_SIZE = 1000;
+
+    private BenchmarkFiles() {
+    }
+
+    static File createTempDir(String prefix) throws IOException {
+        return Files.createTempDirectory(prefix).toFile();
+    }
+
+    static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+
+    static byte[] randomPayload(int payloadSize) {
+        byte[] payload = new byte[payloadSize];
+        new Random(payloadSize).nextBytes(payload);
+        return payload;
+    }
+
+    /**
+     * 批量写入 records 条 record，record id 为 1 ~ records
+     */
+    static void fill(UnifiedLog unifiedLog, int records, int payloadSize) throws Exception {
+        byte[] payload = randomPayload(payloadSize);
+        List<byte[]> batch = new ArrayList<>(FILL_BATCH_SIZE);
+        for (int i = 0; i < records; i++) {
+            batch.add(payload);
+            if (batch.size() == FILL_BATCH_SIZE) {
+                unifiedLog.append(batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            unifiedLog.append(batch);
+        }
+        unifiedLog.flush();
+    }
+}
@@ -0,0 +1,117 @@
+package io.github.kubrickLiu.presistent.log.benchmark;
+
+import io.github.kubrickLiu.presistent.log.exception.FileChannelFullException;
+import io.github.kubrickLiu.presistent.log.record.FileRecords;
+import io.github.kubrickLiu.presistent.log.record.Record;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单个 record 文件的 {@link FileRecords#appendOne(Record)} 与 {@link FileRecords#append(List)}，
+ * 按 record 条数计算吞吐；文件写满时删除并重新创建
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FileRecordsAppendBenchmark {
+
+    private static final int BATCH_SIZE = 32;
+
+    @Param({"64", "1024", "16384"})
+    private int payloadSize;
+
+    private File dir;
+
+    private byte[] payload;
+
+    private FileRecords fileRecords;
+
+    private int fileIndex;
+
+    private long nextRecordId;
+
+    @Setup(Level.Trial)
+    public void setupTrial() throws Exception {
+        dir = BenchmarkFiles.createTempDir("kubrick-append-");
+        payload = BenchmarkFiles.randomPayload(payloadSize);
+    }
+
+    @Setup(Level.Iteration)
+    public void setupIteration() throws Exception {
+        rollFile();
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDownIteration() {
+        closeFile();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDownTrial() {
+        BenchmarkFiles.deleteRecursively(dir);
+    }
+
+    @Benchmark
+    public int appendOne() throws Exception {
+        Record record = new Record(nextRecordId++, payload);
+        try {
+            return fileRecords.appendOne(record);
+        } catch (FileChannelFullException e) {
+            rollFile();
+            return fileRecords.appendOne(record);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public int appendBatch() throws Exception {
+        List<Record> records = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            records.add(new Record(nextRecordId++, payload));
+        }
+        try {
+            return fileRecords.append(records);
+        } catch (FileChannelFullException e) {
+            rollFile();
+            return fileRecords.append(records);
+        }
+    }
+
+    private void rollFile() throws Exception {
+        closeFile();
+        fileRecords = new FileRecords(new File(dir, String.format("%04d_Kubrick.log", fileIndex++)));
+    }
+
+    private void closeFile() {
+        if (fileRecords != null) {
+            fileRecords.close();
+            fileRecords = null;
+            File[] files = dir.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    file.delete();
+                }
+            }
+        }
+    }
+}
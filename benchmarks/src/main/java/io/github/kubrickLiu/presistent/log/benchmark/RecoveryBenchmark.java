@@ -0,0 +1,68 @@
+package io.github.kubrickLiu.presistent.log.benchmark;
+
+import io.github.kubrickLiu.presistent.log.UnifiedLog;
+import io.github.kubrickLiu.presistent.log.record.Record;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 打开已有 topic 到读出最后一条 record 的时间：恢复 topic meta、打开当前写文件并恢复索引。
+ *
+ * topic 在 trial 开始时写入一次，每次测量都重新打开；操作系统的 page cache 不会被清除，
+ * 测量磁盘冷启动时需要在每次测量之前由外部清除 page cache
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RecoveryBenchmark {
+
+    private static final String TOPIC_NAME = "recovery_benchmark";
+
+    @Param({"1000000", "10000000"})
+    private int records;
+
+    @Param({"100"})
+    private int payloadSize;
+
+    private File dir;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        dir = BenchmarkFiles.createTempDir("kubrick-recovery-");
+        try (UnifiedLog unifiedLog = new UnifiedLog(dir.getPath(), TOPIC_NAME)) {
+            BenchmarkFiles.fill(unifiedLog, records, payloadSize);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchmarkFiles.deleteRecursively(dir);
+    }
+
+    @Benchmark
+    public Record recover() throws Exception {
+        try (UnifiedLog unifiedLog = new UnifiedLog(dir.getPath(), TOPIC_NAME)) {
+            unifiedLog.seek(records);
+            Iterator<Record> iterator = unifiedLog.getIterator();
+            return iterator.next();
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package io.github.kubrickLiu.presistent.log.benchmark;
+
+import io.github.kubrickLiu.presistent.log.UnifiedLog;
+import io.github.kubrickLiu.presistent.log.config.LogConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 不同 segmentBytes 下 {@link UnifiedLog#appendOne(byte[])} 的吞吐，
+ * 与最大的 segmentBytes 相比的差值即为滚动到新文件 (创建文件、写入 meta、关闭旧文件) 的开销
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RolloverBenchmark {
+
+    private static final String TOPIC_NAME = "rollover_benchmark";
+
+    @Param({"65536", "1048576", "67108864"})
+    private long segmentBytes;
+
+    @Param({"1024"})
+    private int payloadSize;
+
+    private byte[] payload;
+
+    private File dir;
+
+    private UnifiedLog unifiedLog;
+
+    @Setup(Level.Iteration)
+    public void setup() throws Exception {
+        payload = BenchmarkFiles.randomPayload(payloadSize);
+        dir = BenchmarkFiles.createTempDir("kubrick-rollover-");
+
+        LogConfig config = new LogConfig();
+        config.setSegmentBytes(segmentBytes);
+        unifiedLog = new UnifiedLog(dir.getPath(), TOPIC_NAME, config);
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws Exception {
+        unifiedLog.close();
+        BenchmarkFiles.deleteRecursively(dir);
+    }
+
+    @Benchmark
+    public long appendOne() throws Exception {
+        return unifiedLog.appendOne(payload);
+    }
+}
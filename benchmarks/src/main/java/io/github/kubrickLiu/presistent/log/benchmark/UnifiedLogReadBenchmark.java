@@ -0,0 +1,88 @@
+package io.github.kubrickLiu.presistent.log.benchmark;
+
+import io.github.kubrickLiu.presistent.log.UnifiedLog;
+import io.github.kubrickLiu.presistent.log.UnifiedLogIterator;
+import io.github.kubrickLiu.presistent.log.record.Record;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 通过 {@link UnifiedLogIterator} 顺序读取与按 record id 随机定位，topic 在 trial 开始时写入一次
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UnifiedLogReadBenchmark {
+
+    private static final int READ_BATCH_SIZE = 1024;
+
+    private static final String TOPIC_NAME = "read_benchmark";
+
+    @Param({"1000000"})
+    private int records;
+
+    @Param({"128"})
+    private int payloadSize;
+
+    private File dir;
+
+    private UnifiedLog unifiedLog;
+
+    private UnifiedLogIterator iterator;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        dir = BenchmarkFiles.createTempDir("kubrick-read-");
+        unifiedLog = new UnifiedLog(dir.getPath(), TOPIC_NAME);
+        BenchmarkFiles.fill(unifiedLog, records, payloadSize);
+        iterator = unifiedLog.getIterator();
+        iterator.reset(1);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        unifiedLog.close();
+        BenchmarkFiles.deleteRecursively(dir);
+    }
+
+    /**
+     * 每次读取 READ_BATCH_SIZE 条，读到末尾之后从第一条重新开始
+     */
+    @Benchmark
+    @OperationsPerInvocation(READ_BATCH_SIZE)
+    public void sequentialRead(Blackhole blackhole) throws Exception {
+        for (int i = 0; i < READ_BATCH_SIZE; i++) {
+            if (!iterator.hasNext()) {
+                iterator.reset(1);
+            }
+            blackhole.consume(iterator.next());
+        }
+    }
+
+    @Benchmark
+    public Record randomSeek() throws Exception {
+        long recordId = ThreadLocalRandom.current().nextLong(1, records + 1L);
+        iterator.reset(recordId);
+        return iterator.next();
+    }
+}
@@ -0,0 +1,83 @@
+package io.github.kubrickLiu.presistent.log;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+
+/**
+ * 等待新 record (或持久化水位) 的线程挂起在这里，发布方推进之后唤醒所有等待的线程；
+ * 没有线程等待时发布方只做一次判空
+ */
+final class AppendNotifier {
+
+    private final Set<Thread> waiters = ConcurrentHashMap.newKeySet();
+
+    private volatile boolean closed;
+
+    /**
+     * 发布 record 或推进持久化水位之后调用
+     */
+    void signalAll() {
+        if (waiters.isEmpty()) {
+            return;
+        }
+
+        for (Thread waiter : waiters) {
+            LockSupport.unpark(waiter);
+        }
+    }
+
+    /**
+     * 挂起当前线程直到 ready 返回 true 或者超时
+     *
+     * @param ready 等待的条件是否已经满足
+     * @param timeoutNanos 小于 0 时一直等待
+     * @return 超时或者已关闭时返回 false
+     * @throws InterruptedException
+     */
+    boolean await(BooleanSupplier ready, long timeoutNanos) throws InterruptedException {
+        if (ready.getAsBoolean()) {
+            return true;
+        }
+
+        long deadline = System.nanoTime() + timeoutNanos;
+        Thread current = Thread.currentThread();
+        waiters.add(current);
+        try {
+            while (true) {
+                // 先登记再检查，避免错过登记之前的唤醒
+                if (ready.getAsBoolean()) {
+                    return true;
+                }
+                if (closed) {
+                    return false;
+                }
+
+                if (timeoutNanos < 0) {
+                    LockSupport.park(this);
+                } else {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        return false;
+                    }
+                    LockSupport.parkNanos(this, remaining);
+                }
+
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+        } finally {
+            waiters.remove(current);
+        }
+    }
+
+    /**
+     * 唤醒所有等待的线程并不再等待
+     */
+    void close() {
+        closed = true;
+        signalAll();
+    }
+}
@@ -0,0 +1,211 @@
+package io.github.kubrickLiu.presistent.log;
+
+import com.lmax.disruptor.EventHandler;
+import com.lmax.disruptor.EventTranslatorTwoArg;
+import com.lmax.disruptor.RingBuffer;
+import com.lmax.disruptor.dsl.Disruptor;
+import com.lmax.disruptor.dsl.ProducerType;
+import io.github.kubrickLiu.presistent.log.config.AsyncLogConfig;
+import io.github.kubrickLiu.presistent.log.config.AsyncWaitStrategy;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 异步追加的 topic：写入方把 record 放入 ring buffer 之后立即返回 {@link CompletableFuture}，
+ * 由唯一的写线程按 ring buffer 中自然积压的批次调用 {@link UnifiedLog} 批量写入，写入完成之后以 record id 完成 future。
+ *
+ * 负载低时每条 record 单独写入，延迟接近同步写入；负载高时积压的 record 合并为一次写入。
+ * future 完成时 record 已经对读取方可见，是否已经写入磁盘由 {@link io.github.kubrickLiu.presistent.log.config.FlushPolicy}
+ * 决定，需要时调用 {@link UnifiedLog#awaitDurable(long, long, java.util.concurrent.TimeUnit)} 等待
+ */
+public class AsyncUnifiedLog implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AsyncUnifiedLog.class);
+
+    private static final EventTranslatorTwoArg<AppendEvent, byte[], CompletableFuture<Long>> TRANSLATOR =
+            (event, sequence, bytes, future) -> {
+                event.bytes = bytes;
+                event.future = future;
+            };
+
+    private final UnifiedLog unifiedLog;
+
+    private final Disruptor<AppendEvent> disruptor;
+
+    private final RingBuffer<AppendEvent> ringBuffer;
+
+    /**
+     * 正在放入 ring buffer 的写入方个数，close 时等待这些写入方放入之后再停止写线程
+     */
+    private final AtomicInteger publishing = new AtomicInteger(0);
+
+    private volatile boolean closed;
+
+    /**
+     * 等待正在放入 ring buffer 的写入方结束的关闭线程
+     */
+    private volatile Thread closingThread;
+
+    public AsyncUnifiedLog(@NotNull String filePath, @NotNull String topicName) throws Exception {
+        this(filePath, topicName, new AsyncLogConfig());
+    }
+
+    public AsyncUnifiedLog(@NotNull String filePath, @NotNull String topicName, @NotNull AsyncLogConfig config)
+            throws Exception {
+        if (config.getLogConfig().isConcurrentAppend()) {
+            throw new IllegalArgumentException("async append requires serial append.");
+        }
+        if (config.getMaxBatchRecords() <= 0) {
+            throw new IllegalArgumentException("maxBatchRecords must be positive : " + config.getMaxBatchRecords());
+        }
+
+        this.unifiedLog = new UnifiedLog(filePath, topicName, config.getLogConfig());
+
+        AsyncWaitStrategy waitStrategy = config.getWaitStrategy();
+        try {
+            this.disruptor = new Disruptor<>(AppendEvent::new, config.getRingBufferSize(), runnable -> {
+                Thread thread = new Thread(runnable, "kubrick-async-writer-" + topicName);
+                thread.setDaemon(true);
+                return thread;
+            }, ProducerType.MULTI, waitStrategy.create());
+        } catch (IllegalArgumentException e) {
+            unifiedLog.close();
+            throw e;
+        }
+        this.disruptor.handleEventsWith(new AppendHandler(unifiedLog, config.getMaxBatchRecords()));
+        this.ringBuffer = disruptor.start();
+    }
+
+    /**
+     * 放入 ring buffer，ring buffer 已满时等待写线程腾出槽位
+     *
+     * @param bytes 写入完成之前不能修改
+     * @return 写入完成时为 record id，写入失败或者已经关闭时异常完成；
+     * future 在写线程中完成，同步注册的回调不要阻塞
+     */
+    public CompletableFuture<Long> append(@NotNull byte[] bytes) {
+        CompletableFuture<Long> future = new CompletableFuture<>();
+
+        publishing.incrementAndGet();
+        try {
+            if (closed) {
+                future.completeExceptionally(new IllegalStateException("topic : "
+                        + unifiedLog.getTopicName() + " is closed."));
+                return future;
+            }
+            ringBuffer.publishEvent(TRANSLATOR, bytes, future);
+        } finally {
+            if (publishing.decrementAndGet() == 0 && closed) {
+                Thread waiter = closingThread;
+                if (waiter != null) {
+                    LockSupport.unpark(waiter);
+                }
+            }
+        }
+        return future;
+    }
+
+    /**
+     * 底层的 topic，用于读取、consumer 与 flush；不能直接写入，否则分配的 record id 不正确
+     */
+    public UnifiedLog getUnifiedLog() {
+        return unifiedLog;
+    }
+
+    /**
+     * ring buffer 中还没有被写线程处理的 record 条数
+     */
+    public long getBacklog() {
+        return ringBuffer.getBufferSize() - ringBuffer.remainingCapacity();
+    }
+
+    /**
+     * 停止接收新的 record，等待已经放入 ring buffer 的 record 全部写入之后关闭 topic
+     *
+     * @throws Exception
+     */
+    @Override
+    public void close() throws Exception {
+        if (closed) {
+            return;
+        }
+        closingThread = Thread.currentThread();
+        closed = true;
+
+        // 最后一个退出的写入方看到 closed 之后唤醒关闭线程
+        while (publishing.get() > 0) {
+            LockSupport.park(this);
+        }
+        closingThread = null;
+        disruptor.shutdown();
+        unifiedLog.close();
+    }
+
+    /**
+     * ring buffer 中的槽位，写线程处理之后清除引用
+     */
+    private static final class AppendEvent {
+
+        private byte[] bytes;
+
+        private CompletableFuture<Long> future;
+    }
+
+    /**
+     * 唯一的写线程，积累到批次末尾或者 maxBatchRecords 条时写入一次
+     */
+    private static final class AppendHandler implements EventHandler<AppendEvent> {
+
+        private final UnifiedLog unifiedLog;
+
+        private final int maxBatchRecords;
+
+        private final List<byte[]> bytesList;
+
+        private final List<CompletableFuture<Long>> futures;
+
+        AppendHandler(UnifiedLog unifiedLog, int maxBatchRecords) {
+            this.unifiedLog = unifiedLog;
+            this.maxBatchRecords = maxBatchRecords;
+            this.bytesList = new ArrayList<>(maxBatchRecords);
+            this.futures = new ArrayList<>(maxBatchRecords);
+        }
+
+        @Override
+        public void onEvent(AppendEvent event, long sequence, boolean endOfBatch) {
+            bytesList.add(event.bytes);
+            futures.add(event.future);
+            event.bytes = null;
+            event.future = null;
+
+            if (endOfBatch || bytesList.size() >= maxBatchRecords) {
+                writeBatch();
+            }
+        }
+
+        private void writeBatch() {
+            try {
+                long startRecordId = unifiedLog.appendSerially(bytesList);
+                for (int i = 0; i < futures.size(); i++) {
+                    futures.get(i).complete(startRecordId + i);
+                }
+            } catch (Throwable e) {
+                LOGGER.error("async append {} records to topic : {} error.",
+                        bytesList.size(), unifiedLog.getTopicName(), e);
+                for (CompletableFuture<Long> future : futures) {
+                    future.completeExceptionally(e);
+                }
+            } finally {
+                bytesList.clear();
+                futures.clear();
+            }
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package io.github.kubrickLiu.presistent.log;
+
+import io.github.kubrickLiu.presistent.log.config.LogConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * topic 的后台删除任务，按 {@link LogConfig} 中的删除策略定时调用 {@link UnifiedLog#deleteExpiredSegments()}，
+ * 开启压缩时在删除之后调用 {@link UnifiedLog#compact()}；
+ * 单独打开的 topic 使用自己的线程，{@link LogManager} 管理的 topic 在共用的 scheduler 中执行
+ */
+final class LogCleaner implements Runnable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LogCleaner.class);
+
+    private final UnifiedLog unifiedLog;
+
+    private final long checkIntervalNanos;
+
+    private final boolean retention;
+
+    private final boolean compact;
+
+    /**
+     * 使用共用的 scheduler 时为 null
+     */
+    private final Thread thread;
+
+    private final ScheduledExecutorService scheduler;
+
+    private ScheduledFuture<?> task;
+
+    private volatile boolean closed;
+
+    /**
+     * @param scheduler 为 null 时创建自己的删除线程
+     */
+    LogCleaner(UnifiedLog unifiedLog, LogConfig config, ScheduledExecutorService scheduler) {
+        this.unifiedLog = unifiedLog;
+        this.checkIntervalNanos = TimeUnit.MILLISECONDS.toNanos(config.getRetentionCheckIntervalMs());
+        this.retention = config.hasRetention();
+        this.compact = config.isCompactEnabled();
+        this.scheduler = scheduler;
+
+        if (scheduler == null) {
+            this.thread = new Thread(this, "kubrick-cleaner-" + unifiedLog.getTopicName());
+            this.thread.setDaemon(true);
+        } else {
+            this.thread = null;
+        }
+    }
+
+    void start() {
+        if (thread != null) {
+            thread.start();
+        } else {
+            task = scheduler.scheduleWithFixedDelay(this::cleanScheduled,
+                    checkIntervalNanos, checkIntervalNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public void run() {
+        while (!closed) {
+            LockSupport.parkNanos(this, checkIntervalNanos);
+            if (closed) {
+                break;
+            }
+
+            clean();
+        }
+    }
+
+    private synchronized void cleanScheduled() {
+        if (!closed) {
+            clean();
+        }
+    }
+
+    private void clean() {
+        if (retention) {
+            try {
+                unifiedLog.deleteExpiredSegments();
+            } catch (Exception e) {
+                LOGGER.error("delete segments of topic : {} error.", unifiedLog.getTopicName(), e);
+            }
+        }
+
+        if (compact) {
+            try {
+                unifiedLog.compact();
+            } catch (Exception e) {
+                LOGGER.error("compact segments of topic : {} error.", unifiedLog.getTopicName(), e);
+            }
+        }
+    }
+
+    /**
+     * 停止删除线程或者取消 scheduler 中的任务，正在执行的删除与压缩完成后返回
+     */
+    void close() throws InterruptedException {
+        closed = true;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+            thread.join();
+            return;
+        }
+
+        if (task != null) {
+            task.cancel(false);
+        }
+        synchronized (this) {
+            // 等待正在执行的删除与压缩
+        }
+    }
+}
@@ -0,0 +1,364 @@
+package io.github.kubrickLiu.presistent.log;
+
+import io.github.kubrickLiu.presistent.log.config.LogConfig;
+import io.github.kubrickLiu.presistent.log.meta.RecordMetaSummary;
+import io.github.kubrickLiu.presistent.log.meta.SegmentMetaSummary;
+import io.github.kubrickLiu.presistent.log.meta.TopicMetaData;
+import io.github.kubrickLiu.presistent.log.meta.TopicMetaSummary;
+import io.github.kubrickLiu.presistent.log.record.FileRecords;
+import io.github.kubrickLiu.presistent.log.record.KeyedRecord;
+import io.github.kubrickLiu.presistent.log.record.Record;
+import io.github.kubrickLiu.presistent.log.record.RecordBatch;
+import io.github.kubrickLiu.presistent.log.record.RecordBuffer;
+import io.github.kubrickLiu.presistent.log.record.SegmentCache;
+import io.github.kubrickLiu.presistent.log.record.SegmentFormat;
+import io.github.kubrickLiu.presistent.log.util.KeyIdMap;
+import io.github.kubrickLiu.presistent.log.util.Throttler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * topic 的按 key 压缩，由 {@link UnifiedLog#compact()} 在删除锁内调用：
+ * 1. 从上一次压缩之后写满的文件开始扫描，在堆外哈希表中记录每个 key 最新的 record id，哈希表写满时只压缩已扫描完的文件；
+ * 2. 从最早的文件开始逐个重写已扫描的文件，只保留每个 key 最新的 record 与没有 key 的 record，删除标记在保留期过后删除；
+ * 3. 重写的文件写入磁盘之后原子替换原文件，再更新 {@link TopicMetaSummary} 中的内容字节数。
+ *
+ * 文件的 record id 区间保持不变，压缩之后文件中的 record id 不再连续；
+ * 读取方继续使用替换之前打开的文件，重新打开时读取压缩之后的文件
+ */
+final class LogCompactor implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LogCompactor.class);
+
+    public static final String CLEANED_SUFFIX = ".cleaned";
+
+    private static final int WRITE_BUFFER_BYTES = 256 * 1024;
+
+    private final UnifiedLog unifiedLog;
+
+    private final String filePath;
+
+    private final LogConfig config;
+
+    private final TopicMetaSummary topicMetaSummary;
+
+    private final SegmentCache segmentCache;
+
+    private final RecordBuffer recordBuffer = new RecordBuffer();
+
+    private final RecordBatch recordBatch = new RecordBatch();
+
+    /**
+     * 第一次压缩时分配
+     */
+    private KeyIdMap keyIdMap;
+
+    /**
+     * 压缩完成之后是否保留堆外哈希表供下一次压缩使用；
+     * 由 {@link LogManager} 管理的 topic 每次压缩完成后释放，同时占用的内存不超过共用线程数个哈希表
+     */
+    private final boolean retainKeyIdMap;
+
+    /**
+     * 已经压缩过的最大 record id，只保存在内存中，重新打开之后从第一个文件开始扫描
+     */
+    private long compactedRecordId;
+
+    LogCompactor(UnifiedLog unifiedLog, String filePath, LogConfig config,
+                 TopicMetaSummary topicMetaSummary, SegmentCache segmentCache, boolean retainKeyIdMap) {
+        this.unifiedLog = unifiedLog;
+        this.filePath = filePath;
+        this.config = config;
+        this.topicMetaSummary = topicMetaSummary;
+        this.segmentCache = segmentCache;
+        this.retainKeyIdMap = retainKeyIdMap;
+    }
+
+    /**
+     * @return 被替换的文件个数
+     * @throws Exception
+     */
+    int compact() throws Exception {
+        try {
+            return compactSegments();
+        } finally {
+            if (!retainKeyIdMap) {
+                close();
+            }
+        }
+    }
+
+    private int compactSegments() throws Exception {
+        List<TopicMetaData> metaList = topicMetaSummary.getMetaList();
+        int sealedSize = metaList.size() - 1;
+
+        int dirtyIndex = 0;
+        while (dirtyIndex < sealedSize && metaList.get(dirtyIndex).getEndRecordId() <= compactedRecordId) {
+            dirtyIndex++;
+        }
+        if (dirtyIndex >= sealedSize) {
+            return 0;
+        }
+
+        if (keyIdMap == null) {
+            keyIdMap = new KeyIdMap(config.getCompactMapBytes());
+        }
+        keyIdMap.clear();
+        Throttler throttler = new Throttler(config.getCompactBytesPerSecond());
+
+        int scannedSize = buildKeyIdMap(metaList, dirtyIndex, sealedSize, throttler);
+        if (scannedSize == dirtyIndex) {
+            LOGGER.warn("topic : {} compact map can not hold keys of segment : {}, max keys : {}",
+                    unifiedLog.getTopicName(), metaList.get(dirtyIndex).getFileName(), keyIdMap.getMaxEntries());
+            return 0;
+        }
+
+        long now = System.currentTimeMillis();
+        int count = 0;
+        for (int i = 0; i < scannedSize; i++) {
+            if (compactSegment(metaList.get(i), now, throttler)) {
+                count++;
+            }
+        }
+        if (count > 0) {
+            topicMetaSummary.sync();
+        }
+
+        compactedRecordId = metaList.get(scannedSize - 1).getEndRecordId();
+        LOGGER.info("topic : {} compact {} segments, scan {} segments with {} keys",
+                unifiedLog.getTopicName(), count, scannedSize - dirtyIndex, keyIdMap.size());
+        return count;
+    }
+
+    /**
+     * 扫描 [fromIndex, toIndex) 中的文件记录每个 key 最新的 record id
+     *
+     * @return 完整扫描的最后一个文件的下一个下标
+     */
+    private int buildKeyIdMap(List<TopicMetaData> metaList, int fromIndex, int toIndex, Throttler throttler)
+            throws Exception {
+        for (int i = fromIndex; i < toIndex; i++) {
+            FileRecords fileRecords = unifiedLog.acquireFileRecords(metaList.get(i));
+            try {
+                int size = fileRecords.size();
+                for (int j = 0; j < size; j++) {
+                    fileRecords.readAt(j, recordBuffer);
+                    throttler.acquire(recordBuffer.getBody().remaining());
+
+                    if (!recordBuffer.isBatch()) {
+                        if (!putKey(recordBuffer)) {
+                            return i;
+                        }
+                        continue;
+                    }
+
+                    recordBatch.load(recordBuffer.getBody());
+                    while (recordBatch.hasNext()) {
+                        recordBatch.next(recordBuffer);
+                        if (!putKey(recordBuffer)) {
+                            return i;
+                        }
+                    }
+                }
+            } finally {
+                fileRecords.close();
+            }
+        }
+        return toIndex;
+    }
+
+    private boolean putKey(RecordBuffer recordBuffer) {
+        ByteBuffer key = KeyedRecord.keyOf(recordBuffer.getBody());
+        return key == null || keyIdMap.put(key, recordBuffer.getRecordId());
+    }
+
+    /**
+     * 重写一个已写满的文件并替换原文件
+     *
+     * @return 没有可以删除的 record 时不替换，返回 false
+     */
+    private boolean compactSegment(TopicMetaData metaData, long now, Throttler throttler) throws Exception {
+        File file = new File(filePath + metaData.getFileName());
+        File cleanedFile = new File(file.getAbsolutePath() + CLEANED_SUFFIX);
+        Files.deleteIfExists(cleanedFile.toPath());
+
+        long lastModified = file.lastModified();
+        boolean tombstoneExpired = now - lastModified > config.getTombstoneRetentionMs();
+
+        int size;
+        int retainedSize = 0;
+        int cleanedSize = 0;
+        int cleanedReadIndex = 0;
+        long offset;
+        boolean changed;
+        SegmentFormat format;
+
+        FileRecords fileRecords = unifiedLog.acquireFileRecords(metaData);
+        try (FileChannel channel = FileChannel.open(cleanedFile.toPath(),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            size = fileRecords.size();
+            // v1 文件按配置的格式重写，自描述格式的文件保持原有格式
+            changed = !fileRecords.getFormat().isSelfDescribing();
+            format = changed ? cleanedFormat() : fileRecords.getFormat();
+            offset = SegmentMetaSummary.baseOffsetOf(format);
+            int readIndex = Math.min(fileRecords.getCurrentReadIndex(), size);
+
+            ByteBuffer writeBuffer = ByteBuffer.allocate(WRITE_BUFFER_BYTES);
+            for (int i = 0; i < size; i++) {
+                fileRecords.readAt(i, recordBuffer);
+                ByteBuffer body = recordBuffer.getBody();
+                throttler.acquire(body.remaining());
+
+                boolean written;
+                if (recordBuffer.isBatch()) {
+                    // record 批次只保留需要保留的 record，按原压缩算法重新压缩
+                    List<Record> retained = new ArrayList<>();
+                    int batchSize = 0;
+                    recordBatch.load(body);
+                    while (recordBatch.hasNext()) {
+                        Record record = recordBatch.nextRecord();
+                        batchSize++;
+                        if (isRetained(record.getId(), record.getBuffer(), tombstoneExpired)) {
+                            retained.add(record);
+                        }
+                    }
+                    retainedSize += retained.size();
+                    changed |= retained.size() != batchSize;
+
+                    written = !retained.isEmpty();
+                    if (written) {
+                        Record batch = retained.size() == batchSize
+                                ? new Record(recordBuffer.getRecordId(), body, true)
+                                : RecordBatch.encode(retained, recordBatch.getCodec());
+                        offset = writeFrame(channel, writeBuffer, offset, format, batch.getId(), batch.getBuffer(),
+                                true, throttler);
+                    }
+                } else {
+                    written = isRetained(recordBuffer.getRecordId(), body, tombstoneExpired);
+                    if (written) {
+                        retainedSize++;
+                        offset = writeFrame(channel, writeBuffer, offset, format, recordBuffer.getRecordId(), body,
+                                false, throttler);
+                    } else {
+                        changed = true;
+                    }
+                }
+
+                if (written) {
+                    cleanedSize++;
+                    if (i < readIndex) {
+                        cleanedReadIndex++;
+                    }
+                }
+            }
+            offset += writeBuffer(channel, writeBuffer, offset, throttler);
+
+            writeFully(channel, SegmentMetaSummary.encodeHeader(format, cleanedReadIndex, offset), 0);
+            channel.force(true);
+        } finally {
+            fileRecords.close();
+        }
+
+        if (!changed) {
+            Files.delete(cleanedFile.toPath());
+            return false;
+        }
+
+        // 保留原文件的修改时间，按时间删除文件与删除标记时不受压缩影响
+        cleanedFile.setLastModified(lastModified);
+        Files.move(cleanedFile.toPath(), file.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        Files.deleteIfExists(new File(file.getAbsolutePath() + RecordMetaSummary.META_SUFFIX).toPath());
+
+        segmentCache.invalidate(file);
+        topicMetaSummary.updateContentBytesLength(metaData, offset - SegmentMetaSummary.baseOffsetOf(format));
+
+        LOGGER.info("topic : {} compact file : {}, frames {} -> {}, retain {} records",
+                unifiedLog.getTopicName(), file.getName(), size, cleanedSize, retainedSize);
+        return true;
+    }
+
+    /**
+     * 没有 key 的 record 总是保留；有 key 的 record 只保留最新的一条，已过保留期的删除标记不保留。
+     * 哈希表中没有的 key 只出现在已经压缩过的文件中，不存在更新的 record
+     */
+    private boolean isRetained(long recordId, ByteBuffer body, boolean tombstoneExpired) {
+        ByteBuffer key = KeyedRecord.keyOf(body);
+        if (key == null) {
+            return true;
+        }
+
+        if (keyIdMap.get(key) > recordId) {
+            return false;
+        }
+        return !tombstoneExpired || !KeyedRecord.isTombstone(body);
+    }
+
+    private SegmentFormat cleanedFormat() {
+        return config.getSegmentFormat().isSelfDescribing() ? config.getSegmentFormat() : SegmentFormat.V2;
+    }
+
+    /**
+     * 将一条 frame 放入 writeBuffer，放不下时先写出 writeBuffer，超过 writeBuffer 容量的 frame 直接写入
+     *
+     * @return 写出之后的文件 offset
+     */
+    private long writeFrame(FileChannel channel, ByteBuffer writeBuffer, long offset, SegmentFormat format,
+                            long recordId, ByteBuffer body, boolean batch, Throttler throttler)
+            throws IOException, InterruptedException {
+        byte[] headBytes = format.encodeHead(recordId, body, batch);
+        int frameLength = headBytes.length + body.remaining();
+        if (writeBuffer.remaining() < frameLength) {
+            offset += writeBuffer(channel, writeBuffer, offset, throttler);
+        }
+
+        if (frameLength > writeBuffer.capacity()) {
+            offset += writeFully(channel, ByteBuffer.wrap(headBytes), offset);
+            offset += writeFully(channel, body.duplicate(), offset);
+            throttler.acquire(frameLength);
+        } else {
+            writeBuffer.put(headBytes);
+            writeBuffer.put(body.duplicate());
+        }
+        return offset;
+    }
+
+    private int writeBuffer(FileChannel channel, ByteBuffer buffer, long offset, Throttler throttler)
+            throws IOException, InterruptedException {
+        buffer.flip();
+        int size = writeFully(channel, buffer, offset);
+        buffer.clear();
+
+        throttler.acquire(size);
+        return size;
+    }
+
+    private int writeFully(FileChannel channel, ByteBuffer buffer, long offset) throws IOException {
+        int size = 0;
+        while (buffer.hasRemaining()) {
+            size += channel.write(buffer, offset + size);
+        }
+        return size;
+    }
+
+    /**
+     * 释放堆外哈希表
+     */
+    @Override
+    public void close() {
+        if (keyIdMap != null) {
+            keyIdMap.close();
+            keyIdMap = null;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package io.github.kubrickLiu.presistent.log;
+
+import io.github.kubrickLiu.presistent.log.config.FlushPolicy;
+import io.github.kubrickLiu.presistent.log.config.LogConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * topic 的后台 flush，按 {@link FlushPolicy} 调用 {@link UnifiedLog#flush()}；
+ * 多次 flush 请求在执行之前合并为一次。
+ *
+ * 单独打开的 topic 使用自己的 flush 线程，{@link LogManager} 管理的 topic 在共用的 scheduler 中执行
+ */
+final class LogFlusher implements Runnable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LogFlusher.class);
+
+    private final UnifiedLog unifiedLog;
+
+    private final FlushPolicy flushPolicy;
+
+    private final int flushIntervalRecords;
+
+    private final long flushIntervalNanos;
+
+    /**
+     * 使用共用的 scheduler 时为 null
+     */
+    private final Thread thread;
+
+    private final ScheduledExecutorService scheduler;
+
+    private ScheduledFuture<?> intervalTask;
+
+    private volatile boolean requested;
+
+    private volatile boolean closed;
+
+    /**
+     * @param scheduler 为 null 时创建自己的 flush 线程
+     */
+    LogFlusher(UnifiedLog unifiedLog, LogConfig config, ScheduledExecutorService scheduler) {
+        this.unifiedLog = unifiedLog;
+        this.flushPolicy = config.getFlushPolicy();
+        this.flushIntervalRecords = config.getFlushIntervalRecords();
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(config.getFlushIntervalMs());
+        this.scheduler = scheduler;
+
+        if (scheduler == null) {
+            this.thread = new Thread(this, "kubrick-flusher-" + unifiedLog.getTopicName());
+            this.thread.setDaemon(true);
+        } else {
+            this.thread = null;
+        }
+    }
+
+    void start() {
+        if (thread != null) {
+            thread.start();
+        } else if (flushPolicy == FlushPolicy.INTERVAL) {
+            intervalTask = scheduler.scheduleWithFixedDelay(this::flushRequested,
+                    flushIntervalNanos, flushIntervalNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * 写入方发布 record 之后调用
+     *
+     * @param lastRecordId 本次发布的最后一条 record id
+     */
+    void onAppend(long lastRecordId) {
+        if (flushPolicy == FlushPolicy.EVERY_BATCH) {
+            request();
+        } else if (flushPolicy == FlushPolicy.RECORDS
+                && lastRecordId - unifiedLog.getDurableRecordId() >= flushIntervalRecords) {
+            request();
+        }
+    }
+
+    /**
+     * 请求尽快执行一次 flush
+     */
+    void request() {
+        if (!requested) {
+            requested = true;
+            if (thread != null) {
+                LockSupport.unpark(thread);
+            } else if (!closed) {
+                scheduler.execute(this::flushRequested);
+            }
+        }
+    }
+
+    /**
+     * 在共用的 scheduler 中执行，同一个 topic 同时只有一次 flush
+     */
+    private synchronized void flushRequested() {
+        requested = false;
+        if (!closed) {
+            flushOnce();
+        }
+    }
+
+    private void flushOnce() {
+        try {
+            unifiedLog.flush();
+        } catch (Exception e) {
+            LOGGER.error("flush topic : {} error.", unifiedLog.getTopicName(), e);
+        }
+    }
+
+    @Override
+    public void run() {
+        while (!closed) {
+            if (!requested) {
+                if (flushPolicy == FlushPolicy.INTERVAL) {
+                    LockSupport.parkNanos(this, flushIntervalNanos);
+                } else {
+                    LockSupport.park(this);
+                }
+            }
+            requested = false;
+
+            if (closed) {
+                break;
+            }
+
+            flushOnce();
+        }
+    }
+
+    /**
+     * 停止 flush 线程或者取消 scheduler 中的任务，正在执行的 flush 完成后返回，不会执行最后一次 flush
+     */
+    void close() throws InterruptedException {
+        closed = true;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+            thread.join();
+            return;
+        }
+
+        if (intervalTask != null) {
+            intervalTask.cancel(false);
+        }
+        synchronized (this) {
+            // 等待正在执行的 flush
+        }
+    }
+}
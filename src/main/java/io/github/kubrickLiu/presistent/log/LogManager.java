@@ -0,0 +1,346 @@
+package io.github.kubrickLiu.presistent.log;
+
+import io.github.kubrickLiu.presistent.log.config.LogConfig;
+import io.github.kubrickLiu.presistent.log.config.LogManagerConfig;
+import io.github.kubrickLiu.presistent.log.meta.TopicMetaSummary;
+import io.github.kubrickLiu.presistent.log.record.SegmentCache;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 管理同一个根目录下的多个 topic，所有 topic 共用：
+ * 1. 一组后台线程，执行 flush、删除、压缩以及并行打开 topic，topic 不再各自创建线程；
+ * 2. 一个 {@link SegmentCache}，所有 topic 打开的文件句柄与已写满的 record 文件的索引内存统一限制，
+ *    打开 topic 时预留当前写文件与 summary 文件的句柄，超过上限时不再打开新的 topic；
+ * 3. {@link io.github.kubrickLiu.presistent.log.meta.MetaFlushScheduler} 定时 flush 所有 meta。
+ *
+ * topic 在第一次 {@link #getLog(String)} 时打开，之前只占用磁盘上的文件；
+ * 长时间不使用的 topic 可以调用 {@link #closeLog(String)} 释放，下次使用时重新打开
+ */
+public class LogManager implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LogManager.class);
+
+    private static final String TOPIC_META_FILE_NAME = "Kubrick" + TopicMetaSummary.META_SUFFIX;
+
+    /**
+     * 每个打开的 topic 在当前写文件之外占用的文件句柄个数：topic summary 与 consumer 消费位置文件
+     */
+    private static final int TOPIC_META_FILE_DESCRIPTORS = 2;
+
+    private final String rootPath;
+
+    private final LogManagerConfig config;
+
+    private final ScheduledExecutorService scheduler;
+
+    private final SegmentCache segmentCache;
+
+    /**
+     * topic name -> 打开 topic 的任务，同一个 topic 同时只会打开一次，其他线程等待打开完成
+     */
+    private final Map<String, FutureTask<UnifiedLog>> logs = new ConcurrentHashMap<>();
+
+    /**
+     * 打开的 topic -> 在共用缓存中预留的文件句柄个数，关闭 topic 时释放
+     */
+    private final Map<UnifiedLog, Integer> reservedFileDescriptors = new ConcurrentHashMap<>();
+
+    /**
+     * 打开与关闭 topic 时持有读锁，关闭 LogManager 时持有写锁，关闭之后不会再打开新的 topic
+     */
+    private final ReadWriteLock lifecycleLock = new ReentrantReadWriteLock();
+
+    private boolean closed;
+
+    public LogManager(@NotNull String rootPath) {
+        this(rootPath, new LogManagerConfig());
+    }
+
+    public LogManager(@NotNull String rootPath, @NotNull LogManagerConfig config) {
+        if (config.getIoThreads() <= 0) {
+            throw new IllegalArgumentException("ioThreads must be positive : " + config.getIoThreads());
+        }
+        if (config.getMaxOpenFiles() <= 0) {
+            throw new IllegalArgumentException("maxOpenFiles must be positive : " + config.getMaxOpenFiles());
+        }
+
+        this.rootPath = rootPath;
+        this.config = config;
+
+        File dir = new File(rootPath);
+        if (!dir.exists()) {
+            dir.mkdirs();
+        }
+
+        AtomicInteger threadIndex = new AtomicInteger(0);
+        this.scheduler = Executors.newScheduledThreadPool(config.getIoThreads(), runnable -> {
+            Thread thread = new Thread(runnable, "kubrick-io-" + threadIndex.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        // 每个文件至少占用一个文件句柄，文件个数不会超过句柄个数
+        this.segmentCache = new SegmentCache(config.getMaxOpenFiles(), config.getMaxOpenFiles(),
+                config.getMaxIndexBytes());
+    }
+
+    /**
+     * 获取 topic，没有打开时使用 {@link LogManagerConfig#getLogConfig()} 打开，不存在时创建
+     *
+     * @param topicName
+     * @return 由 LogManager 管理，不需要调用方 close
+     * @throws Exception
+     */
+    public UnifiedLog getLog(@NotNull String topicName) throws Exception {
+        return getLog(topicName, config.getLogConfig());
+    }
+
+    /**
+     * 获取 topic，没有打开时使用 logConfig 打开，已经打开时忽略 logConfig
+     *
+     * @param topicName
+     * @param logConfig
+     * @return 由 LogManager 管理，不需要调用方 close
+     * @throws Exception
+     */
+    public UnifiedLog getLog(@NotNull String topicName, @NotNull LogConfig logConfig) throws Exception {
+        checkTopicName(topicName);
+
+        lifecycleLock.readLock().lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("log manager : " + rootPath + " is closed.");
+            }
+
+            FutureTask<UnifiedLog> task = logs.get(topicName);
+            if (task == null) {
+                FutureTask<UnifiedLog> newTask = new FutureTask<>(() -> openLog(topicName, logConfig));
+                task = logs.putIfAbsent(topicName, newTask);
+                if (task == null) {
+                    task = newTask;
+                    task.run();
+                }
+            }
+
+            try {
+                return task.get();
+            } catch (ExecutionException e) {
+                // 打开失败时移除任务，下次重新打开
+                logs.remove(topicName, task);
+                throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+            }
+        } finally {
+            lifecycleLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 先在 maxOpenFiles 中为 topic 的当前写文件与 summary 文件预留句柄，没有 consumer 时也预留消费位置文件；
+     * 预留之后超过上限时不打开，需要先调用 {@link #closeLog(String)} 关闭不再使用的 topic
+     */
+    private UnifiedLog openLog(String topicName, LogConfig logConfig) throws Exception {
+        int fileDescriptors = TOPIC_META_FILE_DESCRIPTORS + logConfig.getSegmentFormat().getFileDescriptorCount();
+        if (!segmentCache.reserveFileDescriptors(fileDescriptors)) {
+            throw new IllegalStateException("open topic : " + topicName + " exceeds maxOpenFiles : "
+                    + config.getMaxOpenFiles() + ", close idle topics first.");
+        }
+
+        try {
+            UnifiedLog unifiedLog = new UnifiedLog(rootPath, topicName, logConfig, segmentCache, scheduler);
+            reservedFileDescriptors.put(unifiedLog, fileDescriptors);
+            return unifiedLog;
+        } catch (Exception e) {
+            segmentCache.releaseFileDescriptors(fileDescriptors);
+            throw e;
+        }
+    }
+
+    /**
+     * 释放 topic 预留的文件句柄
+     */
+    private void releaseFileDescriptors(UnifiedLog unifiedLog) {
+        Integer fileDescriptors = reservedFileDescriptors.remove(unifiedLog);
+        if (fileDescriptors != null) {
+            segmentCache.releaseFileDescriptors(fileDescriptors);
+        }
+    }
+
+    /**
+     * 在共用的后台线程中同时打开多个 topic
+     *
+     * @param topicNames
+     * @return topic name -> UnifiedLog，顺序与 topicNames 一致
+     * @throws Exception 等待所有 topic 打开完成之后抛出第一个失败，已经打开的 topic 仍由 LogManager 管理
+     */
+    public Map<String, UnifiedLog> openAll(@NotNull Collection<String> topicNames) throws Exception {
+        Map<String, Future<UnifiedLog>> futures = new LinkedHashMap<>();
+        for (String topicName : topicNames) {
+            futures.put(topicName, scheduler.submit(() -> getLog(topicName)));
+        }
+
+        Map<String, UnifiedLog> unifiedLogs = new LinkedHashMap<>();
+        Exception error = null;
+        for (Map.Entry<String, Future<UnifiedLog>> entry : futures.entrySet()) {
+            try {
+                unifiedLogs.put(entry.getKey(), entry.getValue().get());
+            } catch (ExecutionException e) {
+                if (error == null) {
+                    error = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                }
+            }
+        }
+
+        if (error != null) {
+            throw error;
+        }
+        return unifiedLogs;
+    }
+
+    /**
+     * 关闭并释放 topic 占用的资源，之后的 {@link #getLog(String)} 重新打开；
+     * 调用方需要保证没有线程继续使用已经获取的 UnifiedLog
+     *
+     * @param topicName
+     * @return topic 没有打开时返回 false
+     * @throws Exception
+     */
+    public boolean closeLog(@NotNull String topicName) throws Exception {
+        lifecycleLock.readLock().lock();
+        try {
+            FutureTask<UnifiedLog> task = logs.remove(topicName);
+            if (task == null) {
+                return false;
+            }
+
+            UnifiedLog unifiedLog;
+            try {
+                unifiedLog = task.get();
+            } catch (ExecutionException e) {
+                return false;
+            }
+            try {
+                unifiedLog.close();
+            } finally {
+                releaseFileDescriptors(unifiedLog);
+            }
+            return true;
+        } finally {
+            lifecycleLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 根目录下已经存在的 topic，包括没有打开的 topic
+     *
+     * @return 按名称排序
+     */
+    public List<String> listTopics() {
+        File[] dirs = new File(rootPath).listFiles(File::isDirectory);
+        if (dirs == null) {
+            return Collections.emptyList();
+        }
+
+        Set<String> topicNames = new TreeSet<>();
+        for (File dir : dirs) {
+            if (new File(dir, TOPIC_META_FILE_NAME).exists()) {
+                topicNames.add(dir.getName());
+            }
+        }
+        topicNames.addAll(logs.keySet());
+        return new ArrayList<>(topicNames);
+    }
+
+    /**
+     * 已经打开的 topic
+     */
+    public Set<String> getOpenedTopics() {
+        return new TreeSet<>(logs.keySet());
+    }
+
+    public boolean isOpened(@NotNull String topicName) {
+        return logs.containsKey(topicName);
+    }
+
+    /**
+     * 所有 topic 共用的已写满 record 文件缓存
+     */
+    public SegmentCache getSegmentCache() {
+        return segmentCache;
+    }
+
+    public String getRootPath() {
+        return rootPath;
+    }
+
+    private void checkTopicName(String topicName) {
+        if (topicName.isEmpty() || ".".equals(topicName) || "..".equals(topicName)
+                || topicName.indexOf('/') >= 0 || topicName.indexOf(File.separatorChar) >= 0) {
+            throw new IllegalArgumentException("illegal topic name : " + topicName);
+        }
+    }
+
+    /**
+     * 关闭所有已经打开的 topic，再停止共用的后台线程并释放缓存
+     *
+     * @throws Exception 所有 topic 关闭之后抛出第一个失败
+     */
+    @Override
+    public void close() throws Exception {
+        lifecycleLock.writeLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        } finally {
+            lifecycleLock.writeLock().unlock();
+        }
+
+        Exception error = null;
+        for (Map.Entry<String, FutureTask<UnifiedLog>> entry : logs.entrySet()) {
+            try {
+                entry.getValue().get().close();
+            } catch (ExecutionException e) {
+                // 打开失败的 topic 不需要关闭
+            } catch (Exception e) {
+                LOGGER.error("close topic : {} error.", entry.getKey(), e);
+                if (error == null) {
+                    error = e;
+                }
+            }
+        }
+        logs.clear();
+        reservedFileDescriptors.clear();
+
+        scheduler.shutdown();
+        if (!scheduler.awaitTermination(1, TimeUnit.MINUTES)) {
+            LOGGER.warn("log manager : {} background tasks are not terminated.", rootPath);
+        }
+        segmentCache.close();
+
+        if (error != null) {
+            throw error;
+        }
+    }
+}
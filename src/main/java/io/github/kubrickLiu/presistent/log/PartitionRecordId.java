@@ -0,0 +1,29 @@
+package io.github.kubrickLiu.presistent.log;
+
+/**
+ * {@link PartitionedLog} 按轮询追加时写入的分区与最后一条 record 的 id
+ */
+public class PartitionRecordId {
+
+    private final int partition;
+
+    private final long recordId;
+
+    public PartitionRecordId(int partition, long recordId) {
+        this.partition = partition;
+        this.recordId = recordId;
+    }
+
+    public int getPartition() {
+        return partition;
+    }
+
+    public long getRecordId() {
+        return recordId;
+    }
+
+    @Override
+    public String toString() {
+        return "PartitionRecordId{partition=" + partition + ", recordId=" + recordId + "}";
+    }
+}
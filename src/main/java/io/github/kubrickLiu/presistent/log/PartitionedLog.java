@@ -0,0 +1,297 @@
+package io.github.kubrickLiu.presistent.log;
+
+import io.github.kubrickLiu.presistent.log.config.LogConfig;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+/**
+ * 由 N 个 {@link UnifiedLog} 分区组成的 topic，每个分区保存在 topic 目录下的 partition-i 子目录中，
+ * 拥有各自的写入位置与 consumer，不同分区可以在不同线程中同时写入与读取。
+ *
+ * 带 key 的 record 按 key 的 hash 写入固定的分区，同一个 key 的 record 保持写入顺序；
+ * 没有 key 的 record 按轮询写入各个分区，分区之间没有顺序。
+ * 分区个数在创建之后不能修改，否则 key 与分区的对应关系会改变
+ */
+public class PartitionedLog implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PartitionedLog.class);
+
+    private static final String PARTITION_PREFIX = "partition-";
+
+    private static final Pattern PARTITION_PATTERN = Pattern.compile(PARTITION_PREFIX + "\\d+");
+
+    private final String topicName;
+
+    private final LogConfig config;
+
+    private final UnifiedLog[] partitions;
+
+    /**
+     * 没有开启并发追加时 UnifiedLog 只允许一个写入方，同一个分区的写入在对应的锁内执行
+     */
+    private final Object[] appendLocks;
+
+    private final AtomicInteger nextPartition = new AtomicInteger(0);
+
+    public PartitionedLog(@NotNull String filePath, @NotNull String topicName, int partitionCount)
+            throws Exception {
+        this(filePath, topicName, partitionCount, new LogConfig());
+    }
+
+    /**
+     * 并行打开所有分区
+     *
+     * @param filePath
+     * @param topicName
+     * @param partitionCount 已经存在的 topic 必须与创建时的分区个数一致
+     * @param config 所有分区共用的配置
+     * @throws Exception
+     */
+    public PartitionedLog(@NotNull String filePath, @NotNull String topicName, int partitionCount,
+                          @NotNull LogConfig config) throws Exception {
+        if (partitionCount <= 0) {
+            throw new IllegalArgumentException("partition count must be positive : " + partitionCount);
+        }
+
+        String topicPath = filePath + File.separator + topicName;
+        int existingCount = existingPartitionCount(new File(topicPath));
+        if (existingCount > 0 && existingCount != partitionCount) {
+            throw new IllegalArgumentException("topic : " + topicName + " has " + existingCount
+                    + " partitions, can not open with " + partitionCount + " partitions.");
+        }
+
+        List<String> partitionNames = new ArrayList<>(partitionCount);
+        for (int i = 0; i < partitionCount; i++) {
+            partitionNames.add(PARTITION_PREFIX + i);
+        }
+        Map<String, UnifiedLog> unifiedLogs = UnifiedLog.openAll(topicPath, partitionNames, config, partitionCount);
+
+        this.topicName = topicName;
+        this.config = config;
+        this.partitions = new UnifiedLog[partitionCount];
+        this.appendLocks = new Object[partitionCount];
+        for (int i = 0; i < partitionCount; i++) {
+            partitions[i] = unifiedLogs.get(partitionNames.get(i));
+            appendLocks[i] = new Object();
+        }
+    }
+
+    private static int existingPartitionCount(File topicDir) {
+        File[] dirs = topicDir.listFiles(file -> file.isDirectory()
+                && PARTITION_PATTERN.matcher(file.getName()).matches());
+        return dirs == null ? 0 : dirs.length;
+    }
+
+    /**
+     * key 对应的分区，同一个 key 总是对应同一个分区
+     *
+     * @param key
+     * @return
+     */
+    public int partitionFor(@NotNull byte[] key) {
+        // Arrays.hashCode 的低位分布较差，先混合高低位
+        int hash = Arrays.hashCode(key);
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        return (hash & Integer.MAX_VALUE) % partitions.length;
+    }
+
+    private int roundRobinPartition() {
+        return (nextPartition.getAndIncrement() & Integer.MAX_VALUE) % partitions.length;
+    }
+
+    /**
+     * 按 key 写入对应的分区；开启压缩时按 {@link UnifiedLog#appendKeyed(byte[], byte[])} 写入，
+     * 否则只写入 value，key 只用于选择分区
+     *
+     * @param key
+     * @param value 开启压缩时为 null 表示删除 key
+     * @return 分区中的 record id，分区由 {@link #partitionFor(byte[])} 决定
+     * @throws Exception
+     */
+    public long append(@NotNull byte[] key, byte[] value) throws Exception {
+        int partition = partitionFor(key);
+        if (config.isCompactEnabled()) {
+            if (config.isConcurrentAppend()) {
+                return partitions[partition].appendKeyed(key, value);
+            }
+            synchronized (appendLocks[partition]) {
+                return partitions[partition].appendKeyed(key, value);
+            }
+        }
+
+        if (value == null) {
+            throw new IllegalArgumentException("value of topic : " + topicName + " can not be null.");
+        }
+        return appendOne(partition, value);
+    }
+
+    /**
+     * 按轮询写入一个分区
+     *
+     * @return 写入的分区与分区中的 record id
+     */
+    public PartitionRecordId appendOne(@NotNull byte[] bytes) throws Exception {
+        int partition = roundRobinPartition();
+        return new PartitionRecordId(partition, appendOne(partition, bytes));
+    }
+
+    /**
+     * @return 分区中的 record id
+     */
+    public long appendOne(int partition, @NotNull byte[] bytes) throws Exception {
+        if (config.isConcurrentAppend()) {
+            return partitions[partition].appendOne(bytes);
+        }
+        synchronized (appendLocks[partition]) {
+            return partitions[partition].appendOne(bytes);
+        }
+    }
+
+    /**
+     * 同 {@link #appendOne(byte[])}，直接写入调用方的 buffer，见 {@link UnifiedLog#appendOne(ByteBuffer)}
+     */
+    public PartitionRecordId appendOne(@NotNull ByteBuffer buffer) throws Exception {
+        int partition = roundRobinPartition();
+        return new PartitionRecordId(partition, appendOne(partition, buffer));
+    }
+
+    public long appendOne(int partition, @NotNull ByteBuffer buffer) throws Exception {
+        if (config.isConcurrentAppend()) {
+            return partitions[partition].appendOne(buffer);
+        }
+        synchronized (appendLocks[partition]) {
+            return partitions[partition].appendOne(buffer);
+        }
+    }
+
+    /**
+     * 整批按轮询写入同一个分区，批次内的 record 保持顺序
+     *
+     * @return 写入的分区与分区中最后一条 record 的 id
+     */
+    public PartitionRecordId append(@NotNull List<byte[]> bytesList) throws Exception {
+        int partition = roundRobinPartition();
+        return new PartitionRecordId(partition, append(partition, bytesList));
+    }
+
+    /**
+     * @return 分区中最后一条 record 的 id
+     */
+    public long append(int partition, @NotNull List<byte[]> bytesList) throws Exception {
+        if (config.isConcurrentAppend()) {
+            return partitions[partition].append(bytesList);
+        }
+        synchronized (appendLocks[partition]) {
+            return partitions[partition].append(bytesList);
+        }
+    }
+
+    /**
+     * 同 {@link #append(List)}，直接写入调用方的 buffer
+     */
+    public PartitionRecordId appendBuffers(@NotNull List<ByteBuffer> buffers) throws Exception {
+        int partition = roundRobinPartition();
+        return new PartitionRecordId(partition, appendBuffers(partition, buffers));
+    }
+
+    public long appendBuffers(int partition, @NotNull List<ByteBuffer> buffers) throws Exception {
+        if (config.isConcurrentAppend()) {
+            return partitions[partition].appendBuffers(buffers);
+        }
+        synchronized (appendLocks[partition]) {
+            return partitions[partition].appendBuffers(buffers);
+        }
+    }
+
+    /**
+     * 打开一个分区的 consumer group，消费位置按分区分别保存
+     */
+    public UnifiedLogConsumer openConsumer(int partition, @NotNull String group) throws Exception {
+        return partitions[partition].openConsumer(group);
+    }
+
+    /**
+     * 为每个分区打开一个 consumer，可以交给不同线程同时读取
+     *
+     * @param group
+     * @return 下标为分区号
+     * @throws Exception 任意一个分区打开失败时关闭已经打开的 consumer 并抛出
+     */
+    public List<UnifiedLogConsumer> openConsumers(@NotNull String group) throws Exception {
+        List<UnifiedLogConsumer> consumers = new ArrayList<>(partitions.length);
+        try {
+            for (UnifiedLog partition : partitions) {
+                consumers.add(partition.openConsumer(group));
+            }
+        } catch (Exception e) {
+            for (UnifiedLogConsumer consumer : consumers) {
+                consumer.close();
+            }
+            throw e;
+        }
+        return consumers;
+    }
+
+    public void flush() throws Exception {
+        for (UnifiedLog partition : partitions) {
+            partition.flush();
+        }
+    }
+
+    /**
+     * 等待分区中 recordId 及之前的 record 写入磁盘，见 {@link UnifiedLog#awaitDurable(long, long, TimeUnit)}
+     */
+    public boolean awaitDurable(int partition, long recordId, long timeout, @NotNull TimeUnit unit)
+            throws Exception {
+        return partitions[partition].awaitDurable(recordId, timeout, unit);
+    }
+
+    public UnifiedLog getPartition(int partition) {
+        return partitions[partition];
+    }
+
+    public int getPartitionCount() {
+        return partitions.length;
+    }
+
+    public String getTopicName() {
+        return topicName;
+    }
+
+    /**
+     * 关闭所有分区
+     *
+     * @throws Exception 所有分区关闭之后抛出第一个失败
+     */
+    @Override
+    public void close() throws Exception {
+        Exception error = null;
+        for (UnifiedLog partition : partitions) {
+            try {
+                partition.close();
+            } catch (Exception e) {
+                LOGGER.error("close partition : {} of topic : {} error.", partition.getTopicName(), topicName, e);
+                if (error == null) {
+                    error = e;
+                }
+            }
+        }
+
+        if (error != null) {
+            throw error;
+        }
+    }
+}
@@ -1,28 +1,170 @@
 package io.github.kubrickLiu.presistent.log;
 
+import io.github.kubrickLiu.presistent.log.compress.CompressionCodec;
+import io.github.kubrickLiu.presistent.log.config.FlushPolicy;
+import io.github.kubrickLiu.presistent.log.config.LogConfig;
+import io.github.kubrickLiu.presistent.log.config.StorageEngine;
+import io.github.kubrickLiu.presistent.log.meta.ConsumerOffsetsSummary;
+import io.github.kubrickLiu.presistent.log.meta.RecordMetaSummary;
+import io.github.kubrickLiu.presistent.log.meta.SegmentMetaSummary;
 import io.github.kubrickLiu.presistent.log.meta.TopicMetaData;
 import io.github.kubrickLiu.presistent.log.meta.TopicMetaSummary;
+import io.github.kubrickLiu.presistent.log.metrics.Gauge;
+import io.github.kubrickLiu.presistent.log.metrics.LogMetrics;
+import io.github.kubrickLiu.presistent.log.metrics.MetricsReporter;
+import io.github.kubrickLiu.presistent.log.record.ConcurrentSegment;
 import io.github.kubrickLiu.presistent.log.record.FileRecords;
+import io.github.kubrickLiu.presistent.log.record.FrameEncoder;
+import io.github.kubrickLiu.presistent.log.record.KeyedRecord;
 import io.github.kubrickLiu.presistent.log.record.Record;
+import io.github.kubrickLiu.presistent.log.record.RecordBatch;
+import io.github.kubrickLiu.presistent.log.record.RecordBuffer;
+import io.github.kubrickLiu.presistent.log.record.SegmentCache;
+import io.github.kubrickLiu.presistent.log.record.SegmentFormat;
+import io.github.kubrickLiu.presistent.log.record.SegmentMigrator;
 import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
 
 public class UnifiedLog implements AutoCloseable {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(UnifiedLog.class);
+
     private final String filePath;
 
     private final String topicName;
 
     private final TopicMetaSummary topicMetaSummary;
 
+    private final LogConfig config;
+
     private FileRecords readFileRecords;
 
-    private FileRecords writeFileRecords;
+    /**
+     * 切换读取文件之后仍然持有上一个文件的引用，直到下一次读取，
+     * mmap 的文件解除映射之后 {@link UnifiedLogIterator#nextBuffer()} 返回的视图不能再访问
+     */
+    private FileRecords previousReadFileRecords;
+
+    private volatile FileRecords writeFileRecords;
+
+    /**
+     * 开启并发追加时的当前写文件
+     */
+    private final AtomicReference<ConcurrentSegment> activeSegment = new AtomicReference<>();
+
+    /**
+     * 已写满的 record 文件，读取方与写入方共用；由 {@link LogManager} 管理时所有 topic 共用
+     */
+    private final SegmentCache segmentCache;
+
+    /**
+     * 由 {@link LogManager} 管理时 flush 与删除在共用的 scheduler 中执行，单独打开时为 null
+     */
+    private final ScheduledExecutorService scheduler;
 
     private UnifiedLogIterator iterator;
 
+    /**
+     * 串行追加时写入方复用的编码缓冲区
+     */
+    private final FrameEncoder frameEncoder = new FrameEncoder();
+
+    /**
+     * 读取方当前正在读取的 record 批次
+     */
+    private final RecordBatch readBatch = new RecordBatch();
+
+    /**
+     * 第一次打开 consumer 时创建
+     */
+    private ConsumerOffsetsSummary consumerOffsetsSummary;
+
+    private final Map<String, UnifiedLogConsumer> consumers = new HashMap<>();
+
+    private final AppendNotifier appendNotifier = new AppendNotifier();
+
+    /**
+     * 已经写入磁盘的最大 record id
+     */
+    private volatile long durableRecordId;
+
+    private final AppendNotifier durableNotifier = new AppendNotifier();
+
+    private final Object flushLock = new Object();
+
+    /**
+     * {@link FlushPolicy#NEVER} 时为 null
+     */
+    private LogFlusher logFlusher;
+
+    private final Object cleanLock = new Object();
+
+    /**
+     * 没有配置删除策略且没有开启压缩时为 null
+     */
+    private LogCleaner logCleaner;
+
+    /**
+     * 没有开启压缩时为 null
+     */
+    private LogCompactor logCompactor;
+
+    private final LogMetrics metrics;
+
     public UnifiedLog(@NotNull String filePath, @NotNull String topicName) throws Exception {
+        this(filePath, topicName, new LogConfig());
+    }
+
+    public UnifiedLog(@NotNull String filePath, @NotNull String topicName, @NotNull LogConfig config)
+            throws Exception {
+        this(filePath, topicName, config, new SegmentCache(config.getMaxOpenSegments()), null);
+    }
+
+    /**
+     * @param segmentCache 由 {@link LogManager} 管理时为所有 topic 共用的缓存，close 时只移除该 topic 的文件
+     * @param scheduler 为 null 时使用 topic 自己的 flush 与删除线程
+     */
+    UnifiedLog(@NotNull String filePath, @NotNull String topicName, @NotNull LogConfig config,
+               @NotNull SegmentCache segmentCache, ScheduledExecutorService scheduler) throws Exception {
+        long startNanos = System.nanoTime();
+        if (config.getCompressionCodec() != null
+                && (config.isConcurrentAppend() || !config.getSegmentFormat().isSelfDescribing())) {
+            throw new IllegalArgumentException("compression requires self describing segment format"
+                    + " and serial append.");
+        }
+        if (config.isConcurrentAppend()
+                && config.getSegmentBytes() + SegmentMetaSummary.LONG_BASE_OFFSET > ConcurrentSegment.MAX_FILE_BYTES) {
+            throw new IllegalArgumentException("concurrent append requires segment bytes no more than "
+                    + (ConcurrentSegment.MAX_FILE_BYTES - SegmentMetaSummary.LONG_BASE_OFFSET));
+        }
+        if (config.getStorageEngine() == StorageEngine.MMAP
+                && config.getSegmentBytes() + SegmentMetaSummary.LONG_BASE_OFFSET > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("mmap requires segment bytes no more than "
+                    + (Integer.MAX_VALUE - SegmentMetaSummary.LONG_BASE_OFFSET));
+        }
+
         this.filePath = filePath + File.separator + topicName + File.separator;
         File dir = new File(this.filePath);
         if (!dir.exists()) {
@@ -30,9 +172,138 @@ public class UnifiedLog implements AutoCloseable {
         }
 
         this.topicName = topicName;
+        this.config = config;
+        this.segmentCache = segmentCache;
+        this.scheduler = scheduler;
+        this.metrics = new LogMetrics(topicName, this.filePath);
 
         File metaFile = generateTopicMetaFile();
         this.topicMetaSummary = new TopicMetaSummary(topicName, metaFile);
+        topicMetaSummary.setFlushTime(metrics.getMetaFlushTime());
+
+        if (config.isMigrateLegacySegments()) {
+            migrateLegacySegments();
+        }
+
+        TopicMetaData writeMeta = topicMetaSummary.getCurrentWriteMeta();
+        if (writeMeta != null) {
+            openWriteFileRecords(writeMeta);
+            recoverWriteMeta(writeMeta);
+        }
+
+        if (config.isConcurrentAppend()) {
+            rollingWriter(topicMetaSummary.getMaxRecordId() + 1, 0, 0);
+            activeSegment.set(new ConcurrentSegment(writeFileRecords, topicMetaSummary.getCurrentWriteMeta()));
+        }
+
+        // 打开时已经存在的 record 视为已持久化
+        this.durableRecordId = committedRecordId();
+        if (config.getFlushPolicy() != FlushPolicy.NEVER) {
+            logFlusher = new LogFlusher(this, config, scheduler);
+            logFlusher.start();
+        }
+
+        if (config.isCompactEnabled()) {
+            logCompactor = new LogCompactor(this, this.filePath, config, topicMetaSummary, segmentCache,
+                    scheduler == null);
+        }
+
+        if (config.hasRetention() || config.isCompactEnabled()) {
+            logCleaner = new LogCleaner(this, config, scheduler);
+            logCleaner.start();
+        }
+
+        metrics.addRecoveryNanos(System.nanoTime() - startNanos);
+        metrics.getRegistry().register(LogMetrics.OPEN_SEGMENTS, (Gauge) this::openSegmentCount);
+        for (MetricsReporter reporter : config.getMetricsReporters()) {
+            reporter.register(metrics);
+        }
+    }
+
+    /**
+     * 已写满的文件中由缓存打开的个数加上当前写文件
+     */
+    private long openSegmentCount() {
+        return segmentCache.size(new File(filePath)) + (writeFileRecords != null ? 1 : 0);
+    }
+
+    /**
+     * 在最多 parallelism 个线程中同时打开多个 topic。
+     * 打开 topic 时恢复 topic 的 meta 与当前写文件，已写满的 record 文件在第一次读取时才打开并恢复索引
+     *
+     * @param filePath
+     * @param topicNames
+     * @param config 所有 topic 共用的配置
+     * @param parallelism
+     * @return topic name -> UnifiedLog，顺序与 topicNames 一致
+     * @throws Exception 任意一个 topic 打开失败时关闭已经打开的 topic 并抛出
+     */
+    public static Map<String, UnifiedLog> openAll(@NotNull String filePath, @NotNull Collection<String> topicNames,
+                                                  @NotNull LogConfig config, int parallelism) throws Exception {
+        Map<String, UnifiedLog> unifiedLogs = new LinkedHashMap<>();
+        if (topicNames.isEmpty()) {
+            return unifiedLogs;
+        }
+
+        AtomicInteger threadIndex = new AtomicInteger(0);
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(parallelism, topicNames.size())),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "kubrick-recovery-" + threadIndex.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+
+        Exception error = null;
+        try {
+            Map<String, Future<UnifiedLog>> futures = new LinkedHashMap<>();
+            for (String topicName : topicNames) {
+                futures.put(topicName, executor.submit(() -> new UnifiedLog(filePath, topicName, config)));
+            }
+
+            // 等待所有 topic 打开完成，失败时也需要拿到已经打开的 topic 以便关闭
+            for (Map.Entry<String, Future<UnifiedLog>> entry : futures.entrySet()) {
+                try {
+                    unifiedLogs.put(entry.getKey(), entry.getValue().get());
+                } catch (ExecutionException e) {
+                    if (error == null) {
+                        error = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                    }
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        if (error != null) {
+            for (UnifiedLog unifiedLog : unifiedLogs.values()) {
+                unifiedLog.close();
+            }
+            throw error;
+        }
+        return unifiedLogs;
+    }
+
+    /**
+     * 将已写满的 v1 record 文件迁移为配置的格式，当前写文件在滚动后的下次打开时迁移；
+     * 迁移之后更新 summary 中的内容字节数并写入磁盘
+     */
+    private void migrateLegacySegments() throws Exception {
+        List<TopicMetaData> metaList = topicMetaSummary.getMetaList();
+        boolean migrated = false;
+        for (int i = 0; i < metaList.size() - 1; i++) {
+            TopicMetaData metaData = metaList.get(i);
+            File recordFile = new File(filePath + metaData.getFileName());
+            long contentBytesLength = SegmentMigrator.migrateContentBytes(recordFile,
+                    config.getSegmentFormat().isSelfDescribing() ? config.getSegmentFormat() : SegmentFormat.V2);
+            if (contentBytesLength >= 0) {
+                topicMetaSummary.updateContentBytesLength(metaData, contentBytesLength);
+                migrated = true;
+            }
+        }
+
+        if (migrated) {
+            topicMetaSummary.sync();
+        }
     }
 
     public UnifiedLogIterator getIterator() {
@@ -46,13 +317,403 @@ public class UnifiedLog implements AutoCloseable {
         return iterator;
     }
 
+    /**
+     * 打开 consumer group，每个 group 拥有独立并持久化的消费位置，
+     * 不同 group 可以在不同线程中同时读取；同一个 group 同时只能打开一个 consumer
+     *
+     * @param group
+     * @return
+     * @throws Exception
+     */
+    public synchronized UnifiedLogConsumer openConsumer(@NotNull String group) throws Exception {
+        if (consumers.containsKey(group)) {
+            throw new IllegalStateException("consumer group : " + group + " is already opened.");
+        }
+
+        if (consumerOffsetsSummary == null) {
+            consumerOffsetsSummary = new ConsumerOffsetsSummary(generateConsumerOffsetsFile());
+            consumerOffsetsSummary.setFlushTime(metrics.getMetaFlushTime());
+        }
+
+        UnifiedLogConsumer consumer = new UnifiedLogConsumer(this, group, topicMetaSummary, consumerOffsetsSummary);
+        consumer.setVerifyChecksum(config.isVerifyChecksumOnRead());
+        consumers.put(group, consumer);
+        // 积压条数为 maxRecordId 减去已经读取的最后一条 record id；
+        // 新的 group 或者已读取的 record 已被删除时从现存的第一条 record 开始计算
+        metrics.registerConsumerLag(group, () -> {
+            long nextRecordId = Math.max(consumer.position(), Math.max(1, getFirstRecordId()));
+            return Math.max(0, topicMetaSummary.getMaxRecordId() - (nextRecordId - 1));
+        });
+        return consumer;
+    }
+
+    synchronized void releaseConsumer(UnifiedLogConsumer consumer) {
+        if (consumers.remove(consumer.getGroup(), consumer)) {
+            metrics.removeConsumerLag(consumer.getGroup());
+        }
+    }
+
+    /**
+     * 打开 record 文件，当前写文件与写入方共用同一个 FileRecords，已写满的文件由 {@link SegmentCache} 缓存；
+     * 每个使用方持有各自的引用，使用完之后需要调用 close 释放
+     */
+    FileRecords acquireFileRecords(TopicMetaData metaData) throws Exception {
+        while (true) {
+            FileRecords tmpWriteFileRecords = writeFileRecords;
+            if (tmpWriteFileRecords != null && tmpWriteFileRecords.isEqualWithFilename(metaData.getFileName())) {
+                if (tmpWriteFileRecords.retain()) {
+                    return tmpWriteFileRecords;
+                }
+                continue;
+            }
+
+            TopicMetaData writeMeta = topicMetaSummary.getCurrentWriteMeta();
+            if (writeMeta != null && writeMeta.getFileName().equals(metaData.getFileName())) {
+                if (tmpWriteFileRecords == null) {
+                    openWriteFileRecords(writeMeta);
+                } else {
+                    // 写入方正在滚动
+                    Thread.yield();
+                }
+                continue;
+            }
+
+            return segmentCache.acquire(new File(filePath + metaData.getFileName()), config);
+        }
+    }
+
+    /**
+     * 打开当前写文件，按 config 中的 {@link StorageEngine} 打开
+     */
+    private synchronized void openWriteFileRecords(TopicMetaData writeMeta) throws Exception {
+        if (writeFileRecords == null) {
+            writeFileRecords = FileRecords.open(new File(filePath + writeMeta.getFileName()), config);
+        }
+    }
+
+    /**
+     * 非正常关闭时 topic meta 只保存到上次 flush，按恢复之后的当前写文件校正 maxRecordId 与当前写文件的 meta
+     */
+    private void recoverWriteMeta(TopicMetaData writeMeta) throws Exception {
+        int size = writeFileRecords.size();
+        long endRecordId = size > 0 ? writeFileRecords.recordIdAt(size - 1) : writeMeta.getStartRecordId() - 1;
+        topicMetaSummary.recoverWriteMeta(endRecordId,
+                writeFileRecords.getWriteRecordOffset() - writeFileRecords.getBaseRecordOffset());
+    }
+
+    /**
+     * 发布 record 之后唤醒等待的读取方，并按 {@link FlushPolicy} 通知 flush 线程
+     */
+    private void afterAppend(long lastRecordId) {
+        appendNotifier.signalAll();
+        if (logFlusher != null) {
+            logFlusher.onAppend(lastRecordId);
+        }
+    }
+
+    /**
+     * 已发布的最大 record id
+     */
+    private long committedRecordId() {
+        TopicMetaData writeMeta = topicMetaSummary.getCurrentWriteMeta();
+        if (writeMeta == null) {
+            return 0;
+        }
+        return Math.max(writeMeta.getEndRecordId(), writeMeta.getStartRecordId() - 1);
+    }
+
+    /**
+     * 先将当前写文件的 record 数据写入磁盘，再写入 record 文件与 topic 的 meta，完成后推进持久化水位；
+     * {@link FlushPolicy#NEVER} 时滚动不写入磁盘，上次 flush 之后滚动的文件在这里写入磁盘，
+     * 其他策略下已滚动的文件在滚动时已经写入磁盘
+     *
+     * @throws Exception
+     */
+    public void flush() throws Exception {
+        synchronized (flushLock) {
+            long recordId = committedRecordId();
+            if (recordId <= durableRecordId) {
+                return;
+            }
+
+            FileRecords fileRecords = retainWriteFileRecords();
+            if (fileRecords != null) {
+                long startNanos = System.nanoTime();
+                try {
+                    fileRecords.sync();
+                    metrics.getSegmentFlushTime().updateSince(startNanos);
+                } finally {
+                    fileRecords.close();
+                }
+            }
+            if (config.getFlushPolicy() == FlushPolicy.NEVER) {
+                syncSealedSegments(fileRecords);
+            }
+            topicMetaSummary.sync();
+
+            durableRecordId = recordId;
+        }
+        durableNotifier.signalAll();
+    }
+
+    /**
+     * 将 endRecordId 超过持久化水位的已写满文件写入磁盘；与删除文件互斥，不会重新打开已删除的文件
+     *
+     * @param syncedFileRecords 已经写入磁盘的当前写文件，之后滚动时不需要再写入
+     */
+    private void syncSealedSegments(FileRecords syncedFileRecords) throws Exception {
+        synchronized (cleanLock) {
+            for (TopicMetaData metaData : topicMetaSummary.getMetaList()) {
+                if (metaData.getEndRecordId() <= durableRecordId
+                        || (syncedFileRecords != null && syncedFileRecords.isEqualWithFilename(metaData.getFileName()))
+                        || metaData == topicMetaSummary.getCurrentWriteMeta()) {
+                    continue;
+                }
+
+                long startNanos = System.nanoTime();
+                FileRecords sealedFileRecords = acquireFileRecords(metaData);
+                try {
+                    sealedFileRecords.sync();
+                    metrics.getSegmentFlushTime().updateSince(startNanos);
+                } finally {
+                    sealedFileRecords.close();
+                }
+            }
+        }
+    }
+
+    private FileRecords retainWriteFileRecords() {
+        while (true) {
+            FileRecords tmpWriteFileRecords = writeFileRecords;
+            if (tmpWriteFileRecords == null || tmpWriteFileRecords.retain()) {
+                return tmpWriteFileRecords;
+            }
+        }
+    }
+
+    /**
+     * 按 config 中的删除策略从最早的文件开始删除已写满的文件，满足任意一种策略即删除；
+     * 当前写文件不会被删除，正在被读取的文件在读取方释放之后才真正关闭
+     *
+     * @return 删除的文件个数
+     * @throws Exception
+     */
+    public int deleteExpiredSegments() throws Exception {
+        synchronized (cleanLock) {
+            List<TopicMetaData> metaList = topicMetaSummary.getMetaList();
+            long totalBytes = 0;
+            for (TopicMetaData metaData : metaList) {
+                totalBytes += metaData.getContentBytesLength();
+            }
+            long consumedRecordId = config.isDeleteConsumedSegments() ? committedConsumerOffset() : -1;
+            long now = System.currentTimeMillis();
+
+            int count = 0;
+            while (count < metaList.size() - 1) {
+                TopicMetaData metaData = metaList.get(count);
+                if (!isExpired(metaData, now, totalBytes, consumedRecordId)) {
+                    break;
+                }
+                totalBytes -= metaData.getContentBytesLength();
+                count++;
+            }
+
+            if (count == 0) {
+                return 0;
+            }
+
+            // 先从 summary 中删除，删除 record 文件之前中断时只会残留不再被引用的文件
+            List<TopicMetaData> deleted = topicMetaSummary.deleteOldestMeta(count);
+            for (TopicMetaData metaData : deleted) {
+                File recordFile = new File(filePath + metaData.getFileName());
+                segmentCache.invalidate(recordFile);
+                deleteFile(recordFile);
+                deleteFile(new File(recordFile.getAbsolutePath() + RecordMetaSummary.META_SUFFIX));
+            }
+            return deleted.size();
+        }
+    }
+
+    /**
+     * 按 key 压缩已写满的文件，见 {@link LogCompactor}；与删除文件互斥执行
+     *
+     * @return 被替换的文件个数
+     * @throws Exception
+     */
+    public int compact() throws Exception {
+        if (logCompactor == null) {
+            throw new IllegalStateException("topic : " + topicName + " is not compact enabled.");
+        }
+
+        synchronized (cleanLock) {
+            return logCompactor.compact();
+        }
+    }
+
+    private boolean isExpired(TopicMetaData metaData, long now, long totalBytes, long consumedRecordId) {
+        if (config.getRetentionMs() >= 0
+                && now - new File(filePath + metaData.getFileName()).lastModified() > config.getRetentionMs()) {
+            return true;
+        }
+
+        if (config.getRetentionBytes() >= 0 && totalBytes > config.getRetentionBytes()) {
+            return true;
+        }
+
+        return consumedRecordId >= 0 && metaData.getEndRecordId() < consumedRecordId;
+    }
+
+    /**
+     * 所有 consumer group 中最小的已提交消费位置，删除之前先将消费位置写入磁盘
+     *
+     * @return 没有 consumer group 时返回 -1
+     */
+    private long committedConsumerOffset() throws Exception {
+        ConsumerOffsetsSummary offsetsSummary;
+        synchronized (this) {
+            File offsetsFile = generateConsumerOffsetsFile();
+            if (consumerOffsetsSummary == null && offsetsFile.exists()) {
+                consumerOffsetsSummary = new ConsumerOffsetsSummary(offsetsFile);
+                consumerOffsetsSummary.setFlushTime(metrics.getMetaFlushTime());
+            }
+            offsetsSummary = consumerOffsetsSummary;
+        }
+
+        if (offsetsSummary == null) {
+            return -1;
+        }
+        offsetsSummary.sync();
+        return offsetsSummary.getMinOffset();
+    }
+
+    private void deleteFile(File file) {
+        if (file.exists() && !file.delete()) {
+            LOGGER.warn("delete file : {} failed.", file.getPath());
+        }
+    }
+
+    /**
+     * 等待 recordId 及之前的 record 写入磁盘；{@link FlushPolicy#NEVER} 时直接在当前线程 flush
+     *
+     * @param recordId
+     * @param timeout
+     * @param unit
+     * @return 超时或者 UnifiedLog 关闭时返回 false
+     * @throws Exception
+     */
+    public boolean awaitDurable(long recordId, long timeout, @NotNull TimeUnit unit) throws Exception {
+        if (durableRecordId >= recordId) {
+            return true;
+        }
+
+        if (logFlusher == null) {
+            flush();
+            return durableRecordId >= recordId;
+        }
+
+        logFlusher.request();
+        return durableNotifier.await(() -> durableRecordId >= recordId, unit.toNanos(timeout));
+    }
+
+    /**
+     * 最早的未被删除的 record id，没有 record 文件时返回 0
+     */
+    public long getFirstRecordId() {
+        List<TopicMetaData> metaList = topicMetaSummary.getMetaList();
+        return metaList.isEmpty() ? 0 : metaList.get(0).getStartRecordId();
+    }
+
+    public long getDurableRecordId() {
+        return durableRecordId;
+    }
+
+    /**
+     * 挂起当前线程直到 ready 返回 true、超时或者 UnifiedLog 关闭，由写入方发布 record 之后唤醒
+     *
+     * @param timeoutNanos 小于 0 时一直等待
+     */
+    boolean awaitAppend(BooleanSupplier ready, long timeoutNanos) throws InterruptedException {
+        return appendNotifier.await(ready, timeoutNanos);
+    }
+
     public boolean isReadEnd() throws Exception {
+        if (readBatch.hasNext()) {
+            return false;
+        }
+
         rollingReader();
         return readFileRecords == null;
     }
 
+    /**
+     * 读取下一条 record，读到 record 批次时解压整批，之后逐条返回
+     */
     public Record makeNextRecord() {
-        return readFileRecords.iterator().next();
+        releasePreviousReadFileRecords();
+        Record record;
+        if (readBatch.hasNext()) {
+            record = readBatch.nextRecord();
+        } else {
+            record = readFileRecords.iterator().next();
+            if (record != null && record.isBatch()) {
+                readBatch.load(record.getBuffer());
+                record = readBatch.nextRecord();
+            }
+        }
+
+        if (record != null) {
+            metrics.recordRead(record.getBytesLength());
+        }
+        return record;
+    }
+
+    public boolean makeNextRecord(@NotNull RecordBuffer recordBuffer) {
+        releasePreviousReadFileRecords();
+        if (readBatch.hasNext()) {
+            readBatch.next(recordBuffer);
+        } else {
+            if (!readFileRecords.makeNext(recordBuffer)) {
+                return false;
+            }
+            if (recordBuffer.isBatch()) {
+                readBatch.load(recordBuffer.getBody());
+                readBatch.next(recordBuffer);
+            }
+        }
+
+        metrics.recordRead(recordBuffer.getBody().remaining());
+        return true;
+    }
+
+    /**
+     * 从 fromId 开始将原始 record 数据直接写入 target，只传输 fromId 所在文件中的 record
+     *
+     * @param target 阻塞模式的 channel
+     * @param fromId
+     * @param maxBytes
+     * @return 传输的 record 条数，未压缩时下一次从 fromId + 返回值 开始；
+     * 压缩过的文件中 record id 不连续，下一次从最后一条传输的 record id + 1 开始；
+     * record 批次按压缩后的 frame 原样传输，返回值为 frame 条数
+     * @throws Exception
+     * @see FileRecords#transferTo(WritableByteChannel, int, int)
+     */
+    public int transferTo(@NotNull WritableByteChannel target, long fromId, int maxBytes) throws Exception {
+        while (true) {
+            TopicMetaData metaData = topicMetaSummary.lookupMeta(fromId);
+
+            FileRecords fileRecords = acquireFileRecords(metaData);
+            try {
+                int index = fileRecords.indexOf(fromId);
+                // 压缩时删除了 fromId 之后的所有 record，从下一个文件开始传输
+                if (index >= fileRecords.size() && metaData != topicMetaSummary.getCurrentWriteMeta()) {
+                    fromId = metaData.getEndRecordId() + 1;
+                    continue;
+                }
+                return fileRecords.transferTo(target, index, maxBytes);
+            } finally {
+                fileRecords.close();
+            }
+        }
     }
 
     protected void rollingReader() throws Exception {
@@ -67,8 +728,14 @@ public class UnifiedLog implements AutoCloseable {
             createReadFileRecords(readMeta);
         }
 
-        if (topicMetaSummary.mayReadRolling(readFileRecords)) {
-            readFileRecords.close();
+        // 压缩之后可能出现空文件，连续跳过
+        while (topicMetaSummary.mayReadRolling(readFileRecords)) {
+            // 先确认已经滚动到下一个文件，再确认当前文件没有新的 record，避免跳过滚动之前刚登记的 record
+            if (topicMetaSummary.hasNextReadMeta() && !readFileRecords.isReadEnd()) {
+                return;
+            }
+
+            closeReadFileRecords();
             readMeta = topicMetaSummary.readRolling();
 
             if (readMeta == null) {
@@ -77,77 +744,489 @@ public class UnifiedLog implements AutoCloseable {
             }
 
             createReadFileRecords(readMeta);
-            readFileRecords.resetMetaIndex(0);
+            if (readFileRecords.size() > 0) {
+                readFileRecords.resetMetaIndex(0);
+            }
         }
     }
 
     private void createReadFileRecords(TopicMetaData readMeta) throws Exception {
-        if (writeFileRecords != null
-                && writeFileRecords.isEqualWithFilename(readMeta.getFileName())) {
-            readFileRecords = writeFileRecords;
-            return;
+        readFileRecords = acquireFileRecords(readMeta);
+    }
+
+    /**
+     * 切换读取文件时不立即释放读取方持有的引用，由下一次读取或 close 释放
+     */
+    private void closeReadFileRecords() {
+        if (readFileRecords != null) {
+            releasePreviousReadFileRecords();
+            previousReadFileRecords = readFileRecords;
+        }
+        readFileRecords = null;
+    }
+
+    private void releasePreviousReadFileRecords() {
+        if (previousReadFileRecords != null) {
+            previousReadFileRecords.close();
+        }
+        previousReadFileRecords = null;
+    }
+
+    /**
+     * 追加一条 record，开启压缩时按没有 key 的 {@link KeyedRecord} 编码
+     *
+     * @param bytes
+     * @return record id，可以用于 {@link #awaitDurable(long, long, TimeUnit)}
+     * @throws Exception
+     */
+    public long appendOne(@NotNull final byte[] bytes) throws Exception {
+        return appendBody(config.isCompactEnabled() ? KeyedRecord.encode(null, bytes) : bytes);
+    }
+
+    /**
+     * 追加一条带 key 的 record，压缩时每个 key 只保留最新的一条，需要开启压缩
+     *
+     * @param key
+     * @param value 为 null 时表示删除 key，删除标记在 tombstoneRetentionMs 之后的压缩中删除
+     * @return record id
+     * @throws Exception
+     */
+    public long appendKeyed(@NotNull final byte[] key, final byte[] value) throws Exception {
+        if (!config.isCompactEnabled()) {
+            throw new IllegalStateException("topic : " + topicName + " is not compact enabled.");
+        }
+        return appendBody(KeyedRecord.encode(key, value));
+    }
+
+    /**
+     * 追加一条 record，直接写入调用方 buffer 的 position ~ limit 部分，堆外的 buffer 不拷贝到堆上；
+     * 写入期间调用方不能修改 buffer，返回之后 buffer 的 position 不变。
+     * 开启压缩时需要重新编码，拷贝到堆上之后按 {@link #appendOne(byte[])} 追加
+     *
+     * @param buffer
+     * @return record id
+     * @throws Exception
+     */
+    public long appendOne(@NotNull final ByteBuffer buffer) throws Exception {
+        if (config.isCompactEnabled()) {
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.duplicate().get(bytes);
+            return appendOne(bytes);
+        }
+        return appendBody(null, buffer);
+    }
+
+    private long appendBody(byte[] bytes) throws Exception {
+        return appendBody(bytes, null);
+    }
+
+    /**
+     * 追加一条 record，bytes 与 buffer 只有一个不为 null
+     *
+     * @return record id
+     */
+    private long appendBody(byte[] bytes, ByteBuffer buffer) throws Exception {
+        if (config.isConcurrentAppend()) {
+            return appendConcurrently(Collections.singletonList(bytes != null ? ByteBuffer.wrap(bytes) : buffer));
+        }
+
+        long recordId = topicMetaSummary.generateNewRecordId();
+        if (isCompressing()) {
+            Record record = bytes != null ? new Record(recordId, bytes) : new Record(recordId, buffer);
+            return appendRecords(Collections.singletonList(record));
         }
-        readFileRecords = getFileRecordsWithMeta(readMeta);
+
+        // 不创建 Record，由 frameEncoder 编码之后写入，稳态下不分配对象
+        long startNanos = System.nanoTime();
+        rollingWriter(recordId, bytes != null ? bytes.length : buffer.remaining(), 1);
+
+        long writeStartNanos = System.nanoTime();
+        int appendSize = bytes != null ? writeFileRecords.appendOne(recordId, bytes, frameEncoder)
+                : writeFileRecords.appendOne(recordId, buffer, frameEncoder);
+        metrics.getSegmentWriteLatency().updateSince(writeStartNanos);
+
+        topicMetaSummary.updateWriteMetaInfo(recordId, appendSize);
+        afterAppend(recordId);
+        metrics.recordAppend(1, appendSize, startNanos);
+        return recordId;
     }
 
-    public int appendOne(@NotNull final byte[] bytes) throws Exception {
-        Record record = generateRecord(bytes);
-        rollingWriter(record);
+    /**
+     * 批量追加：一次性分配连续的 record id，整批只做一次 rolling 检查，
+     * 数据与 meta 各只做一次写入；当前文件放不下时按文件边界拆分
+     *
+     * @param bytesList
+     * @return 最后一条 record 的 id，批次中的 record id 连续
+     * @throws Exception
+     */
+    public long append(@NotNull List<byte[]> bytesList) throws Exception {
+        if (config.isCompactEnabled()) {
+            List<byte[]> bodies = new ArrayList<>(bytesList.size());
+            for (byte[] bytes : bytesList) {
+                bodies.add(KeyedRecord.encode(null, bytes));
+            }
+            bytesList = bodies;
+        }
+
+        if (config.isConcurrentAppend()) {
+            List<ByteBuffer> buffers = new ArrayList<>(bytesList.size());
+            for (byte[] bytes : bytesList) {
+                buffers.add(ByteBuffer.wrap(bytes));
+            }
+            return appendConcurrently(buffers);
+        }
 
-        int appendSize = writeFileRecords.appendOne(record);
-        topicMetaSummary.updateWriteMetaInfo(record.getId(), appendSize);
-        return appendSize;
+        long startRecordId = topicMetaSummary.generateNewRecordIds(bytesList.size());
+        List<Record> records = new ArrayList<>(bytesList.size());
+        for (int i = 0; i < bytesList.size(); i++) {
+            records.add(new Record(startRecordId + i, bytesList.get(i)));
+        }
+        return appendRecords(records);
     }
 
-    protected void rollingWriter(Record record) throws Exception {
+    /**
+     * 串行追加一批 record，由 {@link AsyncUnifiedLog} 的写线程调用，不支持并发追加
+     *
+     * @param bytesList
+     * @return 第一条 record 的 id，批次中的 record id 连续
+     * @throws Exception
+     */
+    long appendSerially(@NotNull List<byte[]> bytesList) throws Exception {
+        if (config.isConcurrentAppend()) {
+            throw new IllegalStateException("topic : " + topicName + " is concurrent append.");
+        }
+
+        long startRecordId = topicMetaSummary.generateNewRecordIds(bytesList.size());
+        List<Record> records = new ArrayList<>(bytesList.size());
+        for (int i = 0; i < bytesList.size(); i++) {
+            byte[] bytes = bytesList.get(i);
+            byte[] body = config.isCompactEnabled() ? KeyedRecord.encode(null, bytes) : bytes;
+            records.add(new Record(startRecordId + i, body));
+        }
+        appendRecords(records);
+        return startRecordId;
+    }
+
+    /**
+     * 同 {@link #append(List)}，直接写入调用方 buffer 的 position ~ limit 部分，不做堆拷贝；
+     * 开启压缩时需要重新编码，拷贝到堆上之后按 {@link #append(List)} 追加
+     *
+     * @param buffers
+     * @return 最后一条 record 的 id
+     * @throws Exception
+     */
+    public long appendBuffers(@NotNull final List<ByteBuffer> buffers) throws Exception {
+        if (config.isCompactEnabled()) {
+            List<byte[]> bytesList = new ArrayList<>(buffers.size());
+            for (ByteBuffer buffer : buffers) {
+                byte[] bytes = new byte[buffer.remaining()];
+                buffer.duplicate().get(bytes);
+                bytesList.add(bytes);
+            }
+            return append(bytesList);
+        }
+
+        if (config.isConcurrentAppend()) {
+            return appendConcurrently(buffers);
+        }
+
+        long startRecordId = topicMetaSummary.generateNewRecordIds(buffers.size());
+        List<Record> records = new ArrayList<>(buffers.size());
+        for (int i = 0; i < buffers.size(); i++) {
+            records.add(new Record(startRecordId + i, buffers.get(i)));
+        }
+        return appendRecords(records);
+    }
+
+    /**
+     * 同 {@link #appendBuffers(List)}，每个 buffer 为一条 record，整批以一次 gathering write 写入，
+     * 堆外的 buffer 不拷贝到堆上；写入期间调用方不能修改 buffer
+     *
+     * @param buffers
+     * @return 最后一条 record 的 id
+     * @throws Exception
+     */
+    public long append(@NotNull final ByteBuffer[] buffers) throws Exception {
+        return appendBuffers(Arrays.asList(buffers));
+    }
+
+    /**
+     * @return 最后一条 record 的 id
+     */
+    private long appendRecords(List<Record> records) throws Exception {
+        long startNanos = System.nanoTime();
+        int recordsSize = records.size();
+        long firstRecordId = records.get(0).getId();
+        if (isCompressing()) {
+            records = compressBatches(records);
+        }
+
+        int appendSize = 0;
+        int fromIndex = 0;
+        while (fromIndex < records.size()) {
+            int toIndex = records.size();
+            int bodyBytesLength = 0;
+            for (int i = fromIndex; i < toIndex; i++) {
+                bodyBytesLength += records.get(i).getBytesLength();
+            }
+
+            // 批次的 record id 为批次中最后一条 record 的 id
+            long recordId = fromIndex == 0 ? firstRecordId : records.get(fromIndex - 1).getId() + 1;
+            rollingWriter(recordId, bodyBytesLength, toIndex - fromIndex);
+
+            // 当前文件放不下整批时，只写入能放下的部分，剩余部分滚动到新文件
+            while (toIndex - fromIndex > 1 && topicMetaSummary.mayWriteRolling(
+                    contentBytesLength(bodyBytesLength, toIndex - fromIndex), config.getSegmentBytes())) {
+                toIndex--;
+                bodyBytesLength -= records.get(toIndex).getBytesLength();
+            }
+
+            List<Record> batch = records.subList(fromIndex, toIndex);
+            long writeStartNanos = System.nanoTime();
+            int batchSize = writeFileRecords.append(batch);
+            metrics.getSegmentWriteLatency().updateSince(writeStartNanos);
+            topicMetaSummary.updateWriteMetaInfo(batch.get(batch.size() - 1).getId(), batchSize);
+
+            appendSize += batchSize;
+            fromIndex = toIndex;
+        }
+        long lastRecordId = records.get(records.size() - 1).getId();
+        afterAppend(lastRecordId);
+        metrics.recordAppend(recordsSize, appendSize, startNanos);
+        return lastRecordId;
+    }
+
+    /**
+     * 配置了压缩算法时压缩，当前写文件为 v1 格式时不压缩，滚动到自描述格式的新文件之后开始压缩
+     */
+    private boolean isCompressing() {
+        FileRecords tmpWriteFileRecords = writeFileRecords;
+        return config.getCompressionCodec() != null
+                && (tmpWriteFileRecords == null || tmpWriteFileRecords.getFormat().isSelfDescribing());
+    }
+
+    /**
+     * 按 compressionBatchBytes 将 records 分批，每批压缩为一条 record
+     */
+    private List<Record> compressBatches(List<Record> records) {
+        CompressionCodec codec = config.getCompressionCodec();
+        List<Record> batches = new ArrayList<>();
+
+        int fromIndex = 0;
+        int batchBytes = 0;
+        for (int i = 0; i < records.size(); i++) {
+            int bytesLength = records.get(i).getBytesLength();
+            if (i > fromIndex && batchBytes + bytesLength > config.getCompressionBatchBytes()) {
+                batches.add(RecordBatch.encode(records.subList(fromIndex, i), codec));
+                fromIndex = i;
+                batchBytes = 0;
+            }
+            batchBytes += bytesLength;
+        }
+        batches.add(RecordBatch.encode(records.subList(fromIndex, records.size()), codec));
+        return batches;
+    }
+
+    /**
+     * 并发追加：每次预留当前文件能放下的最长前缀并写入，剩余部分在滚动后的新文件中继续预留；
+     * 当前文件已封闭时由抢到滚动权的线程滚动，其余线程等待新文件发布
+     *
+     * @param bodies
+     * @return 最后一条 record 的 id，并发追加时批次中的 record id 可能不连续
+     * @throws Exception
+     */
+    private long appendConcurrently(List<ByteBuffer> bodies) throws Exception {
+        long startNanos = System.nanoTime();
+        int appendSize = 0;
+        int fromIndex = 0;
+        long lastRecordId = 0;
+        while (fromIndex < bodies.size()) {
+            ConcurrentSegment segment = activeSegment.get();
+
+            long reserved = segment.reserve(bodies, fromIndex, bodies.size());
+            if (reserved == ConcurrentSegment.SEALED) {
+                if (segment.tryRolling()) {
+                    rollingConcurrentWriter(segment);
+                } else {
+                    Thread.yield();
+                }
+                continue;
+            }
+
+            int count = segment.reservedCount(reserved, bodies, fromIndex, bodies.size());
+            long writeStartNanos = System.nanoTime();
+            appendSize += segment.append(reserved, bodies, fromIndex, count);
+            metrics.getSegmentWriteLatency().updateSince(writeStartNanos);
+            lastRecordId = segment.getStartRecordId(reserved) + count - 1;
+            topicMetaSummary.advanceMaxRecordId(lastRecordId);
+
+            fromIndex += count;
+        }
+        afterAppend(lastRecordId);
+        metrics.recordAppend(bodies.size(), appendSize, startNanos);
+        return lastRecordId;
+    }
+
+    /**
+     * 等待已封闭文件中预留的 record 全部登记后创建新文件。
+     * 先将已封闭的文件放入缓存，再发布新的 writeFileRecords，最后登记新文件的 meta，
+     * 读取方看到新文件时一定能拿到共用的 FileRecords，不会重复打开已封闭的文件
+     */
+    private void rollingConcurrentWriter(ConcurrentSegment sealed) throws Exception {
+        long startNanos = System.nanoTime();
+        FileRecords sealedFileRecords = sealed.getFileRecords();
+        FileRecords newFileRecords = null;
+        try {
+            int committedSize = sealed.awaitSealed();
+            long recordId = sealed.getMetaData().getStartRecordId() + committedSize;
+            if (config.getFlushPolicy() != FlushPolicy.NEVER) {
+                sealedFileRecords.sync();
+            }
+
+            File newRollingFile = generateNewRecordFile();
+            TopicMetaData currentWriteMeta = new TopicMetaData(newRollingFile.getName(), recordId);
+            newFileRecords = FileRecords.open(newRollingFile, config);
+
+            cacheSealedSegment(sealedFileRecords);
+            writeFileRecords = newFileRecords;
+            topicMetaSummary.writeRolling(currentWriteMeta);
+            activeSegment.set(new ConcurrentSegment(newFileRecords, currentWriteMeta));
+        } catch (Exception e) {
+            if (newFileRecords != null) {
+                writeFileRecords = sealedFileRecords;
+                segmentCache.invalidate(sealedFileRecords.getFile());
+                newFileRecords.close();
+            }
+            sealed.abortRolling();
+            throw e;
+        }
+
+        // 释放写入方持有的引用
+        sealedFileRecords.close();
+        metrics.getSegmentRollTime().updateSince(startNanos);
+    }
+
+    /**
+     * 为缓存增加一次刚写满的文件的引用，读取方继续使用同一个 FileRecords
+     */
+    private void cacheSealedSegment(FileRecords sealedFileRecords) {
+        if (sealedFileRecords.retain()) {
+            segmentCache.release(sealedFileRecords);
+        }
+    }
+
+    /**
+     * 按当前写文件的格式估算写入的字节数
+     */
+    private int contentBytesLength(int bodyBytesLength, int recordsSize) {
+        SegmentFormat format = writeFileRecords != null
+                ? writeFileRecords.getFormat() : config.getSegmentFormat();
+        return bodyBytesLength + format.getHeadBytesLength() * recordsSize;
+    }
+
+    /**
+     * 检查当前写文件是否需要滚动
+     *
+     * @param recordId 即将写入的第一条 record id
+     * @param bodyBytesLength 即将写入的 record 内容字节数
+     * @param recordsSize 即将写入的 record 条数
+     * @throws Exception
+     */
+    protected void rollingWriter(long recordId, int bodyBytesLength, int recordsSize) throws Exception {
         boolean isNeedRolling = false;
 
         if (writeFileRecords == null) {
             TopicMetaData writeMeta = topicMetaSummary.getCurrentWriteMeta();
             if (writeMeta != null) {
-                writeFileRecords = getFileRecordsWithMeta(writeMeta);
+                openWriteFileRecords(writeMeta);
             } else {
                 isNeedRolling = true;
             }
         }
 
         if (!isNeedRolling) {
-            isNeedRolling = topicMetaSummary.mayWriteRolling(
-                    Integer.BYTES + record.getBytes().length);
+            isNeedRolling = topicMetaSummary.mayWriteRolling(contentBytesLength(bodyBytesLength, recordsSize),
+                    config.getSegmentBytes());
         }
 
+        // 新文件仍然放不下时不再滚动，由 append 按文件边界拆分
+        if (isNeedRolling && topicMetaSummary.getCurrentWriteMeta() != null
+                && topicMetaSummary.getCurrentWriteMeta().getContentBytesLength() == 0) {
+            isNeedRolling = false;
+        }
+
+        // 旧格式的当前写文件放不下 32 位以上的 record id 时滚动到新格式的文件
+        if (!isNeedRolling && writeFileRecords != null
+                && recordId + recordsSize - 1 > writeFileRecords.getFormat().getMaxRecordId()) {
+            isNeedRolling = true;
+        }
+
+        // 先将写满的文件放入缓存，再发布新的 writeFileRecords，最后登记新文件的 meta，
+        // 读取方看到新文件时一定能拿到共用的 FileRecords
         if (isNeedRolling) {
+            long startNanos = System.nanoTime();
             File newRollingFile = generateNewRecordFile();
-            TopicMetaData currentWriteMeta = new TopicMetaData(newRollingFile.getName(), record.getId());
-            topicMetaSummary.writeRolling(currentWriteMeta);
+            TopicMetaData currentWriteMeta = new TopicMetaData(newRollingFile.getName(), recordId);
 
-            if (writeFileRecords != null) {
-                writeFileRecords.close();
+            FileRecords sealedFileRecords = writeFileRecords;
+            if (sealedFileRecords != null && config.getFlushPolicy() != FlushPolicy.NEVER) {
+                sealedFileRecords.sync();
             }
+            FileRecords newFileRecords = FileRecords.open(newRollingFile, config);
+            if (sealedFileRecords != null) {
+                cacheSealedSegment(sealedFileRecords);
+            }
+            writeFileRecords = newFileRecords;
+            topicMetaSummary.writeRolling(currentWriteMeta);
 
-            writeFileRecords = new FileRecords(newRollingFile);
+            if (sealedFileRecords != null) {
+                sealedFileRecords.close();
+            }
+            metrics.getSegmentRollTime().updateSince(startNanos);
         }
     }
 
-    public void resetReadFileRecords(@NotNull final int recordId) throws Exception {
-        TopicMetaData metaData = topicMetaSummary.findMeta(recordId);
+    public void resetReadFileRecords(final long recordId) throws Exception {
+        seek(recordId);
+    }
+
+    /**
+     * 将读指针直接定位到 recordId，recordId 在当前读文件中时不重新查找和打开文件
+     *
+     * @param recordId
+     * @throws Exception
+     */
+    public void seek(final long recordId) throws Exception {
+        readBatch.clear();
+        TopicMetaData metaData = topicMetaSummary.getCurrentReadMeta();
 
-        if (readFileRecords != null
-                && !readFileRecords.isEqualWithFilename(metaData.getFileName())) {
-            readFileRecords.close();
-            readFileRecords = getFileRecordsWithMeta(metaData);
-        } else if (readFileRecords == null) {
-            readFileRecords = getFileRecordsWithMeta(metaData);
+        if (readFileRecords == null || metaData == null
+                || !readFileRecords.isEqualWithFilename(metaData.getFileName())
+                || recordId < metaData.getStartRecordId() || recordId > metaData.getEndRecordId()) {
+            metaData = topicMetaSummary.findMeta(recordId);
+
+            if (readFileRecords != null
+                    && !readFileRecords.isEqualWithFilename(metaData.getFileName())) {
+                closeReadFileRecords();
+                createReadFileRecords(metaData);
+            } else if (readFileRecords == null) {
+                createReadFileRecords(metaData);
+            }
         }
 
-        int index = recordId - metaData.getStartRecordId();
+        int index = readFileRecords.indexOf(recordId);
+        // 压缩时删除了 recordId 之后的所有 record，定位到下一个文件
+        if (index >= readFileRecords.size() && metaData != topicMetaSummary.getCurrentWriteMeta()) {
+            seek(metaData.getEndRecordId() + 1);
+            return;
+        }
         readFileRecords.resetMetaIndex(index);
-    }
 
-    private Record generateRecord(byte[] bytes) {
-        int recordId = topicMetaSummary.generateNewRecordId();
-        Record record = new Record(recordId, bytes);
-        return record;
+        // 定位到 record 批次中的 recordId
+        if (index < readFileRecords.size() && readFileRecords.isBatchAt(index)) {
+            readBatch.load(readFileRecords.makeNext().getBuffer());
+            readBatch.skipTo(recordId);
+        }
     }
 
     private File generateTopicMetaFile() {
@@ -155,6 +1234,11 @@ public class UnifiedLog implements AutoCloseable {
         return new File(name);
     }
 
+    private File generateConsumerOffsetsFile() {
+        String name = filePath + "Kubrick" + ConsumerOffsetsSummary.META_SUFFIX;
+        return new File(name);
+    }
+
     private File generateNewRecordFile() {
         TopicMetaData metaData = topicMetaSummary.getCurrentWriteMeta();
         int currentId = 0;
@@ -168,26 +1252,68 @@ public class UnifiedLog implements AutoCloseable {
         return new File(name);
     }
 
-    private FileRecords getFileRecordsWithMeta(TopicMetaData metaData) throws Exception {
-        File recordFile = new File(filePath + metaData.getFileName());
-        FileRecords fileRecords = new FileRecords(recordFile);
-        return fileRecords;
-    }
-
     @Override
     public void close() throws Exception {
-        topicMetaSummary.close();
+        for (MetricsReporter reporter : config.getMetricsReporters()) {
+            reporter.deregister(metrics);
+        }
 
-        if (readFileRecords != null) {
-            readFileRecords.close();
+        if (logCleaner != null) {
+            logCleaner.close();
+        }
+        if (logCompactor != null) {
+            synchronized (cleanLock) {
+                logCompactor.close();
+            }
+        }
+
+        appendNotifier.close();
+
+        if (logFlusher != null) {
+            logFlusher.close();
+            flush();
+        }
+        durableNotifier.close();
+
+        List<UnifiedLogConsumer> openConsumers;
+        synchronized (this) {
+            openConsumers = new ArrayList<>(consumers.values());
+        }
+        for (UnifiedLogConsumer consumer : openConsumers) {
+            consumer.close();
+        }
+        if (consumerOffsetsSummary != null) {
+            consumerOffsetsSummary.close();
         }
 
+        topicMetaSummary.close();
+
+        closeReadFileRecords();
+        releasePreviousReadFileRecords();
+
         if (writeFileRecords != null) {
             writeFileRecords.close();
         }
+
+        if (scheduler == null) {
+            segmentCache.close();
+        } else {
+            segmentCache.invalidateAll(new File(filePath));
+        }
     }
 
     public String getTopicName() {
         return topicName;
     }
+
+    public SegmentCache getSegmentCache() {
+        return segmentCache;
+    }
+
+    /**
+     * topic 的指标，见 {@link LogMetrics}
+     */
+    public LogMetrics getMetrics() {
+        return metrics;
+    }
 }
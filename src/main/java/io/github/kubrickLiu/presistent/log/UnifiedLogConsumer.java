@@ -0,0 +1,331 @@
+package io.github.kubrickLiu.presistent.log;
+
+import io.github.kubrickLiu.presistent.log.meta.ConsumerOffsetsSummary;
+import io.github.kubrickLiu.presistent.log.meta.TopicMetaData;
+import io.github.kubrickLiu.presistent.log.meta.TopicMetaSummary;
+import io.github.kubrickLiu.presistent.log.metrics.LogMetrics;
+import io.github.kubrickLiu.presistent.log.record.FileRecords;
+import io.github.kubrickLiu.presistent.log.record.Record;
+import io.github.kubrickLiu.presistent.log.record.RecordBatch;
+import io.github.kubrickLiu.presistent.log.record.RecordBuffer;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * consumer group 的读取方，每个 group 拥有独立的消费位置，
+ * 按下标读取 record 文件，不会移动其他读取方共用的读指针。
+ *
+ * 消费位置在 {@link #commit()} 时提交到内存，由 offsets 文件定时批量写入，close 时自动提交
+ */
+public class UnifiedLogConsumer implements Iterator<Record>, AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(UnifiedLogConsumer.class);
+
+    private final UnifiedLog unifiedLog;
+
+    private final String group;
+
+    private final TopicMetaSummary topicMetaSummary;
+
+    private final ConsumerOffsetsSummary offsetsSummary;
+
+    private final LogMetrics metrics;
+
+    private final RecordBuffer recordBuffer = new RecordBuffer();
+
+    /**
+     * 当前正在读取的 record 批次，读完一批之后再解压下一批
+     */
+    private final RecordBatch batch = new RecordBatch();
+
+    /**
+     * 下一条需要读取的 record id，metrics 线程读取 consumer 积压时不加锁读取
+     */
+    private volatile long position;
+
+    /**
+     * position 在当前文件中的下标，压缩过的文件中 record id 不连续
+     */
+    private int index;
+
+    private TopicMetaData segment;
+
+    private FileRecords fileRecords;
+
+    /**
+     * 切换文件之后仍然持有上一个文件的引用，直到下一次读取；
+     * mmap 的文件被淘汰或删除之后，最后一个引用释放时会解除映射，{@link #nextBuffer()} 返回的视图需要保持有效
+     */
+    private FileRecords previousFileRecords;
+
+    /**
+     * 读取 v3 / v4 格式的 record 时是否校验 crc
+     */
+    private boolean verifyChecksum;
+
+    private volatile boolean closed;
+
+    UnifiedLogConsumer(@NotNull UnifiedLog unifiedLog, @NotNull String group,
+                       @NotNull TopicMetaSummary topicMetaSummary, @NotNull ConsumerOffsetsSummary offsetsSummary) {
+        this.unifiedLog = unifiedLog;
+        this.group = group;
+        this.topicMetaSummary = topicMetaSummary;
+        this.offsetsSummary = offsetsSummary;
+        this.metrics = unifiedLog.getMetrics();
+        this.position = offsetsSummary.getOffset(group);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (closed) {
+            return false;
+        }
+
+        try {
+            return prepareNext();
+        } catch (Exception e) {
+            LOGGER.error("consumer group : {} has next error.", group, e);
+            return false;
+        }
+    }
+
+    @Override
+    public Record next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        releasePreviousSegment();
+        Record record;
+        if (batch.hasNext()) {
+            record = batch.nextRecord();
+        } else {
+            record = fileRecords.read(index++, verifyChecksum);
+            if (record.isBatch()) {
+                batch.load(record.getBuffer());
+                batch.skipTo(position);
+                record = batch.nextRecord();
+            }
+        }
+        position = record.getId() + 1;
+        metrics.recordRead(record.getBytesLength());
+        return record;
+    }
+
+    /**
+     * 读取最多 maxRecords 条 record，没有 record 时挂起，直到写入方发布新的 record 或者超时
+     *
+     * @param maxRecords
+     * @param timeout
+     * @param unit
+     * @return 超时时返回空列表
+     * @throws InterruptedException
+     */
+    public List<Record> poll(int maxRecords, long timeout, @NotNull TimeUnit unit) throws InterruptedException {
+        List<Record> records = new ArrayList<>();
+        if (!unifiedLog.awaitAppend(this::hasNext, unit.toNanos(timeout))) {
+            return records;
+        }
+
+        while (records.size() < maxRecords && hasNext()) {
+            records.add(next());
+        }
+        return records;
+    }
+
+    /**
+     * 读取下一条 record，没有 record 时一直挂起
+     *
+     * @return
+     * @throws InterruptedException
+     */
+    public Record take() throws InterruptedException {
+        if (!unifiedLog.awaitAppend(this::hasNext, -1)) {
+            throw new IllegalStateException("consumer group : " + group + " is closed.");
+        }
+        return next();
+    }
+
+    /**
+     * 读取下一条 record 的 body 只读视图，不分配新的 byte[]；视图在下一次 next / nextBuffer 之前有效，
+     * 期间调用 hasNext 切换到下一个文件时仍然保留视图所在的文件
+     *
+     * @return 没有 record 时返回 null
+     */
+    public ByteBuffer nextBuffer() {
+        if (!hasNext()) {
+            return null;
+        }
+
+        releasePreviousSegment();
+        if (batch.hasNext()) {
+            batch.next(recordBuffer);
+        } else {
+            fileRecords.readAt(index++, recordBuffer, verifyChecksum);
+            if (recordBuffer.isBatch()) {
+                batch.load(recordBuffer.getBody());
+                batch.skipTo(position);
+                batch.next(recordBuffer);
+            }
+        }
+        position = recordBuffer.getRecordId() + 1;
+        metrics.recordRead(recordBuffer.getBody().remaining());
+        return recordBuffer.getBody();
+    }
+
+    /**
+     * 获取最近一次 {@link #nextBuffer()} 读取的 record id
+     */
+    public long getLastRecordId() {
+        return recordBuffer.getRecordId();
+    }
+
+    /**
+     * 下一条需要读取的 record id
+     */
+    public long position() {
+        return position;
+    }
+
+    /**
+     * 将消费位置移动到 recordId，不会提交
+     */
+    public void seek(long recordId) {
+        position = recordId;
+        batch.clear();
+        if (segment != null) {
+            if (recordId < segment.getStartRecordId() || recordId > segment.getEndRecordId() + 1) {
+                releaseSegment();
+            } else {
+                index = fileRecords.indexOf(recordId);
+            }
+        }
+    }
+
+    /**
+     * 提交当前消费位置，由 offsets 文件定时批量写入
+     */
+    public void commit() {
+        offsetsSummary.commit(group, position);
+    }
+
+    /**
+     * 提交当前消费位置并立即写入 offsets 文件
+     */
+    public void commitSync() throws Exception {
+        commit();
+        offsetsSummary.flush();
+    }
+
+    public String getGroup() {
+        return group;
+    }
+
+    public boolean isVerifyChecksum() {
+        return verifyChecksum;
+    }
+
+    /**
+     * 开启之后读取 v3 / v4 格式的 record 时校验 crc，校验失败时 next / nextBuffer 抛出
+     * {@link io.github.kubrickLiu.presistent.log.exception.CorruptRecordException}
+     */
+    public void setVerifyChecksum(boolean verifyChecksum) {
+        this.verifyChecksum = verifyChecksum;
+    }
+
+    /**
+     * 定位到 position 所在的文件，已读完当前文件时切换到下一个文件
+     */
+    private boolean prepareNext() throws Exception {
+        if (closed) {
+            throw new IllegalStateException("consumer group : " + group + " is closed.");
+        }
+
+        if (batch.hasNext()) {
+            return true;
+        }
+
+        while (true) {
+            if (fileRecords == null && !openSegment()) {
+                return false;
+            }
+
+            if (index < fileRecords.size()) {
+                return true;
+            }
+
+            // 先确认已经滚动到下一个文件，再确认当前文件没有新的 record；
+            // 按 startRecordId 查找下一个文件，当前文件已被删除时从第一个文件开始
+            List<TopicMetaData> metaList = topicMetaSummary.getMetaList();
+            int nextIndex = TopicMetaSummary.floorMetaIndex(metaList, segment.getStartRecordId()) + 1;
+            if (nextIndex >= metaList.size()) {
+                return false;
+            }
+            if (index < fileRecords.size()) {
+                return true;
+            }
+
+            TopicMetaData nextSegment = metaList.get(nextIndex);
+            releaseSegment();
+            position = Math.max(position, nextSegment.getStartRecordId());
+        }
+    }
+
+    private boolean openSegment() throws Exception {
+        List<TopicMetaData> metaList = topicMetaSummary.getMetaList();
+        if (metaList.isEmpty()) {
+            return false;
+        }
+
+        int metaIndex = TopicMetaSummary.floorMetaIndex(metaList, position);
+        if (metaIndex < 0) {
+            metaIndex = 0;
+            position = metaList.get(0).getStartRecordId();
+        }
+
+        segment = metaList.get(metaIndex);
+        fileRecords = unifiedLog.acquireFileRecords(segment);
+        index = fileRecords.indexOf(position);
+        return true;
+    }
+
+    /**
+     * 切换文件时不立即释放当前文件，由下一次读取或 close 释放
+     */
+    private void releaseSegment() {
+        if (fileRecords != null) {
+            releasePreviousSegment();
+            previousFileRecords = fileRecords;
+        }
+        fileRecords = null;
+        segment = null;
+    }
+
+    private void releasePreviousSegment() {
+        if (previousFileRecords != null) {
+            previousFileRecords.close();
+        }
+        previousFileRecords = null;
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+
+        commit();
+        releaseSegment();
+        releasePreviousSegment();
+        closed = true;
+        unifiedLog.releaseConsumer(this);
+    }
+}
@@ -1,10 +1,15 @@
 package io.github.kubrickLiu.presistent.log;
 
 import io.github.kubrickLiu.presistent.log.record.Record;
+import io.github.kubrickLiu.presistent.log.record.RecordBuffer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 public class UnifiedLogIterator implements Iterator<Record> {
 
@@ -12,6 +17,8 @@ public class UnifiedLogIterator implements Iterator<Record> {
 
     private final UnifiedLog unifiedLog;
 
+    private final RecordBuffer recordBuffer = new RecordBuffer();
+
     public UnifiedLogIterator(UnifiedLog unifiedLog) {
         this.unifiedLog = unifiedLog;
     }
@@ -32,7 +39,62 @@ public class UnifiedLogIterator implements Iterator<Record> {
         return record;
     }
 
-    public void reset(int recordId) throws Exception {
-        unifiedLog.resetReadFileRecords(recordId);
+    /**
+     * 读取最多 maxRecords 条 record，没有 record 时挂起，直到写入方发布新的 record 或者超时；
+     * 当前文件读完后自动切换到滚动后的新文件
+     *
+     * @param maxRecords
+     * @param timeout
+     * @param unit
+     * @return 超时时返回空列表
+     * @throws InterruptedException
+     */
+    public List<Record> poll(int maxRecords, long timeout, TimeUnit unit) throws InterruptedException {
+        List<Record> records = new ArrayList<>();
+        if (!unifiedLog.awaitAppend(this::hasNext, unit.toNanos(timeout))) {
+            return records;
+        }
+
+        while (records.size() < maxRecords && hasNext()) {
+            records.add(next());
+        }
+        return records;
+    }
+
+    /**
+     * 读取下一条 record，没有 record 时一直挂起
+     *
+     * @return
+     * @throws InterruptedException
+     */
+    public Record take() throws InterruptedException {
+        if (!unifiedLog.awaitAppend(this::hasNext, -1)) {
+            throw new IllegalStateException("unifiedLog : " + unifiedLog.getTopicName() + " is closed.");
+        }
+        return next();
+    }
+
+    /**
+     * 读取下一条 record 的 body 只读视图，不分配新的 byte[]；
+     * 视图在下一次读取之前有效，需要先调用 {@link #hasNext()}
+     *
+     * @return 没有 record 时返回 null
+     */
+    public ByteBuffer nextBuffer() {
+        if (!unifiedLog.makeNextRecord(recordBuffer)) {
+            return null;
+        }
+        return recordBuffer.getBody();
+    }
+
+    /**
+     * 获取最近一次 {@link #nextBuffer()} 读取的 record id
+     */
+    public long getLastRecordId() {
+        return recordBuffer.getRecordId();
+    }
+
+    public void reset(long recordId) throws Exception {
+        unifiedLog.seek(recordId);
     }
 }
@@ -0,0 +1,35 @@
+package io.github.kubrickLiu.presistent.log.compress;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.ByteBuffer;
+
+/**
+ * record 批次的压缩算法，实现需要线程安全；
+ * id 写入每个批次中，读取时按 id 从 {@link CompressionCodecs} 中查找，已写入文件的 id 不能修改
+ */
+public interface CompressionCodec {
+
+    /**
+     * 1 ~ 127，0 保留
+     */
+    byte getId();
+
+    String getName();
+
+    /**
+     * 压缩 src 中 offset 开始的 length 个字节
+     *
+     * @return 压缩后的数据，position 为 0，limit 为压缩后的长度
+     */
+    ByteBuffer compress(@NotNull byte[] src, int offset, int length);
+
+    /**
+     * 解压 src 的 position ~ limit 部分到 dst 的前 length 个字节，src 的 position 不变
+     *
+     * @param src 可以是 direct buffer
+     * @param dst
+     * @param length 解压后的长度
+     */
+    void decompress(@NotNull ByteBuffer src, @NotNull byte[] dst, int length);
+}
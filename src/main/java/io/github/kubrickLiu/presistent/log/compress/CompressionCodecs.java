@@ -0,0 +1,51 @@
+package io.github.kubrickLiu.presistent.log.compress;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 按 id 登记的压缩算法，读取批次时按批次中的 id 查找；
+ * 自定义算法需要在打开 topic 之前登记
+ */
+public final class CompressionCodecs {
+
+    public static final CompressionCodec DEFLATE = new DeflateCodec();
+
+    public static final CompressionCodec LZ4 = new Lz4Codec();
+
+    private static final Map<Byte, CompressionCodec> CODECS = new ConcurrentHashMap<>();
+
+    static {
+        register(DEFLATE);
+        register(LZ4);
+    }
+
+    private CompressionCodecs() {}
+
+    /**
+     * 登记压缩算法，同一个 id 只能登记一个算法
+     *
+     * @param codec
+     */
+    public static void register(@NotNull CompressionCodec codec) {
+        if (codec.getId() <= 0) {
+            throw new IllegalArgumentException("codec : " + codec.getName() + " id must be positive : " + codec.getId());
+        }
+
+        CompressionCodec previous = CODECS.putIfAbsent(codec.getId(), codec);
+        if (previous != null && previous != codec) {
+            throw new IllegalArgumentException("codec id : " + codec.getId() + " is already registered by "
+                    + previous.getName());
+        }
+    }
+
+    public static CompressionCodec get(byte id) {
+        CompressionCodec codec = CODECS.get(id);
+        if (codec == null) {
+            throw new IllegalStateException("unknown compression codec id : " + id);
+        }
+        return codec;
+    }
+}
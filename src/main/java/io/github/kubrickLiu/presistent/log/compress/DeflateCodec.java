@@ -0,0 +1,100 @@
+package io.github.kubrickLiu.presistent.log.compress;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * JDK {@link Deflater} / {@link Inflater}，压缩率高、速度较慢；
+ * 每个线程复用一组 Deflater / Inflater，避免反复初始化 zlib
+ */
+public class DeflateCodec implements CompressionCodec {
+
+    private static final byte ID = 1;
+
+    private static final int INPUT_BUFFER_BYTES = 8 * 1024;
+
+    private final ThreadLocal<Deflater> deflaters;
+
+    private final ThreadLocal<Inflater> inflaters = ThreadLocal.withInitial(Inflater::new);
+
+    private final ThreadLocal<byte[]> inputBuffers = ThreadLocal.withInitial(() -> new byte[INPUT_BUFFER_BYTES]);
+
+    public DeflateCodec() {
+        this(Deflater.BEST_SPEED);
+    }
+
+    /**
+     * @param level {@link Deflater#BEST_SPEED} ~ {@link Deflater#BEST_COMPRESSION}
+     */
+    public DeflateCodec(int level) {
+        this.deflaters = ThreadLocal.withInitial(() -> new Deflater(level));
+    }
+
+    @Override
+    public byte getId() {
+        return ID;
+    }
+
+    @Override
+    public String getName() {
+        return "deflate";
+    }
+
+    @Override
+    public ByteBuffer compress(@NotNull byte[] src, int offset, int length) {
+        Deflater deflater = deflaters.get();
+        deflater.reset();
+        deflater.setInput(src, offset, length);
+        deflater.finish();
+
+        byte[] dst = new byte[Math.max(64, length / 2)];
+        int size = 0;
+        while (!deflater.finished()) {
+            if (size == dst.length) {
+                dst = Arrays.copyOf(dst, dst.length * 2);
+            }
+            size += deflater.deflate(dst, size, dst.length - size);
+        }
+        return ByteBuffer.wrap(dst, 0, size);
+    }
+
+    @Override
+    public void decompress(@NotNull ByteBuffer src, @NotNull byte[] dst, int length) {
+        Inflater inflater = inflaters.get();
+        inflater.reset();
+
+        // JDK 8 的 Inflater 只接受 byte[]，按块拷贝输入
+        ByteBuffer input = src.duplicate();
+        byte[] inputBuffer = inputBuffers.get();
+        int size = 0;
+        try {
+            while (size < length) {
+                if (inflater.needsInput()) {
+                    if (!input.hasRemaining()) {
+                        throw new IllegalStateException("deflate data is truncated.");
+                    }
+                    int inputLength = Math.min(inputBuffer.length, input.remaining());
+                    input.get(inputBuffer, 0, inputLength);
+                    inflater.setInput(inputBuffer, 0, inputLength);
+                }
+
+                int inflated = inflater.inflate(dst, size, length - size);
+                if (inflated == 0 && inflater.finished()) {
+                    break;
+                }
+                size += inflated;
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("illegal deflate data.", e);
+        }
+
+        if (size != length) {
+            throw new IllegalStateException("deflate data length : " + size + " is not " + length);
+        }
+    }
+}
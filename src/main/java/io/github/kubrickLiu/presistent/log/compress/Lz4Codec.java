@@ -0,0 +1,188 @@
+package io.github.kubrickLiu.presistent.log.compress;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * 纯 Java 实现的 LZ4 block 格式，不依赖 native 库，速度快、压缩率低于 deflate。
+ *
+ * 每个 sequence：
+ * token --- 占用 1 B，高 4 位为 literal 长度，低 4 位为 match 长度 - 4，等于 15 时后续字节继续累加
+ * literal length --- 占用 ? B，每个字节累加，直到小于 255
+ * literals --- 占用 ? B
+ * match offset --- 占用 2 B，little endian
+ * match length --- 占用 ? B，每个字节累加，直到小于 255
+ * 最后一个 sequence 只有 literals
+ */
+public class Lz4Codec implements CompressionCodec {
+
+    private static final byte ID = 2;
+
+    private static final int MIN_MATCH = 4;
+
+    private static final int MAX_OFFSET = 65535;
+
+    /**
+     * 最后 5 个字节总是 literals，最后 12 个字节之内不开始新的 match
+     */
+    private static final int LAST_LITERALS = 5;
+
+    private static final int MF_LIMIT = 12;
+
+    private static final int HASH_LOG = 12;
+
+    private static final int RUN_MASK = 15;
+
+    private final ThreadLocal<int[]> hashTables = ThreadLocal.withInitial(() -> new int[1 << HASH_LOG]);
+
+    @Override
+    public byte getId() {
+        return ID;
+    }
+
+    @Override
+    public String getName() {
+        return "lz4";
+    }
+
+    @Override
+    public ByteBuffer compress(@NotNull byte[] src, int offset, int length) {
+        byte[] dst = new byte[length + length / 255 + 16];
+        int[] hashTable = hashTables.get();
+        Arrays.fill(hashTable, -1);
+
+        int srcEnd = offset + length;
+        int matchLimit = srcEnd - LAST_LITERALS;
+        int mfLimit = srcEnd - MF_LIMIT;
+
+        int anchor = offset;
+        int ip = offset;
+        int op = 0;
+        while (ip < mfLimit) {
+            int sequence = readInt(src, ip);
+            int hash = (sequence * -1640531535) >>> (32 - HASH_LOG);
+            int ref = hashTable[hash];
+            hashTable[hash] = ip;
+
+            if (ref < 0 || ip - ref > MAX_OFFSET || readInt(src, ref) != sequence) {
+                ip++;
+                continue;
+            }
+
+            // 向前扩展 match
+            while (ip > anchor && ref > offset && src[ip - 1] == src[ref - 1]) {
+                ip--;
+                ref--;
+            }
+
+            int matchLength = MIN_MATCH;
+            while (ip + matchLength < matchLimit && src[ip + matchLength] == src[ref + matchLength]) {
+                matchLength++;
+            }
+
+            op = writeSequence(src, anchor, ip - anchor, dst, op, ip - ref, matchLength);
+            ip += matchLength;
+            anchor = ip;
+        }
+
+        op = writeLastLiterals(src, anchor, srcEnd - anchor, dst, op);
+        return ByteBuffer.wrap(dst, 0, op);
+    }
+
+    private int writeSequence(byte[] src, int literalOffset, int literalLength,
+                              byte[] dst, int op, int matchOffset, int matchLength) {
+        int tokenPosition = op++;
+        int matchRun = matchLength - MIN_MATCH;
+        dst[tokenPosition] = (byte) (Math.min(literalLength, RUN_MASK) << 4 | Math.min(matchRun, RUN_MASK));
+
+        op = writeRunLength(dst, op, literalLength);
+        System.arraycopy(src, literalOffset, dst, op, literalLength);
+        op += literalLength;
+
+        dst[op++] = (byte) matchOffset;
+        dst[op++] = (byte) (matchOffset >>> 8);
+        return writeRunLength(dst, op, matchRun);
+    }
+
+    private int writeLastLiterals(byte[] src, int literalOffset, int literalLength, byte[] dst, int op) {
+        dst[op++] = (byte) (Math.min(literalLength, RUN_MASK) << 4);
+        op = writeRunLength(dst, op, literalLength);
+        System.arraycopy(src, literalOffset, dst, op, literalLength);
+        return op + literalLength;
+    }
+
+    /**
+     * 长度不小于 15 时写入超出 token 的部分
+     */
+    private int writeRunLength(byte[] dst, int op, int length) {
+        if (length < RUN_MASK) {
+            return op;
+        }
+
+        int remaining = length - RUN_MASK;
+        while (remaining >= 255) {
+            dst[op++] = (byte) 255;
+            remaining -= 255;
+        }
+        dst[op++] = (byte) remaining;
+        return op;
+    }
+
+    @Override
+    public void decompress(@NotNull ByteBuffer src, @NotNull byte[] dst, int length) {
+        ByteBuffer input = src.duplicate();
+        int op = 0;
+        try {
+            while (true) {
+                int token = input.get() & 0xff;
+
+                int literalLength = readRunLength(input, token >>> 4);
+                input.get(dst, op, literalLength);
+                op += literalLength;
+                if (op >= length) {
+                    break;
+                }
+
+                int matchOffset = (input.get() & 0xff) | (input.get() & 0xff) << 8;
+                int matchLength = readRunLength(input, token & RUN_MASK) + MIN_MATCH;
+                int ref = op - matchOffset;
+                if (matchOffset == 0 || ref < 0 || op + matchLength > length) {
+                    throw new IllegalStateException("illegal lz4 match at " + op);
+                }
+
+                // match 可能与输出重叠，逐字节复制
+                for (int i = 0; i < matchLength; i++) {
+                    dst[op + i] = dst[ref + i];
+                }
+                op += matchLength;
+            }
+        } catch (RuntimeException e) {
+            if (e instanceof IllegalStateException) {
+                throw e;
+            }
+            throw new IllegalStateException("illegal lz4 data.", e);
+        }
+
+        if (op != length) {
+            throw new IllegalStateException("lz4 data length : " + op + " is not " + length);
+        }
+    }
+
+    private int readRunLength(ByteBuffer input, int length) {
+        if (length == RUN_MASK) {
+            int b;
+            do {
+                b = input.get() & 0xff;
+                length += b;
+            } while (b == 255);
+        }
+        return length;
+    }
+
+    private static int readInt(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xff) | (bytes[offset + 1] & 0xff) << 8
+                | (bytes[offset + 2] & 0xff) << 16 | (bytes[offset + 3] & 0xff) << 24;
+    }
+}
@@ -0,0 +1,58 @@
+package io.github.kubrickLiu.presistent.log.config;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * {@link io.github.kubrickLiu.presistent.log.AsyncUnifiedLog} 的配置
+ */
+public class AsyncLogConfig {
+
+    /**
+     * 底层 topic 的配置，不支持并发追加
+     */
+    private LogConfig logConfig = new LogConfig();
+
+    /**
+     * ring buffer 的槽位个数，必须是 2 的幂；写满时写入方等待写线程腾出槽位
+     */
+    private int ringBufferSize = 1024;
+
+    private AsyncWaitStrategy waitStrategy = AsyncWaitStrategy.BLOCKING;
+
+    /**
+     * 写线程每次写入的最大 record 条数，ring buffer 中积压的 record 超过时分多次写入
+     */
+    private int maxBatchRecords = 256;
+
+    public LogConfig getLogConfig() {
+        return logConfig;
+    }
+
+    public void setLogConfig(@NotNull LogConfig logConfig) {
+        this.logConfig = logConfig;
+    }
+
+    public int getRingBufferSize() {
+        return ringBufferSize;
+    }
+
+    public void setRingBufferSize(int ringBufferSize) {
+        this.ringBufferSize = ringBufferSize;
+    }
+
+    public AsyncWaitStrategy getWaitStrategy() {
+        return waitStrategy;
+    }
+
+    public void setWaitStrategy(@NotNull AsyncWaitStrategy waitStrategy) {
+        this.waitStrategy = waitStrategy;
+    }
+
+    public int getMaxBatchRecords() {
+        return maxBatchRecords;
+    }
+
+    public void setMaxBatchRecords(int maxBatchRecords) {
+        this.maxBatchRecords = maxBatchRecords;
+    }
+}
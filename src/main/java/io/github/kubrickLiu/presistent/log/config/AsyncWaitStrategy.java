@@ -0,0 +1,56 @@
+package io.github.kubrickLiu.presistent.log.config;
+
+import com.lmax.disruptor.BlockingWaitStrategy;
+import com.lmax.disruptor.BusySpinWaitStrategy;
+import com.lmax.disruptor.SleepingWaitStrategy;
+import com.lmax.disruptor.WaitStrategy;
+import com.lmax.disruptor.YieldingWaitStrategy;
+
+/**
+ * {@link io.github.kubrickLiu.presistent.log.AsyncUnifiedLog} 的写线程等待新 record 的方式，
+ * 从上到下延迟越低、空闲时占用的 CPU 越多
+ */
+public enum AsyncWaitStrategy {
+
+    /**
+     * 加锁等待，空闲时不占用 CPU，唤醒延迟最高
+     */
+    BLOCKING {
+        @Override
+        public WaitStrategy create() {
+            return new BlockingWaitStrategy();
+        }
+    },
+
+    /**
+     * 先自旋，再 yield，最后短暂 park
+     */
+    SLEEPING {
+        @Override
+        public WaitStrategy create() {
+            return new SleepingWaitStrategy();
+        }
+    },
+
+    /**
+     * 自旋之后 yield，写线程独占一个核时使用
+     */
+    YIELDING {
+        @Override
+        public WaitStrategy create() {
+            return new YieldingWaitStrategy();
+        }
+    },
+
+    /**
+     * 一直自旋，延迟最低，始终占满一个核
+     */
+    BUSY_SPIN {
+        @Override
+        public WaitStrategy create() {
+            return new BusySpinWaitStrategy();
+        }
+    };
+
+    public abstract WaitStrategy create();
+}
@@ -0,0 +1,27 @@
+package io.github.kubrickLiu.presistent.log.config;
+
+/**
+ * record 数据与 meta 写入磁盘 (fsync) 的时机，由后台 flush 线程执行
+ */
+public enum FlushPolicy {
+
+    /**
+     * 不主动 fsync，由操作系统决定，只有调用 flush 或等待持久化水位时才写入磁盘
+     */
+    NEVER,
+
+    /**
+     * 每次 append 之后 fsync，同时到达的多次 append 合并为一次
+     */
+    EVERY_BATCH,
+
+    /**
+     * 每追加 {@link LogConfig#getFlushIntervalRecords()} 条 record 之后 fsync
+     */
+    RECORDS,
+
+    /**
+     * 每隔 {@link LogConfig#getFlushIntervalMs()} 毫秒 fsync 一次
+     */
+    INTERVAL
+}
@@ -0,0 +1,322 @@
+package io.github.kubrickLiu.presistent.log.config;
+
+import io.github.kubrickLiu.presistent.log.compress.CompressionCodec;
+import io.github.kubrickLiu.presistent.log.metrics.JmxReporter;
+import io.github.kubrickLiu.presistent.log.metrics.MetricsReporter;
+import io.github.kubrickLiu.presistent.log.record.FileRecords;
+import io.github.kubrickLiu.presistent.log.record.KeyedRecord;
+import io.github.kubrickLiu.presistent.log.record.SegmentFormat;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * topic 级别的配置
+ */
+public class LogConfig {
+
+    /**
+     * 新建 record 文件使用的格式，已存在的文件保持原有格式；
+     * v3 / v4 格式每条 record 带有 crc，恢复时校验尚未写入磁盘的 record；
+     * v4 格式的 record id 与文件 offset 为 64 位
+     */
+    private SegmentFormat segmentFormat = SegmentFormat.V4;
+
+    /**
+     * 每个 record 文件的 record 内容字节数上限，超过时滚动到新文件；
+     * v4 之前的格式不超过 2 GB，mmap 与并发追加分别不超过 2 GB 与 4 GB
+     */
+    private long segmentBytes = FileRecords.RECORD_FILE_BYTES_LENGTH_LIMIT;
+
+    /**
+     * 打开 topic 时是否将已写满的 v1 record 文件迁移为 segmentFormat 格式，segmentFormat 为 v1 时迁移为 v2 格式
+     */
+    private boolean migrateLegacySegments = false;
+
+    /**
+     * 当前写文件的读写方式，已写满的文件从缓存中淘汰之后通过 FileChannel 读取
+     */
+    private StorageEngine storageEngine = StorageEngine.CHANNEL;
+
+    /**
+     * 自描述格式 record 文件的索引间隔，0 表示索引每一条 record；
+     * 大于 0 时每隔 indexIntervalBytes 字节索引一条 record，以少量读取换取更小的内存占用
+     */
+    private int indexIntervalBytes = 0;
+
+    /**
+     * 是否允许多个线程同时调用 append，开启后写入方并行写入各自预留的区域
+     */
+    private boolean concurrentAppend = false;
+
+    /**
+     * 同时保持打开的已写满 record 文件个数上限，包括已经淘汰但仍在读取中的文件，v1 格式的文件占用两个文件句柄，
+     * 其他格式占用一个；由 {@link io.github.kubrickLiu.presistent.log.LogManager} 管理的 topic 使用 {@link LogManagerConfig} 中的共用上限
+     */
+    private int maxOpenSegments = 16;
+
+    private FlushPolicy flushPolicy = FlushPolicy.NEVER;
+
+    /**
+     * 已写满的 record 文件最后一次写入之后保留的毫秒数，小于 0 表示不按时间删除
+     */
+    private long retentionMs = -1;
+
+    /**
+     * topic 下所有 record 文件的总字节数上限，超过时从最早的文件开始删除，小于 0 表示不按大小删除
+     */
+    private long retentionBytes = -1;
+
+    /**
+     * 是否删除所有 consumer group 都已提交消费位置的文件，没有 consumer group 时不删除
+     */
+    private boolean deleteConsumedSegments = false;
+
+    /**
+     * 后台检查需要删除的文件的间隔毫秒数
+     */
+    private long retentionCheckIntervalMs = 5 * 60 * 1000;
+
+    /**
+     * consumer 读取 v3 / v4 格式的 record 时是否校验 crc，校验失败时抛出
+     * {@link io.github.kubrickLiu.presistent.log.exception.CorruptRecordException}
+     */
+    private boolean verifyChecksumOnRead = false;
+
+    /**
+     * record 批次的压缩算法，为 null 时不压缩；只支持自描述格式与非并发追加，
+     * 每次 append 的 record 按 compressionBatchBytes 分批压缩，每批写入一条 frame
+     */
+    private CompressionCodec compressionCodec;
+
+    /**
+     * 每个压缩批次的未压缩字节数上限，单条 record 超过上限时单独成批
+     */
+    private int compressionBatchBytes = 256 * 1024;
+
+    /**
+     * 是否按 key 压缩已写满的文件，开启后 record 内容按 {@link KeyedRecord} 编码，
+     * 每个 key 只保留最新的一条 record；由删除线程按 retentionCheckIntervalMs 定时执行
+     */
+    private boolean compactEnabled = false;
+
+    /**
+     * 压缩时 key -> record id 哈希表占用的堆外内存字节数，一次压缩放不下的 key 留到下一次压缩
+     */
+    private int compactMapBytes = 8 * 1024 * 1024;
+
+    /**
+     * 压缩时每秒读写的字节数上限，小于等于 0 时不限速
+     */
+    private long compactBytesPerSecond = -1;
+
+    /**
+     * 删除标记 (value 为 null 的 record) 所在文件最后修改之后保留的毫秒数，之后压缩时删除
+     */
+    private long tombstoneRetentionMs = 24 * 60 * 60 * 1000;
+
+    /**
+     * {@link FlushPolicy#RECORDS} 时每次 fsync 之间的 record 条数
+     */
+    private int flushIntervalRecords = 1000;
+
+    /**
+     * {@link FlushPolicy#INTERVAL} 时每次 fsync 之间的毫秒数
+     */
+    private long flushIntervalMs = 1000;
+
+    /**
+     * topic 打开时登记指标的 reporter，默认登记为 JMX MBean；为空时仍然记录指标，可以通过
+     * {@link io.github.kubrickLiu.presistent.log.UnifiedLog#getMetrics()} 读取
+     */
+    private List<MetricsReporter> metricsReporters = new ArrayList<>(
+            Collections.singletonList(JmxReporter.getInstance()));
+
+    public SegmentFormat getSegmentFormat() {
+        return segmentFormat;
+    }
+
+    public void setSegmentFormat(@NotNull SegmentFormat segmentFormat) {
+        this.segmentFormat = segmentFormat;
+    }
+
+    public boolean isVerifyChecksumOnRead() {
+        return verifyChecksumOnRead;
+    }
+
+    public void setVerifyChecksumOnRead(boolean verifyChecksumOnRead) {
+        this.verifyChecksumOnRead = verifyChecksumOnRead;
+    }
+
+    public long getSegmentBytes() {
+        return segmentBytes;
+    }
+
+    public void setSegmentBytes(long segmentBytes) {
+        if (segmentBytes <= 0) {
+            throw new IllegalArgumentException("segmentBytes must be positive : " + segmentBytes);
+        }
+        this.segmentBytes = segmentBytes;
+    }
+
+    public boolean isMigrateLegacySegments() {
+        return migrateLegacySegments;
+    }
+
+    public void setMigrateLegacySegments(boolean migrateLegacySegments) {
+        this.migrateLegacySegments = migrateLegacySegments;
+    }
+
+    public StorageEngine getStorageEngine() {
+        return storageEngine;
+    }
+
+    public void setStorageEngine(@NotNull StorageEngine storageEngine) {
+        this.storageEngine = storageEngine;
+    }
+
+    public int getIndexIntervalBytes() {
+        return indexIntervalBytes;
+    }
+
+    public void setIndexIntervalBytes(int indexIntervalBytes) {
+        this.indexIntervalBytes = indexIntervalBytes;
+    }
+
+    public boolean isConcurrentAppend() {
+        return concurrentAppend;
+    }
+
+    public void setConcurrentAppend(boolean concurrentAppend) {
+        this.concurrentAppend = concurrentAppend;
+    }
+
+    public int getMaxOpenSegments() {
+        return maxOpenSegments;
+    }
+
+    public void setMaxOpenSegments(int maxOpenSegments) {
+        this.maxOpenSegments = maxOpenSegments;
+    }
+
+    public FlushPolicy getFlushPolicy() {
+        return flushPolicy;
+    }
+
+    public void setFlushPolicy(@NotNull FlushPolicy flushPolicy) {
+        this.flushPolicy = flushPolicy;
+    }
+
+    public int getFlushIntervalRecords() {
+        return flushIntervalRecords;
+    }
+
+    public void setFlushIntervalRecords(int flushIntervalRecords) {
+        this.flushIntervalRecords = flushIntervalRecords;
+    }
+
+    public long getFlushIntervalMs() {
+        return flushIntervalMs;
+    }
+
+    public void setFlushIntervalMs(long flushIntervalMs) {
+        this.flushIntervalMs = flushIntervalMs;
+    }
+
+    public long getRetentionMs() {
+        return retentionMs;
+    }
+
+    public void setRetentionMs(long retentionMs) {
+        this.retentionMs = retentionMs;
+    }
+
+    public long getRetentionBytes() {
+        return retentionBytes;
+    }
+
+    public void setRetentionBytes(long retentionBytes) {
+        this.retentionBytes = retentionBytes;
+    }
+
+    public boolean isDeleteConsumedSegments() {
+        return deleteConsumedSegments;
+    }
+
+    public void setDeleteConsumedSegments(boolean deleteConsumedSegments) {
+        this.deleteConsumedSegments = deleteConsumedSegments;
+    }
+
+    public long getRetentionCheckIntervalMs() {
+        return retentionCheckIntervalMs;
+    }
+
+    public void setRetentionCheckIntervalMs(long retentionCheckIntervalMs) {
+        this.retentionCheckIntervalMs = retentionCheckIntervalMs;
+    }
+
+    public CompressionCodec getCompressionCodec() {
+        return compressionCodec;
+    }
+
+    public void setCompressionCodec(CompressionCodec compressionCodec) {
+        this.compressionCodec = compressionCodec;
+    }
+
+    public int getCompressionBatchBytes() {
+        return compressionBatchBytes;
+    }
+
+    public void setCompressionBatchBytes(int compressionBatchBytes) {
+        this.compressionBatchBytes = compressionBatchBytes;
+    }
+
+    public boolean isCompactEnabled() {
+        return compactEnabled;
+    }
+
+    public void setCompactEnabled(boolean compactEnabled) {
+        this.compactEnabled = compactEnabled;
+    }
+
+    public int getCompactMapBytes() {
+        return compactMapBytes;
+    }
+
+    public void setCompactMapBytes(int compactMapBytes) {
+        this.compactMapBytes = compactMapBytes;
+    }
+
+    public long getCompactBytesPerSecond() {
+        return compactBytesPerSecond;
+    }
+
+    public void setCompactBytesPerSecond(long compactBytesPerSecond) {
+        this.compactBytesPerSecond = compactBytesPerSecond;
+    }
+
+    public long getTombstoneRetentionMs() {
+        return tombstoneRetentionMs;
+    }
+
+    public void setTombstoneRetentionMs(long tombstoneRetentionMs) {
+        this.tombstoneRetentionMs = tombstoneRetentionMs;
+    }
+
+    public List<MetricsReporter> getMetricsReporters() {
+        return metricsReporters;
+    }
+
+    public void setMetricsReporters(@NotNull List<MetricsReporter> metricsReporters) {
+        this.metricsReporters = metricsReporters;
+    }
+
+    /**
+     * 是否配置了任意一种删除策略
+     */
+    public boolean hasRetention() {
+        return retentionMs >= 0 || retentionBytes >= 0 || deleteConsumedSegments;
+    }
+}
@@ -0,0 +1,64 @@
+package io.github.kubrickLiu.presistent.log.config;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * {@link io.github.kubrickLiu.presistent.log.LogManager} 的配置，所有 topic 共用的资源上限
+ */
+public class LogManagerConfig {
+
+    /**
+     * 没有单独指定配置的 topic 使用的配置，其中的 maxOpenSegments 由 maxOpenFiles 代替
+     */
+    private LogConfig logConfig = new LogConfig();
+
+    /**
+     * 共用的后台线程个数，执行所有 topic 的 flush、删除、压缩以及并行打开 topic
+     */
+    private int ioThreads = 4;
+
+    /**
+     * 所有 topic 同时占用的文件句柄个数上限，v1 格式的 record 文件占用两个，其他格式占用一个，
+     * 见 {@link io.github.kubrickLiu.presistent.log.record.SegmentFormat#getFileDescriptorCount()}。
+     * 每个打开的 topic 预留当前写文件、topic summary 与 consumer 消费位置文件的句柄，超过上限时不能再打开新的 topic；
+     * 剩余的句柄由已写满的 record 文件共用，包括已经淘汰但仍在读取中的文件
+     */
+    private int maxOpenFiles = 1024;
+
+    /**
+     * 所有 topic 已写满的 record 文件的索引同时占用的堆内存字节数上限，小于 0 表示不限制
+     */
+    private long maxIndexBytes = 64 * 1024 * 1024;
+
+    public LogConfig getLogConfig() {
+        return logConfig;
+    }
+
+    public void setLogConfig(@NotNull LogConfig logConfig) {
+        this.logConfig = logConfig;
+    }
+
+    public int getIoThreads() {
+        return ioThreads;
+    }
+
+    public void setIoThreads(int ioThreads) {
+        this.ioThreads = ioThreads;
+    }
+
+    public int getMaxOpenFiles() {
+        return maxOpenFiles;
+    }
+
+    public void setMaxOpenFiles(int maxOpenFiles) {
+        this.maxOpenFiles = maxOpenFiles;
+    }
+
+    public long getMaxIndexBytes() {
+        return maxIndexBytes;
+    }
+
+    public void setMaxIndexBytes(long maxIndexBytes) {
+        this.maxIndexBytes = maxIndexBytes;
+    }
+}
@@ -0,0 +1,17 @@
+package io.github.kubrickLiu.presistent.log.config;
+
+/**
+ * record 文件的读写方式
+ */
+public enum StorageEngine {
+
+    /**
+     * 通过 FileChannel 的 positional read / write 读写
+     */
+    CHANNEL,
+
+    /**
+     * 通过 mmap 映射当前写文件，append 与 read 都是内存拷贝
+     */
+    MMAP
+}
@@ -0,0 +1,11 @@
+package io.github.kubrickLiu.presistent.log.exception;
+
+public class CorruptRecordException extends RuntimeException {
+
+    public CorruptRecordException() {
+    }
+
+    public CorruptRecordException(String message) {
+        super(message);
+    }
+}
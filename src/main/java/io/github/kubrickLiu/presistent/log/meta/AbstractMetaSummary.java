@@ -1,32 +1,56 @@
 package io.github.kubrickLiu.presistent.log.meta;
 
+import io.github.kubrickLiu.presistent.log.metrics.Histogram;
 import io.github.kubrickLiu.presistent.log.util.FileUtil;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.file.StandardOpenOption;
-import java.util.Timer;
-import java.util.TimerTask;
 
+/**
+ * flush、sync 与 close 都持有 summary 自身的锁，子类的 flush 同样需要持有，
+ * 定时 flush 不会与 close 同时执行，关闭之后不再写入
+ */
 public abstract class AbstractMetaSummary implements AutoCloseable {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(AbstractMetaSummary.class);
 
+    /**
+     * 恢复时每次读取的字节数，64 KB
+     */
+    protected static final int RECOVER_CHUNK_BYTES = 64 * 1024;
+
     protected File metaFile;
 
     protected FileChannel fileChannel;
 
-    private Timer timer;
-
-    private final int schedulePeriodMS = 1000 * 60 * 1; // 1 min
+    /**
+     * 自上次 flush 之后是否有变化，由 {@link MetaFlushScheduler} 定时检查
+     */
+    private volatile boolean dirty;
 
     private boolean isNeedRecover = false;
 
+    private boolean closed;
+
+    /**
+     * 与数据文件共用 channel 时不负责关闭
+     */
+    private final boolean isSharedChannel;
+
+    /**
+     * 记录定时 flush 与 sync 的耗时，为 null 时不记录
+     */
+    private volatile Histogram flushTime;
+
     public AbstractMetaSummary(@NotNull final File metaFile) throws Exception {
         this.metaFile = metaFile;
+        this.isSharedChannel = false;
 
         if (!metaFile.exists()) {
             metaFile.createNewFile();
@@ -37,10 +61,23 @@ public abstract class AbstractMetaSummary implements AutoCloseable {
         }
     }
 
+    /**
+     * meta 信息与数据保存在同一个文件中，直接使用已打开的 channel
+     */
+    protected AbstractMetaSummary(@NotNull final File metaFile, @NotNull final FileChannel fileChannel)
+            throws IOException {
+        this.metaFile = metaFile;
+        this.fileChannel = fileChannel;
+        this.isSharedChannel = true;
+        this.isNeedRecover = fileChannel.size() > 0;
+    }
+
     protected void open() throws Exception {
         try {
-            this.fileChannel = FileUtil.openFileChannel(metaFile,
-                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            if (!isSharedChannel) {
+                this.fileChannel = FileUtil.openFileChannel(metaFile,
+                        StandardOpenOption.READ, StandardOpenOption.WRITE);
+            }
 
             // 如果原来存在则需要恢复数据
             if (isNeedRecover) {
@@ -49,9 +86,9 @@ public abstract class AbstractMetaSummary implements AutoCloseable {
                 init();
             }
 
-            scheduleFlush();
+            MetaFlushScheduler.getInstance().register(this);
         } catch (Exception e) {
-            if (this.fileChannel != null) {
+            if (this.fileChannel != null && !isSharedChannel) {
                 this.fileChannel.close();
             }
             throw e;
@@ -66,36 +103,97 @@ public abstract class AbstractMetaSummary implements AutoCloseable {
         }
     }
 
-    private void scheduleFlush() {
-        if (timer == null) {
-            timer = new Timer();
-            timer.schedule(new TimerTask() {
-                @Override
-                public void run() {
-                    try {
-                        flush();
-                    } catch (Exception e) {
-                        LOGGER.error("schedule flush meta head error.", e);
-                    }
-                }
-            }, schedulePeriodMS, schedulePeriodMS);
+    /**
+     * 从 position 开始读取 length 个字节或读到文件末尾，完成后 buffer 处于可读状态
+     *
+     * @param buffer
+     * @param position
+     * @param length 不超过 buffer 的容量
+     * @return 读取的字节数
+     * @throws IOException
+     */
+    protected int readChunk(@NotNull ByteBuffer buffer, long position, int length) throws IOException {
+        buffer.clear();
+        buffer.limit(length);
+        while (buffer.hasRemaining()) {
+            if (fileChannel.read(buffer, position + buffer.position()) < 0) {
+                break;
+            }
+        }
+        buffer.flip();
+        return buffer.remaining();
+    }
+
+    /**
+     * 内存中的 meta 发生变化后调用
+     */
+    protected void markDirty() {
+        if (!dirty) {
+            dirty = true;
+        }
+    }
+
+    synchronized void flushIfDirty() {
+        if (!dirty || closed) {
+            return;
+        }
+
+        dirty = false;
+        long startNanos = System.nanoTime();
+        try {
+            flush();
+            recordFlushTime(startNanos);
+        } catch (Exception e) {
+            dirty = true;
+            LOGGER.error("schedule flush meta head error.", e);
         }
     }
 
     public abstract void flush() throws Exception;
 
+    /**
+     * flush 之后将 meta 文件写入磁盘
+     *
+     * @throws Exception
+     */
+    public synchronized void sync() throws Exception {
+        long startNanos = System.nanoTime();
+        flush();
+        fileChannel.force(false);
+        recordFlushTime(startNanos);
+    }
+
+    private void recordFlushTime(long startNanos) {
+        Histogram tmpFlushTime = flushTime;
+        if (tmpFlushTime != null) {
+            tmpFlushTime.updateSince(startNanos);
+        }
+    }
+
+    public void setFlushTime(Histogram flushTime) {
+        this.flushTime = flushTime;
+    }
+
     /**
      * 恢复磁盘数据至内存
      */
     protected abstract void recover();
 
     @Override
-    public void close() {
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        MetaFlushScheduler.getInstance().deregister(this);
+
         if (FileUtil.isLegalAccessChannel(fileChannel)) {
             try {
                 flush();
 
-                fileChannel.close();
+                if (!isSharedChannel) {
+                    fileChannel.close();
+                }
             } catch (Exception e) {
                 LOGGER.error("close meta file error.", e);
             }
@@ -0,0 +1,162 @@
+package io.github.kubrickLiu.presistent.log.meta;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 单个 record 文件的索引信息：每条 record 的 offset 以及读写指针。
+ *
+ * record 在文件中连续存放，索引只保存 offset，record 长度由相邻 record 的 offset 计算得到
+ */
+public abstract class AbstractRecordMetaSummary extends AbstractMetaSummary {
+
+    protected AtomicLong writeRecordOffset = new AtomicLong(0);
+
+    protected OffsetIndex offsetIndex = new DenseOffsetIndex();
+
+    /**
+     * 对读取方可见的索引位置：高 32 位为 record 条数，低 32 位为最后一条 record 的结束 offset 的低 32 位；
+     * 两者一起发布，读取方不会看到只写入一半的 record
+     */
+    private volatile long committed;
+
+    public AbstractRecordMetaSummary(@NotNull final File metaFile) throws Exception {
+        super(metaFile);
+    }
+
+    protected AbstractRecordMetaSummary(@NotNull final File metaFile, @NotNull final FileChannel fileChannel)
+            throws IOException {
+        super(metaFile, fileChannel);
+    }
+
+    /**
+     * 追加一条已写入 record 文件的 record
+     *
+     * @param frameLength record 的长度 (head + body)
+     * @return
+     */
+    public abstract boolean add(int frameLength);
+
+    /**
+     * 追加多条连续写入 record 文件的 record
+     *
+     * @param frameLengths 每条 record 的长度 (head + body)
+     * @param size 有效的条数
+     * @return
+     */
+    public abstract boolean addAll(@NotNull int[] frameLengths, int size);
+
+    public abstract int getCurrentReadIndex();
+
+    /**
+     * record 文件中 recordOffset 之前的数据已经写入磁盘，恢复时不需要校验
+     *
+     * @param recordOffset
+     */
+    public void markSynced(long recordOffset) {
+    }
+
+    protected abstract void setCurrentReadIndex(int newReadIndex);
+
+    /**
+     * 第一条 record 在 record 文件中的 offset
+     *
+     * @return
+     */
+    public abstract int getBaseRecordOffset();
+
+    /**
+     * 在索引中登记一条 record 并移动写指针，需要调用 {@link #publishIndex()} 之后才对读取方可见
+     */
+    protected void appendIndex(int frameLength) {
+        offsetIndex.append(writeRecordOffset.get());
+        writeRecordOffset.getAndAdd(frameLength);
+        markDirty();
+    }
+
+    /**
+     * 发布已登记的 record
+     */
+    protected void publishIndex() {
+        committed = ((long) offsetIndex.size() << 32) | (writeRecordOffset.get() & 0xFFFFFFFFL);
+    }
+
+    public boolean isReadEnd() {
+        return getCurrentReadIndex() >= size();
+    }
+
+    /**
+     * 获取当前读指针指向的 record 下标并将读指针后移
+     *
+     * @return
+     */
+    public int orderGetIndex() {
+        int currentIndex = getCurrentReadIndex();
+        setCurrentReadIndex(currentIndex + 1);
+        markDirty();
+        return currentIndex;
+    }
+
+    public long getStartOffset(int index) {
+        return offsetIndex.offsetOf(index);
+    }
+
+    /**
+     * 单条 record 不超过 2 GB，最后一条 record 按结束 offset 的低 32 位计算，溢出时结果仍然正确
+     */
+    public int getFrameLength(int index) {
+        long tmpCommitted = committed;
+        if (index + 1 < (int) (tmpCommitted >>> 32)) {
+            return (int) (getStartOffset(index + 1) - getStartOffset(index));
+        }
+        return (int) tmpCommitted - (int) getStartOffset(index);
+    }
+
+    public void resetReadIndex(int newReadIndex) {
+        if (newReadIndex >= size()) {
+            throw new RuntimeException("new read index : " + newReadIndex + " is illegal position.");
+        }
+
+        setCurrentReadIndex(newReadIndex);
+        markDirty();
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * 获取 record write 指针
+     *
+     * @return
+     */
+    public long getWriteRecordOffset() {
+        return writeRecordOffset.get();
+    }
+
+    public int size() {
+        return (int) (committed >>> 32);
+    }
+
+    /**
+     * 获取 record 文件大小
+     *
+     * @return
+     */
+    public long getRecordFileSize() {
+        return writeRecordOffset.get();
+    }
+
+    /**
+     * 索引占用的堆内存字节数
+     *
+     * @return
+     */
+    public long getIndexBytes() {
+        return offsetIndex.memoryBytes();
+    }
+}
@@ -0,0 +1,186 @@
+package io.github.kubrickLiu.presistent.log.meta;
+
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * topic 下每个 consumer group 的消费位置，commit 只更新内存，由 flush 批量写入文件
+ *
+ * 文件信息：
+ * group name --- 占用 64 B
+ * next record id --- 占用 8 B
+ * group name --- 占用 64 B
+ * next record id --- 占用 8 B
+ * .......
+ */
+public class ConsumerOffsetsSummary extends AbstractMetaSummary {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConsumerOffsetsSummary.class);
+
+    public static final String META_SUFFIX = "_offsets.log";
+
+    public static final int GROUP_NAME_LENGTH_LIMIT = 64;
+
+    public static final int META_BYTES_LENGTH = GROUP_NAME_LENGTH_LIMIT + Long.BYTES;
+
+    /**
+     * group -> 文件中的下标
+     */
+    private final Map<String, Integer> groupIndexes = new HashMap<>();
+
+    private String[] groups = new String[16];
+
+    private long[] offsets = new long[16];
+
+    private final BitSet dirtyIndexes = new BitSet();
+
+    public ConsumerOffsetsSummary(@NotNull File metaFile) throws Exception {
+        super(metaFile);
+        open();
+    }
+
+    /**
+     * 获取 group 已提交的消费位置
+     *
+     * @param group
+     * @return 下一条需要消费的 record id，没有提交过时返回 0
+     */
+    public synchronized long getOffset(@NotNull String group) {
+        Integer index = groupIndexes.get(group);
+        return index == null ? 0 : offsets[index];
+    }
+
+    /**
+     * 提交 group 的消费位置，只更新内存
+     *
+     * @param group
+     * @param nextRecordId 下一条需要消费的 record id
+     */
+    public synchronized void commit(@NotNull String group, long nextRecordId) {
+        Integer index = groupIndexes.get(group);
+        if (index == null) {
+            if (group.isEmpty() || group.getBytes(StandardCharsets.UTF_8).length > GROUP_NAME_LENGTH_LIMIT) {
+                throw new IllegalArgumentException("group:" + group + " is no more than "
+                        + GROUP_NAME_LENGTH_LIMIT + " bytes");
+            }
+            index = addGroup(group);
+        }
+
+        if (offsets[index] != nextRecordId) {
+            offsets[index] = nextRecordId;
+            dirtyIndexes.set(index);
+            markDirty();
+        }
+    }
+
+    private int addGroup(String group) {
+        int index = groupIndexes.size();
+        if (index == groups.length) {
+            groups = Arrays.copyOf(groups, index * 2);
+            offsets = Arrays.copyOf(offsets, index * 2);
+        }
+
+        groups[index] = group;
+        groupIndexes.put(group, index);
+        return index;
+    }
+
+    /**
+     * 所有 group 中最小的已提交消费位置
+     *
+     * @return 没有 group 时返回 -1
+     */
+    public synchronized long getMinOffset() {
+        int size = groupIndexes.size();
+        if (size == 0) {
+            return -1;
+        }
+
+        long minOffset = offsets[0];
+        for (int i = 1; i < size; i++) {
+            minOffset = Math.min(minOffset, offsets[i]);
+        }
+        return minOffset;
+    }
+
+    public synchronized int size() {
+        return groupIndexes.size();
+    }
+
+    /**
+     * 将所有变化的消费位置一次写入文件
+     */
+    @Override
+    public synchronized void flush() throws Exception {
+        if (dirtyIndexes.isEmpty()) {
+            return;
+        }
+
+        int fromIndex = dirtyIndexes.nextSetBit(0);
+        int toIndex = dirtyIndexes.length();
+
+        ByteBuffer buffer = encodeGroups(fromIndex, toIndex);
+        writeFully(fileChannel, buffer, (long) fromIndex * META_BYTES_LENGTH);
+        dirtyIndexes.clear();
+    }
+
+    private ByteBuffer encodeGroups(int fromIndex, int toIndex) {
+        ByteBuffer buffer = ByteBuffer.allocate((toIndex - fromIndex) * META_BYTES_LENGTH);
+        for (int i = fromIndex; i < toIndex; i++) {
+            byte[] nameBytes = groups[i].getBytes(StandardCharsets.UTF_8);
+            buffer.put(nameBytes);
+            buffer.position(buffer.position() + GROUP_NAME_LENGTH_LIMIT - nameBytes.length);
+            buffer.putLong(offsets[i]);
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position());
+        }
+    }
+
+    @Override
+    protected void recover() {
+        try {
+            recoverData();
+        } catch (Exception e) {
+            LOGGER.error("recover consumer offsets error.", e);
+            close();
+        }
+    }
+
+    private void recoverData() throws Exception {
+        long fileSize = fileChannel.size();
+        ByteBuffer buffer = ByteBuffer.allocate(META_BYTES_LENGTH);
+
+        long offset = 0;
+        while (offset + META_BYTES_LENGTH <= fileSize) {
+            readChunk(buffer, offset, META_BYTES_LENGTH);
+
+            int nameLength = 0;
+            while (nameLength < GROUP_NAME_LENGTH_LIMIT && buffer.get(nameLength) != 0) {
+                nameLength++;
+            }
+            String group = new String(buffer.array(), 0, nameLength, StandardCharsets.UTF_8);
+
+            int index = addGroup(group);
+            offsets[index] = buffer.getLong(GROUP_NAME_LENGTH_LIMIT);
+            offset += META_BYTES_LENGTH;
+        }
+        LOGGER.info("recover consumer offsets size : {}", groupIndexes.size());
+    }
+}
@@ -0,0 +1,69 @@
+package io.github.kubrickLiu.presistent.log.meta;
+
+import java.util.Arrays;
+
+/**
+ * 保存每一条 record 的 offset，每条占用 8 B；
+ * 按固定大小的 long[] 分块按需分配，扩容时不需要拷贝已有数据
+ */
+public class DenseOffsetIndex implements OffsetIndex {
+
+    /**
+     * 每块 16K 条，占用 128 KB
+     */
+    private static final int BLOCK_SHIFT = 14;
+
+    private static final int BLOCK_SIZE = 1 << BLOCK_SHIFT;
+
+    private static final int BLOCK_MASK = BLOCK_SIZE - 1;
+
+    private long[][] blocks = new long[16][];
+
+    private int size;
+
+    @Override
+    public void append(long offset) {
+        int blockIndex = size >>> BLOCK_SHIFT;
+        if (blockIndex >= blocks.length) {
+            blocks = Arrays.copyOf(blocks, blocks.length * 2);
+        }
+        if (blocks[blockIndex] == null) {
+            blocks[blockIndex] = new long[BLOCK_SIZE];
+        }
+
+        blocks[blockIndex][size & BLOCK_MASK] = offset;
+        size++;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int floorIndex(int index) {
+        return index;
+    }
+
+    @Override
+    public long offsetOf(int index) {
+        return blocks[index >>> BLOCK_SHIFT][index & BLOCK_MASK];
+    }
+
+    @Override
+    public long memoryBytes() {
+        long bytes = (long) blocks.length * Long.BYTES;
+        for (long[] block : blocks) {
+            if (block != null) {
+                bytes += (long) BLOCK_SIZE * Long.BYTES;
+            }
+        }
+        return bytes;
+    }
+
+    @Override
+    public void clear() {
+        blocks = new long[16][];
+        size = 0;
+    }
+}
@@ -0,0 +1,65 @@
+package io.github.kubrickLiu.presistent.log.meta;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 所有 topic 与 record 文件共用的 meta flush 线程，定时只 flush 有变化的 meta；
+ * meta 在 open 时登记，在 close 时注销
+ */
+public final class MetaFlushScheduler {
+
+    /**
+     * 1 min
+     */
+    private static final long SCHEDULE_PERIOD_MS = 1000 * 60 * 1;
+
+    private static final MetaFlushScheduler INSTANCE = new MetaFlushScheduler();
+
+    private final Set<AbstractMetaSummary> summaries = ConcurrentHashMap.newKeySet();
+
+    private final ScheduledExecutorService executor;
+
+    private MetaFlushScheduler() {
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "kubrick-meta-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.executor.scheduleWithFixedDelay(this::flushDirty,
+                SCHEDULE_PERIOD_MS, SCHEDULE_PERIOD_MS, TimeUnit.MILLISECONDS);
+    }
+
+    public static MetaFlushScheduler getInstance() {
+        return INSTANCE;
+    }
+
+    void register(@NotNull AbstractMetaSummary summary) {
+        summaries.add(summary);
+    }
+
+    void deregister(@NotNull AbstractMetaSummary summary) {
+        summaries.remove(summary);
+    }
+
+    /**
+     * 立即 flush 所有有变化的 meta
+     */
+    public void flushDirty() {
+        for (AbstractMetaSummary summary : summaries) {
+            summary.flushIfDirty();
+        }
+    }
+
+    /**
+     * 已登记的 meta 个数
+     */
+    public int size() {
+        return summaries.size();
+    }
+}
@@ -0,0 +1,46 @@
+package io.github.kubrickLiu.presistent.log.meta;
+
+/**
+ * record 下标到 record 文件 offset 的索引
+ */
+public interface OffsetIndex {
+
+    /**
+     * 追加第 {@link #size()} 条 record 的 offset
+     *
+     * @param offset
+     */
+    void append(long offset);
+
+    /**
+     * 已追加的 record 条数
+     *
+     * @return
+     */
+    int size();
+
+    /**
+     * 不大于 index 的最近一条被索引的 record 下标
+     *
+     * @param index
+     * @return
+     */
+    int floorIndex(int index);
+
+    /**
+     * 被索引的 record 的 offset，index 必须是 {@link #floorIndex(int)} 的返回值
+     *
+     * @param index
+     * @return
+     */
+    long offsetOf(int index);
+
+    /**
+     * 索引占用的堆内存字节数
+     *
+     * @return
+     */
+    long memoryBytes();
+
+    void clear();
+}
@@ -38,13 +38,19 @@ public class RecordMetaData {
 
     public byte[] convertToByteArray() {
         ByteBuffer buffer = ByteBuffer.allocate(META_BYTES_LENGTH);
-        buffer.put(BytesUtil.convertIntToByteArray(startOffset));
-        buffer.put(BytesUtil.convertIntToByteArray(headBytesSize));
-        buffer.put(BytesUtil.convertIntToByteArray(bodyBytesSize));
-
+        encode(buffer, 0, startOffset, headBytesSize, bodyBytesSize);
         return buffer.array();
     }
 
+    /**
+     * 以绝对位置写入 buffer 中 index 开始的 {@link #META_BYTES_LENGTH} 个字节，不修改 position，不分配对象
+     */
+    public static void encode(ByteBuffer buffer, int index, int startOffset, int headBytesSize, int bodyBytesSize) {
+        buffer.putInt(index, startOffset);
+        buffer.putInt(index + Integer.BYTES, headBytesSize);
+        buffer.putInt(index + 2 * Integer.BYTES, bodyBytesSize);
+    }
+
     public int getStartOffset() {
         return startOffset;
     }
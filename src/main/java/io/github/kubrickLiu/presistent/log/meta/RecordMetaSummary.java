@@ -1,6 +1,7 @@
 package io.github.kubrickLiu.presistent.log.meta;
 
 
+import io.github.kubrickLiu.presistent.log.record.SegmentFormat;
 import io.github.kubrickLiu.presistent.log.util.BytesUtil;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
@@ -9,19 +10,21 @@ import org.slf4j.LoggerFactory;
 import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
+ * v1 格式，meta 信息单独保存在 .meta 文件中
+ *
  * 文件信息：
  * readMetaOffset --- 占用 4 B
  * writeMetaOffset --- 占用 4 B
  * writeRecordOffset --- 占用 4 B
  * meta data .....
  * .......
+ *
+ * offset 只占用 4 B，record 文件不超过 2 GB，见 {@link SegmentFormat#getMaxFileBytes()}
  */
-public class RecordMetaSummary extends AbstractMetaSummary {
+public class RecordMetaSummary extends AbstractRecordMetaSummary {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(RecordMetaSummary.class);
 
@@ -29,29 +32,38 @@ public class RecordMetaSummary extends AbstractMetaSummary {
 
     private static final int BASE_OFFSET = 3 * Integer.BYTES;
 
+    private static final int HEAD_BYTES_LENGTH = SegmentFormat.V1.getHeadBytesLength();
+
     private AtomicInteger readMetaOffset = new AtomicInteger(BASE_OFFSET);
 
     private AtomicInteger writeMetaOffset = new AtomicInteger(BASE_OFFSET);
 
-    private AtomicInteger writeRecordOffset = new AtomicInteger(0);
-
-    private List<RecordMetaData> metaList = new ArrayList<>();
+    /**
+     * 追加单条 meta 时复用，写入方唯一
+     */
+    private final ByteBuffer metaBuffer = ByteBuffer.allocateDirect(RecordMetaData.META_BYTES_LENGTH);
 
     public RecordMetaSummary(@NotNull final File metaFile) throws Exception {
         super(metaFile);
         open();
     }
 
-    public boolean add(@NotNull RecordMetaData metaData) {
-        byte[] metaBytes = metaData.convertToByteArray();
+    @Override
+    public boolean add(int frameLength) {
+        int startOffset = (int) writeRecordOffset.get();
+        RecordMetaData.encode(metaBuffer, 0, startOffset, HEAD_BYTES_LENGTH, frameLength - HEAD_BYTES_LENGTH);
+        metaBuffer.clear();
 
         try {
             int position = writeMetaOffset.get();
-            int appendSize = fileChannel.write(ByteBuffer.wrap(metaBytes), position);
+            int appendSize = 0;
+            while (metaBuffer.hasRemaining()) {
+                appendSize += fileChannel.write(metaBuffer, position + appendSize);
+            }
 
             writeMetaOffset.getAndAdd(appendSize);
-            writeRecordOffset.getAndAdd(metaData.getHeadBytesSize() + metaData.getBodyBytesSize());
-            metaList.add(metaData);
+            appendIndex(frameLength);
+            publishIndex();
         } catch (IOException e) {
             LOGGER.warn("file channel write meta data error.", e);
             return false;
@@ -60,33 +72,62 @@ public class RecordMetaSummary extends AbstractMetaSummary {
         return true;
     }
 
-    public boolean isReadEnd() {
-        return getCurrentReadIndex() >= size();
-    }
+    /**
+     * 批量追加 meta data，所有 meta 只写一次文件
+     */
+    @Override
+    public boolean addAll(@NotNull int[] frameLengths, int size) {
+        if (size == 0) {
+            return true;
+        }
 
-    public RecordMetaData orderGet() {
-        int currentIndex = getCurrentReadIndex();
-        RecordMetaData metaData = metaList.get(currentIndex);
-        readMetaOffset.getAndAdd(RecordMetaData.META_BYTES_LENGTH);
-        return metaData;
+        ByteBuffer buffer = ByteBuffer.allocate(size * RecordMetaData.META_BYTES_LENGTH);
+        int startOffset = (int) writeRecordOffset.get();
+        for (int i = 0; i < size; i++) {
+            RecordMetaData.encode(buffer, i * RecordMetaData.META_BYTES_LENGTH, startOffset, HEAD_BYTES_LENGTH,
+                    frameLengths[i] - HEAD_BYTES_LENGTH);
+            startOffset += frameLengths[i];
+        }
+
+        try {
+            int position = writeMetaOffset.get();
+            int appendSize = 0;
+            while (buffer.hasRemaining()) {
+                appendSize += fileChannel.write(buffer, position + appendSize);
+            }
+
+            writeMetaOffset.getAndAdd(appendSize);
+            for (int i = 0; i < size; i++) {
+                appendIndex(frameLengths[i]);
+            }
+            publishIndex();
+        } catch (IOException e) {
+            LOGGER.warn("file channel write meta data list error.", e);
+            return false;
+        }
+
+        return true;
     }
 
+    @Override
     public int getCurrentReadIndex() {
         int index = (readMetaOffset.get() - BASE_OFFSET) / RecordMetaData.META_BYTES_LENGTH;
         return index;
     }
 
-    public void resetReadIndex(int newReadIndex) {
-        if (newReadIndex >= size()) {
-            throw new RuntimeException("new read index : " + newReadIndex + " is illegal position.");
-        }
-
+    @Override
+    protected void setCurrentReadIndex(int newReadIndex) {
         int newOffset = newReadIndex * RecordMetaData.META_BYTES_LENGTH + BASE_OFFSET;
         readMetaOffset.getAndSet(newOffset);
     }
 
     @Override
-    public void flush() throws Exception {
+    public int getBaseRecordOffset() {
+        return 0;
+    }
+
+    @Override
+    public synchronized void flush() throws Exception {
         ByteBuffer readOffsetBuffer = ByteBuffer.wrap(BytesUtil.convertIntToByteArray(readMetaOffset.get()));
         fileChannel.write(readOffsetBuffer, 0);
 
@@ -94,7 +135,7 @@ public class RecordMetaSummary extends AbstractMetaSummary {
         fileChannel.write(writeOffsetBuffer, 1 * Integer.BYTES);
 
         ByteBuffer metaSizeOffsetBuffer = ByteBuffer.wrap(
-                BytesUtil.convertIntToByteArray(writeRecordOffset.get()));
+                BytesUtil.convertIntToByteArray((int) writeRecordOffset.get()));
         fileChannel.write(metaSizeOffsetBuffer, 2 * Integer.BYTES);
     }
 
@@ -139,45 +180,43 @@ public class RecordMetaSummary extends AbstractMetaSummary {
     }
 
     private void recoverData() throws IOException {
-        metaList.clear();
+        offsetIndex.clear();
 
         int offset = BASE_OFFSET;
+        int endOffset = writeMetaOffset.get();
         byte[] bytes = new byte[RecordMetaData.META_BYTES_LENGTH];
-        ByteBuffer buffer = ByteBuffer.wrap(bytes);
-        buffer.mark();
+
+        // 按块读取，每块包含整数条 meta
+        int chunkBytes = RECOVER_CHUNK_BYTES / RecordMetaData.META_BYTES_LENGTH * RecordMetaData.META_BYTES_LENGTH;
+        ByteBuffer chunk = ByteBuffer.allocate(chunkBytes);
 
         RecordMetaData metaData = null;
         int size = 0;
-        while (offset < writeMetaOffset.get()) {
-            offset += fileChannel.read(buffer, offset);
-
-            metaData = RecordMetaData.convertByteArrayToMeta(bytes);
-            metaList.add(metaData);
+        while (offset + RecordMetaData.META_BYTES_LENGTH <= endOffset) {
+            if (readChunk(chunk, offset, Math.min(chunkBytes, endOffset - offset))
+                    < RecordMetaData.META_BYTES_LENGTH) {
+                break;
+            }
+
+            while (chunk.remaining() >= RecordMetaData.META_BYTES_LENGTH) {
+                chunk.get(bytes);
+                metaData = RecordMetaData.convertByteArrayToMeta(bytes);
+                offsetIndex.append(metaData.getStartOffset());
+                offset += RecordMetaData.META_BYTES_LENGTH;
+                size++;
+            }
+        }
 
-            buffer.reset();
-            size++;
+        // 以最后一条 meta 为准计算写指针
+        if (metaData != null) {
+            writeRecordOffset.getAndSet(metaData.getStartOffset()
+                    + metaData.getHeadBytesSize() + metaData.getBodyBytesSize());
         }
+        publishIndex();
 
         LOGGER.info("recover meta data size : {}", size);
     }
 
-    public boolean isEmpty() {
-        return metaList.isEmpty();
-    }
-
-    /**
-     * 获取 record write 指针
-     *
-     * @return
-     */
-    public int getWriteRecordOffset() {
-        return writeRecordOffset.get();
-    }
-
-    public int size() {
-        return metaList.size();
-    }
-
     /**
      * 获取 meta 文件大小
      *
@@ -186,13 +225,4 @@ public class RecordMetaSummary extends AbstractMetaSummary {
     public int getMetaFileSize() {
         return writeMetaOffset.get();
     }
-
-    /**
-     * 获取 record 文件大小
-     *
-     * @return
-     */
-    public int getRecordFileSize() {
-        return writeRecordOffset.get();
-    }
 }
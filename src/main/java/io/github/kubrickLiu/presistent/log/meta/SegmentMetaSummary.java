@@ -0,0 +1,377 @@
+package io.github.kubrickLiu.presistent.log.meta;
+
+import io.github.kubrickLiu.presistent.log.exception.InvalidMetaException;
+import io.github.kubrickLiu.presistent.log.record.SegmentFormat;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 自描述格式，meta 信息保存在 record 文件头部，索引通过扫描 record 文件重建
+ *
+ * 文件信息 (v2 / v3)：
+ * magic --- 占用 4 B
+ * version --- 占用 4 B
+ * readIndex --- 占用 4 B
+ * syncedRecordOffset (已写入磁盘的写指针) --- 占用 4 B
+ * record .....
+ * .......
+ *
+ * 文件信息 (v4)：
+ * magic --- 占用 4 B
+ * version --- 占用 4 B
+ * readIndex --- 占用 4 B
+ * reserved (8 B 对齐) --- 占用 4 B
+ * syncedRecordOffset (已写入磁盘的写指针) --- 占用 8 B
+ * record .....
+ * .......
+ *
+ * v3 / v4 格式恢复时只校验 syncedRecordOffset 之后的 record，截断到第一条校验失败的 record
+ */
+public class SegmentMetaSummary extends AbstractRecordMetaSummary {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SegmentMetaSummary.class);
+
+    /**
+     * "KBR2"
+     */
+    public static final int MAGIC = 0x4B425232;
+
+    /**
+     * v2 / v3 文件头的字节数
+     */
+    public static final int BASE_OFFSET = 4 * Integer.BYTES;
+
+    /**
+     * v4 文件头的字节数
+     */
+    public static final int LONG_BASE_OFFSET = 4 * Integer.BYTES + Long.BYTES;
+
+    private final SegmentFormat format;
+
+    private final int baseOffset;
+
+    private AtomicInteger readIndex = new AtomicInteger(0);
+
+    /**
+     * record 数据已经写入磁盘的位置，之前的 record 恢复时不需要校验
+     */
+    private AtomicLong syncedRecordOffset;
+
+    /**
+     * 稀疏索引时缓存最近一次定位的 record，顺序读取时不需要重新扫描
+     */
+    private int cachedIndex = -1;
+
+    private long cachedOffset;
+
+    private int cachedFrameLength = -1;
+
+    private final ByteBuffer lengthBuffer = ByteBuffer.allocate(Integer.BYTES);
+
+    public SegmentMetaSummary(@NotNull final File recordFile, @NotNull final FileChannel fileChannel,
+                              @NotNull SegmentFormat format) throws Exception {
+        this(recordFile, fileChannel, format, 0);
+    }
+
+    /**
+     * @param format 新建文件使用的格式，已存在的文件按文件头中的版本号读取
+     * @param indexIntervalBytes 大于 0 时每隔 indexIntervalBytes 字节索引一条 record，否则索引所有 record
+     */
+    public SegmentMetaSummary(@NotNull final File recordFile, @NotNull final FileChannel fileChannel,
+                              @NotNull SegmentFormat format, int indexIntervalBytes) throws Exception {
+        super(recordFile, fileChannel);
+        if (!format.isSelfDescribing()) {
+            throw new IllegalArgumentException("format : " + format + " is not self describing.");
+        }
+        this.format = fileChannel.size() > 0 ? readFormat(fileChannel) : format;
+        if (this.format == null) {
+            throw new InvalidMetaException("file : " + recordFile.getName() + " is not a segment record file.");
+        }
+        if (indexIntervalBytes > 0) {
+            offsetIndex = new SparseOffsetIndex(indexIntervalBytes);
+        }
+        this.baseOffset = baseOffsetOf(this.format);
+        this.syncedRecordOffset = new AtomicLong(baseOffset);
+        writeRecordOffset.set(baseOffset);
+        open();
+    }
+
+    /**
+     * 第一条 record 在 record 文件中的 offset，即文件头的字节数
+     */
+    public static int baseOffsetOf(@NotNull SegmentFormat format) {
+        return format == SegmentFormat.V4 ? LONG_BASE_OFFSET : BASE_OFFSET;
+    }
+
+    /**
+     * 按文件头读取 record 文件的格式
+     *
+     * @return 不是自描述格式时返回 null
+     */
+    public static SegmentFormat readFormat(@NotNull FileChannel fileChannel) throws IOException {
+        if (fileChannel.size() < BASE_OFFSET) {
+            return null;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(2 * Integer.BYTES);
+        while (buffer.hasRemaining()) {
+            if (fileChannel.read(buffer, buffer.position()) < 0) {
+                return null;
+            }
+        }
+        if (buffer.getInt(0) != MAGIC) {
+            return null;
+        }
+
+        SegmentFormat format = SegmentFormat.ofVersion(buffer.getInt(Integer.BYTES));
+        if (format == null || fileChannel.size() < baseOffsetOf(format)) {
+            return null;
+        }
+        return format;
+    }
+
+    /**
+     * @param syncedRecordOffset 已经写入磁盘的写指针，一次性写出并 force 的文件为文件末尾
+     */
+    public static ByteBuffer encodeHeader(@NotNull SegmentFormat format, int readIndex, long syncedRecordOffset) {
+        ByteBuffer buffer = ByteBuffer.allocate(baseOffsetOf(format));
+        buffer.putInt(MAGIC);
+        buffer.putInt(format.getVersion());
+        buffer.putInt(readIndex);
+        if (format == SegmentFormat.V4) {
+            buffer.putInt(0);
+            buffer.putLong(syncedRecordOffset);
+        } else {
+            buffer.putInt((int) syncedRecordOffset);
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * record 已经写入 record 文件，这里只维护内存索引
+     */
+    @Override
+    public boolean add(int frameLength) {
+        appendIndex(frameLength);
+        publishIndex();
+        return true;
+    }
+
+    @Override
+    public boolean addAll(@NotNull int[] frameLengths, int size) {
+        for (int i = 0; i < size; i++) {
+            appendIndex(frameLengths[i]);
+        }
+        publishIndex();
+        return true;
+    }
+
+    @Override
+    public synchronized long getStartOffset(int index) {
+        if (offsetIndex instanceof DenseOffsetIndex) {
+            return super.getStartOffset(index);
+        }
+
+        int currentIndex = offsetIndex.floorIndex(index);
+        long offset = offsetIndex.offsetOf(currentIndex);
+        if (cachedIndex >= currentIndex && cachedIndex <= index) {
+            currentIndex = cachedIndex;
+            offset = cachedOffset;
+        }
+
+        while (currentIndex < index) {
+            int frameLength = currentIndex == cachedIndex && cachedFrameLength > 0
+                    ? cachedFrameLength : readFrameLength(offset);
+            offset += frameLength;
+            currentIndex++;
+        }
+
+        if (cachedIndex != index) {
+            cachedIndex = index;
+            cachedOffset = offset;
+            cachedFrameLength = -1;
+        }
+        return offset;
+    }
+
+    @Override
+    public synchronized int getFrameLength(int index) {
+        if (offsetIndex instanceof DenseOffsetIndex) {
+            return super.getFrameLength(index);
+        }
+
+        long offset = getStartOffset(index);
+        if (cachedFrameLength < 0) {
+            cachedFrameLength = readFrameLength(offset);
+        }
+        return cachedFrameLength;
+    }
+
+    private int readFrameLength(long offset) {
+        lengthBuffer.clear();
+        try {
+            while (lengthBuffer.hasRemaining()) {
+                if (fileChannel.read(lengthBuffer, offset + lengthBuffer.position()) < 0) {
+                    throw new IOException("read record length end of stream at " + offset);
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return SegmentFormat.decodeFrameLength(lengthBuffer.getInt(0));
+    }
+
+    @Override
+    public int getCurrentReadIndex() {
+        return readIndex.get();
+    }
+
+    @Override
+    protected void setCurrentReadIndex(int newReadIndex) {
+        readIndex.getAndSet(newReadIndex);
+    }
+
+    @Override
+    public int getBaseRecordOffset() {
+        return baseOffset;
+    }
+
+    @Override
+    public void markSynced(long recordOffset) {
+        long offset;
+        do {
+            offset = syncedRecordOffset.get();
+            if (recordOffset <= offset) {
+                return;
+            }
+        } while (!syncedRecordOffset.compareAndSet(offset, recordOffset));
+        markDirty();
+    }
+
+    public SegmentFormat getFormat() {
+        return format;
+    }
+
+    @Override
+    public synchronized void flush() throws Exception {
+        ByteBuffer buffer = encodeHeader(format, readIndex.get(), syncedRecordOffset.get());
+        while (buffer.hasRemaining()) {
+            fileChannel.write(buffer, buffer.position());
+        }
+    }
+
+    @Override
+    protected void recover() {
+        try {
+            recoverHead();
+        } catch (IOException e) {
+            LOGGER.error("recover segment head data error.", e);
+            close();
+            return;
+        }
+
+        try {
+            recoverData();
+        } catch (IOException e) {
+            LOGGER.error("recover segment data error.", e);
+            close();
+            return;
+        }
+
+        if (readIndex.get() > size()) {
+            readIndex.getAndSet(size());
+        }
+    }
+
+    private void recoverHead() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(baseOffset);
+        while (buffer.hasRemaining()) {
+            if (fileChannel.read(buffer, buffer.position()) < 0) {
+                break;
+            }
+        }
+
+        readIndex.getAndSet(buffer.getInt(2 * Integer.BYTES));
+        long offset = format == SegmentFormat.V4
+                ? buffer.getLong(4 * Integer.BYTES) : buffer.getInt(3 * Integer.BYTES);
+        syncedRecordOffset.getAndSet(Math.max(baseOffset, offset));
+        LOGGER.info("recover - format:{}, readIndex:{}, syncedRecordOffset:{}",
+                format, readIndex, syncedRecordOffset);
+    }
+
+    /**
+     * 按块读取并逐条扫描 record 头部重建索引，遇到未写完整的 record 时截断；
+     * v3 / v4 格式校验结束位置超过 syncedRecordOffset 的 record，遇到校验失败的 record 时截断
+     */
+    private void recoverData() throws IOException {
+        offsetIndex.clear();
+
+        long fileSize = fileChannel.size();
+        int headBytesLength = format.getHeadBytesLength();
+        long offset = baseOffset;
+
+        // chunk 中保存文件 chunkStart 开始的数据，record 头部不在 chunk 中时从该 record 开始重新读取
+        ByteBuffer chunk = ByteBuffer.allocate(RECOVER_CHUNK_BYTES);
+        chunk.limit(0);
+        long chunkStart = 0;
+
+        int size = 0;
+        int verifiedSize = 0;
+        while (offset + headBytesLength <= fileSize) {
+            if (offset < chunkStart || offset + headBytesLength > chunkStart + chunk.limit()) {
+                chunkStart = offset;
+                if (readChunk(chunk, offset, (int) Math.min(RECOVER_CHUNK_BYTES, fileSize - offset))
+                        < headBytesLength) {
+                    break;
+                }
+            }
+
+            int length = SegmentFormat.decodeFrameLength(chunk.getInt((int) (offset - chunkStart)));
+            if (length < headBytesLength || offset + (long) length > fileSize) {
+                break;
+            }
+
+            if (format.hasChecksum() && offset + length > syncedRecordOffset.get()) {
+                // 整条 record 不在 chunk 中时从该 record 开始重新读取
+                if (offset + length > chunkStart + chunk.limit()) {
+                    if (length > chunk.capacity()) {
+                        chunk = ByteBuffer.allocate(length);
+                    }
+                    chunkStart = offset;
+                    readChunk(chunk, offset, (int) Math.min(chunk.capacity(), fileSize - offset));
+                }
+
+                if (!format.verify(chunk, (int) (offset - chunkStart), length)) {
+                    LOGGER.warn("record file : {} checksum mismatch at offset : {}", metaFile.getName(), offset);
+                    break;
+                }
+                verifiedSize++;
+            }
+
+            offsetIndex.append(offset);
+            offset += length;
+            size++;
+        }
+
+        if (offset < fileSize) {
+            LOGGER.warn("truncate record file : {} from {} to {}", metaFile.getName(), fileSize, offset);
+            fileChannel.truncate(offset);
+        }
+
+        writeRecordOffset.getAndSet(offset);
+        if (syncedRecordOffset.get() > offset) {
+            syncedRecordOffset.getAndSet(offset);
+        }
+        publishIndex();
+        LOGGER.info("recover segment data size : {}, verified size : {}", size, verifiedSize);
+    }
+}
@@ -0,0 +1,104 @@
+package io.github.kubrickLiu.presistent.log.meta;
+
+import java.util.Arrays;
+
+/**
+ * 每隔 intervalBytes 字节索引一条 record，其余 record 需要从最近的索引位置向后扫描，
+ * 只适用于可以自行切分 record 的自描述格式。
+ *
+ * 只有一个写入方；索引数组与条数通过 volatile 的 {@link Entries} 一起发布，
+ * 读取方不加锁也不会看到新的条数与扩容之前的数组
+ */
+public class SparseOffsetIndex implements OffsetIndex {
+
+    private static final int INITIAL_ENTRIES = 64;
+
+    private final int intervalBytes;
+
+    private volatile Entries entries = new Entries(new int[INITIAL_ENTRIES], new long[INITIAL_ENTRIES], 0);
+
+    private int size;
+
+    public SparseOffsetIndex(int intervalBytes) {
+        if (intervalBytes <= 0) {
+            throw new IllegalArgumentException("index interval bytes : " + intervalBytes + " must be positive");
+        }
+        this.intervalBytes = intervalBytes;
+    }
+
+    /**
+     * 新的索引写在已发布条数之后的位置，读取方看不到，写入之后再发布新的 {@link Entries}
+     */
+    @Override
+    public void append(long offset) {
+        Entries current = entries;
+        int count = current.count;
+        if (count == 0 || offset - current.offsets[count - 1] >= intervalBytes) {
+            int[] indexes = current.indexes;
+            long[] offsets = current.offsets;
+            if (count == indexes.length) {
+                indexes = Arrays.copyOf(indexes, count * 2);
+                offsets = Arrays.copyOf(offsets, count * 2);
+            }
+            indexes[count] = size;
+            offsets[count] = offset;
+            entries = new Entries(indexes, offsets, count + 1);
+        }
+        size++;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int floorIndex(int index) {
+        Entries current = entries;
+        int position = Arrays.binarySearch(current.indexes, 0, current.count, index);
+        if (position < 0) {
+            position = -position - 2;
+        }
+        return current.indexes[position];
+    }
+
+    @Override
+    public long offsetOf(int index) {
+        Entries current = entries;
+        int position = Arrays.binarySearch(current.indexes, 0, current.count, index);
+        return current.offsets[position];
+    }
+
+    @Override
+    public long memoryBytes() {
+        Entries current = entries;
+        return (long) current.indexes.length * Integer.BYTES + (long) current.offsets.length * Long.BYTES;
+    }
+
+    /**
+     * 使用新的数组，仍然持有旧 {@link Entries} 的读取方不受影响
+     */
+    @Override
+    public void clear() {
+        entries = new Entries(new int[INITIAL_ENTRIES], new long[INITIAL_ENTRIES], 0);
+        size = 0;
+    }
+
+    /**
+     * 已发布的索引，数组中 count 之前的位置不再修改
+     */
+    private static final class Entries {
+
+        private final int[] indexes;
+
+        private final long[] offsets;
+
+        private final int count;
+
+        private Entries(int[] indexes, long[] offsets, int count) {
+            this.indexes = indexes;
+            this.offsets = offsets;
+            this.count = count;
+        }
+    }
+}
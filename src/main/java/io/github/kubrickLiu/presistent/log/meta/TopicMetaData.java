@@ -9,17 +9,22 @@ public class TopicMetaData {
 
     public static final int FILE_NAME_LENGTH_LIMIT = 128;
 
-    public static final int META_BYTES_LENGTH = FILE_NAME_LENGTH_LIMIT + Integer.BYTES * 3;
+    public static final int META_BYTES_LENGTH = FILE_NAME_LENGTH_LIMIT + Long.BYTES * 3;
+
+    /**
+     * 旧格式中 record id 与内容字节数只占用 4 B
+     */
+    public static final int LEGACY_META_BYTES_LENGTH = FILE_NAME_LENGTH_LIMIT + Integer.BYTES * 3;
 
     private final char[] fileName = new char[FILE_NAME_LENGTH_LIMIT];
 
-    private final int startRecordId;
+    private final long startRecordId;
 
-    private int endRecordId;
+    private volatile long endRecordId;
 
-    private int contentBytesLength;
+    private volatile long contentBytesLength;
 
-    public TopicMetaData(@NotNull String rawFileName, @NotNull int startRecordId) {
+    public TopicMetaData(@NotNull String rawFileName, @NotNull long startRecordId) {
         if (rawFileName.length() == 0 || rawFileName.length() > FILE_NAME_LENGTH_LIMIT) {
             throw new IllegalArgumentException("fileName:" + fileName + " is no more than 128");
         }
@@ -31,7 +36,7 @@ public class TopicMetaData {
         this.startRecordId = startRecordId;
     }
 
-    protected TopicMetaData(char[] rawFileName, int startRecordId, int endRecordId, int contentBytesLength) {
+    protected TopicMetaData(char[] rawFileName, long startRecordId, long endRecordId, long contentBytesLength) {
         System.arraycopy(rawFileName, 0, this.fileName, 0, rawFileName.length);
         this.startRecordId = startRecordId;
         this.endRecordId = endRecordId;
@@ -40,23 +45,23 @@ public class TopicMetaData {
 
     public static TopicMetaData convertByteArrayToMeta(byte[] bytes) {
         byte[] tmpFileNameBytes = new byte[FILE_NAME_LENGTH_LIMIT];
-        byte[] tmpIntBytes = new byte[Integer.BYTES];
+        byte[] tmpLongBytes = new byte[Long.BYTES];
 
         int position = 0;
         System.arraycopy(bytes, position, tmpFileNameBytes, 0, FILE_NAME_LENGTH_LIMIT);
         char[] fileName = BytesUtil.convertByteArrayToCharArray(tmpFileNameBytes);
 
         position += FILE_NAME_LENGTH_LIMIT;
-        System.arraycopy(bytes, position, tmpIntBytes, 0, Integer.BYTES);
-        int startRecordId = BytesUtil.convertByteArrayToInt(tmpIntBytes);
+        System.arraycopy(bytes, position, tmpLongBytes, 0, Long.BYTES);
+        long startRecordId = BytesUtil.convertByteArrayToLong(tmpLongBytes);
 
-        position += Integer.BYTES;
-        System.arraycopy(bytes, position, tmpIntBytes, 0, Integer.BYTES);
-        int endRecordId = BytesUtil.convertByteArrayToInt(tmpIntBytes);
+        position += Long.BYTES;
+        System.arraycopy(bytes, position, tmpLongBytes, 0, Long.BYTES);
+        long endRecordId = BytesUtil.convertByteArrayToLong(tmpLongBytes);
 
-        position += Integer.BYTES;
-        System.arraycopy(bytes, position, tmpIntBytes, 0, Integer.BYTES);
-        int contentBytesLength = BytesUtil.convertByteArrayToInt(tmpIntBytes);
+        position += Long.BYTES;
+        System.arraycopy(bytes, position, tmpLongBytes, 0, Long.BYTES);
+        long contentBytesLength = BytesUtil.convertByteArrayToLong(tmpLongBytes);
 
         TopicMetaData topicMetaData = new TopicMetaData(fileName, startRecordId,
                 endRecordId, contentBytesLength);
@@ -64,18 +69,34 @@ public class TopicMetaData {
         return topicMetaData;
     }
 
+    /**
+     * 读取旧格式的 meta，长度为 {@link #LEGACY_META_BYTES_LENGTH}
+     */
+    public static TopicMetaData convertLegacyByteArrayToMeta(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+
+        byte[] tmpFileNameBytes = new byte[FILE_NAME_LENGTH_LIMIT];
+        buffer.get(tmpFileNameBytes);
+        char[] fileName = BytesUtil.convertByteArrayToCharArray(tmpFileNameBytes);
+
+        int startRecordId = buffer.getInt();
+        int endRecordId = buffer.getInt();
+        int contentBytesLength = buffer.getInt();
+        return new TopicMetaData(fileName, startRecordId, endRecordId, contentBytesLength);
+    }
+
     public byte[] convertToByteArray() {
         ByteBuffer buffer = ByteBuffer.allocate(META_BYTES_LENGTH);
 
         buffer.put(BytesUtil.convertCharArrayToByteArray(fileName));
-        buffer.put(BytesUtil.convertIntToByteArray(startRecordId));
-        buffer.put(BytesUtil.convertIntToByteArray(endRecordId));
-        buffer.put(BytesUtil.convertIntToByteArray(contentBytesLength));
+        buffer.put(BytesUtil.convertLongToByteArray(startRecordId));
+        buffer.put(BytesUtil.convertLongToByteArray(endRecordId));
+        buffer.put(BytesUtil.convertLongToByteArray(contentBytesLength));
 
         return buffer.array();
     }
 
-    public void updateEndRecordId(int endRecordId) {
+    public void updateEndRecordId(long endRecordId) {
         this.endRecordId = endRecordId;
     }
 
@@ -84,20 +105,27 @@ public class TopicMetaData {
         return name.trim();
     }
 
-    public int getStartRecordId() {
+    public long getStartRecordId() {
         return startRecordId;
     }
 
-    public int getEndRecordId() {
+    public long getEndRecordId() {
         return endRecordId;
     }
 
-    public int addBytesLength(int tmpBytesLength) {
+    public long addBytesLength(long tmpBytesLength) {
         contentBytesLength += tmpBytesLength;
         return contentBytesLength;
     }
 
-    public int getContentBytesLength() {
+    /**
+     * 迁移格式或压缩之后更新已写满文件的内容字节数
+     */
+    void updateContentBytesLength(long contentBytesLength) {
+        this.contentBytesLength = contentBytesLength;
+    }
+
+    public long getContentBytesLength() {
         return contentBytesLength;
     }
 }
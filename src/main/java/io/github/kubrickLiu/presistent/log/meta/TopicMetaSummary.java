@@ -3,6 +3,7 @@ package io.github.kubrickLiu.presistent.log.meta;
 import io.github.kubrickLiu.presistent.log.exception.InvalidMetaException;
 import io.github.kubrickLiu.presistent.log.record.FileRecords;
 import io.github.kubrickLiu.presistent.log.util.BytesUtil;
+import io.github.kubrickLiu.presistent.log.util.FileUtil;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -10,17 +11,27 @@ import org.slf4j.LoggerFactory;
 import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * 文件信息：
- * readMetaOffset --- 占用 8 B
- * writeMetaOffset --- 占用 8 B
- * readRecordId --- 占用 8 B
+ * magic --- 占用 4 B
+ * readMetaOffset --- 占用 4 B
+ * writeMetaOffset --- 占用 4 B
+ * maxRecordId --- 占用 8 B
  * meta data .....
  * .......
+ *
+ * 没有 magic 的旧格式 (readMetaOffset、writeMetaOffset、maxRecordId 各占用 4 B，meta 中的 record id 也只占用 4 B)
+ * 在打开时整体转换为新格式
  */
 public class TopicMetaSummary extends AbstractMetaSummary {
 
@@ -28,21 +39,34 @@ public class TopicMetaSummary extends AbstractMetaSummary {
 
     public static final String META_SUFFIX = "_summary.log";
 
-    private static final int BASE_OFFSET = 3 * Integer.BYTES;
+    /**
+     * "KBT2"，旧格式的 readMetaOffset 不会与之相等
+     */
+    public static final int MAGIC = 0x4B425432;
+
+    private static final int BASE_OFFSET = 3 * Integer.BYTES + Long.BYTES;
+
+    private static final int LEGACY_BASE_OFFSET = 3 * Integer.BYTES;
 
     private AtomicInteger readMetaOffset = new AtomicInteger(BASE_OFFSET);
 
     private AtomicInteger writeMetaOffset = new AtomicInteger(BASE_OFFSET);
 
-    private AtomicInteger maxRecordId = new AtomicInteger(0);
+    private AtomicLong maxRecordId = new AtomicLong(0);
 
-    private List<TopicMetaData> metaList = new ArrayList<>();
+    /**
+     * 只读快照，滚动和删除文件时整体替换，读取方不需要加锁
+     */
+    private volatile List<TopicMetaData> metaList = Collections.emptyList();
 
     private final String topicName;
 
-    private TopicMetaData currentReadMeta;
+    /**
+     * 当前读文件已被删除时为 null
+     */
+    private volatile TopicMetaData currentReadMeta;
 
-    private TopicMetaData currentWriteMeta;
+    private volatile TopicMetaData currentWriteMeta;
 
     public TopicMetaSummary(@NotNull String topicName, @NotNull File metaFile) throws Exception {
         super(metaFile);
@@ -50,20 +74,49 @@ public class TopicMetaSummary extends AbstractMetaSummary {
         open();
     }
 
-    public int generateNewRecordId() {
+    public long generateNewRecordId() {
+        markDirty();
         return maxRecordId.incrementAndGet();
     }
 
-    public boolean mayWriteRolling(int contentBytesLength) {
-        int tmpContentBytesLength = currentWriteMeta.getContentBytesLength() + contentBytesLength;
-        if (tmpContentBytesLength >= FileRecords.RECORD_FILE_BYTES_LENGTH_LIMIT) {
+    /**
+     * 一次性分配 size 个连续的 record id
+     *
+     * @param size
+     * @return 第一个 record id
+     */
+    public long generateNewRecordIds(int size) {
+        markDirty();
+        return maxRecordId.addAndGet(size) - size + 1;
+    }
+
+    /**
+     * 并发追加时 record id 由写入位置决定，登记之后推进最大 record id
+     */
+    public void advanceMaxRecordId(long recordId) {
+        while (true) {
+            long current = maxRecordId.get();
+            if (recordId <= current || maxRecordId.compareAndSet(current, recordId)) {
+                markDirty();
+                return;
+            }
+        }
+    }
+
+    public long getMaxRecordId() {
+        return maxRecordId.get();
+    }
+
+    public boolean mayWriteRolling(int contentBytesLength, long segmentBytes) {
+        long tmpContentBytesLength = currentWriteMeta.getContentBytesLength() + contentBytesLength;
+        if (tmpContentBytesLength >= segmentBytes) {
             return true;
         }
 
         return false;
     }
 
-    public void writeRolling(@NotNull TopicMetaData metaData) throws Exception {
+    public synchronized void writeRolling(@NotNull TopicMetaData metaData) throws Exception {
         byte[] metaBytes = metaData.convertToByteArray();
 
         try {
@@ -75,17 +128,50 @@ public class TopicMetaSummary extends AbstractMetaSummary {
             int appendSize = fileChannel.write(ByteBuffer.wrap(metaBytes), position);
 
             writeMetaOffset.getAndAdd(appendSize);
-            metaList.add(metaData);
+            List<TopicMetaData> newMetaList = new ArrayList<>(metaList.size() + 1);
+            newMetaList.addAll(metaList);
+            newMetaList.add(metaData);
+            metaList = newMetaList;
             currentWriteMeta = metaData;
+            markDirty();
         } catch (IOException e) {
             LOGGER.warn("file channel write topic meta data error.", e);
             throw e;
         }
     }
 
-    public void updateWriteMetaInfo(int id, int contentBytesLength) {
+    public void updateWriteMetaInfo(long id, int contentBytesLength) {
         currentWriteMeta.updateEndRecordId(id);
         currentWriteMeta.addBytesLength(contentBytesLength);
+        markDirty();
+    }
+
+    /**
+     * 非正常关闭之后按当前写文件恢复出的最后一条 record 校正 meta：
+     * 上次 flush 之后写入的 record 推进 endRecordId 与 maxRecordId，恢复时截断的 record 回退 endRecordId 与 maxRecordId
+     *
+     * @param endRecordId 当前写文件中最后一条 record id，没有 record 时为 startRecordId - 1
+     * @param contentBytesLength 当前写文件中 record 的字节数
+     */
+    public synchronized void recoverWriteMeta(long endRecordId, long contentBytesLength) throws Exception {
+        if (currentWriteMeta == null) {
+            return;
+        }
+
+        if (currentWriteMeta.getContentBytesLength() == contentBytesLength
+                && maxRecordId.get() == endRecordId
+                && (contentBytesLength == 0 || currentWriteMeta.getEndRecordId() == endRecordId)) {
+            return;
+        }
+
+        LOGGER.warn("recover topic : {} write meta, endRecordId : {} -> {}, contentBytesLength : {} -> {}",
+                topicName, currentWriteMeta.getEndRecordId(), endRecordId,
+                currentWriteMeta.getContentBytesLength(), contentBytesLength);
+        currentWriteMeta.updateEndRecordId(endRecordId);
+        currentWriteMeta.updateContentBytesLength(contentBytesLength);
+        maxRecordId.getAndSet(endRecordId);
+        markDirty();
+        flush();
     }
 
     public TopicMetaData getCurrentWriteMeta() {
@@ -100,20 +186,39 @@ public class TopicMetaSummary extends AbstractMetaSummary {
         return readFileRecords.isReadEnd();
     }
 
+    /**
+     * 按 startRecordId 查找当前读文件的下一个文件，当前读文件已被删除时从第一个文件开始
+     */
     public TopicMetaData readRolling() {
-        int index = getCurrentReadIndex() + 1;
-        if (index >= size()) {
+        List<TopicMetaData> snapshot = metaList;
+        int index = nextReadIndex(snapshot);
+        if (index >= snapshot.size()) {
             return null;
         }
 
-        currentReadMeta = metaList.get(index);
-        readMetaOffset.getAndAdd(TopicMetaData.META_BYTES_LENGTH);
+        currentReadMeta = snapshot.get(index);
+        readMetaOffset.getAndSet(BASE_OFFSET + index * TopicMetaData.META_BYTES_LENGTH);
+        markDirty();
         return currentReadMeta;
     }
 
+    /**
+     * 当前读文件之后是否已经滚动出新的文件
+     */
+    public boolean hasNextReadMeta() {
+        List<TopicMetaData> snapshot = metaList;
+        return nextReadIndex(snapshot) < snapshot.size();
+    }
+
+    private int nextReadIndex(List<TopicMetaData> snapshot) {
+        TopicMetaData readMeta = currentReadMeta;
+        return readMeta == null ? 0 : floorMetaIndex(snapshot, readMeta.getStartRecordId()) + 1;
+    }
+
     public TopicMetaData getCurrentReadMeta() {
-        if (currentReadMeta == null && metaList.size() > 0) {
-            currentReadMeta = metaList.get(0);
+        List<TopicMetaData> snapshot = metaList;
+        if (currentReadMeta == null && snapshot.size() > 0) {
+            currentReadMeta = snapshot.get(0);
         }
         return currentReadMeta;
     }
@@ -123,55 +228,213 @@ public class TopicMetaSummary extends AbstractMetaSummary {
         return index;
     }
 
-    public TopicMetaData findMeta(int recordId) throws Exception {
-        for (int i = 0 ; i < metaList.size() ; i++) {
-            TopicMetaData data = metaList.get(i);
+    /**
+     * 查找 record id 所在的文件并将读指针移动到该文件
+     */
+    public TopicMetaData findMeta(long recordId) throws Exception {
+        List<TopicMetaData> snapshot = metaList;
+        int index = indexOfMeta(snapshot, recordId);
+        readMetaOffset.getAndSet(BASE_OFFSET + index * TopicMetaData.META_BYTES_LENGTH);
+        markDirty();
+        currentReadMeta = snapshot.get(index);
+        return currentReadMeta;
+    }
+
+    /**
+     * 查找 record id 所在的文件，不影响读指针
+     */
+    public TopicMetaData lookupMeta(long recordId) throws Exception {
+        List<TopicMetaData> snapshot = metaList;
+        return snapshot.get(indexOfMeta(snapshot, recordId));
+    }
 
-            if (recordId < data.getStartRecordId()) {
+    private static int indexOfMeta(List<TopicMetaData> metaList, long recordId) throws Exception {
+        int index = floorMetaIndex(metaList, recordId);
+        if (index < 0) {
+            throw new InvalidMetaException("can not find meta with record id:" + recordId);
+        }
+
+        if (recordId > metaList.get(index).getEndRecordId()) {
+            if (index < metaList.size() - 1) {
                 throw new InvalidMetaException("can not find meta with record id:" + recordId);
-            } else if (recordId > data.getEndRecordId()) {
-                continue;
-            } else {
-                readMetaOffset.getAndSet(BASE_OFFSET + i * TopicMetaData.META_BYTES_LENGTH);
-                return data;
             }
+            throw new IllegalAccessException();
         }
 
-        throw new IllegalAccessException();
+        return index;
+    }
+
+    /**
+     * 文件按 startRecordId 递增排列，二分查找 startRecordId 不大于 recordId 的最后一个文件
+     *
+     * @param recordId
+     * @return 文件下标，recordId 小于第一个文件的 startRecordId 时返回 -1
+     */
+    public int floorMetaIndex(long recordId) {
+        return floorMetaIndex(metaList, recordId);
+    }
+
+    /**
+     * 同 {@link #floorMetaIndex(long)}，在 {@link #getMetaList()} 返回的快照中查找
+     */
+    public static int floorMetaIndex(@NotNull List<TopicMetaData> metaList, long recordId) {
+        int low = 0;
+        int high = metaList.size() - 1;
+        int index = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (metaList.get(mid).getStartRecordId() <= recordId) {
+                index = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return index;
     }
 
     public int size() {
         return metaList.size();
     }
 
-    @Override
-    public void flush() throws Exception {
-        ByteBuffer readOffsetBuffer = ByteBuffer.wrap(BytesUtil.convertIntToByteArray(readMetaOffset.get()));
-        fileChannel.write(readOffsetBuffer, 0);
+    /**
+     * 获取当前所有文件的只读快照，之后的滚动和删除不会影响返回的快照
+     */
+    public List<TopicMetaData> getMetaList() {
+        return Collections.unmodifiableList(metaList);
+    }
 
-        ByteBuffer writeOffsetBuffer = ByteBuffer.wrap(BytesUtil.convertIntToByteArray(writeMetaOffset.get()));
-        fileChannel.write(writeOffsetBuffer, 1 * Integer.BYTES);
+    /**
+     * 删除最早的 count 个文件的 meta，并将剩余的 meta 写入新的 summary 文件替换原文件；
+     * 当前写文件不会被删除，record 文件由调用方在返回后删除
+     *
+     * @param count
+     * @return 被删除的文件的 meta
+     * @throws Exception
+     */
+    public synchronized List<TopicMetaData> deleteOldestMeta(int count) throws Exception {
+        List<TopicMetaData> snapshot = metaList;
+        count = Math.min(count, snapshot.size() - 1);
+        if (count <= 0) {
+            return Collections.emptyList();
+        }
 
-        ByteBuffer maxRecordIdOffsetBuffer =
-                ByteBuffer.wrap(BytesUtil.convertIntToByteArray(maxRecordId.get()));
-        fileChannel.write(maxRecordIdOffsetBuffer, 2 * Integer.BYTES);
+        List<TopicMetaData> deleted = new ArrayList<>(snapshot.subList(0, count));
+        List<TopicMetaData> retained = new ArrayList<>(snapshot.subList(count, snapshot.size()));
+
+        int deletedBytes = count * TopicMetaData.META_BYTES_LENGTH;
+        int newReadMetaOffset = Math.max(BASE_OFFSET, readMetaOffset.get() - deletedBytes);
+        int newWriteMetaOffset = writeMetaOffset.get() - deletedBytes;
+        rewriteMetaFile(retained, newReadMetaOffset, newWriteMetaOffset);
+
+        metaList = retained;
+        readMetaOffset.getAndSet(newReadMetaOffset);
+        writeMetaOffset.getAndSet(newWriteMetaOffset);
+        if (deleted.contains(currentReadMeta)) {
+            currentReadMeta = null;
+        }
+
+        LOGGER.info("topic : {} delete {} segments, remain {}", topicName, count, retained.size());
+        return deleted;
+    }
+
+    /**
+     * 已写满的文件被压缩或迁移格式之后更新 meta 中的内容字节数并写入 summary 文件，record id 区间保持不变；
+     * 当前写文件不能更新
+     *
+     * @param metaData
+     * @param contentBytesLength 替换之后的内容字节数
+     * @throws IOException
+     */
+    public synchronized void updateContentBytesLength(@NotNull TopicMetaData metaData, long contentBytesLength)
+            throws IOException {
+        List<TopicMetaData> snapshot = metaList;
+        int index = snapshot.indexOf(metaData);
+        if (index < 0 || index == snapshot.size() - 1) {
+            throw new IllegalArgumentException("file : " + metaData.getFileName() + " is not a sealed segment.");
+        }
+
+        metaData.updateContentBytesLength(contentBytesLength);
+        markDirty();
+
+        int position = BASE_OFFSET + index * TopicMetaData.META_BYTES_LENGTH
+                + TopicMetaData.FILE_NAME_LENGTH_LIMIT + 2 * Long.BYTES;
+        ByteBuffer buffer = ByteBuffer.wrap(BytesUtil.convertLongToByteArray(contentBytesLength));
+        while (buffer.hasRemaining()) {
+            fileChannel.write(buffer, position + buffer.position());
+        }
+    }
+
+    /**
+     * 先写入临时文件再整体替换，替换之前中断时原文件保持不变
+     */
+    private void rewriteMetaFile(List<TopicMetaData> retained, int newReadMetaOffset, int newWriteMetaOffset)
+            throws Exception {
+        File tmpFile = new File(metaFile.getPath() + ".tmp");
+        if (tmpFile.exists() && !tmpFile.delete()) {
+            throw new IOException("delete tmp meta file : " + tmpFile.getName() + " failed.");
+        }
+        tmpFile.createNewFile();
+
+        ByteBuffer buffer = ByteBuffer.allocate(BASE_OFFSET + retained.size() * TopicMetaData.META_BYTES_LENGTH);
+        buffer.put(encodeHeader(newReadMetaOffset, newWriteMetaOffset));
+        for (TopicMetaData metaData : retained) {
+            buffer.put(metaData.convertToByteArray());
+        }
+        buffer.flip();
+
+        try (FileChannel tmpChannel = FileUtil.openFileChannel(tmpFile, StandardOpenOption.WRITE)) {
+            while (buffer.hasRemaining()) {
+                tmpChannel.write(buffer, buffer.position());
+            }
+            tmpChannel.force(true);
+        }
+
+        Files.move(tmpFile.toPath(), metaFile.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        fileChannel.close();
+        fileChannel = FileUtil.openFileChannel(metaFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    @Override
+    public synchronized void sync() throws Exception {
+        super.sync();
+    }
+
+    @Override
+    public synchronized void flush() throws Exception {
+        ByteBuffer headerBuffer = encodeHeader(readMetaOffset.get(), writeMetaOffset.get());
+        while (headerBuffer.hasRemaining()) {
+            fileChannel.write(headerBuffer, headerBuffer.position());
+        }
 
         flushCurrentWriteMeta();
     }
 
+    private ByteBuffer encodeHeader(int newReadMetaOffset, int newWriteMetaOffset) {
+        ByteBuffer buffer = ByteBuffer.allocate(BASE_OFFSET);
+        buffer.putInt(MAGIC);
+        buffer.putInt(newReadMetaOffset);
+        buffer.putInt(newWriteMetaOffset);
+        buffer.putLong(maxRecordId.get());
+        buffer.flip();
+        return buffer;
+    }
+
     private void flushCurrentWriteMeta() throws Exception {
         if (currentWriteMeta != null) {
             int position = writeMetaOffset.get() - TopicMetaData.META_BYTES_LENGTH
-                    + TopicMetaData.FILE_NAME_LENGTH_LIMIT + Integer.BYTES;
+                    + TopicMetaData.FILE_NAME_LENGTH_LIMIT + Long.BYTES;
 
             ByteBuffer endRecordIdBuffer =
                     ByteBuffer.wrap(BytesUtil.
-                            convertIntToByteArray(currentWriteMeta.getEndRecordId()));
+                            convertLongToByteArray(currentWriteMeta.getEndRecordId()));
             position += fileChannel.write(endRecordIdBuffer, position);
 
             ByteBuffer contentBytesLengthBuffer =
                     ByteBuffer.wrap(BytesUtil.
-                            convertIntToByteArray(currentWriteMeta.getContentBytesLength()));
+                            convertLongToByteArray(currentWriteMeta.getContentBytesLength()));
             fileChannel.write(contentBytesLengthBuffer, position);
         }
     }
@@ -180,7 +443,7 @@ public class TopicMetaSummary extends AbstractMetaSummary {
     protected void recover() {
         try {
             recoverHead();
-        } catch (IOException e) {
+        } catch (Exception e) {
             LOGGER.error("recover meta head data error.", e);
             close();
             return;
@@ -204,45 +467,81 @@ public class TopicMetaSummary extends AbstractMetaSummary {
         }
     }
 
-    private void recoverHead() throws IOException {
-        byte[] bytes = new byte[Integer.BYTES];
-        ByteBuffer buffer = ByteBuffer.wrap(bytes);
-        buffer.mark();
+    private void recoverHead() throws Exception {
+        ByteBuffer buffer = ByteBuffer.allocate(BASE_OFFSET);
+        if (readChunk(buffer, 0, BASE_OFFSET) < Integer.BYTES) {
+            return;
+        }
 
-        fileChannel.read(buffer, 0);
-        readMetaOffset.getAndSet(BytesUtil.convertByteArrayToInt(bytes));
-        buffer.reset();
+        if (buffer.getInt(0) != MAGIC) {
+            recoverLegacy();
+            return;
+        }
 
-        fileChannel.read(buffer, 1 * Integer.BYTES);
-        writeMetaOffset.getAndSet(BytesUtil.convertByteArrayToInt(bytes));
-        buffer.reset();
+        readMetaOffset.getAndSet(buffer.getInt(Integer.BYTES));
+        writeMetaOffset.getAndSet(buffer.getInt(2 * Integer.BYTES));
+        maxRecordId.getAndSet(buffer.getLong(3 * Integer.BYTES));
+    }
 
-        fileChannel.read(buffer, 2 * Integer.BYTES);
-        maxRecordId.getAndSet(BytesUtil.convertByteArrayToInt(bytes));
-        buffer.reset();
+    /**
+     * 读取旧格式的 summary 文件，转换为新格式之后整体替换原文件，替换之前中断时原文件保持不变
+     */
+    private void recoverLegacy() throws Exception {
+        ByteBuffer buffer = ByteBuffer.allocate(LEGACY_BASE_OFFSET);
+        readChunk(buffer, 0, LEGACY_BASE_OFFSET);
+        int legacyReadMetaOffset = buffer.getInt(0);
+        int legacyWriteMetaOffset = buffer.getInt(Integer.BYTES);
+        maxRecordId.getAndSet(buffer.getInt(2 * Integer.BYTES));
+
+        List<TopicMetaData> legacyList = readMetaList(LEGACY_BASE_OFFSET, legacyWriteMetaOffset,
+                TopicMetaData.LEGACY_META_BYTES_LENGTH);
+        int readIndex = Math.max(0, legacyReadMetaOffset - LEGACY_BASE_OFFSET) / TopicMetaData.LEGACY_META_BYTES_LENGTH;
+
+        int newReadMetaOffset = BASE_OFFSET + Math.min(readIndex, legacyList.size()) * TopicMetaData.META_BYTES_LENGTH;
+        int newWriteMetaOffset = BASE_OFFSET + legacyList.size() * TopicMetaData.META_BYTES_LENGTH;
+        rewriteMetaFile(legacyList, newReadMetaOffset, newWriteMetaOffset);
+
+        readMetaOffset.getAndSet(newReadMetaOffset);
+        writeMetaOffset.getAndSet(newWriteMetaOffset);
+        LOGGER.info("convert legacy topic meta file : {}, size : {}", metaFile.getName(), legacyList.size());
     }
 
     private void recoverData() throws IOException {
-        metaList.clear();
+        metaList = Collections.emptyList();
+
+        // 一次性加入 metaList，避免逐条复制
+        List<TopicMetaData> recoverList = readMetaList(BASE_OFFSET, writeMetaOffset.get(),
+                TopicMetaData.META_BYTES_LENGTH);
+        metaList = recoverList;
 
-        int offset = BASE_OFFSET;
-        byte[] bytes = new byte[TopicMetaData.META_BYTES_LENGTH];
-        ByteBuffer buffer = ByteBuffer.wrap(bytes);
-        buffer.mark();
+        LOGGER.info("recover topic meta data size : {}", recoverList.size());
+    }
 
-        TopicMetaData metaData = null;
-        int size = 0;
-        while (offset < writeMetaOffset.get()) {
-            offset += fileChannel.read(buffer, offset);
+    /**
+     * 读取 [offset, endOffset) 之间的 meta
+     */
+    private List<TopicMetaData> readMetaList(int offset, int endOffset, int metaBytesLength) throws IOException {
+        byte[] bytes = new byte[metaBytesLength];
 
-            metaData = TopicMetaData.convertByteArrayToMeta(bytes);
-            metaList.add(metaData);
+        // 按块读取，每块包含整数条 meta
+        int chunkBytes = RECOVER_CHUNK_BYTES / metaBytesLength * metaBytesLength;
+        ByteBuffer chunk = ByteBuffer.allocate(chunkBytes);
 
-            buffer.reset();
-            size++;
-        }
+        List<TopicMetaData> recoverList = new ArrayList<>();
+        while (offset + metaBytesLength <= endOffset) {
+            if (readChunk(chunk, offset, Math.min(chunkBytes, endOffset - offset)) < metaBytesLength) {
+                break;
+            }
 
-        LOGGER.info("recover topic meta data size : {}", size);
+            while (chunk.remaining() >= metaBytesLength) {
+                chunk.get(bytes);
+                recoverList.add(metaBytesLength == TopicMetaData.META_BYTES_LENGTH
+                        ? TopicMetaData.convertByteArrayToMeta(bytes)
+                        : TopicMetaData.convertLegacyByteArrayToMeta(bytes));
+                offset += metaBytesLength;
+            }
+        }
+        return recoverList;
     }
 
     public String getTopicName() {
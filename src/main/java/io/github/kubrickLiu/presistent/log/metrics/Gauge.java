@@ -0,0 +1,18 @@
+package io.github.kubrickLiu.presistent.log.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * 读取时计算的瞬时值，例如打开的文件个数与 consumer 积压
+ */
+@FunctionalInterface
+public interface Gauge extends Metric {
+
+    long getValue();
+
+    @Override
+    default Map<String, Number> getValues() {
+        return Collections.singletonMap("value", getValue());
+    }
+}
@@ -0,0 +1,134 @@
+package io.github.kubrickLiu.presistent.log.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 非负整数的分布，用于记录纳秒耗时；按 2 的幂分段，每段再均分为 8 个桶，分位数的相对误差不超过 12.5%。
+ * update 只做固定个数的原子累加，不分配对象；统计自创建以来的全部数据，需要区间数据时由 reporter 计算差值
+ */
+public class Histogram implements Metric {
+
+    private static final int SUB_BUCKET_BITS = 3;
+
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * 小于 SUB_BUCKETS 的值各占一个桶，之后每个 2 的幂占 SUB_BUCKETS 个桶，最高到 2^62
+     */
+    private static final int BUCKETS = (63 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+    private final LongAdder count = new LongAdder();
+
+    private final LongAdder sum = new LongAdder();
+
+    private final AtomicLong max = new AtomicLong(0);
+
+    /**
+     * @param value 小于 0 时按 0 记录
+     */
+    public void update(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+
+        buckets.incrementAndGet(bucketIndex(value));
+        count.increment();
+        sum.add(value);
+        if (value > max.get()) {
+            max.accumulateAndGet(value, Math::max);
+        }
+    }
+
+    /**
+     * 记录从 startNanos 到现在的耗时
+     */
+    public void updateSince(long startNanos) {
+        update(System.nanoTime() - startNanos);
+    }
+
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * 桶中的最大值
+     */
+    static long bucketUpperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long lowerBound = (long) (SUB_BUCKETS + (index & (SUB_BUCKETS - 1))) << shift;
+        return lowerBound + (1L << shift) - 1;
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * 所有值的和，耗时为累计的纳秒数
+     */
+    public long getSum() {
+        return sum.sum();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public double getMean() {
+        long currentCount = getCount();
+        return currentCount == 0 ? 0 : (double) getSum() / currentCount;
+    }
+
+    /**
+     * @param quantile 0 ~ 1
+     * @return 分位数所在桶的最大值，不超过已记录的最大值；没有数据时返回 0
+     */
+    public long getQuantile(double quantile) {
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = buckets.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(bucketUpperBound(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    @Override
+    public Map<String, Number> getValues() {
+        Map<String, Number> values = new LinkedHashMap<>();
+        values.put("count", getCount());
+        values.put("sum", getSum());
+        values.put("mean", getMean());
+        values.put("max", getMax());
+        values.put("p50", getQuantile(0.5));
+        values.put("p99", getQuantile(0.99));
+        values.put("p999", getQuantile(0.999));
+        return values;
+    }
+}
@@ -0,0 +1,146 @@
+package io.github.kubrickLiu.presistent.log.metrics;
+
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 将每个 topic 的指标登记为 platform MBeanServer 中的一个 MBean，
+ * ObjectName 为 io.github.kubrickLiu.presistent:type=UnifiedLog,topic={topic},path={topic 目录}，
+ * 属性名为 指标名.属性名，例如 append.latency.p99
+ */
+public final class JmxReporter implements MetricsReporter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(JmxReporter.class);
+
+    public static final String DOMAIN = "io.github.kubrickLiu.presistent";
+
+    private static final JmxReporter INSTANCE = new JmxReporter(ManagementFactory.getPlatformMBeanServer());
+
+    private final MBeanServer mBeanServer;
+
+    public JmxReporter(@NotNull MBeanServer mBeanServer) {
+        this.mBeanServer = mBeanServer;
+    }
+
+    public static JmxReporter getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * topic 对应的 ObjectName
+     */
+    public static ObjectName objectName(@NotNull LogMetrics metrics) throws Exception {
+        return new ObjectName(DOMAIN + ":type=UnifiedLog,topic=" + ObjectName.quote(metrics.getTopicName())
+                + ",path=" + ObjectName.quote(new File(metrics.getTopicPath()).getAbsolutePath()));
+    }
+
+    /**
+     * 登记失败时只打印日志，不影响 topic 打开
+     */
+    @Override
+    public void register(@NotNull LogMetrics metrics) {
+        try {
+            ObjectName objectName = objectName(metrics);
+            if (mBeanServer.isRegistered(objectName)) {
+                mBeanServer.unregisterMBean(objectName);
+            }
+            mBeanServer.registerMBean(new MetricsMBean(metrics), objectName);
+        } catch (Exception e) {
+            LOGGER.warn("register metrics mbean of topic : {} error.", metrics.getTopicName(), e);
+        }
+    }
+
+    @Override
+    public void deregister(@NotNull LogMetrics metrics) {
+        try {
+            ObjectName objectName = objectName(metrics);
+            if (mBeanServer.isRegistered(objectName)) {
+                mBeanServer.unregisterMBean(objectName);
+            }
+        } catch (Exception e) {
+            LOGGER.warn("deregister metrics mbean of topic : {} error.", metrics.getTopicName(), e);
+        }
+    }
+
+    /**
+     * 只读的 MBean，属性列表在每次读取 MBeanInfo 时重新生成，consumer 打开与关闭之后随之变化
+     */
+    private static final class MetricsMBean implements DynamicMBean {
+
+        private final LogMetrics metrics;
+
+        MetricsMBean(LogMetrics metrics) {
+            this.metrics = metrics;
+        }
+
+        @Override
+        public Object getAttribute(String attribute) throws AttributeNotFoundException {
+            int separator = attribute.lastIndexOf('.');
+            if (separator > 0) {
+                Metric metric = metrics.getRegistry().getMetric(attribute.substring(0, separator));
+                if (metric != null) {
+                    Number value = metric.getValues().get(attribute.substring(separator + 1));
+                    if (value != null) {
+                        return value;
+                    }
+                }
+            }
+            throw new AttributeNotFoundException(attribute);
+        }
+
+        @Override
+        public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+            throw new AttributeNotFoundException("attribute : " + attribute.getName() + " is read only.");
+        }
+
+        @Override
+        public AttributeList getAttributes(String[] attributes) {
+            AttributeList list = new AttributeList();
+            for (String attribute : attributes) {
+                try {
+                    list.add(new Attribute(attribute, getAttribute(attribute)));
+                } catch (AttributeNotFoundException e) {
+                    // 已经移除的指标不返回
+                }
+            }
+            return list;
+        }
+
+        @Override
+        public AttributeList setAttributes(AttributeList attributes) {
+            return new AttributeList();
+        }
+
+        @Override
+        public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+            throw new ReflectionException(new NoSuchMethodException(actionName));
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            List<MBeanAttributeInfo> attributes = new ArrayList<>();
+            for (Map.Entry<String, Number> entry : metrics.getRegistry().getValues().entrySet()) {
+                attributes.add(new MBeanAttributeInfo(entry.getKey(), entry.getValue().getClass().getName(),
+                        entry.getKey(), true, false, false));
+            }
+            return new MBeanInfo(getClass().getName(), "metrics of topic : " + metrics.getTopicName(),
+                    attributes.toArray(new MBeanAttributeInfo[0]), null, null, null);
+        }
+    }
+}
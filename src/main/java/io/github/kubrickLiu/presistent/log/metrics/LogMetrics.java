@@ -0,0 +1,179 @@
+package io.github.kubrickLiu.presistent.log.metrics;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 一个 topic 的指标，耗时的单位均为纳秒。
+ *
+ * 追加耗时按阶段分别记录，磁盘变慢时可以区分时间花在哪里：
+ * 1. append.latency：一次 append 调用的总耗时；
+ * 2. segment.write.latency：写入 record 文件的耗时；
+ * 3. segment.roll.time：滚动到新文件的耗时，包括将写满的文件写入磁盘，count 为滚动次数；
+ * 4. segment.flush.time / meta.flush.time：flush 时将 record 文件与 meta 写入磁盘的耗时
+ */
+public class LogMetrics {
+
+    public static final String APPEND_RECORDS = "append.records";
+
+    public static final String APPEND_BYTES = "append.bytes";
+
+    public static final String APPEND_LATENCY = "append.latency";
+
+    public static final String SEGMENT_WRITE_LATENCY = "segment.write.latency";
+
+    public static final String SEGMENT_ROLL_TIME = "segment.roll.time";
+
+    public static final String SEGMENT_FLUSH_TIME = "segment.flush.time";
+
+    public static final String META_FLUSH_TIME = "meta.flush.time";
+
+    public static final String READ_RECORDS = "read.records";
+
+    public static final String READ_BYTES = "read.bytes";
+
+    public static final String OPEN_SEGMENTS = "segment.open";
+
+    public static final String RECOVERY_TIME = "recovery.time";
+
+    /**
+     * consumer group 的积压条数，完整名称为 consumer.lag.{group}
+     */
+    public static final String CONSUMER_LAG_PREFIX = "consumer.lag.";
+
+    private final String topicName;
+
+    private final String topicPath;
+
+    private final MetricsRegistry registry = new MetricsRegistry();
+
+    private final Meter appendRecords;
+
+    private final Meter appendBytes;
+
+    private final Histogram appendLatency;
+
+    private final Histogram segmentWriteLatency;
+
+    private final Histogram segmentRollTime;
+
+    private final Histogram segmentFlushTime;
+
+    private final Histogram metaFlushTime;
+
+    private final Meter readRecords;
+
+    private final Meter readBytes;
+
+    /**
+     * 打开 topic 恢复 meta 与当前写文件的耗时
+     */
+    private final LongAdder recoveryNanos = new LongAdder();
+
+    public LogMetrics(@NotNull String topicName, @NotNull String topicPath) {
+        this.topicName = topicName;
+        this.topicPath = topicPath;
+
+        this.appendRecords = registry.meter(APPEND_RECORDS);
+        this.appendBytes = registry.meter(APPEND_BYTES);
+        this.appendLatency = registry.histogram(APPEND_LATENCY);
+        this.segmentWriteLatency = registry.histogram(SEGMENT_WRITE_LATENCY);
+        this.segmentRollTime = registry.histogram(SEGMENT_ROLL_TIME);
+        this.segmentFlushTime = registry.histogram(SEGMENT_FLUSH_TIME);
+        this.metaFlushTime = registry.histogram(META_FLUSH_TIME);
+        this.readRecords = registry.meter(READ_RECORDS);
+        this.readBytes = registry.meter(READ_BYTES);
+        registry.register(RECOVERY_TIME, (Gauge) recoveryNanos::sum);
+    }
+
+    /**
+     * 一次 append 调用完成之后记录
+     *
+     * @param records 追加的 record 条数
+     * @param bytes 写入 record 文件的字节数
+     * @param startNanos append 开始时的 {@link System#nanoTime()}
+     */
+    public void recordAppend(int records, long bytes, long startNanos) {
+        appendRecords.mark(records);
+        appendBytes.mark(bytes);
+        appendLatency.updateSince(startNanos);
+    }
+
+    /**
+     * 读取一条 record 之后记录
+     *
+     * @param bytes record 内容的字节数
+     */
+    public void recordRead(int bytes) {
+        readRecords.mark();
+        readBytes.mark(bytes);
+    }
+
+    public void addRecoveryNanos(long nanos) {
+        recoveryNanos.add(nanos);
+    }
+
+    public long getRecoveryNanos() {
+        return recoveryNanos.sum();
+    }
+
+    public void registerConsumerLag(@NotNull String group, @NotNull Gauge lag) {
+        registry.register(CONSUMER_LAG_PREFIX + group, lag);
+    }
+
+    public void removeConsumerLag(@NotNull String group) {
+        registry.remove(CONSUMER_LAG_PREFIX + group);
+    }
+
+    public Meter getAppendRecords() {
+        return appendRecords;
+    }
+
+    public Meter getAppendBytes() {
+        return appendBytes;
+    }
+
+    public Histogram getAppendLatency() {
+        return appendLatency;
+    }
+
+    public Histogram getSegmentWriteLatency() {
+        return segmentWriteLatency;
+    }
+
+    public Histogram getSegmentRollTime() {
+        return segmentRollTime;
+    }
+
+    public Histogram getSegmentFlushTime() {
+        return segmentFlushTime;
+    }
+
+    public Histogram getMetaFlushTime() {
+        return metaFlushTime;
+    }
+
+    public Meter getReadRecords() {
+        return readRecords;
+    }
+
+    public Meter getReadBytes() {
+        return readBytes;
+    }
+
+    public String getTopicName() {
+        return topicName;
+    }
+
+    /**
+     * topic 目录，不同目录下可以存在同名的 topic，例如 {@link io.github.kubrickLiu.presistent.log.PartitionedLog} 的分区
+     */
+    public String getTopicPath() {
+        return topicPath;
+    }
+
+    public MetricsRegistry getRegistry() {
+        return registry;
+    }
+}
@@ -0,0 +1,87 @@
+package io.github.kubrickLiu.presistent.log.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 累计次数与速率，mark 只累加计数，不分配对象也不读取时钟；
+ * 速率在读取时按距离上次读取的时间间隔计算，1 分钟速率为指数加权平均
+ */
+public class Meter implements Metric {
+
+    private static final double ONE_MINUTE_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final LongAdder count = new LongAdder();
+
+    private final long startNanos;
+
+    private long lastTickNanos;
+
+    private long lastTickCount;
+
+    private double oneMinuteRate;
+
+    public Meter() {
+        this.startNanos = System.nanoTime();
+        this.lastTickNanos = startNanos;
+    }
+
+    public void mark() {
+        count.increment();
+    }
+
+    public void mark(long n) {
+        count.add(n);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * 创建以来的平均每秒次数
+     */
+    public double getMeanRate() {
+        long elapsedNanos = System.nanoTime() - startNanos;
+        if (elapsedNanos <= 0) {
+            return 0;
+        }
+        return getCount() * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+    }
+
+    /**
+     * 最近 1 分钟的指数加权平均每秒次数
+     */
+    public synchronized double getOneMinuteRate() {
+        long now = System.nanoTime();
+        long elapsedNanos = now - lastTickNanos;
+        if (elapsedNanos <= 0) {
+            return oneMinuteRate;
+        }
+
+        long currentCount = getCount();
+        double instantRate = (currentCount - lastTickCount) * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+        // 按读取间隔计算衰减系数，读取间隔不固定时仍然是 1 分钟窗口的加权平均
+        double alpha = 1 - Math.exp(-elapsedNanos / ONE_MINUTE_NANOS);
+        if (lastTickNanos == startNanos) {
+            oneMinuteRate = instantRate;
+        } else {
+            oneMinuteRate += alpha * (instantRate - oneMinuteRate);
+        }
+
+        lastTickNanos = now;
+        lastTickCount = currentCount;
+        return oneMinuteRate;
+    }
+
+    @Override
+    public Map<String, Number> getValues() {
+        Map<String, Number> values = new LinkedHashMap<>();
+        values.put("count", getCount());
+        values.put("meanRate", getMeanRate());
+        values.put("oneMinuteRate", getOneMinuteRate());
+        return values;
+    }
+}
@@ -0,0 +1,16 @@
+package io.github.kubrickLiu.presistent.log.metrics;
+
+import java.util.Map;
+
+/**
+ * 登记在 {@link MetricsRegistry} 中的指标
+ */
+public interface Metric {
+
+    /**
+     * 读取当前值，由 reporter 调用，不在写入路径上
+     *
+     * @return 属性名 -> 值，属性名在指标的生命周期内不变
+     */
+    Map<String, Number> getValues();
+}
@@ -0,0 +1,81 @@
+package io.github.kubrickLiu.presistent.log.metrics;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 按名称登记的一组指标，指标名称由 . 分隔的小写单词组成
+ */
+public class MetricsRegistry {
+
+    private final ConcurrentMap<String, Metric> metrics = new ConcurrentHashMap<>();
+
+    /**
+     * 获取名称对应的 Meter，不存在时创建
+     */
+    public Meter meter(@NotNull String name) {
+        return getOrAdd(name, new Meter(), Meter.class);
+    }
+
+    /**
+     * 获取名称对应的 Histogram，不存在时创建
+     */
+    public Histogram histogram(@NotNull String name) {
+        return getOrAdd(name, new Histogram(), Histogram.class);
+    }
+
+    /**
+     * 登记指标，名称已经存在时替换
+     */
+    public void register(@NotNull String name, @NotNull Metric metric) {
+        metrics.put(name, metric);
+    }
+
+    public Metric remove(@NotNull String name) {
+        return metrics.remove(name);
+    }
+
+    public Metric getMetric(@NotNull String name) {
+        return metrics.get(name);
+    }
+
+    /**
+     * @return 按名称排序的快照
+     */
+    public SortedMap<String, Metric> getMetrics() {
+        return Collections.unmodifiableSortedMap(new TreeMap<>(metrics));
+    }
+
+    private <T extends Metric> T getOrAdd(String name, T metric, Class<T> type) {
+        Metric existing = metrics.putIfAbsent(name, metric);
+        if (existing == null) {
+            return metric;
+        }
+        if (!type.isInstance(existing)) {
+            throw new IllegalArgumentException("metric : " + name + " is already registered as "
+                    + existing.getClass().getSimpleName());
+        }
+        return type.cast(existing);
+    }
+
+    /**
+     * 所有指标的当前值
+     *
+     * @return 指标名.属性名 -> 值，按名称排序
+     */
+    public SortedMap<String, Number> getValues() {
+        SortedMap<String, Number> values = new TreeMap<>();
+        for (Map.Entry<String, Metric> entry : metrics.entrySet()) {
+            for (Map.Entry<String, Number> value : entry.getValue().getValues().entrySet()) {
+                values.put(entry.getKey() + "." + value.getKey(), value.getValue());
+            }
+        }
+        return values;
+    }
+}
@@ -0,0 +1,25 @@
+package io.github.kubrickLiu.presistent.log.metrics;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * 将 topic 的指标输出到外部，例如 JMX、日志或者监控系统；
+ * 通过 {@link io.github.kubrickLiu.presistent.log.config.LogConfig#setMetricsReporters(java.util.List)} 配置，
+ * 同一个 reporter 可以被多个 topic 共用
+ */
+public interface MetricsReporter {
+
+    /**
+     * topic 打开之后调用，之后 reporter 可以随时读取 {@link LogMetrics#getRegistry()}
+     *
+     * @param metrics
+     */
+    void register(@NotNull LogMetrics metrics);
+
+    /**
+     * topic 关闭时调用，之后不再读取该 topic 的指标
+     *
+     * @param metrics
+     */
+    void deregister(@NotNull LogMetrics metrics);
+}
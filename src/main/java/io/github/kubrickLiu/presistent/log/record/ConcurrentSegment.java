@@ -0,0 +1,356 @@
+package io.github.kubrickLiu.presistent.log.record;
+
+import io.github.kubrickLiu.presistent.log.exception.FileChannelFullException;
+import io.github.kubrickLiu.presistent.log.meta.TopicMetaData;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 多个线程并发追加同一个 record 文件。
+ *
+ * 写入方通过 CAS 同时预留 record 条数 (即 record id) 与写入区域，各自以 positional write 并行写入，
+ * 写完之后登记到按预留下标排列的完成表中，由任意一个写入方按预留的顺序登记连续完成的部分，读取方只会看到已登记的 record；
+ * 本次写入还没有登记的写入方挂起等待，由登记方唤醒，写入失败时之后预留的写入方都会失败。
+ * 文件放不下时封闭预留指针，由抢到滚动权的线程等待已预留的 record 全部登记后创建新文件
+ */
+public class ConcurrentSegment {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConcurrentSegment.class);
+
+    /**
+     * 预留指针已封闭，需要滚动到新文件
+     */
+    public static final long SEALED = -1L;
+
+    private static final long SEALED_BIT = 1L << 63;
+
+    /**
+     * 预留指针中写入 offset 只占用 32 位，并发追加的文件不能超过 4 GB
+     */
+    public static final long MAX_FILE_BYTES = 0xFFFFFFFFL;
+
+    private final FileRecords fileRecords;
+
+    private final TopicMetaData metaData;
+
+    private final int headBytesLength;
+
+    /**
+     * 最高位为封闭标记，其余高 31 位为已预留的 record 条数，低 32 位为已预留的写入 offset (无符号)
+     */
+    private final AtomicLong reservation;
+
+    /**
+     * 已登记的 record 条数，写入方按预留顺序推进
+     */
+    private volatile int committedSize;
+
+    /**
+     * 已经写完但还没有登记的写入，key 为预留时的 record 下标
+     */
+    private final ConcurrentHashMap<Integer, Completion> completions = new ConcurrentHashMap<>();
+
+    /**
+     * 正在登记完成表的写入方，同时只有一个
+     */
+    private final AtomicBoolean committing = new AtomicBoolean(false);
+
+    /**
+     * 等待文件封闭的滚动线程，登记之后唤醒
+     */
+    private volatile Thread sealWaiter;
+
+    /**
+     * 已预留但还没有写入并登记完成的写入方个数
+     */
+    private final AtomicInteger pendingWriters = new AtomicInteger(0);
+
+    private volatile boolean failed;
+
+    private final AtomicBoolean rolling = new AtomicBoolean(false);
+
+    public ConcurrentSegment(@NotNull FileRecords fileRecords, @NotNull TopicMetaData metaData) {
+        this.fileRecords = fileRecords;
+        this.metaData = metaData;
+        this.headBytesLength = fileRecords.getFormat().getHeadBytesLength();
+        if (fileRecords.getBaseRecordOffset() + fileRecords.getSegmentBytes() > MAX_FILE_BYTES) {
+            throw new IllegalArgumentException("segment bytes : " + fileRecords.getSegmentBytes()
+                    + " is over concurrent append limit : " + MAX_FILE_BYTES);
+        }
+
+        int size = fileRecords.size();
+        this.reservation = new AtomicLong(pack(size, fileRecords.getWriteRecordOffset()));
+        this.committedSize = size;
+    }
+
+    private static long pack(int index, long offset) {
+        return ((long) index << 32) | (offset & 0xFFFFFFFFL);
+    }
+
+    public static int indexOf(long reserved) {
+        return (int) ((reserved & ~SEALED_BIT) >>> 32);
+    }
+
+    public static long offsetOf(long reserved) {
+        return reserved & 0xFFFFFFFFL;
+    }
+
+    /**
+     * 预留 bodies 中 [fromIndex, toIndex) 能放入当前文件的最长前缀，
+     * 预留成功后必须调用 {@link #append(long, List, int, int)} 写入
+     *
+     * @return 预留前的指针，通过 {@link #indexOf(long)} 与 {@link #offsetOf(long)} 解析；
+     * 文件已封闭时返回 {@link #SEALED}
+     */
+    public long reserve(@NotNull List<ByteBuffer> bodies, int fromIndex, int toIndex) {
+        pendingWriters.incrementAndGet();
+        while (true) {
+            long current = reservation.get();
+            if ((current & SEALED_BIT) != 0) {
+                pendingWriters.decrementAndGet();
+                return SEALED;
+            }
+
+            long offset = offsetOf(current);
+            int count = reservedCount(current, bodies, fromIndex, toIndex);
+            if (count == 0) {
+                if (offset == fileRecords.getBaseRecordOffset()) {
+                    pendingWriters.decrementAndGet();
+                    throw new FileChannelFullException("record size is over file : "
+                            + fileRecords.getFile().getName() + " limit.");
+                }
+
+                if (reservation.compareAndSet(current, current | SEALED_BIT)) {
+                    pendingWriters.decrementAndGet();
+                    return SEALED;
+                }
+                continue;
+            }
+
+            int appendSize = 0;
+            for (int i = fromIndex; i < fromIndex + count; i++) {
+                appendSize += headBytesLength + bodies.get(i).remaining();
+            }
+
+            if (reservation.compareAndSet(current, pack(indexOf(current) + count, offset + appendSize))) {
+                return current;
+            }
+        }
+    }
+
+    /**
+     * 计算 reserve 返回的指针预留了多少条 record
+     */
+    public int reservedCount(long reserved, @NotNull List<ByteBuffer> bodies, int fromIndex, int toIndex) {
+        long contentBytesLength = offsetOf(reserved) - fileRecords.getBaseRecordOffset();
+        int count = 0;
+        for (int i = fromIndex; i < toIndex; i++) {
+            contentBytesLength += headBytesLength + bodies.get(i).remaining();
+            if (contentBytesLength > fileRecords.getSegmentBytes()) {
+                break;
+            }
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * 写入预留的区域并登记到完成表，之前预留的 record 全部写完时登记连续完成的部分，
+     * 否则挂起等待完成之前预留的写入方登记本次写入的 record
+     *
+     * @return 写入的字节数
+     * @throws IOException
+     */
+    public int append(long reserved, @NotNull List<ByteBuffer> bodies, int fromIndex, int count)
+            throws IOException {
+        int index = indexOf(reserved);
+        long startRecordId = getStartRecordId(reserved);
+
+        List<Record> records = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            records.add(new Record(startRecordId + i, bodies.get(fromIndex + i)));
+        }
+
+        int[] frameLengths = new int[count];
+        try {
+            int appendSize = fileRecords.writeReserved(offsetOf(reserved), records, frameLengths);
+
+            Completion completion = new Completion(index, count, frameLengths, appendSize,
+                    startRecordId + count - 1, Thread.currentThread());
+            completions.put(index, completion);
+            commitCompleted();
+            awaitCommitted(completion);
+            return appendSize;
+        } catch (IOException | RuntimeException e) {
+            fail();
+            throw e;
+        } finally {
+            pendingWriters.decrementAndGet();
+            unparkSealWaiter();
+        }
+    }
+
+    /**
+     * 按预留顺序登记连续完成的写入；其他写入方正在登记时直接返回，由它在释放之后重新检查。
+     * 登记失败时放回完成表，由各个写入方按自己的写入是否已登记决定成败
+     */
+    private void commitCompleted() {
+        while (committing.compareAndSet(false, true)) {
+            try {
+                Completion completion;
+                while ((completion = completions.remove(committedSize)) != null) {
+                    try {
+                        fileRecords.commit(completion.frameLengths, completion.count);
+                    } catch (IOException | RuntimeException e) {
+                        LOGGER.error("commit records to file : {} error.", fileRecords.getFile().getName(), e);
+                        completions.put(completion.index, completion);
+                        fail();
+                        break;
+                    }
+                    metaData.updateEndRecordId(completion.lastRecordId);
+                    metaData.addBytesLength(completion.appendSize);
+
+                    committedSize = completion.index + completion.count;
+                    completion.committed = true;
+                    LockSupport.unpark(completion.writer);
+                }
+            } finally {
+                committing.set(false);
+            }
+            if (failed) {
+                return;
+            }
+            unparkSealWaiter();
+
+            if (!completions.containsKey(committedSize)) {
+                return;
+            }
+        }
+    }
+
+    public long getStartRecordId(long reserved) {
+        return metaData.getStartRecordId() + indexOf(reserved);
+    }
+
+    private void awaitCommitted(Completion completion) throws IOException {
+        while (!completion.committed) {
+            // 已经被登记方取走的写入会继续登记完成，只有还在完成表里的写入才算失败
+            if (failed && completions.remove(completion.index, completion)) {
+                throw new IOException("append to file : " + fileRecords.getFile().getName() + " failed.");
+            }
+            LockSupport.park(this);
+        }
+    }
+
+    private void unparkSealWaiter() {
+        Thread waiter = sealWaiter;
+        if (waiter != null) {
+            LockSupport.unpark(waiter);
+        }
+    }
+
+    /**
+     * 写入失败后不再接受新的预留，之后预留的写入方都会失败
+     */
+    private void fail() {
+        failed = true;
+        while (true) {
+            long current = reservation.get();
+            if ((current & SEALED_BIT) != 0 || reservation.compareAndSet(current, current | SEALED_BIT)) {
+                break;
+            }
+        }
+
+        for (Completion completion : completions.values()) {
+            LockSupport.unpark(completion.writer);
+        }
+        unparkSealWaiter();
+    }
+
+    /**
+     * 抢占滚动权，只有一个线程能够成功
+     */
+    public boolean tryRolling() {
+        return rolling.compareAndSet(false, true);
+    }
+
+    /**
+     * 滚动失败时释放滚动权，由其他写入方重试
+     */
+    public void abortRolling() {
+        rolling.set(false);
+    }
+
+    /**
+     * 等待已封闭文件中预留的 record 全部登记，写入失败时丢弃未登记的数据
+     *
+     * @return 已登记的 record 条数，新文件从下一条 record 开始
+     * @throws IOException
+     */
+    public int awaitSealed() throws IOException {
+        long sealed = reservation.get();
+        sealWaiter = Thread.currentThread();
+        try {
+            // 先登记等待线程再检查，避免错过登记之前的唤醒
+            while (committedSize != indexOf(sealed)) {
+                if (failed && pendingWriters.get() == 0) {
+                    fileRecords.discard(fileRecords.getWriteRecordOffset(), offsetOf(sealed));
+                    break;
+                }
+                LockSupport.park(this);
+            }
+        } finally {
+            sealWaiter = null;
+        }
+        return committedSize;
+    }
+
+    public FileRecords getFileRecords() {
+        return fileRecords;
+    }
+
+    public TopicMetaData getMetaData() {
+        return metaData;
+    }
+
+    /**
+     * 已经写完等待登记的一次写入
+     */
+    private static final class Completion {
+
+        private final int index;
+
+        private final int count;
+
+        private final int[] frameLengths;
+
+        private final int appendSize;
+
+        private final long lastRecordId;
+
+        private final Thread writer;
+
+        private volatile boolean committed;
+
+        private Completion(int index, int count, int[] frameLengths, int appendSize, long lastRecordId,
+                           Thread writer) {
+            this.index = index;
+            this.count = count;
+            this.frameLengths = frameLengths;
+            this.appendSize = appendSize;
+            this.lastRecordId = lastRecordId;
+            this.writer = writer;
+        }
+    }
+}
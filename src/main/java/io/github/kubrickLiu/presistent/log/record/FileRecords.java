@@ -1,10 +1,13 @@
 package io.github.kubrickLiu.presistent.log.record;
 
+import io.github.kubrickLiu.presistent.log.config.LogConfig;
+import io.github.kubrickLiu.presistent.log.config.StorageEngine;
+import io.github.kubrickLiu.presistent.log.exception.CorruptRecordException;
 import io.github.kubrickLiu.presistent.log.exception.FileChannelFullException;
-import io.github.kubrickLiu.presistent.log.meta.RecordMetaData;
+import io.github.kubrickLiu.presistent.log.meta.AbstractRecordMetaSummary;
 import io.github.kubrickLiu.presistent.log.meta.RecordMetaSummary;
+import io.github.kubrickLiu.presistent.log.meta.SegmentMetaSummary;
 import io.github.kubrickLiu.presistent.log.util.FileUtil;
-import io.github.kubrickLiu.presistent.log.util.BytesUtil;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -13,17 +16,33 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.StandardOpenOption;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * 文件信息：
+ * 文件信息 (v1)：
  * head (record id) --- 占用 4 B
  * data (record content) --- 占用 ? B
  * head (record id) --- 占用 4 B
  * data (record content) --- 占用 ? B
  * .......
+ *
+ * 文件信息 (v2)：
+ * segment head --- 占用 16 B，见 {@link SegmentMetaSummary}
+ * length --- 占用 4 B，最高位标记压缩的 record 批次，见 {@link RecordBatch}
+ * head (record id) --- 占用 4 B
+ * data (record content) --- 占用 ? B
+ * .......
+ *
+ * 文件信息 (v3)：
+ * 同 v2，length 之后增加 4 B 的 crc (record id + data 的 CRC32C)
+ *
+ * 文件信息 (v4)：
+ * segment head --- 占用 24 B
+ * 同 v3，record id 占用 8 B，文件 offset 为 64 位，文件大小不再受 2 GB 限制
  */
 public class FileRecords implements AutoCloseable {
 
@@ -32,9 +51,16 @@ public class FileRecords implements AutoCloseable {
     /**
      * 500 MB
      */
-    public static final int RECORD_FILE_BYTES_LENGTH_LIMIT = 500 * 1024 * 1024;
+    public static final long RECORD_FILE_BYTES_LENGTH_LIMIT = 500L * 1024 * 1024;
 
-    private RecordMetaSummary metaDataSummary;
+    private AbstractRecordMetaSummary metaDataSummary;
+
+    private SegmentFormat format;
+
+    /**
+     * record 内容字节数上限，不超过格式支持的文件大小
+     */
+    private long segmentBytes;
 
     private File file;
 
@@ -42,7 +68,29 @@ public class FileRecords implements AutoCloseable {
 
     private RecordsIterator iterator;
 
+    /**
+     * 写入方与 consumer 共用时的引用计数，归零时才真正关闭
+     */
+    private final AtomicInteger refCount = new AtomicInteger(1);
+
     public FileRecords(@NotNull File file) throws Exception {
+        this(file, new LogConfig());
+    }
+
+    /**
+     * 按 config 中的 {@link StorageEngine} 打开 record 文件
+     */
+    public static FileRecords open(@NotNull File file, @NotNull LogConfig config) throws Exception {
+        if (config.getStorageEngine() == StorageEngine.MMAP) {
+            return new MappedFileRecords(file, config);
+        }
+        return new FileRecords(file, config);
+    }
+
+    /**
+     * 已存在的 record 文件保持原有格式，新建的 record 文件使用 config 中的格式
+     */
+    public FileRecords(@NotNull File file, @NotNull LogConfig config) throws Exception {
         if (!file.exists()) {
             file.createNewFile();
         } else if (!FileUtil.isLegalAccessFile(file)) {
@@ -55,7 +103,20 @@ public class FileRecords implements AutoCloseable {
                     StandardOpenOption.READ, StandardOpenOption.WRITE);
 
             File metaFile = new File(file.getAbsolutePath() + RecordMetaSummary.META_SUFFIX);
-            this.metaDataSummary = new RecordMetaSummary(metaFile);
+            this.format = detectFormat(metaFile, config);
+
+            if (format == SegmentFormat.V1) {
+                this.metaDataSummary = new RecordMetaSummary(metaFile);
+            } else {
+                // 迁移过程中断时可能残留旧的 .meta 文件
+                if (metaFile.exists() && !metaFile.delete()) {
+                    LOGGER.warn("delete legacy meta file : {} failed.", metaFile.getName());
+                }
+                this.metaDataSummary = new SegmentMetaSummary(file, fileChannel, format,
+                        config.getIndexIntervalBytes());
+            }
+            this.segmentBytes = Math.min(config.getSegmentBytes(),
+                    format.getMaxFileBytes() - metaDataSummary.getBaseRecordOffset());
         } catch (Exception e) {
             if (this.fileChannel != null) {
                 this.fileChannel.close();
@@ -64,15 +125,63 @@ public class FileRecords implements AutoCloseable {
         }
     }
 
+    private SegmentFormat detectFormat(File metaFile, LogConfig config) throws IOException {
+        SegmentFormat segmentFormat = SegmentMetaSummary.readFormat(fileChannel);
+        if (segmentFormat != null) {
+            return segmentFormat;
+        }
+
+        if (metaFile.exists() || fileChannel.size() > 0) {
+            return SegmentFormat.V1;
+        }
+
+        return config.getSegmentFormat();
+    }
+
     public int append(@NotNull List<Record> records) throws IOException {
         if (!FileUtil.isLegalAccessChannel(fileChannel)) {
             throw new RuntimeException("file channel is not exists or can not write.");
         }
 
-        int appendSize = 0;
-        for (Record record : records) {
-            appendSize += realAppendOne(record);
+        if (records.isEmpty()) {
+            return 0;
         }
+
+        int recordsSize = records.size();
+        long startOffset = metaDataSummary.getWriteRecordOffset();
+
+        // 每条 record 对应 head 与 body 两个 buffer，整批只做一次 gathering write
+        ByteBuffer[] buffers = new ByteBuffer[recordsSize * 2];
+        int[] frameLengths = new int[recordsSize];
+
+        long position = startOffset;
+        for (int i = 0; i < recordsSize; i++) {
+            Record record = records.get(i);
+            ByteBuffer bodyBuffer = record.getBuffer();
+            int bodyBytesLength = bodyBuffer.remaining();
+            byte[] headBytes = format.encodeHead(record.getId(), bodyBuffer, record.isBatch());
+
+            buffers[2 * i] = ByteBuffer.wrap(headBytes);
+            buffers[2 * i + 1] = bodyBuffer;
+            frameLengths[i] = headBytes.length + bodyBytesLength;
+
+            position += headBytes.length + bodyBytesLength;
+        }
+
+        int appendSize = (int) (position - startOffset);
+        if (isOverLimit(startOffset, appendSize)) {
+            throw new FileChannelFullException("file : " + file.getName() + " channel is full.");
+        }
+
+        long tmpAppendSize = writeBuffers(startOffset, buffers);
+        if (tmpAppendSize != appendSize) {
+            throw new RuntimeException("append size is not equals with records head and body bytes size");
+        }
+
+        if (!metaDataSummary.addAll(frameLengths, recordsSize)) {
+            throw new IOException("append records meta data error.");
+        }
+
         return appendSize;
     }
 
@@ -83,40 +192,205 @@ public class FileRecords implements AutoCloseable {
         return realAppendOne(record);
     }
 
+    /**
+     * 追加一条 record，head 与 body 由 encoder 编码为一个 frame 之后写入，稳态下不分配对象；
+     * 超过 encoder 容量的 record 按 {@link #appendOne(Record)} 写入
+     *
+     * @param recordId
+     * @param body
+     * @param encoder 写入方独占的编码缓冲区
+     * @return 追加的字节数
+     * @throws IOException
+     */
+    public int appendOne(long recordId, @NotNull byte[] body, @NotNull FrameEncoder encoder) throws IOException {
+        if (!FileUtil.isLegalAccessChannel(fileChannel)) {
+            throw new RuntimeException("file channel is not exists or can not write.");
+        }
+
+        int frameLength = format.getHeadBytesLength() + body.length;
+        if (!encoder.fits(frameLength)) {
+            return realAppendOne(new Record(recordId, body));
+        }
+
+        long startOffset = metaDataSummary.getWriteRecordOffset();
+        if (isOverLimit(startOffset, frameLength)) {
+            throw new FileChannelFullException("file : " + file.getName() + " channel is full.");
+        }
+
+        long tmpAppendSize = writeBuffers(startOffset, encoder.encode(format, recordId, body));
+        if (tmpAppendSize != frameLength) {
+            throw new RuntimeException("append size is not equals with head and body bytes size");
+        }
+
+        metaDataSummary.add(frameLength);
+
+        return frameLength;
+    }
+
+    /**
+     * 追加一条 record，head 由 encoder 编码，与 body 一起以 gathering write 写入，body 不拷贝；
+     * 堆外的 body 直接写入文件，稳态下不分配对象
+     *
+     * @param recordId
+     * @param body 写入 position ~ limit 部分，写入期间调用方不能修改，返回之后 position 不变
+     * @param encoder 写入方独占的编码缓冲区
+     * @return 追加的字节数
+     * @throws IOException
+     */
+    public int appendOne(long recordId, @NotNull ByteBuffer body, @NotNull FrameEncoder encoder)
+            throws IOException {
+        if (!FileUtil.isLegalAccessChannel(fileChannel)) {
+            throw new RuntimeException("file channel is not exists or can not write.");
+        }
+
+        int bodyPosition = body.position();
+        int frameLength = format.getHeadBytesLength() + body.remaining();
+
+        long startOffset = metaDataSummary.getWriteRecordOffset();
+        if (isOverLimit(startOffset, frameLength)) {
+            throw new FileChannelFullException("file : " + file.getName() + " channel is full.");
+        }
+
+        long tmpAppendSize;
+        try {
+            tmpAppendSize = writeBuffers(startOffset, encoder.encodeHead(format, recordId, body));
+        } finally {
+            body.position(bodyPosition);
+            encoder.release();
+        }
+        if (tmpAppendSize != frameLength) {
+            throw new RuntimeException("append size is not equals with head and body bytes size");
+        }
+
+        metaDataSummary.add(frameLength);
+
+        return frameLength;
+    }
+
     private int realAppendOne(Record record) throws IOException {
+        // Body
+        ByteBuffer bodyBuffer = record.getBuffer();
+        int bodyBytesLength = bodyBuffer.remaining();
+
         // Head
-        int recordId = record.getId();
-        byte[] headBytes = BytesUtil.convertIntToByteArray(recordId);
+        byte[] headBytes = format.encodeHead(record.getId(), bodyBuffer, record.isBatch());
         int headBytesLength = headBytes.length;
 
-        // Body
-        byte[] bodyBytes = record.getBytes();
-        int bodyBytesLength = bodyBytes.length;
-
-        int startOffset = metaDataSummary.getWriteRecordOffset();
+        long startOffset = metaDataSummary.getWriteRecordOffset();
 
-        if ((startOffset + headBytesLength + bodyBytesLength) > RECORD_FILE_BYTES_LENGTH_LIMIT) {
+        if (isOverLimit(startOffset, headBytesLength + bodyBytesLength)) {
             throw new FileChannelFullException("file : " + file.getName() + " channel is full.");
         }
 
-        int tmpAppendSize = fileChannelAppend(startOffset, headBytes, bodyBytes);
+        long tmpAppendSize = writeBuffers(startOffset,
+                new ByteBuffer[]{ByteBuffer.wrap(headBytes), bodyBuffer});
         if (tmpAppendSize != (headBytesLength + bodyBytesLength)) {
             throw new RuntimeException("append size is not equals with head and body bytes size");
         }
 
-        RecordMetaData metaData = new RecordMetaData(startOffset, headBytesLength, bodyBytesLength);
-        metaDataSummary.add(metaData);
+        metaDataSummary.add(headBytesLength + bodyBytesLength);
 
-        return tmpAppendSize;
+        return headBytesLength + bodyBytesLength;
     }
 
-    private int fileChannelAppend(int baseOffset, byte[] headBytes, byte[] bodyBytes) throws IOException {
-        int size = 0;
-        size += fileChannel.write(ByteBuffer.wrap(headBytes), baseOffset);
-        size += fileChannel.write(ByteBuffer.wrap(bodyBytes), baseOffset + size);
+    /**
+     * 文件大小限制只针对 record 内容，不包含文件头
+     */
+    private boolean isOverLimit(long startOffset, long appendSize) {
+        return (startOffset - metaDataSummary.getBaseRecordOffset() + appendSize) > segmentBytes;
+    }
+
+    /**
+     * 以 gathering write 的方式从 baseOffset 开始写入所有 buffer
+     */
+    protected long writeBuffers(long baseOffset, ByteBuffer[] buffers) throws IOException {
+        fileChannel.position(baseOffset);
+
+        long size = 0;
+        int index = 0;
+        while (index < buffers.length) {
+            size += fileChannel.write(buffers, index, buffers.length - index);
+            while (index < buffers.length && !buffers[index].hasRemaining()) {
+                index++;
+            }
+        }
         return size;
     }
 
+    /**
+     * 以 positional write 的方式从 baseOffset 开始写入所有 buffer，不修改 channel 的 position，
+     * 多个线程可以同时写入互不重叠的区域
+     */
+    protected long writeBuffersAt(long baseOffset, ByteBuffer[] buffers) throws IOException {
+        long size = 0;
+        for (ByteBuffer buffer : buffers) {
+            while (buffer.hasRemaining()) {
+                size += fileChannel.write(buffer, baseOffset + size);
+            }
+        }
+        return size;
+    }
+
+    /**
+     * 并发追加：将 records 写入调用方已经预留的、从 startOffset 开始的区域，
+     * 写入后不登记索引，需要按预留顺序调用 {@link #commit(int[], int)} 之后才对读取方可见
+     *
+     * @param startOffset
+     * @param records
+     * @param frameLengths 输出每条 record 的长度 (head + body)
+     * @return 写入的字节数
+     * @throws IOException
+     */
+    public int writeReserved(long startOffset, @NotNull List<Record> records, @NotNull int[] frameLengths)
+            throws IOException {
+        if (!FileUtil.isLegalAccessChannel(fileChannel)) {
+            throw new RuntimeException("file channel is not exists or can not write.");
+        }
+
+        int recordsSize = records.size();
+        ByteBuffer[] buffers = new ByteBuffer[recordsSize * 2];
+
+        int appendSize = 0;
+        for (int i = 0; i < recordsSize; i++) {
+            Record record = records.get(i);
+            ByteBuffer bodyBuffer = record.getBuffer();
+            int bodyBytesLength = bodyBuffer.remaining();
+            byte[] headBytes = format.encodeHead(record.getId(), bodyBuffer, record.isBatch());
+
+            buffers[2 * i] = ByteBuffer.wrap(headBytes);
+            buffers[2 * i + 1] = bodyBuffer;
+            frameLengths[i] = headBytes.length + bodyBytesLength;
+
+            appendSize += frameLengths[i];
+        }
+
+        if (isOverLimit(startOffset, appendSize)) {
+            throw new FileChannelFullException("file : " + file.getName() + " channel is full.");
+        }
+
+        long tmpAppendSize = writeBuffersAt(startOffset, buffers);
+        if (tmpAppendSize != appendSize) {
+            throw new RuntimeException("append size is not equals with records head and body bytes size");
+        }
+        return appendSize;
+    }
+
+    /**
+     * 登记 {@link #writeReserved(long, List, int[])} 写入的 record，需要按写入区域的顺序调用
+     */
+    public void commit(@NotNull int[] frameLengths, int size) throws IOException {
+        if (!metaDataSummary.addAll(frameLengths, size)) {
+            throw new IOException("append records meta data error.");
+        }
+    }
+
+    /**
+     * 丢弃 [fromOffset, toOffset) 区域中未登记的数据，避免恢复时被当作 record 读出
+     */
+    public void discard(long fromOffset, long toOffset) throws IOException {
+        fileChannel.truncate(fromOffset);
+    }
+
     public Iterator<Record> iterator() {
         if (iterator == null) {
             synchronized (this) {
@@ -141,33 +415,343 @@ public class FileRecords implements AutoCloseable {
             return null;
         }
 
-        RecordMetaData metaData = metaDataSummary.orderGet();
-        int offset = metaData.getStartOffset();
-        int headLen = metaData.getHeadBytesSize();
-        int bodyLen = metaData.getBodyBytesSize();
+        int index = metaDataSummary.orderGetIndex();
+        return readRecord(index, false);
+    }
+
+    /**
+     * 读取下一条 record 到 recordBuffer 中，不分配新的 byte[]
+     *
+     * @param recordBuffer
+     * @return 是否读取到 record
+     */
+    public boolean makeNext(@NotNull RecordBuffer recordBuffer) {
+        if (isReadEnd()) {
+            return false;
+        }
+
+        int index = metaDataSummary.orderGetIndex();
+        try {
+            readInto(metaDataSummary.getStartOffset(index), metaDataSummary.getFrameLength(index), recordBuffer,
+                    false);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return true;
+    }
+
+    /**
+     * 按下标读取 record 到 recordBuffer 中，不影响读指针，多个读取方可以同时读取
+     *
+     * @param index
+     * @param recordBuffer
+     */
+    public void readAt(int index, @NotNull RecordBuffer recordBuffer) {
+        readAt(index, recordBuffer, false);
+    }
+
+    /**
+     * @param verify 是否校验 crc，只对 v3 / v4 格式有效，校验失败时抛出 {@link CorruptRecordException}
+     */
+    public void readAt(int index, @NotNull RecordBuffer recordBuffer, boolean verify) {
+        try {
+            readInto(metaDataSummary.getStartOffset(index), metaDataSummary.getFrameLength(index), recordBuffer,
+                    verify);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * 一次读取整条 record 到 recordBuffer 持有的 direct buffer 中
+     */
+    protected void readInto(long startOffset, int frameLength, RecordBuffer recordBuffer, boolean verify)
+            throws IOException {
+        int headLen = format.getHeadBytesLength();
+
+        ByteBuffer frameBuffer = recordBuffer.prepareFrameBuffer(frameLength);
+        readBuffer(frameBuffer, startOffset);
+        if (verify && !format.verify(frameBuffer, 0, frameLength)) {
+            throw corruptRecord(startOffset);
+        }
+
+        long recordId = format.decodeRecordId(frameBuffer, 0);
+        recordBuffer.update(recordId, recordBuffer.getFrameView(), headLen, frameLength - headLen,
+                format.isBatch(frameBuffer, 0));
+    }
+
+    /**
+     * 从第 fromIndex 条 record 开始，通过 {@link FileChannel#transferTo} 将原始 record 数据
+     * (包含 head) 直接写入 target，只传输完整的 record 且总大小不超过 maxBytes。
+     * target 需要是阻塞模式的 channel；v1 格式的 record 不包含长度，接收方无法自行切分
+     *
+     * @param target
+     * @param fromIndex
+     * @param maxBytes
+     * @return 传输的 record 条数
+     * @throws IOException
+     */
+    public int transferTo(@NotNull WritableByteChannel target, int fromIndex, int maxBytes) throws IOException {
+        int size = size();
+        if (fromIndex < 0 || fromIndex >= size) {
+            return 0;
+        }
+
+        long startOffset = metaDataSummary.getStartOffset(fromIndex);
+        int endIndex = fromIndex;
+        long bytesLength = 0;
+        while (endIndex < size) {
+            int frameLength = metaDataSummary.getFrameLength(endIndex);
+            if (bytesLength + frameLength > maxBytes) {
+                break;
+            }
+            bytesLength += frameLength;
+            endIndex++;
+        }
+
+        long position = startOffset;
+        long remaining = bytesLength;
+        while (remaining > 0) {
+            long transferSize = fileChannel.transferTo(position, remaining, target);
+            position += transferSize;
+            remaining -= transferSize;
+        }
+
+        return endIndex - fromIndex;
+    }
+
+    /**
+     * 按下标读取 record，不影响读指针
+     *
+     * @param index
+     * @return
+     */
+    public Record read(int index) {
+        return readRecord(index, false);
+    }
+
+    /**
+     * @param verify 是否校验 crc，只对 v3 / v4 格式有效，校验失败时抛出 {@link CorruptRecordException}
+     */
+    public Record read(int index, boolean verify) {
+        return readRecord(index, verify);
+    }
+
+    private Record readRecord(int index, boolean verify) {
+        long offset = metaDataSummary.getStartOffset(index);
+        int headLen = format.getHeadBytesLength();
+        int bodyLen = metaDataSummary.getFrameLength(index) - headLen;
 
         byte[] headBytes = new byte[headLen];
         byte[] bodyBytes = new byte[bodyLen];
         try {
-            fileChannel.read(ByteBuffer.wrap(headBytes), offset);
-            fileChannel.read(ByteBuffer.wrap(bodyBytes), offset + headLen);
+            readBuffer(ByteBuffer.wrap(headBytes), offset);
+            readBuffer(ByteBuffer.wrap(bodyBytes), offset + headLen);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        if (verify && !format.verify(headBytes, ByteBuffer.wrap(bodyBytes))) {
+            throw corruptRecord(offset);
+        }
+
+        long recordId = format.decodeRecordId(headBytes);
+        return new Record(recordId, bodyBytes, format.isBatch(headBytes));
+    }
+
+    protected CorruptRecordException corruptRecord(long startOffset) {
+        return new CorruptRecordException("file : " + file.getName() + " record at offset : " + startOffset
+                + " checksum mismatch.");
+    }
+
+    /**
+     * 从 offset 开始读满 buffer
+     */
+    protected void readBuffer(ByteBuffer buffer, long offset) throws IOException {
+        long position = offset;
+        while (buffer.hasRemaining()) {
+            int readSize = fileChannel.read(buffer, position);
+            if (readSize < 0) {
+                throw new IOException("file : " + file.getName() + " read end of stream at " + position);
+            }
+            position += readSize;
+        }
+    }
+
+    /**
+     * 按下标读取 record id，只读取 head
+     */
+    public long recordIdAt(int index) {
+        byte[] headBytes = new byte[format.getHeadBytesLength()];
+        try {
+            readBuffer(ByteBuffer.wrap(headBytes), metaDataSummary.getStartOffset(index));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return format.decodeRecordId(headBytes);
+    }
+
+    /**
+     * 按下标判断 record 是否为压缩的 record 批次，只读取 head
+     */
+    public boolean isBatchAt(int index) {
+        byte[] headBytes = new byte[format.getHeadBytesLength()];
+        try {
+            readBuffer(ByteBuffer.wrap(headBytes), metaDataSummary.getStartOffset(index));
         } catch (IOException e) {
-            throw new RuntimeException();
+            throw new RuntimeException(e);
+        }
+        return format.isBatch(headBytes);
+    }
+
+    /**
+     * 查找 record id 不小于 recordId 的第一条 record 的下标；
+     * 压缩过的文件中 record id 不连续，按二分查找，未压缩的文件直接计算
+     *
+     * @param recordId
+     * @return 所有 record id 都小于 recordId 时按之后追加的 record id 连续计算，不小于 size()，
+     * 超过 int 范围时返回 {@link Integer#MAX_VALUE}
+     */
+    public int indexOf(long recordId) {
+        int size = size();
+        if (size == 0) {
+            return 0;
+        }
+
+        long lastRecordId = recordIdAt(size - 1);
+        if (recordId > lastRecordId) {
+            return (int) Math.min(Integer.MAX_VALUE, size + recordId - lastRecordId - 1);
+        }
+        long firstRecordId = recordIdAt(0);
+        if (recordId <= firstRecordId) {
+            return 0;
+        }
+        if (lastRecordId - firstRecordId == size - 1) {
+            return (int) (recordId - firstRecordId);
         }
 
-        int recordId = BytesUtil.convertByteArrayToInt(headBytes);
-        return new Record(recordId, bodyBytes);
+        int low = 1;
+        int high = size - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (recordIdAt(mid) < recordId) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
     }
 
     public void resetMetaIndex(int newIndex) {
         metaDataSummary.resetReadIndex(newIndex);
     }
 
+    public int getCurrentReadIndex() {
+        return metaDataSummary.getCurrentReadIndex();
+    }
+
+    public int size() {
+        return metaDataSummary.size();
+    }
+
+    protected FileChannel getFileChannel() {
+        return fileChannel;
+    }
+
+    public int getBaseRecordOffset() {
+        return metaDataSummary.getBaseRecordOffset();
+    }
+
+    public long getWriteRecordOffset() {
+        return metaDataSummary.getWriteRecordOffset();
+    }
+
+    public long getSegmentBytes() {
+        return segmentBytes;
+    }
+
+    /**
+     * 索引占用的堆内存字节数
+     */
+    public long getIndexBytes() {
+        return metaDataSummary.getIndexBytes();
+    }
+
+    public SegmentFormat getFormat() {
+        return format;
+    }
+
+    /**
+     * 打开时占用的文件句柄个数，见 {@link SegmentFormat#getFileDescriptorCount()}
+     */
+    public int getFileDescriptorCount() {
+        return format.getFileDescriptorCount();
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * 关闭 channel 之前释放额外持有的资源
+     */
+    protected void releaseResources() throws IOException {
+    }
+
+    /**
+     * 先将 record 数据写入磁盘，再写入 meta 并写入磁盘
+     *
+     * @throws Exception
+     */
+    public void sync() throws Exception {
+        long writeRecordOffset = metaDataSummary.getWriteRecordOffset();
+        force();
+        metaDataSummary.markSynced(writeRecordOffset);
+        metaDataSummary.sync();
+    }
+
+    /**
+     * 将 record 数据写入磁盘
+     */
+    protected void force() throws IOException {
+        fileChannel.force(false);
+    }
+
+    /**
+     * 共用 FileRecords 时增加引用计数，每次成功的 retain 都需要对应一次 {@link #close()}
+     *
+     * @return 已经关闭时返回 false
+     */
+    public boolean retain() {
+        while (true) {
+            int count = refCount.get();
+            if (count <= 0) {
+                return false;
+            }
+            if (refCount.compareAndSet(count, count + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 当前的引用计数，为 0 时已经关闭
+     */
+    public int getRefCount() {
+        return refCount.get();
+    }
+
     @Override
     public void close() {
+        if (refCount.decrementAndGet() > 0) {
+            return;
+        }
+
         if (FileUtil.isLegalAccessChannel(fileChannel)) {
             try {
                 metaDataSummary.close();
+                releaseResources();
                 fileChannel.close();
             } catch (Exception e) {
                 LOGGER.error("close record file error.", e);
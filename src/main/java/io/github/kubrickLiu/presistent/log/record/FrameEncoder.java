@@ -0,0 +1,118 @@
+package io.github.kubrickLiu.presistent.log.record;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 写入方复用的编码缓冲区，将 record 的 head 与 body 编码为连续的 frame 之后一次写入。
+ * 使用直接内存，写入 FileChannel 时 JDK 不再拷贝到临时的直接内存；head 以绝对位置写入，
+ * 稳态下追加不分配对象。不是线程安全的，每个写入方持有一个
+ */
+public final class FrameEncoder {
+
+    /**
+     * 第一次编码时分配，64 KB
+     */
+    static final int INITIAL_CAPACITY = 64 * 1024;
+
+    /**
+     * 超过时不再扩容，1 MB；更大的 record 拷贝的代价远大于分配，按 head 与 body 两个 buffer 写入
+     */
+    static final int MAX_CAPACITY = 1024 * 1024;
+
+    private ByteBuffer frame;
+
+    /**
+     * 传给 gathering write 的数组，只包含 frame
+     */
+    private final ByteBuffer[] frames = new ByteBuffer[1];
+
+    /**
+     * 调用方的 buffer 不拷贝时单独编码 head，容量为所有格式中最长的 head
+     */
+    private ByteBuffer head;
+
+    /**
+     * 传给 gathering write 的数组，依次为 head 与调用方的 body
+     */
+    private final ByteBuffer[] headAndBody = new ByteBuffer[2];
+
+    /**
+     * frameLength 字节的 frame 是否可以编码到缓冲区中
+     */
+    public boolean fits(int frameLength) {
+        return frameLength <= MAX_CAPACITY;
+    }
+
+    /**
+     * 将 head 与 body 编码为一个 frame
+     *
+     * @param format
+     * @param recordId
+     * @param body
+     * @return 只包含 frame 的数组，frame 处于可读状态，下一次编码之前有效
+     */
+    ByteBuffer[] encode(@NotNull SegmentFormat format, long recordId, @NotNull byte[] body) {
+        int headBytesLength = format.getHeadBytesLength();
+        int frameLength = headBytesLength + body.length;
+        ensureCapacity(frameLength);
+
+        frame.clear();
+        frame.position(headBytesLength);
+        frame.put(body);
+
+        // body 部分用于计算 crc，head 以绝对位置写入 frame 的开头
+        frame.flip();
+        frame.position(headBytesLength);
+        format.encodeHead(recordId, frame, false, frame, 0);
+        frame.position(0);
+
+        frames[0] = frame;
+        return frames;
+    }
+
+    /**
+     * 只编码 head，与调用方的 body 一起写入，body 不拷贝
+     *
+     * @param format
+     * @param recordId
+     * @param body 计算 crc 期间移动 position，完成之后恢复
+     * @return head 与 body 组成的数组，写入之后需要调用 {@link #release()}
+     */
+    ByteBuffer[] encodeHead(@NotNull SegmentFormat format, long recordId, @NotNull ByteBuffer body) {
+        if (head == null) {
+            int maxHeadBytesLength = 0;
+            for (SegmentFormat segmentFormat : SegmentFormat.values()) {
+                maxHeadBytesLength = Math.max(maxHeadBytesLength, segmentFormat.getHeadBytesLength());
+            }
+            head = ByteBuffer.allocateDirect(maxHeadBytesLength);
+        }
+
+        head.clear();
+        head.limit(format.encodeHead(recordId, body, false, head, 0));
+
+        headAndBody[0] = head;
+        headAndBody[1] = body;
+        return headAndBody;
+    }
+
+    /**
+     * 写入之后释放对调用方 buffer 的引用
+     */
+    void release() {
+        headAndBody[1] = null;
+    }
+
+    private void ensureCapacity(int frameLength) {
+        if (frame != null && frame.capacity() >= frameLength) {
+            return;
+        }
+
+        int capacity = frame == null ? INITIAL_CAPACITY : frame.capacity();
+        while (capacity < frameLength) {
+            capacity <<= 1;
+        }
+        frame = ByteBuffer.allocateDirect(Math.min(capacity, MAX_CAPACITY));
+    }
+}
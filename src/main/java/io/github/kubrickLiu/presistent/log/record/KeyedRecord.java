@@ -0,0 +1,127 @@
+package io.github.kubrickLiu.presistent.log.record;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 开启压缩的 topic 中 record 内容的编码，record 文件的格式保持不变：
+ * key length --- 占用 4 B，-1 表示没有 key
+ * key --- 占用 ? B
+ * value length --- 占用 4 B，-1 表示删除标记 (tombstone)
+ * value --- 占用 ? B
+ *
+ * 没有 key 的 record 压缩时总是保留
+ */
+public final class KeyedRecord {
+
+    private static final int NULL_LENGTH = -1;
+
+    private final long id;
+
+    private final byte[] key;
+
+    private final byte[] value;
+
+    private KeyedRecord(long id, byte[] key, byte[] value) {
+        this.id = id;
+        this.key = key;
+        this.value = value;
+    }
+
+    /**
+     * 编码 record 内容
+     *
+     * @param key 为 null 时没有 key
+     * @param value 为 null 时表示删除 key
+     * @return
+     */
+    public static byte[] encode(@Nullable byte[] key, @Nullable byte[] value) {
+        if (key == null && value == null) {
+            throw new IllegalArgumentException("tombstone must have a key.");
+        }
+
+        int keyLength = key == null ? 0 : key.length;
+        int valueLength = value == null ? 0 : value.length;
+        ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES * 2 + keyLength + valueLength);
+
+        buffer.putInt(key == null ? NULL_LENGTH : key.length);
+        if (key != null) {
+            buffer.put(key);
+        }
+        buffer.putInt(value == null ? NULL_LENGTH : value.length);
+        if (value != null) {
+            buffer.put(value);
+        }
+        return buffer.array();
+    }
+
+    public static KeyedRecord decode(@NotNull Record record) {
+        ByteBuffer body = record.getBuffer();
+
+        byte[] key = readBytes(body);
+        byte[] value = readBytes(body);
+        return new KeyedRecord(record.getId(), key, value);
+    }
+
+    private static byte[] readBytes(ByteBuffer body) {
+        int length = body.getInt();
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+
+        byte[] bytes = new byte[length];
+        body.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * 获取 body 中 key 的只读视图，不拷贝 key
+     *
+     * @param body record 内容，position 不变
+     * @return 没有 key 时返回 null
+     */
+    public static ByteBuffer keyOf(@NotNull ByteBuffer body) {
+        int position = body.position();
+        int keyLength = body.getInt(position);
+        if (keyLength == NULL_LENGTH) {
+            return null;
+        }
+
+        ByteBuffer key = body.duplicate();
+        key.position(position + Integer.BYTES);
+        key.limit(position + Integer.BYTES + keyLength);
+        return key;
+    }
+
+    /**
+     * body 是否为删除标记，position 不变
+     */
+    public static boolean isTombstone(@NotNull ByteBuffer body) {
+        int position = body.position();
+        int keyLength = body.getInt(position);
+        int valuePosition = position + Integer.BYTES + (keyLength == NULL_LENGTH ? 0 : keyLength);
+        return body.getInt(valuePosition) == NULL_LENGTH;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public byte[] getKey() {
+        return key;
+    }
+
+    public byte[] getValue() {
+        return value;
+    }
+
+    public boolean hasKey() {
+        return key != null;
+    }
+
+    public boolean isTombstone() {
+        return value == null;
+    }
+}
@@ -0,0 +1,134 @@
+package io.github.kubrickLiu.presistent.log.record;
+
+import io.github.kubrickLiu.presistent.log.config.LogConfig;
+import io.github.kubrickLiu.presistent.log.util.BufferUtil;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * 通过 mmap 读写 record 文件，append 与 read 都是对映射区域的内存拷贝。
+ *
+ * 映射区域覆盖文件头以及 {@link LogConfig#getSegmentBytes()} 大小的 record 内容，
+ * 文件在映射期间会被扩展为稀疏文件，close 时解除映射并截断到实际写入的位置；
+ * 单个 {@link MappedByteBuffer} 不能超过 2 GB，映射区域超过 2 GB 时不能使用 mmap 打开
+ */
+public class MappedFileRecords extends FileRecords {
+
+    private MappedByteBuffer mappedBuffer;
+
+    private ByteBuffer writeBuffer;
+
+    public MappedFileRecords(@NotNull File file) throws Exception {
+        this(file, new LogConfig());
+    }
+
+    public MappedFileRecords(@NotNull File file, @NotNull LogConfig config) throws Exception {
+        super(file, config);
+
+        try {
+            long mappedSize = getBaseRecordOffset() + getSegmentBytes();
+            if (mappedSize > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("mapped size : " + mappedSize + " of file : " + file.getName()
+                        + " is over " + Integer.MAX_VALUE);
+            }
+            this.mappedBuffer = getFileChannel().map(FileChannel.MapMode.READ_WRITE, 0, mappedSize);
+            this.writeBuffer = mappedBuffer.duplicate();
+        } catch (Exception e) {
+            close();
+            throw e;
+        }
+    }
+
+    @Override
+    protected long writeBuffers(long baseOffset, ByteBuffer[] buffers) {
+        writeBuffer.clear();
+        writeBuffer.position((int) baseOffset);
+
+        long size = 0;
+        for (ByteBuffer buffer : buffers) {
+            size += buffer.remaining();
+            writeBuffer.put(buffer);
+        }
+        return size;
+    }
+
+    /**
+     * 每次写入使用独立的视图，多个线程可以同时写入映射区域中互不重叠的部分
+     */
+    @Override
+    protected long writeBuffersAt(long baseOffset, ByteBuffer[] buffers) {
+        ByteBuffer tmpBuffer = mappedBuffer.duplicate();
+        tmpBuffer.position((int) baseOffset);
+
+        long size = 0;
+        for (ByteBuffer buffer : buffers) {
+            size += buffer.remaining();
+            tmpBuffer.put(buffer);
+        }
+        return size;
+    }
+
+    /**
+     * 映射期间不能截断文件，将未登记的区域清零，恢复时扫描到长度为 0 的 record 即停止
+     */
+    @Override
+    public void discard(long fromOffset, long toOffset) {
+        for (int i = (int) fromOffset; i < toOffset; i++) {
+            mappedBuffer.put(i, (byte) 0);
+        }
+    }
+
+    /**
+     * 每次读取使用独立的视图，多个读取方可以同时读取
+     */
+    @Override
+    protected void readBuffer(ByteBuffer buffer, long offset) {
+        ByteBuffer tmpBuffer = mappedBuffer.duplicate();
+        tmpBuffer.position((int) offset);
+        tmpBuffer.limit((int) offset + buffer.remaining());
+        buffer.put(tmpBuffer);
+    }
+
+    /**
+     * 直接返回映射区域的只读视图，不做任何拷贝；
+     * 视图在 close 之后不能再访问
+     */
+    @Override
+    protected void readInto(long startOffset, int frameLength, RecordBuffer recordBuffer, boolean verify) {
+        int frameOffset = (int) startOffset;
+        if (verify && !getFormat().verify(mappedBuffer, frameOffset, frameLength)) {
+            throw corruptRecord(startOffset);
+        }
+
+        int headLen = getFormat().getHeadBytesLength();
+        long recordId = getFormat().decodeRecordId(mappedBuffer, frameOffset);
+
+        ByteBuffer view = recordBuffer.getMappedView(this, mappedBuffer);
+        recordBuffer.update(recordId, view, frameOffset + headLen, frameLength - headLen,
+                getFormat().isBatch(mappedBuffer, frameOffset));
+    }
+
+    @Override
+    protected void force() {
+        mappedBuffer.force();
+    }
+
+    @Override
+    protected void releaseResources() throws IOException {
+        if (mappedBuffer == null) {
+            return;
+        }
+
+        MappedByteBuffer tmpBuffer = mappedBuffer;
+        mappedBuffer = null;
+        writeBuffer = null;
+        BufferUtil.release(tmpBuffer);
+
+        getFileChannel().truncate(getWriteRecordOffset());
+    }
+}
@@ -1,21 +1,78 @@
 package io.github.kubrickLiu.presistent.log.record;
 
+import java.nio.ByteBuffer;
+
 public class Record {
 
-    private final int id;
+    private final long id;
+
+    private byte[] bytes;
+
+    private final ByteBuffer buffer;
+
+    /**
+     * 是否为压缩的 record 批次，见 {@link RecordBatch}
+     */
+    private final boolean batch;
 
-    private final byte[] bytes;
+    public Record(final long id, final byte[] bytes) {
+        this(id, bytes, false);
+    }
 
-    public Record(final int id, final byte[] bytes) {
+    public Record(final long id, final byte[] bytes, final boolean batch) {
         this.id = id;
         this.bytes = bytes;
+        this.buffer = null;
+        this.batch = batch;
+    }
+
+    /**
+     * 直接引用调用方的 buffer (position ~ limit)，写入时不会拷贝到堆上
+     */
+    public Record(final long id, final ByteBuffer buffer) {
+        this(id, buffer, false);
+    }
+
+    public Record(final long id, final ByteBuffer buffer, final boolean batch) {
+        this.id = id;
+        this.bytes = null;
+        this.buffer = buffer;
+        this.batch = batch;
     }
 
-    public int getId() {
+    public long getId() {
         return id;
     }
 
     public byte[] getBytes() {
+        if (bytes == null) {
+            ByteBuffer tmpBuffer = buffer.duplicate();
+            bytes = new byte[tmpBuffer.remaining()];
+            tmpBuffer.get(bytes);
+        }
         return bytes;
     }
+
+    /**
+     * 获取 body 的 buffer 视图，不影响 record 自身的 position
+     *
+     * @return
+     */
+    public ByteBuffer getBuffer() {
+        if (buffer != null) {
+            return buffer.duplicate();
+        }
+        return ByteBuffer.wrap(bytes);
+    }
+
+    public boolean isBatch() {
+        return batch;
+    }
+
+    public int getBytesLength() {
+        if (buffer != null) {
+            return buffer.remaining();
+        }
+        return bytes.length;
+    }
 }
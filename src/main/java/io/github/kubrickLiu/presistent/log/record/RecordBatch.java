@@ -0,0 +1,163 @@
+package io.github.kubrickLiu.presistent.log.record;
+
+import io.github.kubrickLiu.presistent.log.compress.CompressionCodec;
+import io.github.kubrickLiu.presistent.log.compress.CompressionCodecs;
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * 压缩的 record 批次，整批作为一条 frame 写入自描述格式的文件，
+ * frame 的 record id 为批次中最后一条 record 的 id，按 record id 查找 frame 时直接定位到包含该 record 的批次。
+ *
+ * 批次内容：
+ * codec id --- 占用 1 B
+ * record count --- 占用 4 B
+ * uncompressed length --- 占用 4 B
+ * compressed records --- 占用 ? B
+ *
+ * 解压之后每条 record：
+ * record id --- 占用 8 B
+ * length --- 占用 4 B
+ * data (record content) --- 占用 ? B
+ *
+ * 读取方持有一个实例，每次解压一个批次到复用的 buffer 中，再逐条读取
+ */
+public class RecordBatch {
+
+    private static final int BATCH_HEAD_BYTES_LENGTH = 1 + 2 * Integer.BYTES;
+
+    private static final int RECORD_HEAD_BYTES_LENGTH = Long.BYTES + Integer.BYTES;
+
+    private byte[] buffer = new byte[0];
+
+    private ByteBuffer view = ByteBuffer.wrap(buffer).asReadOnlyBuffer();
+
+    /**
+     * 交给 RecordBuffer 的视图，position 与 limit 由 RecordBuffer 修改
+     */
+    private ByteBuffer recordView = view.duplicate();
+
+    private CompressionCodec codec;
+
+    private int remaining;
+
+    private int position;
+
+    /**
+     * 将 records 压缩为一条 record，写入时按批次编码 frame head
+     *
+     * @param records 不能为空
+     * @param codec
+     * @return record id 为最后一条 record 的 id
+     */
+    public static Record encode(@NotNull List<Record> records, @NotNull CompressionCodec codec) {
+        int uncompressedLength = 0;
+        for (Record record : records) {
+            uncompressedLength += RECORD_HEAD_BYTES_LENGTH + record.getBytesLength();
+        }
+
+        ByteBuffer uncompressed = ByteBuffer.allocate(uncompressedLength);
+        for (Record record : records) {
+            uncompressed.putLong(record.getId());
+            uncompressed.putInt(record.getBytesLength());
+            uncompressed.put(record.getBuffer());
+        }
+
+        ByteBuffer compressed = codec.compress(uncompressed.array(), 0, uncompressedLength);
+        ByteBuffer body = ByteBuffer.allocate(BATCH_HEAD_BYTES_LENGTH + compressed.remaining());
+        body.put(codec.getId());
+        body.putInt(records.size());
+        body.putInt(uncompressedLength);
+        body.put(compressed);
+        body.flip();
+
+        return new Record(records.get(records.size() - 1).getId(), body, true);
+    }
+
+    /**
+     * 解压批次，之前未读完的 record 被丢弃
+     *
+     * @param body 批次 frame 的内容，position 不变，解压之后不再引用
+     */
+    public void load(@NotNull ByteBuffer body) {
+        int base = body.position();
+        codec = CompressionCodecs.get(body.get(base));
+        int count = body.getInt(base + 1);
+        int uncompressedLength = body.getInt(base + 1 + Integer.BYTES);
+
+        if (buffer.length < uncompressedLength) {
+            buffer = new byte[Math.max(uncompressedLength, buffer.length * 2)];
+            view = ByteBuffer.wrap(buffer).asReadOnlyBuffer();
+            recordView = view.duplicate();
+        }
+
+        ByteBuffer compressed = body.duplicate();
+        compressed.position(base + BATCH_HEAD_BYTES_LENGTH);
+        codec.decompress(compressed, buffer, uncompressedLength);
+
+        this.remaining = count;
+        this.position = 0;
+    }
+
+    public boolean hasNext() {
+        return remaining > 0;
+    }
+
+    /**
+     * 下一条 record 的 id，需要先调用 {@link #hasNext()}
+     */
+    public long peekRecordId() {
+        return view.getLong(position);
+    }
+
+    /**
+     * 跳过 record id 小于 recordId 的 record
+     */
+    public void skipTo(long recordId) {
+        while (hasNext() && peekRecordId() < recordId) {
+            position += RECORD_HEAD_BYTES_LENGTH + view.getInt(position + Long.BYTES);
+            remaining--;
+        }
+    }
+
+    /**
+     * 读取下一条 record 到 recordBuffer 中，body 为批次 buffer 的只读视图，在下一次 load 之前有效
+     */
+    public void next(@NotNull RecordBuffer recordBuffer) {
+        long recordId = peekRecordId();
+        int bodyLength = view.getInt(position + Long.BYTES);
+        recordBuffer.update(recordId, recordView, position + RECORD_HEAD_BYTES_LENGTH, bodyLength);
+
+        position += RECORD_HEAD_BYTES_LENGTH + bodyLength;
+        remaining--;
+    }
+
+    public Record nextRecord() {
+        long recordId = peekRecordId();
+        int bodyLength = view.getInt(position + Long.BYTES);
+
+        byte[] bytes = new byte[bodyLength];
+        System.arraycopy(buffer, position + RECORD_HEAD_BYTES_LENGTH, bytes, 0, bodyLength);
+
+        position += RECORD_HEAD_BYTES_LENGTH + bodyLength;
+        remaining--;
+        return new Record(recordId, bytes);
+    }
+
+    /**
+     * 最近一次解压的批次使用的压缩算法
+     */
+    public CompressionCodec getCodec() {
+        return codec;
+    }
+
+    /**
+     * 丢弃未读完的 record
+     */
+    public void clear() {
+        remaining = 0;
+        position = 0;
+    }
+}
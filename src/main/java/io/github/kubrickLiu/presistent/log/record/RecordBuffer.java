@@ -0,0 +1,94 @@
+package io.github.kubrickLiu.presistent.log.record;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 读取 record 时复用的 buffer，由 iterator 持有；
+ * body 为只读视图，只在下一次读取之前有效
+ */
+public class RecordBuffer {
+
+    private static final int DEFAULT_CAPACITY = 4 * 1024;
+
+    private long recordId;
+
+    private ByteBuffer body;
+
+    private boolean batch;
+
+    /**
+     * 通过 FileChannel 读取时使用的 direct buffer
+     */
+    private ByteBuffer frameBuffer;
+
+    private ByteBuffer frameView;
+
+    /**
+     * 通过 mmap 读取时使用的映射区域视图
+     */
+    private Object mappedOwner;
+
+    private ByteBuffer mappedView;
+
+    /**
+     * 获取容量不小于 length 的 buffer，position 为 0，limit 为 length
+     */
+    protected ByteBuffer prepareFrameBuffer(int length) {
+        if (frameBuffer == null || frameBuffer.capacity() < length) {
+            int capacity = DEFAULT_CAPACITY;
+            while (capacity < length) {
+                capacity <<= 1;
+            }
+            frameBuffer = ByteBuffer.allocateDirect(capacity);
+            frameView = frameBuffer.asReadOnlyBuffer();
+        }
+
+        frameBuffer.clear();
+        frameBuffer.limit(length);
+        return frameBuffer;
+    }
+
+    protected ByteBuffer getFrameView() {
+        return frameView;
+    }
+
+    /**
+     * 同一个映射区域只创建一次只读视图
+     */
+    protected ByteBuffer getMappedView(Object owner, ByteBuffer mappedBuffer) {
+        if (mappedOwner != owner) {
+            mappedOwner = owner;
+            mappedView = mappedBuffer.asReadOnlyBuffer();
+        }
+        return mappedView;
+    }
+
+    protected void update(long recordId, ByteBuffer view, int bodyOffset, int bodyLength) {
+        update(recordId, view, bodyOffset, bodyLength, false);
+    }
+
+    protected void update(long recordId, ByteBuffer view, int bodyOffset, int bodyLength, boolean batch) {
+        view.clear();
+        view.position(bodyOffset);
+        view.limit(bodyOffset + bodyLength);
+
+        this.recordId = recordId;
+        this.body = view;
+        this.batch = batch;
+    }
+
+    public long getRecordId() {
+        return recordId;
+    }
+
+    public ByteBuffer getBody() {
+        return body;
+    }
+
+    /**
+     * 读取的是否为压缩的 record 批次，批次需要通过 {@link RecordBatch} 解压
+     */
+    public boolean isBatch() {
+        return batch;
+    }
+}
@@ -1,11 +1,14 @@
 package io.github.kubrickLiu.presistent.log.record;
 
+import java.nio.ByteBuffer;
 import java.util.Iterator;
 
 public class RecordsIterator implements Iterator<Record> {
 
     private final FileRecords fileRecords;
 
+    private final RecordBuffer recordBuffer = new RecordBuffer();
+
     protected RecordsIterator(FileRecords fileRecords) {
         this.fileRecords = fileRecords;
     }
@@ -20,6 +23,26 @@ public class RecordsIterator implements Iterator<Record> {
         return fileRecords.makeNext();
     }
 
+    /**
+     * 读取下一条 record 的 body 只读视图，不分配新的 byte[]；
+     * 视图在下一次读取之前有效
+     *
+     * @return 没有 record 时返回 null
+     */
+    public ByteBuffer nextBuffer() {
+        if (!fileRecords.makeNext(recordBuffer)) {
+            return null;
+        }
+        return recordBuffer.getBody();
+    }
+
+    /**
+     * 获取最近一次 {@link #nextBuffer()} 读取的 record id
+     */
+    public long getLastRecordId() {
+        return recordBuffer.getRecordId();
+    }
+
     public void reset(int newIndex) {
         fileRecords.resetMetaIndex(newIndex);
     }
@@ -0,0 +1,413 @@
+package io.github.kubrickLiu.presistent.log.record;
+
+import io.github.kubrickLiu.presistent.log.config.LogConfig;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 已写满的 record 文件的 LRU 缓存，读取方在文件之间来回切换时不需要重新打开文件和恢复 meta。
+ *
+ * 缓存自身持有每个 FileRecords 的一次引用，{@link #acquire(File, LogConfig)} 再为调用方增加一次，
+ * 调用方使用完之后调用 close 释放；超过 maxOpenSegments、文件句柄超过 maxOpenFiles
+ * 或者索引占用的内存超过 maxIndexBytes 时淘汰最久未使用的文件，仍在使用中的文件在最后一个调用方释放时才真正关闭。
+ * 每个文件占用的文件句柄个数由 {@link FileRecords#getFileDescriptorCount()} 按格式计算。
+ *
+ * 淘汰时仍在使用中的文件继续占用文件句柄，在关闭之前与缓存中的文件一起计入 maxOpenSegments 与 maxOpenFiles，
+ * 再次 acquire 时直接使用这个文件，不会打开同一个文件的第二份；
+ * 使用中的文件不能关闭，只有它们已经超过 maxOpenSegments 时缓存中仍然保留最近使用的一个文件。
+ *
+ * 多个 topic 可以共用同一个缓存，文件句柄与索引内存按所有 topic 统一限制
+ */
+public class SegmentCache implements AutoCloseable {
+
+    private final int maxOpenSegments;
+
+    /**
+     * 缓存中所有文件占用的文件句柄个数上限，小于 0 表示不限制
+     */
+    private final int maxOpenFiles;
+
+    /**
+     * 缓存中所有文件的索引占用的内存字节数上限，小于 0 表示不限制
+     */
+    private final long maxIndexBytes;
+
+    private final LinkedHashMap<String, FileRecords> segments = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * 放入缓存时每个文件的索引字节数，淘汰时按放入时的值扣除
+     */
+    private final Map<String, Long> segmentIndexBytes = new HashMap<>();
+
+    /**
+     * 已经淘汰但调用方仍在使用的文件，缓存不再持有引用，最后一个调用方释放之后移除
+     */
+    private final Map<String, FileRecords> pinnedSegments = new HashMap<>();
+
+    private long indexBytes;
+
+    /**
+     * 共用缓存的 topic 在缓存之外打开的文件句柄个数，如当前写文件与 summary 文件，与缓存中的文件一起计入 maxOpenFiles
+     */
+    private int reservedFiles;
+
+    private long hitCount;
+
+    private long missCount;
+
+    private boolean closed;
+
+    public SegmentCache(int maxOpenSegments) {
+        this(maxOpenSegments, -1);
+    }
+
+    public SegmentCache(int maxOpenSegments, long maxIndexBytes) {
+        this(maxOpenSegments, -1, maxIndexBytes);
+    }
+
+    /**
+     * @param maxOpenSegments
+     * @param maxOpenFiles 小于 0 表示不限制
+     * @param maxIndexBytes 小于 0 表示不限制；单个文件的索引超过上限时仍然缓存最近使用的一个文件
+     */
+    public SegmentCache(int maxOpenSegments, int maxOpenFiles, long maxIndexBytes) {
+        if (maxOpenSegments <= 0) {
+            throw new IllegalArgumentException("maxOpenSegments must be positive : " + maxOpenSegments);
+        }
+        if (maxOpenFiles == 0) {
+            throw new IllegalArgumentException("maxOpenFiles must not be zero.");
+        }
+        this.maxOpenSegments = maxOpenSegments;
+        this.maxOpenFiles = maxOpenFiles;
+        this.maxIndexBytes = maxIndexBytes;
+    }
+
+    /**
+     * 获取 record 文件，不在缓存中时打开并放入缓存
+     *
+     * @param file
+     * @param config
+     * @return 已经 retain 的 FileRecords，使用完之后需要调用 close 释放
+     * @throws Exception
+     */
+    public FileRecords acquire(@NotNull File file, @NotNull LogConfig config) throws Exception {
+        String key = file.getAbsolutePath();
+        List<FileRecords> evicted = new ArrayList<>();
+        try {
+            synchronized (this) {
+                FileRecords fileRecords = retainOpened(key, evicted);
+                if (fileRecords != null) {
+                    hitCount++;
+                    return fileRecords;
+                }
+                missCount++;
+            }
+
+            // 在锁外打开文件与恢复 meta，不阻塞其他读取方命中缓存；其他读取方已经打开时使用已打开的文件
+            FileRecords opened = new FileRecords(file, config);
+            synchronized (this) {
+                FileRecords fileRecords = retainOpened(key, evicted);
+                if (fileRecords != null) {
+                    evicted.add(opened);
+                    return fileRecords;
+                }
+
+                opened.retain();
+                putLocked(key, opened, evicted);
+                return opened;
+            }
+        } finally {
+            for (FileRecords evictedRecords : evicted) {
+                evictedRecords.close();
+            }
+        }
+    }
+
+    /**
+     * 为调用方 retain 缓存中的文件；已经淘汰但仍在使用的文件重新放入缓存，由缓存再持有一次引用
+     *
+     * @return 没有打开时返回 null
+     */
+    private FileRecords retainOpened(String key, List<FileRecords> evicted) {
+        FileRecords fileRecords = segments.get(key);
+        if (fileRecords != null && fileRecords.retain()) {
+            return fileRecords;
+        }
+
+        fileRecords = pinnedSegments.remove(key);
+        if (fileRecords != null && fileRecords.retain()) {
+            fileRecords.retain();
+            putLocked(key, fileRecords, evicted);
+            return fileRecords;
+        }
+        return null;
+    }
+
+    /**
+     * 将调用方持有的一次引用交给缓存，用于写入方滚动之后保留刚写满的文件
+     *
+     * @param fileRecords
+     */
+    public void release(@NotNull FileRecords fileRecords) {
+        put(fileRecords.getFile().getAbsolutePath(), fileRecords);
+    }
+
+    private void put(String key, FileRecords fileRecords) {
+        List<FileRecords> evicted = new ArrayList<>();
+        synchronized (this) {
+            putLocked(key, fileRecords, evicted);
+        }
+
+        for (FileRecords evictedRecords : evicted) {
+            evictedRecords.close();
+        }
+    }
+
+    /**
+     * 放入缓存并淘汰超出限制的文件，需要释放的引用加入 evicted，由调用方在锁外释放
+     */
+    private void putLocked(String key, FileRecords fileRecords, List<FileRecords> evicted) {
+        if (closed) {
+            evicted.add(fileRecords);
+            return;
+        }
+
+        long bytes = fileRecords.getIndexBytes();
+        FileRecords previous = segments.put(key, fileRecords);
+        if (previous != null && previous != fileRecords) {
+            evicted.add(previous);
+        }
+        pinnedSegments.remove(key);
+        Long previousBytes = segmentIndexBytes.put(key, bytes);
+        indexBytes += bytes - (previousBytes == null ? 0 : previousBytes);
+
+        evictLocked(evicted);
+    }
+
+    /**
+     * 淘汰超出限制的文件，需要释放的引用加入 evicted，由调用方在锁外释放
+     */
+    private void evictLocked(List<FileRecords> evicted) {
+        removeClosedPinnedSegments();
+        int openFiles = openFileCount() + reservedFiles;
+        Iterator<Map.Entry<String, FileRecords>> iterator = segments.entrySet().iterator();
+        while ((segments.size() + pinnedSegments.size() > maxOpenSegments
+                || (maxOpenFiles >= 0 && openFiles > maxOpenFiles)
+                || (maxIndexBytes >= 0 && indexBytes > maxIndexBytes))
+                && segments.size() > 1 && iterator.hasNext()) {
+            Map.Entry<String, FileRecords> entry = iterator.next();
+            FileRecords evictedRecords = entry.getValue();
+            // 除了缓存之外还有调用方持有时仍然占用文件句柄
+            if (evictedRecords.getRefCount() > 1) {
+                pinnedSegments.put(entry.getKey(), evictedRecords);
+            } else {
+                openFiles -= evictedRecords.getFileDescriptorCount();
+            }
+            evicted.add(evictedRecords);
+            indexBytes -= segmentIndexBytes.remove(entry.getKey());
+            iterator.remove();
+        }
+    }
+
+    /**
+     * 在 maxOpenFiles 中为缓存之外打开的文件预留句柄，并淘汰超出限制的文件
+     *
+     * @param count
+     * @return 预留之后超过 maxOpenFiles 时不预留并返回 false
+     */
+    public boolean reserveFileDescriptors(int count) {
+        List<FileRecords> evicted = new ArrayList<>();
+        synchronized (this) {
+            if (maxOpenFiles >= 0 && reservedFiles + count > maxOpenFiles) {
+                return false;
+            }
+            reservedFiles += count;
+            evictLocked(evicted);
+        }
+
+        for (FileRecords evictedRecords : evicted) {
+            evictedRecords.close();
+        }
+        return true;
+    }
+
+    /**
+     * 释放 {@link #reserveFileDescriptors(int)} 预留的句柄
+     *
+     * @param count
+     */
+    public synchronized void releaseFileDescriptors(int count) {
+        reservedFiles -= count;
+    }
+
+    /**
+     * 缓存中的文件与已经淘汰但仍在使用的文件占用的文件句柄个数
+     */
+    private int openFileCount() {
+        int openFiles = 0;
+        for (FileRecords fileRecords : segments.values()) {
+            openFiles += fileRecords.getFileDescriptorCount();
+        }
+        for (FileRecords fileRecords : pinnedSegments.values()) {
+            openFiles += fileRecords.getFileDescriptorCount();
+        }
+        return openFiles;
+    }
+
+    /**
+     * 移除最后一个调用方已经释放的文件
+     */
+    private void removeClosedPinnedSegments() {
+        pinnedSegments.values().removeIf(fileRecords -> fileRecords.getRefCount() <= 0);
+    }
+
+    /**
+     * 从缓存中移除 record 文件并释放缓存持有的引用，删除文件之前调用
+     *
+     * @param file
+     */
+    public void invalidate(@NotNull File file) {
+        FileRecords fileRecords;
+        synchronized (this) {
+            pinnedSegments.remove(file.getAbsolutePath());
+            fileRecords = remove(file.getAbsolutePath());
+        }
+
+        if (fileRecords != null) {
+            fileRecords.close();
+        }
+    }
+
+    /**
+     * 移除目录下的所有 record 文件并释放缓存持有的引用，用于共用缓存的 topic 关闭时
+     *
+     * @param dir
+     */
+    public void invalidateAll(@NotNull File dir) {
+        File absoluteDir = dir.getAbsoluteFile();
+        List<FileRecords> evicted = new ArrayList<>();
+        synchronized (this) {
+            for (String key : new ArrayList<>(segments.keySet())) {
+                if (absoluteDir.equals(new File(key).getParentFile())) {
+                    evicted.add(remove(key));
+                }
+            }
+            pinnedSegments.keySet().removeIf(key -> absoluteDir.equals(new File(key).getParentFile()));
+        }
+
+        for (FileRecords fileRecords : evicted) {
+            fileRecords.close();
+        }
+    }
+
+    private FileRecords remove(String key) {
+        FileRecords fileRecords = segments.remove(key);
+        Long bytes = segmentIndexBytes.remove(key);
+        if (bytes != null) {
+            indexBytes -= bytes;
+        }
+        return fileRecords;
+    }
+
+    public synchronized int size() {
+        return segments.size();
+    }
+
+    /**
+     * 缓存中的文件与已经淘汰但仍在使用的文件个数之和，即计入 maxOpenSegments 的文件个数
+     */
+    public synchronized int getOpenCount() {
+        removeClosedPinnedSegments();
+        return segments.size() + pinnedSegments.size();
+    }
+
+    /**
+     * 缓存中的文件与已经淘汰但仍在使用的文件占用的文件句柄个数加上预留的句柄个数，即计入 maxOpenFiles 的句柄个数
+     */
+    public synchronized int getOpenFileCount() {
+        removeClosedPinnedSegments();
+        return openFileCount() + reservedFiles;
+    }
+
+    public synchronized int getReservedFileCount() {
+        return reservedFiles;
+    }
+
+    /**
+     * 属于目录 dir 的打开的文件个数，包括已经淘汰但仍在使用的文件，用于共用缓存时统计单个 topic 打开的文件
+     *
+     * @param dir
+     * @return
+     */
+    public synchronized int size(@NotNull File dir) {
+        removeClosedPinnedSegments();
+        File absoluteDir = dir.getAbsoluteFile();
+        int count = 0;
+        for (String key : segments.keySet()) {
+            if (absoluteDir.equals(new File(key).getParentFile())) {
+                count++;
+            }
+        }
+        for (String key : pinnedSegments.keySet()) {
+            if (absoluteDir.equals(new File(key).getParentFile())) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public int getMaxOpenSegments() {
+        return maxOpenSegments;
+    }
+
+    public int getMaxOpenFiles() {
+        return maxOpenFiles;
+    }
+
+    public long getMaxIndexBytes() {
+        return maxIndexBytes;
+    }
+
+    /**
+     * 缓存中所有文件的索引占用的内存字节数
+     */
+    public synchronized long getIndexBytes() {
+        return indexBytes;
+    }
+
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * 释放缓存持有的所有引用，之后放入的文件直接释放
+     */
+    @Override
+    public void close() {
+        List<FileRecords> evicted;
+        synchronized (this) {
+            closed = true;
+            evicted = new ArrayList<>(segments.values());
+            segments.clear();
+            segmentIndexBytes.clear();
+            pinnedSegments.clear();
+            indexBytes = 0;
+            reservedFiles = 0;
+        }
+
+        for (FileRecords fileRecords : evicted) {
+            fileRecords.close();
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package io.github.kubrickLiu.presistent.log.record;
+
+import io.github.kubrickLiu.presistent.log.util.Crc32c;
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.ByteBuffer;
+
+/**
+ * record 文件格式
+ */
+public enum SegmentFormat {
+
+    /**
+     * head (record id) --- 占用 4 B
+     * data (record content) --- 占用 ? B
+     * 每条 record 的 offset 单独保存在 .meta 文件中
+     */
+    V1(1, Integer.BYTES, Integer.BYTES),
+
+    /**
+     * length (head + data) --- 占用 4 B
+     * head (record id) --- 占用 4 B
+     * data (record content) --- 占用 ? B
+     * 文件自描述，索引通过扫描 record 文件重建
+     */
+    V2(2, 2 * Integer.BYTES, Integer.BYTES),
+
+    /**
+     * length (head + data) --- 占用 4 B
+     * crc (record id + data 的 CRC32C) --- 占用 4 B
+     * head (record id) --- 占用 4 B
+     * data (record content) --- 占用 ? B
+     * 同 v2，恢复时校验尚未写入磁盘的 record，截断到第一条校验失败的 record
+     */
+    V3(3, 3 * Integer.BYTES, Integer.BYTES),
+
+    /**
+     * length (head + data) --- 占用 4 B
+     * crc (record id + data 的 CRC32C) --- 占用 4 B
+     * head (record id) --- 占用 8 B
+     * data (record content) --- 占用 ? B
+     * 同 v3，record id 与文件 offset 都是 64 位，文件大小不再受 2 GB 限制
+     */
+    V4(4, 2 * Integer.BYTES + Long.BYTES, Long.BYTES);
+
+    /**
+     * v2 / v3 / v4 length 的最高位，标记 frame 为压缩的 record 批次，见 {@link RecordBatch}
+     */
+    public static final int BATCH_FLAG = 0x80000000;
+
+    /**
+     * 文件头中的版本号，v1 没有文件头
+     */
+    private final int version;
+
+    private final int headBytesLength;
+
+    private final int recordIdBytesLength;
+
+    SegmentFormat(int version, int headBytesLength, int recordIdBytesLength) {
+        this.version = version;
+        this.headBytesLength = headBytesLength;
+        this.recordIdBytesLength = recordIdBytesLength;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public int getHeadBytesLength() {
+        return headBytesLength;
+    }
+
+    /**
+     * 是否带有 length 的自描述格式，即 v2 / v3 / v4
+     */
+    public boolean isSelfDescribing() {
+        return this != V1;
+    }
+
+    public boolean hasChecksum() {
+        return this == V3 || this == V4;
+    }
+
+    /**
+     * 能够保存的最大 record id，v4 之前的格式 record id 只占用 4 B
+     */
+    public long getMaxRecordId() {
+        return recordIdBytesLength == Long.BYTES ? Long.MAX_VALUE : Integer.MAX_VALUE;
+    }
+
+    /**
+     * record 文件的最大字节数，v4 之前的格式 offset 只占用 4 B
+     */
+    public long getMaxFileBytes() {
+        return this == V4 ? Long.MAX_VALUE : Integer.MAX_VALUE;
+    }
+
+    /**
+     * 打开这个格式的 record 文件占用的文件句柄个数：v1 另外打开 .meta 文件，其他格式只有数据文件
+     */
+    public int getFileDescriptorCount() {
+        return this == V1 ? 2 : 1;
+    }
+
+    /**
+     * 按文件头中的版本号查找自描述格式
+     *
+     * @return 不是自描述格式时返回 null
+     */
+    public static SegmentFormat ofVersion(int version) {
+        for (SegmentFormat format : values()) {
+            if (format.isSelfDescribing() && format.version == version) {
+                return format;
+            }
+        }
+        return null;
+    }
+
+    public byte[] encodeHead(long recordId, @NotNull ByteBuffer body) {
+        return encodeHead(recordId, body, false);
+    }
+
+    /**
+     * @param recordId 不能超过 {@link #getMaxRecordId()}
+     * @param body 不修改 position，v3 / v4 格式按 body 计算 crc
+     * @param batch 是否为压缩的 record 批次，只有自描述格式支持
+     */
+    public byte[] encodeHead(long recordId, @NotNull ByteBuffer body, boolean batch) {
+        ByteBuffer headBuffer = ByteBuffer.allocate(headBytesLength);
+        encodeHead(recordId, body.duplicate(), batch, headBuffer, 0);
+        return headBuffer.array();
+    }
+
+    /**
+     * 同 {@link #encodeHead(long, ByteBuffer, boolean)}，以绝对位置写入 target 中 index 开始的
+     * {@link #getHeadBytesLength()} 个字节，不修改 target 的 position，不分配对象
+     *
+     * @param body 计算 crc 期间移动 position，完成之后恢复，需要由调用方独占
+     * @return head 的字节数
+     */
+    public int encodeHead(long recordId, @NotNull ByteBuffer body, boolean batch,
+                          @NotNull ByteBuffer target, int index) {
+        if (recordId > getMaxRecordId()) {
+            throw new IllegalArgumentException("record id : " + recordId + " is over " + this + " limit.");
+        }
+
+        if (this == V1) {
+            if (batch) {
+                throw new IllegalArgumentException("record batch is not supported by " + this);
+            }
+            target.putInt(index, (int) recordId);
+            return headBytesLength;
+        }
+
+        int length = headBytesLength + body.remaining();
+        target.putInt(index, batch ? length | BATCH_FLAG : length);
+        int recordIdIndex = index + Integer.BYTES;
+        if (hasChecksum()) {
+            target.putInt(recordIdIndex, recordIdBytesLength == Long.BYTES
+                    ? Crc32c.checksumInPlace(recordId, body) : Crc32c.checksumInPlace((int) recordId, body));
+            recordIdIndex += Integer.BYTES;
+        }
+        if (recordIdBytesLength == Long.BYTES) {
+            target.putLong(recordIdIndex, recordId);
+        } else {
+            target.putInt(recordIdIndex, (int) recordId);
+        }
+        return headBytesLength;
+    }
+
+    public long decodeRecordId(byte[] headBytes) {
+        return decodeRecordId(ByteBuffer.wrap(headBytes), 0);
+    }
+
+    public boolean isBatch(byte[] headBytes) {
+        return isSelfDescribing() && (headBytes[0] & 0x80) != 0;
+    }
+
+    /**
+     * 从 frameOffset 开始的 record 是否为压缩的 record 批次
+     */
+    public boolean isBatch(ByteBuffer buffer, int frameOffset) {
+        return isSelfDescribing() && (buffer.getInt(frameOffset) & BATCH_FLAG) != 0;
+    }
+
+    /**
+     * 校验 head 与 body 是否一致，没有 crc 的格式总是返回 true
+     */
+    public boolean verify(byte[] headBytes, @NotNull ByteBuffer body) {
+        if (!hasChecksum()) {
+            return true;
+        }
+
+        ByteBuffer headBuffer = ByteBuffer.wrap(headBytes);
+        return headBuffer.getInt(Integer.BYTES) == checksum(decodeRecordId(headBytes), body);
+    }
+
+    /**
+     * 校验从 frameOffset 开始、长度为 frameLength 的 record，没有 crc 的格式总是返回 true
+     */
+    public boolean verify(@NotNull ByteBuffer buffer, int frameOffset, int frameLength) {
+        if (!hasChecksum()) {
+            return true;
+        }
+
+        ByteBuffer body = buffer.duplicate();
+        body.limit(frameOffset + frameLength);
+        body.position(frameOffset + headBytesLength);
+        return buffer.getInt(frameOffset + Integer.BYTES) == checksum(decodeRecordId(buffer, frameOffset), body);
+    }
+
+    private int checksum(long recordId, ByteBuffer body) {
+        return recordIdBytesLength == Long.BYTES
+                ? Crc32c.checksum(recordId, body) : Crc32c.checksum((int) recordId, body);
+    }
+
+    /**
+     * 去掉 length 中的标记位
+     */
+    public static int decodeFrameLength(int length) {
+        return length & ~BATCH_FLAG;
+    }
+
+    /**
+     * 从 frameOffset 开始的 record 中读取 record id
+     */
+    public long decodeRecordId(ByteBuffer buffer, int frameOffset) {
+        int position = frameOffset + headBytesLength - recordIdBytesLength;
+        return recordIdBytesLength == Long.BYTES ? buffer.getLong(position) : buffer.getInt(position);
+    }
+}
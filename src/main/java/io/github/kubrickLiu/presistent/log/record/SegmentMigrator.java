@@ -0,0 +1,115 @@
+package io.github.kubrickLiu.presistent.log.record;
+
+import io.github.kubrickLiu.presistent.log.meta.RecordMetaSummary;
+import io.github.kubrickLiu.presistent.log.meta.SegmentMetaSummary;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 将 v1 格式 (record 文件 + .meta 文件) 的 record 文件迁移为自描述格式
+ */
+public class SegmentMigrator {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SegmentMigrator.class);
+
+    public static final String MIGRATING_SUFFIX = ".migrating";
+
+    private SegmentMigrator() {}
+
+    /**
+     * 迁移为 v2 格式
+     */
+    public static boolean migrate(@NotNull File file) throws Exception {
+        return migrate(file, SegmentFormat.V2);
+    }
+
+    /**
+     * 先写出完整的临时文件，再原子替换原文件，最后删除 .meta 文件；
+     * 任意一步中断都不会丢失数据
+     *
+     * @param file v1 格式的 record 文件
+     * @param format 迁移之后的格式，v2 / v3 / v4
+     * @return 是否发生了迁移
+     * @throws Exception
+     */
+    public static boolean migrate(@NotNull File file, @NotNull SegmentFormat format) throws Exception {
+        return migrateContentBytes(file, format) >= 0;
+    }
+
+    /**
+     * 同 {@link #migrate(File, SegmentFormat)}，topic 迁移之后需要按新的内容字节数更新 meta
+     *
+     * @return 迁移之后的内容字节数，没有发生迁移时返回 -1
+     * @throws Exception
+     */
+    public static long migrateContentBytes(@NotNull File file, @NotNull SegmentFormat format) throws Exception {
+        if (!format.isSelfDescribing()) {
+            throw new IllegalArgumentException("can not migrate record file to " + format);
+        }
+
+        File metaFile = new File(file.getAbsolutePath() + RecordMetaSummary.META_SUFFIX);
+        if (!file.exists() || !metaFile.exists()) {
+            return -1;
+        }
+
+        File tmpFile = new File(file.getAbsolutePath() + MIGRATING_SUFFIX);
+        Files.deleteIfExists(tmpFile.toPath());
+
+        long contentBytesLength;
+        try (FileRecords legacyRecords = new FileRecords(file)) {
+            if (legacyRecords.getFormat() != SegmentFormat.V1) {
+                return -1;
+            }
+            contentBytesLength = writeSegment(legacyRecords, tmpFile, format);
+        }
+
+        Files.move(tmpFile.toPath(), file.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        Files.deleteIfExists(metaFile.toPath());
+
+        LOGGER.info("migrate record file : {} to {}", file.getName(), format);
+        return contentBytesLength;
+    }
+
+    /**
+     * @return 写入的内容字节数，不包括文件头
+     */
+    private static long writeSegment(FileRecords legacyRecords, File tmpFile, SegmentFormat format)
+            throws IOException {
+        try (FileChannel channel = FileChannel.open(tmpFile.toPath(),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            long offset = SegmentMetaSummary.baseOffsetOf(format);
+            channel.position(offset);
+
+            int size = legacyRecords.size();
+            for (int i = 0; i < size; i++) {
+                Record record = legacyRecords.read(i);
+                ByteBuffer bodyBuffer = record.getBuffer();
+                ByteBuffer[] buffers = new ByteBuffer[]{
+                        ByteBuffer.wrap(format.encodeHead(record.getId(), bodyBuffer)), bodyBuffer};
+
+                while (buffers[1].hasRemaining()) {
+                    offset += channel.write(buffers);
+                }
+            }
+
+            int readIndex = Math.min(legacyRecords.getCurrentReadIndex(), size);
+            ByteBuffer headerBuffer = SegmentMetaSummary.encodeHeader(format, readIndex, offset);
+            while (headerBuffer.hasRemaining()) {
+                channel.write(headerBuffer, headerBuffer.position());
+            }
+
+            channel.force(true);
+            return offset - SegmentMetaSummary.baseOffsetOf(format);
+        }
+    }
+}
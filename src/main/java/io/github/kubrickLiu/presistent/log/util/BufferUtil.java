@@ -0,0 +1,68 @@
+package io.github.kubrickLiu.presistent.log.util;
+
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+
+public class BufferUtil {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BufferUtil.class);
+
+    /**
+     * JDK 9+ : sun.misc.Unsafe#invokeCleaner
+     */
+    private static final Object UNSAFE;
+
+    private static final Method INVOKE_CLEANER;
+
+    static {
+        Object unsafe = null;
+        Method invokeCleaner = null;
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            unsafe = field.get(null);
+        } catch (Exception e) {
+            invokeCleaner = null;
+        }
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+    }
+
+    /**
+     * 立即释放 direct buffer / mapped buffer 占用的内存，不等待 GC；
+     * 释放后不能再访问该 buffer 及其任何视图
+     *
+     * @param buffer
+     */
+    public static void release(@NotNull ByteBuffer buffer) {
+        if (!buffer.isDirect()) {
+            return;
+        }
+
+        try {
+            if (INVOKE_CLEANER != null) {
+                INVOKE_CLEANER.invoke(UNSAFE, buffer);
+                return;
+            }
+
+            // JDK 8 : sun.nio.ch.DirectBuffer#cleaner().clean()
+            Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+            cleanerMethod.setAccessible(true);
+            Object cleaner = cleanerMethod.invoke(buffer);
+            if (cleaner != null) {
+                Method cleanMethod = cleaner.getClass().getMethod("clean");
+                cleanMethod.setAccessible(true);
+                cleanMethod.invoke(cleaner);
+            }
+        } catch (Exception e) {
+            LOGGER.warn("release direct buffer error, wait for gc.", e);
+        }
+    }
+}
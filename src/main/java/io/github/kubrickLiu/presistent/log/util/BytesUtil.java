@@ -20,6 +20,24 @@ public class BytesUtil {
         return value;
     }
 
+    public static byte[] convertLongToByteArray(long value) {
+        byte[] bytes = new byte[Long.BYTES];
+        int length = bytes.length;
+        for (int i = 0; i < length; i++) {
+            bytes[length - i - 1] = (byte) (value & 0xFF);
+            value >>= 8;
+        }
+        return bytes;
+    }
+
+    public static long convertByteArrayToLong(byte[] bytes) {
+        long value = 0;
+        for (byte b : bytes) {
+            value = (value << 8) + (b & 0xFF);
+        }
+        return value;
+    }
+
     public static byte[] convertCharArrayToByteArray(char[] chars) {
         byte[] bytes = new byte[chars.length];
         for (int i = 0 ; i < chars.length ; i++) {
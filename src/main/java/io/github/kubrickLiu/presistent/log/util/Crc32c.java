@@ -0,0 +1,174 @@
+package io.github.kubrickLiu.presistent.log.util;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.ByteBuffer;
+import java.util.zip.Checksum;
+
+/**
+ * CRC32C (Castagnoli)，JDK 9+ 使用 java.util.zip.CRC32C (硬件指令加速)，JDK 8 使用查表实现
+ */
+public final class Crc32c implements Checksum {
+
+    /**
+     * 反转的 Castagnoli 多项式
+     */
+    private static final int POLYNOMIAL = 0x82F63B78;
+
+    private static final int[] TABLE = new int[256];
+
+    /**
+     * JDK 9+ : java.util.zip.CRC32C#CRC32C()
+     */
+    private static final MethodHandle CONSTRUCTOR;
+
+    /**
+     * JDK 9+ : java.util.zip.Checksum#update(ByteBuffer)
+     */
+    private static final MethodHandle UPDATE_BUFFER;
+
+    private static final ThreadLocal<Checksum> CHECKSUMS = ThreadLocal.withInitial(Crc32c::newChecksum);
+
+    static {
+        for (int i = 0; i < TABLE.length; i++) {
+            int crc = i;
+            for (int j = 0; j < 8; j++) {
+                crc = (crc & 1) != 0 ? (crc >>> 1) ^ POLYNOMIAL : crc >>> 1;
+            }
+            TABLE[i] = crc;
+        }
+
+        MethodHandle constructor = null;
+        MethodHandle updateBuffer = null;
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            constructor = lookup.findConstructor(Class.forName("java.util.zip.CRC32C"),
+                    MethodType.methodType(void.class)).asType(MethodType.methodType(Checksum.class));
+            updateBuffer = lookup.findVirtual(Checksum.class, "update",
+                    MethodType.methodType(void.class, ByteBuffer.class));
+        } catch (Exception e) {
+            constructor = null;
+            updateBuffer = null;
+        }
+        CONSTRUCTOR = constructor;
+        UPDATE_BUFFER = updateBuffer;
+    }
+
+    private int crc = 0xFFFFFFFF;
+
+    /**
+     * 有 java.util.zip.CRC32C 时使用 JDK 的实现，否则使用查表实现
+     */
+    public static Checksum newChecksum() {
+        if (CONSTRUCTOR != null) {
+            try {
+                return (Checksum) CONSTRUCTOR.invokeExact();
+            } catch (Throwable e) {
+                throw new IllegalStateException("create java.util.zip.CRC32C error.", e);
+            }
+        }
+        return new Crc32c();
+    }
+
+    /**
+     * 计算 record id (big endian) 与 body (position ~ limit) 的 CRC32C，不修改 body 的 position
+     */
+    public static int checksum(int recordId, @NotNull ByteBuffer body) {
+        return checksumInPlace(recordId, body.duplicate());
+    }
+
+    /**
+     * 同 {@link #checksum(int, ByteBuffer)}，计算期间移动 body 的 position，完成之后恢复，不分配对象；
+     * body 需要由调用方独占
+     */
+    public static int checksumInPlace(int recordId, @NotNull ByteBuffer body) {
+        Checksum checksum = CHECKSUMS.get();
+        checksum.reset();
+        checksum.update(recordId >>> 24);
+        checksum.update(recordId >>> 16);
+        checksum.update(recordId >>> 8);
+        checksum.update(recordId);
+        updateInPlace(checksum, body);
+        return (int) checksum.getValue();
+    }
+
+    /**
+     * 同 {@link #checksum(int, ByteBuffer)}，record id 占用 8 B，用于 v4 格式
+     */
+    public static int checksum(long recordId, @NotNull ByteBuffer body) {
+        return checksumInPlace(recordId, body.duplicate());
+    }
+
+    /**
+     * 同 {@link #checksumInPlace(int, ByteBuffer)}，record id 占用 8 B，用于 v4 格式
+     */
+    public static int checksumInPlace(long recordId, @NotNull ByteBuffer body) {
+        Checksum checksum = CHECKSUMS.get();
+        checksum.reset();
+        for (int shift = Long.SIZE - Byte.SIZE; shift >= 0; shift -= Byte.SIZE) {
+            checksum.update((int) (recordId >>> shift));
+        }
+        updateInPlace(checksum, body);
+        return (int) checksum.getValue();
+    }
+
+    private static void updateInPlace(Checksum checksum, ByteBuffer buffer) {
+        int position = buffer.position();
+        update(checksum, buffer);
+        buffer.position(position);
+    }
+
+    private static void update(Checksum checksum, ByteBuffer buffer) {
+        if (buffer.hasArray()) {
+            checksum.update(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        } else if (checksum instanceof Crc32c) {
+            ((Crc32c) checksum).update(buffer);
+        } else {
+            try {
+                UPDATE_BUFFER.invokeExact(checksum, buffer);
+            } catch (Throwable e) {
+                throw new IllegalStateException("update checksum error.", e);
+            }
+        }
+    }
+
+    @Override
+    public void update(int b) {
+        crc = (crc >>> 8) ^ TABLE[(crc ^ b) & 0xff];
+    }
+
+    @Override
+    public void update(byte[] b, int off, int len) {
+        int tmpCrc = crc;
+        for (int i = off; i < off + len; i++) {
+            tmpCrc = (tmpCrc >>> 8) ^ TABLE[(tmpCrc ^ b[i]) & 0xff];
+        }
+        crc = tmpCrc;
+    }
+
+    /**
+     * 读取 buffer 的 position ~ limit 部分，读取之后 position 移动到 limit
+     */
+    public void update(@NotNull ByteBuffer buffer) {
+        int tmpCrc = crc;
+        int limit = buffer.limit();
+        for (int i = buffer.position(); i < limit; i++) {
+            tmpCrc = (tmpCrc >>> 8) ^ TABLE[(tmpCrc ^ buffer.get(i)) & 0xff];
+        }
+        buffer.position(limit);
+        crc = tmpCrc;
+    }
+
+    @Override
+    public long getValue() {
+        return (~crc) & 0xFFFFFFFFL;
+    }
+
+    @Override
+    public void reset() {
+        crc = 0xFFFFFFFF;
+    }
+}
@@ -0,0 +1,152 @@
+package io.github.kubrickLiu.presistent.log.util;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * 压缩时使用的 key -> 最新 record id 的定长哈希表，保存在堆外内存中，不占用堆空间；
+ * 只保存 key 的 MD5 摘要，不同 key 摘要相同的概率可以忽略。
+ *
+ * 每个槽位：
+ * key digest --- 占用 16 B
+ * record id --- 占用 8 B，0 表示空槽位 (record id 从 1 开始)
+ */
+public final class KeyIdMap implements AutoCloseable {
+
+    private static final int DIGEST_BYTES_LENGTH = 16;
+
+    private static final int SLOT_BYTES_LENGTH = DIGEST_BYTES_LENGTH + Long.BYTES;
+
+    private static final float LOAD_FACTOR = 0.75f;
+
+    private final ByteBuffer slots;
+
+    private final int capacity;
+
+    private final int maxEntries;
+
+    private final MessageDigest messageDigest;
+
+    private final byte[] digest = new byte[DIGEST_BYTES_LENGTH];
+
+    private int size;
+
+    public KeyIdMap(int memoryBytes) {
+        this.capacity = memoryBytes / SLOT_BYTES_LENGTH;
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("memoryBytes is less than one slot : " + memoryBytes);
+        }
+
+        this.maxEntries = (int) (capacity * LOAD_FACTOR);
+        this.slots = ByteBuffer.allocateDirect(capacity * SLOT_BYTES_LENGTH);
+        try {
+            this.messageDigest = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * 记录 key 的 record id，key 已存在时保留较大的 record id
+     *
+     * @param key position ~ limit 部分，position 不变
+     * @param recordId
+     * @return 哈希表已满且 key 不存在时返回 false
+     */
+    public boolean put(@NotNull ByteBuffer key, long recordId) {
+        int slot = findSlot(key);
+        int idPosition = slot * SLOT_BYTES_LENGTH + DIGEST_BYTES_LENGTH;
+
+        long existRecordId = slots.getLong(idPosition);
+        if (existRecordId == 0) {
+            if (size >= maxEntries) {
+                return false;
+            }
+            for (int i = 0; i < DIGEST_BYTES_LENGTH; i++) {
+                slots.put(slot * SLOT_BYTES_LENGTH + i, digest[i]);
+            }
+            size++;
+        } else if (existRecordId >= recordId) {
+            return true;
+        }
+
+        slots.putLong(idPosition, recordId);
+        return true;
+    }
+
+    /**
+     * @param key position ~ limit 部分，position 不变
+     * @return 不存在时返回 -1
+     */
+    public long get(@NotNull ByteBuffer key) {
+        int slot = findSlot(key);
+        long recordId = slots.getLong(slot * SLOT_BYTES_LENGTH + DIGEST_BYTES_LENGTH);
+        return recordId == 0 ? -1 : recordId;
+    }
+
+    /**
+     * 计算 key 的摘要，按线性探测查找摘要相同的槽位或者空槽位
+     */
+    private int findSlot(ByteBuffer key) {
+        messageDigest.update(key.duplicate());
+        try {
+            messageDigest.digest(digest, 0, DIGEST_BYTES_LENGTH);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+
+        int hash = (digest[0] & 0xff) << 24 | (digest[1] & 0xff) << 16 | (digest[2] & 0xff) << 8 | (digest[3] & 0xff);
+        int slot = (hash & Integer.MAX_VALUE) % capacity;
+        while (true) {
+            int base = slot * SLOT_BYTES_LENGTH;
+            if (slots.getLong(base + DIGEST_BYTES_LENGTH) == 0 || isDigestEqual(base)) {
+                return slot;
+            }
+            slot = slot + 1 == capacity ? 0 : slot + 1;
+        }
+    }
+
+    private boolean isDigestEqual(int base) {
+        for (int i = 0; i < DIGEST_BYTES_LENGTH; i++) {
+            if (slots.get(base + i) != digest[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 清空所有槽位，复用堆外内存
+     */
+    public void clear() {
+        for (int position = 0; position + Long.BYTES <= slots.capacity(); position += Long.BYTES) {
+            slots.putLong(position, 0L);
+        }
+        for (int position = slots.capacity() & ~(Long.BYTES - 1); position < slots.capacity(); position++) {
+            slots.put(position, (byte) 0);
+        }
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 最多能保存的 key 个数
+     */
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * 立即释放堆外内存，之后不能再使用
+     */
+    @Override
+    public void close() {
+        BufferUtil.release(slots);
+    }
+}
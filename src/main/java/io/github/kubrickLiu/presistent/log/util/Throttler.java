@@ -0,0 +1,42 @@
+package io.github.kubrickLiu.presistent.log.util;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按字节数限制后台 I/O 的速率，超过速率时在调用线程中休眠
+ */
+public final class Throttler {
+
+    private final long bytesPerSecond;
+
+    private final long startNanos;
+
+    private long bytes;
+
+    /**
+     * @param bytesPerSecond 小于等于 0 时不限速
+     */
+    public Throttler(long bytesPerSecond) {
+        this.bytesPerSecond = bytesPerSecond;
+        this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * 登记已经读写的字节数，超过速率时休眠到平均速率回到上限以内
+     *
+     * @param size
+     * @throws InterruptedException
+     */
+    public void acquire(long size) throws InterruptedException {
+        if (bytesPerSecond <= 0) {
+            return;
+        }
+
+        bytes += size;
+        long expectedNanos = (long) (bytes * 1e9 / bytesPerSecond);
+        long elapsedNanos = System.nanoTime() - startNanos;
+        if (expectedNanos > elapsedNanos) {
+            TimeUnit.NANOSECONDS.sleep(expectedNanos - elapsedNanos);
+        }
+    }
+}
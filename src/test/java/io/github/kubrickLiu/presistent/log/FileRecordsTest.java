@@ -1,16 +1,37 @@
 package io.github.kubrickLiu.presistent.log;
 
+import io.github.kubrickLiu.presistent.log.config.LogConfig;
+import io.github.kubrickLiu.presistent.log.config.StorageEngine;
+import io.github.kubrickLiu.presistent.log.exception.CorruptRecordException;
+import io.github.kubrickLiu.presistent.log.meta.MetaFlushScheduler;
 import io.github.kubrickLiu.presistent.log.meta.RecordMetaSummary;
+import io.github.kubrickLiu.presistent.log.meta.SegmentMetaSummary;
 import io.github.kubrickLiu.presistent.log.record.FileRecords;
+import io.github.kubrickLiu.presistent.log.record.FrameEncoder;
+import io.github.kubrickLiu.presistent.log.record.MappedFileRecords;
 import io.github.kubrickLiu.presistent.log.record.Record;
+import io.github.kubrickLiu.presistent.log.record.RecordBuffer;
 import io.github.kubrickLiu.presistent.log.record.RecordsIterator;
+import io.github.kubrickLiu.presistent.log.record.SegmentCache;
+import io.github.kubrickLiu.presistent.log.record.SegmentFormat;
+import io.github.kubrickLiu.presistent.log.record.SegmentMigrator;
+import io.github.kubrickLiu.presistent.log.util.Crc32c;
+import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Checksum;
 
 public class FileRecordsTest {
 
@@ -67,4 +88,422 @@ public class FileRecordsTest {
             }
         }
     }
+
+    @Test
+    public void testMigrateLegacySegment() throws Exception {
+        File legacyFile = new File("test_legacy.log");
+        File legacyMetaFile = new File("test_legacy.log" + RecordMetaSummary.META_SUFFIX);
+        legacyFile.delete();
+        legacyMetaFile.delete();
+
+        LogConfig config = new LogConfig();
+        config.setSegmentFormat(SegmentFormat.V1);
+        try (FileRecords fileRecords = new FileRecords(legacyFile, config)) {
+            for (int i = 0; i < 3; i++) {
+                fileRecords.appendOne(new Record(i, ("msg-" + i).getBytes()));
+            }
+            Assert.assertEquals(SegmentFormat.V1, fileRecords.getFormat());
+        }
+
+        Assert.assertTrue(SegmentMigrator.migrate(legacyFile));
+        Assert.assertFalse(legacyMetaFile.exists());
+
+        try (FileRecords fileRecords = new FileRecords(legacyFile)) {
+            Assert.assertEquals(SegmentFormat.V2, fileRecords.getFormat());
+
+            Iterator<Record> iterator = fileRecords.iterator();
+            int count = 0;
+            while (iterator.hasNext()) {
+                Record result = iterator.next();
+                Assert.assertEquals(count, result.getId());
+                Assert.assertEquals("msg-" + count, new String(result.getBytes()));
+                count++;
+            }
+            Assert.assertEquals(3, count);
+        }
+
+        legacyFile.delete();
+    }
+
+    @Test
+    public void testChecksumRecover() throws Exception {
+        File crcFile = new File("test_crc.log");
+        crcFile.delete();
+
+        // 每条 record：length + crc + id + "record-xx"
+        int headLength = 2 * Integer.BYTES + Long.BYTES;
+        int frameLength = headLength + 9;
+        try (FileRecords fileRecords = new FileRecords(crcFile)) {
+            Assert.assertEquals(SegmentFormat.V4, fileRecords.getFormat());
+            for (int i = 0; i < 10; i++) {
+                fileRecords.appendOne(new Record(i, String.format("record-%02d", i).getBytes()));
+            }
+            fileRecords.sync();
+            for (int i = 10; i < 15; i++) {
+                fileRecords.appendOne(new Record(i, String.format("record-%02d", i).getBytes()));
+            }
+        }
+
+        // 已写入磁盘的 record 与未写入磁盘的 record 各损坏一条
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(crcFile, "rw")) {
+            for (int index : new int[]{3, 12}) {
+                long offset = SegmentMetaSummary.LONG_BASE_OFFSET + (long) index * frameLength + headLength;
+                randomAccessFile.seek(offset);
+                randomAccessFile.write('X');
+            }
+        }
+
+        // 恢复时只校验未写入磁盘的部分，截断到第一条校验失败的 record
+        try (FileRecords fileRecords = new FileRecords(crcFile)) {
+            Assert.assertEquals(12, fileRecords.size());
+            Assert.assertEquals(SegmentMetaSummary.LONG_BASE_OFFSET + 12 * frameLength, crcFile.length());
+            Assert.assertEquals("record-11", new String(fileRecords.read(11, true).getBytes()));
+
+            Assert.assertEquals("Xecord-03", new String(fileRecords.read(3).getBytes()));
+            try {
+                fileRecords.read(3, true);
+                Assert.fail();
+            } catch (CorruptRecordException e) {
+                // expected
+            }
+            try {
+                fileRecords.readAt(3, new RecordBuffer(), true);
+                Assert.fail();
+            } catch (CorruptRecordException e) {
+                // expected
+            }
+        }
+
+        crcFile.delete();
+    }
+
+    @Test
+    public void testLongRecordId() throws Exception {
+        File longIdFile = new File("test_long_id.log");
+        longIdFile.delete();
+
+        long baseId = Integer.MAX_VALUE - 2L;
+        try (FileRecords fileRecords = new FileRecords(longIdFile)) {
+            for (long id = baseId; id < baseId + 6; id++) {
+                fileRecords.appendOne(new Record(id, ("msg-" + id).getBytes()));
+            }
+        }
+
+        try (FileRecords fileRecords = new FileRecords(longIdFile)) {
+            Assert.assertEquals(6, fileRecords.size());
+            Assert.assertEquals(baseId + 5, fileRecords.recordIdAt(5));
+            Assert.assertEquals(4, fileRecords.indexOf(baseId + 4));
+            Assert.assertEquals("msg-" + (baseId + 3), new String(fileRecords.read(3, true).getBytes()));
+        }
+        longIdFile.delete();
+
+        // v3 格式的 record id 只有 4 B
+        LogConfig config = new LogConfig();
+        config.setSegmentFormat(SegmentFormat.V3);
+        try (FileRecords fileRecords = new FileRecords(longIdFile, config)) {
+            fileRecords.appendOne(new Record(Integer.MAX_VALUE + 1L, "msg".getBytes()));
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        longIdFile.delete();
+    }
+
+    @Test
+    public void testFrameEncoder() throws Exception {
+        File encoderFile = new File("test_encoder.log");
+        File encoderMetaFile = new File(encoderFile.getAbsolutePath() + RecordMetaSummary.META_SUFFIX);
+        byte[] large = new byte[2 * 1024 * 1024];
+        large[large.length - 1] = 1;
+
+        for (SegmentFormat format : SegmentFormat.values()) {
+            for (StorageEngine engine : StorageEngine.values()) {
+                if (format == SegmentFormat.V1 && engine == StorageEngine.MMAP) {
+                    continue;
+                }
+                encoderFile.delete();
+                encoderMetaFile.delete();
+
+                LogConfig config = new LogConfig();
+                config.setSegmentFormat(format);
+                config.setStorageEngine(engine);
+                config.setSegmentBytes(8 * 1024 * 1024);
+
+                FrameEncoder encoder = new FrameEncoder();
+                ByteBuffer direct = ByteBuffer.allocateDirect(16);
+                direct.put("xxmsg-direct".getBytes());
+                direct.flip();
+                direct.position(2);
+                ByteBuffer heap = ByteBuffer.wrap("msg-heap".getBytes());
+                try (FileRecords fileRecords = FileRecords.open(encoderFile, config)) {
+                    fileRecords.appendOne(1, "msg-bytes".getBytes(), encoder);
+                    fileRecords.appendOne(2, direct, encoder);
+                    fileRecords.appendOne(3, heap, encoder);
+                    // 超过 encoder 容量时按 head 与 body 两个 buffer 写入
+                    fileRecords.appendOne(4, large, encoder);
+                }
+                Assert.assertEquals(2, direct.position());
+                Assert.assertEquals(0, heap.position());
+
+                try (FileRecords fileRecords = FileRecords.open(encoderFile, config)) {
+                    Assert.assertEquals(4, fileRecords.size());
+                    Assert.assertEquals("msg-bytes", new String(fileRecords.read(0, true).getBytes()));
+                    Assert.assertEquals("msg-direct", new String(fileRecords.read(1, true).getBytes()));
+                    Assert.assertEquals("msg-heap", new String(fileRecords.read(2, true).getBytes()));
+                    Record record = fileRecords.read(3, true);
+                    Assert.assertEquals(4, record.getId());
+                    Assert.assertArrayEquals(large, record.getBytes());
+                }
+            }
+        }
+        encoderFile.delete();
+        encoderMetaFile.delete();
+    }
+
+    @Test
+    public void testCrc32c() {
+        byte[] bytes = "123456789".getBytes();
+        Checksum checksum = new Crc32c();
+        checksum.update(bytes, 0, bytes.length);
+        Assert.assertEquals(0xE3069283L, checksum.getValue());
+
+        checksum = Crc32c.newChecksum();
+        checksum.update(bytes, 0, bytes.length);
+        Assert.assertEquals(0xE3069283L, checksum.getValue());
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+        direct.put(bytes).flip();
+        Assert.assertEquals(Crc32c.checksum(7, ByteBuffer.wrap(bytes)), Crc32c.checksum(7, direct));
+        Assert.assertEquals(0, direct.position());
+    }
+
+    @Test
+    public void testMappedRecover() throws Exception {
+        File mappedFile = new File("test_mapped.log");
+        mappedFile.delete();
+
+        try (FileRecords fileRecords = new MappedFileRecords(mappedFile)) {
+            for (int i = 0; i < 3; i++) {
+                fileRecords.appendOne(new Record(i, ("msg-" + i).getBytes()));
+            }
+
+            Iterator<Record> iterator = fileRecords.iterator();
+            Assert.assertEquals("msg-0", new String(iterator.next().getBytes()));
+        }
+
+        // close 之后映射的空间被截断
+        Assert.assertTrue(mappedFile.length() < FileRecords.RECORD_FILE_BYTES_LENGTH_LIMIT);
+
+        try (FileRecords fileRecords = new MappedFileRecords(mappedFile)) {
+            Iterator<Record> iterator = fileRecords.iterator();
+            int count = 1;
+            while (iterator.hasNext()) {
+                Record result = iterator.next();
+                Assert.assertEquals(count, result.getId());
+                Assert.assertEquals("msg-" + count, new String(result.getBytes()));
+                count++;
+            }
+            Assert.assertEquals(3, count);
+        }
+
+        mappedFile.delete();
+    }
+
+    @Test
+    public void testZeroCopyRead() throws Exception {
+        File viewFile = new File("test_view.log");
+        viewFile.delete();
+
+        try (FileRecords fileRecords = new FileRecords(viewFile)) {
+            for (int i = 0; i < 3; i++) {
+                fileRecords.appendOne(new Record(i, ("msg-" + i).getBytes()));
+            }
+
+            RecordsIterator iterator = (RecordsIterator) fileRecords.iterator();
+            for (int i = 0; i < 3; i++) {
+                ByteBuffer body = iterator.nextBuffer();
+                Assert.assertTrue(body.isReadOnly());
+                Assert.assertEquals(i, iterator.getLastRecordId());
+                Assert.assertEquals(ByteBuffer.wrap(("msg-" + i).getBytes()), body);
+            }
+            Assert.assertNull(iterator.nextBuffer());
+
+            // 传输原始 record：length + crc + id + body
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            int count = fileRecords.transferTo(Channels.newChannel(output), 1, 1024);
+            Assert.assertEquals(2, count);
+
+            ByteBuffer frames = ByteBuffer.wrap(output.toByteArray());
+            for (int i = 1; i < 3; i++) {
+                int length = frames.getInt();
+                int crc = frames.getInt();
+                Assert.assertEquals(i, frames.getLong());
+                byte[] body = new byte[length - 2 * Integer.BYTES - Long.BYTES];
+                frames.get(body);
+                Assert.assertEquals("msg-" + i, new String(body));
+                Assert.assertEquals(crc, Crc32c.checksum((long) i, ByteBuffer.wrap(body)));
+            }
+            Assert.assertFalse(frames.hasRemaining());
+        }
+
+        viewFile.delete();
+    }
+
+    @Test
+    public void testSparseIndex() throws Exception {
+        File sparseFile = new File("test_sparse.log");
+        sparseFile.delete();
+
+        LogConfig config = new LogConfig();
+        config.setIndexIntervalBytes(64);
+
+        try (FileRecords fileRecords = new FileRecords(sparseFile, config)) {
+            for (int i = 0; i < 100; i++) {
+                fileRecords.appendOne(new Record(i, ("sparse-" + i).getBytes()));
+            }
+
+            Assert.assertEquals("sparse-57", new String(fileRecords.read(57).getBytes()));
+            Assert.assertEquals("sparse-3", new String(fileRecords.read(3).getBytes()));
+
+            Iterator<Record> iterator = fileRecords.iterator();
+            for (int i = 0; i < 100; i++) {
+                Record record = iterator.next();
+                Assert.assertEquals(i, record.getId());
+                Assert.assertEquals("sparse-" + i, new String(record.getBytes()));
+            }
+        }
+
+        try (FileRecords fileRecords = new FileRecords(sparseFile, config)) {
+            Assert.assertEquals(100, fileRecords.size());
+            Assert.assertEquals("sparse-99", new String(fileRecords.read(99).getBytes()));
+
+            // 读取方与扩容索引的写入方同时进行
+            AtomicBoolean done = new AtomicBoolean(false);
+            List<Throwable> errors = new CopyOnWriteArrayList<>();
+            Thread reader = new Thread(() -> {
+                try {
+                    while (!done.get()) {
+                        int index = fileRecords.size() - 1;
+                        Assert.assertEquals("sparse-" + index, new String(fileRecords.read(index).getBytes()));
+                    }
+                } catch (Throwable e) {
+                    errors.add(e);
+                }
+            });
+            reader.start();
+            for (int i = 100; i < 20000; i++) {
+                fileRecords.appendOne(new Record(i, ("sparse-" + i).getBytes()));
+            }
+            done.set(true);
+            reader.join();
+            Assert.assertTrue(errors.toString(), errors.isEmpty());
+        }
+
+        sparseFile.delete();
+    }
+
+    @Test
+    public void testSharedMetaFlush() throws Exception {
+        file.delete();
+        metaFile.delete();
+
+        MetaFlushScheduler scheduler = MetaFlushScheduler.getInstance();
+        int registered = scheduler.size();
+
+        FileRecords fileRecords = new FileRecords(file);
+        Assert.assertEquals(registered + 1, scheduler.size());
+
+        for (int i = 0; i < 10; i++) {
+            fileRecords.appendOne(new Record(i, ("msg-" + i).getBytes()));
+        }
+        scheduler.flushDirty();
+        fileRecords.close();
+        Assert.assertEquals(registered, scheduler.size());
+
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            Assert.assertFalse(thread.getName().startsWith("Timer-"));
+        }
+
+        try (FileRecords recovered = new FileRecords(file)) {
+            Assert.assertEquals(10, recovered.size());
+        }
+    }
+
+    @Test
+    public void testSegmentCache() throws Exception {
+        File[] files = new File[3];
+        for (int i = 0; i < files.length; i++) {
+            files[i] = new File("test_cache_" + i + ".log");
+            files[i].delete();
+            try (FileRecords fileRecords = new FileRecords(files[i])) {
+                fileRecords.appendOne(new Record(i, ("cache-" + i).getBytes()));
+            }
+        }
+
+        LogConfig config = new LogConfig();
+        SegmentCache segmentCache = new SegmentCache(2);
+
+        FileRecords first = segmentCache.acquire(files[0], config);
+        first.close();
+        FileRecords again = segmentCache.acquire(files[0], config);
+        Assert.assertSame(first, again);
+        Assert.assertEquals(1, segmentCache.getHitCount());
+        Assert.assertEquals(1, segmentCache.getMissCount());
+
+        // again 仍在使用中，淘汰之后继续计入打开的文件个数，再次获取时使用同一个文件
+        segmentCache.acquire(files[1], config).close();
+        segmentCache.acquire(files[2], config).close();
+        Assert.assertEquals(1, segmentCache.size());
+        Assert.assertEquals(2, segmentCache.getOpenCount());
+        FileRecords pinned = segmentCache.acquire(files[0], config);
+        Assert.assertSame(again, pinned);
+        pinned.close();
+        Assert.assertEquals(2, segmentCache.size());
+        Assert.assertEquals(3, segmentCache.getMissCount());
+
+        // 被淘汰之后依然可以读取，释放时才真正关闭
+        segmentCache.acquire(files[1], config).close();
+        segmentCache.acquire(files[2], config).close();
+        Assert.assertEquals(2, segmentCache.getOpenCount());
+        Assert.assertEquals("cache-0", new String(again.read(0).getBytes()));
+        again.close();
+        Assert.assertFalse(again.retain());
+        Assert.assertEquals(1, segmentCache.getOpenCount());
+
+        FileRecords reopened = segmentCache.acquire(files[0], config);
+        Assert.assertNotSame(first, reopened);
+        Assert.assertEquals("cache-0", new String(reopened.read(0).getBytes()));
+        reopened.close();
+
+        segmentCache.close();
+        Assert.assertEquals(0, segmentCache.size());
+        Assert.assertFalse(reopened.retain());
+
+        // v1 格式的文件另外打开 .meta 文件，按文件句柄个数淘汰
+        File legacyFile = new File("test_cache_v1.log");
+        File legacyMetaFile = new File(legacyFile.getPath() + RecordMetaSummary.META_SUFFIX);
+        legacyFile.delete();
+        legacyMetaFile.delete();
+        LogConfig legacyConfig = new LogConfig();
+        legacyConfig.setSegmentFormat(SegmentFormat.V1);
+        try (FileRecords fileRecords = new FileRecords(legacyFile, legacyConfig)) {
+            fileRecords.appendOne(new Record(0, "cache-v1".getBytes()));
+        }
+
+        SegmentCache fileCache = new SegmentCache(3, 3, -1);
+        fileCache.acquire(legacyFile, config).close();
+        Assert.assertEquals(2, fileCache.getOpenFileCount());
+        fileCache.acquire(files[0], config).close();
+        Assert.assertEquals(3, fileCache.getOpenFileCount());
+        fileCache.acquire(files[1], config).close();
+        Assert.assertEquals(2, fileCache.size());
+        Assert.assertEquals(2, fileCache.getOpenFileCount());
+        fileCache.close();
+
+        legacyFile.delete();
+        legacyMetaFile.delete();
+        for (File cacheFile : files) {
+            cacheFile.delete();
+        }
+    }
 }
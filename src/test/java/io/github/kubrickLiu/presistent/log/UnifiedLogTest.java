@@ -1,10 +1,45 @@
 package io.github.kubrickLiu.presistent.log;
 
+import io.github.kubrickLiu.presistent.log.compress.CompressionCodec;
+import io.github.kubrickLiu.presistent.log.compress.CompressionCodecs;
+import io.github.kubrickLiu.presistent.log.config.AsyncLogConfig;
+import io.github.kubrickLiu.presistent.log.config.FlushPolicy;
+import io.github.kubrickLiu.presistent.log.config.LogConfig;
+import io.github.kubrickLiu.presistent.log.config.LogManagerConfig;
+import io.github.kubrickLiu.presistent.log.config.StorageEngine;
+import io.github.kubrickLiu.presistent.log.meta.SegmentMetaSummary;
+import io.github.kubrickLiu.presistent.log.meta.TopicMetaData;
+import io.github.kubrickLiu.presistent.log.meta.TopicMetaSummary;
+import io.github.kubrickLiu.presistent.log.metrics.JmxReporter;
+import io.github.kubrickLiu.presistent.log.metrics.LogMetrics;
+import io.github.kubrickLiu.presistent.log.metrics.MetricsReporter;
+import io.github.kubrickLiu.presistent.log.record.KeyedRecord;
 import io.github.kubrickLiu.presistent.log.record.Record;
+import io.github.kubrickLiu.presistent.log.record.SegmentFormat;
+import org.junit.Assert;
 import org.junit.Test;
 
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 import java.io.File;
+import java.io.RandomAccessFile;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
 
 public class UnifiedLogTest {
 
@@ -47,6 +82,486 @@ public class UnifiedLogTest {
         }
     }
 
+    @Test
+    public void testAppendBatch() throws Exception {
+        File dir = new File(filePath + File.separator + "test_batch_topic");
+        if (dir.exists()) {
+            deleteDir(dir);
+            dir.delete();
+        }
+
+        try (UnifiedLog unifiedLog = new UnifiedLog(filePath, "test_batch_topic")) {
+            List<byte[]> bytesList = new ArrayList<>();
+            List<ByteBuffer> buffers = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                bytesList.add(("msg-" + i).getBytes());
+                buffers.add(ByteBuffer.wrap(("msg-" + (i + 10)).getBytes()));
+            }
+            unifiedLog.append(bytesList);
+            unifiedLog.appendBuffers(buffers);
+
+            Iterator<Record> iterator = unifiedLog.getIterator();
+            int count = 0;
+            while (iterator.hasNext()) {
+                Record record = iterator.next();
+                Assert.assertEquals(count + 1, record.getId());
+                Assert.assertEquals("msg-" + count, new String(record.getBytes()));
+                count++;
+            }
+            Assert.assertEquals(20, count);
+        }
+    }
+
+    @Test
+    public void testMappedEngine() throws Exception {
+        File dir = new File(filePath + File.separator + "test_mapped_topic");
+        if (dir.exists()) {
+            deleteDir(dir);
+            dir.delete();
+        }
+
+        LogConfig config = new LogConfig();
+        config.setStorageEngine(StorageEngine.MMAP);
+        try (UnifiedLog unifiedLog = new UnifiedLog(filePath, "test_mapped_topic", config)) {
+            Iterator<Record> iterator = unifiedLog.getIterator();
+            int count = 0;
+            for (int round = 0; round < 3; round++) {
+                for (int i = 0; i < 5; i++) {
+                    unifiedLog.appendOne(("msg-" + (round * 5 + i)).getBytes());
+                }
+
+                // 读到末尾之后继续追加
+                while (iterator.hasNext()) {
+                    Record record = iterator.next();
+                    Assert.assertEquals("msg-" + count, new String(record.getBytes()));
+                    count++;
+                }
+            }
+            Assert.assertEquals(15, count);
+        }
+    }
+
+    @Test
+    public void testSeek() throws Exception {
+        File dir = new File(filePath + File.separator + "test_seek_topic");
+        if (dir.exists()) {
+            deleteDir(dir);
+            dir.delete();
+        }
+
+        try (UnifiedLog unifiedLog = new UnifiedLog(filePath, "test_seek_topic")) {
+            for (int i = 1; i <= 100; i++) {
+                unifiedLog.appendOne(("msg-" + i).getBytes());
+            }
+
+            UnifiedLogIterator iterator = (UnifiedLogIterator) unifiedLog.getIterator();
+            int[] recordIds = {42, 7, 100, 1, 63};
+            for (int recordId : recordIds) {
+                iterator.reset(recordId);
+                Record record = iterator.next();
+                Assert.assertEquals(recordId, record.getId());
+                Assert.assertEquals("msg-" + recordId, new String(record.getBytes()));
+            }
+
+            try {
+                unifiedLog.seek(101);
+                Assert.fail();
+            } catch (IllegalAccessException e) {
+                // 超出已写入的 record id
+            }
+        }
+    }
+
+    @Test
+    public void testConcurrentAppend() throws Exception {
+        File dir = new File(filePath + File.separator + "test_concurrent_topic");
+        if (dir.exists()) {
+            deleteDir(dir);
+            dir.delete();
+        }
+
+        int threads = 8;
+        int perThread = 2000;
+
+        LogConfig config = new LogConfig();
+        config.setConcurrentAppend(true);
+        try (UnifiedLog unifiedLog = new UnifiedLog(filePath, "test_concurrent_topic", config)) {
+            List<Thread> producers = new ArrayList<>();
+            List<Exception> errors = new CopyOnWriteArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                final int producer = t;
+                producers.add(new Thread(() -> {
+                    try {
+                        for (int i = 0; i < perThread; i += 2) {
+                            unifiedLog.appendOne((producer + "-" + i).getBytes());
+                            unifiedLog.append(Collections.singletonList((producer + "-" + (i + 1)).getBytes()));
+                        }
+                    } catch (Exception e) {
+                        errors.add(e);
+                    }
+                }));
+            }
+            producers.forEach(Thread::start);
+
+            // 读取方与写入方同时运行，只会读到完整的 record
+            Set<String> messages = new HashSet<>();
+            Iterator<Record> iterator = unifiedLog.getIterator();
+            int expectedId = 1;
+            while (messages.size() < threads * perThread && errors.isEmpty()) {
+                if (!iterator.hasNext()) {
+                    Thread.yield();
+                    continue;
+                }
+                Record record = iterator.next();
+                Assert.assertEquals(expectedId++, record.getId());
+                Assert.assertTrue(messages.add(new String(record.getBytes())));
+            }
+
+            for (Thread producer : producers) {
+                producer.join();
+            }
+            Assert.assertTrue(errors.isEmpty());
+            Assert.assertFalse(iterator.hasNext());
+            for (int t = 0; t < threads; t++) {
+                for (int i = 0; i < perThread; i++) {
+                    Assert.assertTrue(messages.contains(t + "-" + i));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testConsumerGroups() throws Exception {
+        File dir = new File(filePath + File.separator + "test_consumer_topic");
+        if (dir.exists()) {
+            deleteDir(dir);
+            dir.delete();
+        }
+
+        try (UnifiedLog unifiedLog = new UnifiedLog(filePath, "test_consumer_topic")) {
+            for (int i = 1; i <= 10; i++) {
+                unifiedLog.appendOne(("msg-" + i).getBytes());
+            }
+
+            UnifiedLogConsumer billing = unifiedLog.openConsumer("billing");
+            for (int i = 1; i <= 4; i++) {
+                Assert.assertEquals("msg-" + i, new String(billing.next().getBytes()));
+            }
+            billing.commit();
+
+            // 不同 group 的消费位置互不影响
+            try (UnifiedLogConsumer audit = unifiedLog.openConsumer("audit")) {
+                for (int i = 1; i <= 10; i++) {
+                    ByteBuffer body = audit.nextBuffer();
+                    Assert.assertEquals(i, audit.getLastRecordId());
+                    Assert.assertEquals(ByteBuffer.wrap(("msg-" + i).getBytes()), body);
+                }
+                Assert.assertNull(audit.nextBuffer());
+
+                unifiedLog.appendOne("msg-11".getBytes());
+                Assert.assertEquals("msg-11", new String(audit.next().getBytes()));
+            }
+
+            // close 时自动提交消费位置
+            Assert.assertEquals("msg-5", new String(billing.next().getBytes()));
+        }
+
+        try (UnifiedLog unifiedLog = new UnifiedLog(filePath, "test_consumer_topic")) {
+            UnifiedLogConsumer billing = unifiedLog.openConsumer("billing");
+            Assert.assertEquals(6, billing.position());
+
+            UnifiedLogConsumer audit = unifiedLog.openConsumer("audit");
+            Assert.assertEquals(12, audit.position());
+            Assert.assertFalse(audit.hasNext());
+
+            billing.seek(2);
+            Assert.assertEquals("msg-2", new String(billing.next().getBytes()));
+        }
+    }
+
+    @Test
+    public void testBlockingPoll() throws Exception {
+        File dir = new File(filePath + File.separator + "test_poll_topic");
+        if (dir.exists()) {
+            deleteDir(dir);
+            dir.delete();
+        }
+
+        try (UnifiedLog unifiedLog = new UnifiedLog(filePath, "test_poll_topic")) {
+            UnifiedLogConsumer consumer = unifiedLog.openConsumer("poll");
+            Assert.assertTrue(consumer.poll(10, 10, TimeUnit.MILLISECONDS).isEmpty());
+
+            // 读取方先挂起，由写入方唤醒
+            List<String> taken = new CopyOnWriteArrayList<>();
+            Thread reader = new Thread(() -> {
+                try {
+                    for (int i = 0; i < 5; i++) {
+                        taken.add(new String(consumer.take().getBytes()));
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            reader.start();
+
+            for (int i = 0; i < 5; i++) {
+                Thread.sleep(5);
+                unifiedLog.appendOne(("msg-" + i).getBytes());
+            }
+            reader.join(5000);
+            Assert.assertFalse(reader.isAlive());
+            Assert.assertEquals(5, taken.size());
+            for (int i = 0; i < 5; i++) {
+                Assert.assertEquals("msg-" + i, taken.get(i));
+            }
+
+            unifiedLog.append(Arrays.asList("msg-5".getBytes(), "msg-6".getBytes(), "msg-7".getBytes()));
+            List<Record> records = consumer.poll(2, 1, TimeUnit.SECONDS);
+            Assert.assertEquals(2, records.size());
+            Assert.assertEquals("msg-6", new String(records.get(1).getBytes()));
+
+            UnifiedLogIterator iterator = unifiedLog.getIterator();
+            Assert.assertEquals(8, iterator.poll(100, 0, TimeUnit.MILLISECONDS).size());
+            Assert.assertTrue(iterator.poll(100, 10, TimeUnit.MILLISECONDS).isEmpty());
+        }
+    }
+
+    @Test
+    public void testFlushPolicy() throws Exception {
+        File dir = new File(filePath + File.separator + "test_flush_topic");
+        if (dir.exists()) {
+            deleteDir(dir);
+            dir.delete();
+        }
+
+        LogConfig config = new LogConfig();
+        config.setFlushPolicy(FlushPolicy.RECORDS);
+        config.setFlushIntervalRecords(10);
+        try (UnifiedLog unifiedLog = new UnifiedLog(filePath, "test_flush_topic", config)) {
+            Assert.assertEquals(0, unifiedLog.getDurableRecordId());
+            long recordId = 0;
+            for (int i = 1; i <= 25; i++) {
+                recordId = unifiedLog.appendOne(("msg-" + i).getBytes());
+            }
+            Assert.assertEquals(25, recordId);
+            Assert.assertTrue(unifiedLog.awaitDurable(recordId, 5, TimeUnit.SECONDS));
+            Assert.assertEquals(25, unifiedLog.getDurableRecordId());
+        }
+
+        // NEVER 时等待持久化水位直接在当前线程 flush
+        try (UnifiedLog unifiedLog = new UnifiedLog(filePath, "test_flush_topic")) {
+            Assert.assertEquals(25, unifiedLog.getDurableRecordId());
+            long recordId = unifiedLog.appendOne("msg-26".getBytes());
+            Assert.assertEquals(26, recordId);
+            Assert.assertEquals(25, unifiedLog.getDurableRecordId());
+            Assert.assertTrue(unifiedLog.awaitDurable(recordId, 0, TimeUnit.SECONDS));
+            Assert.assertEquals(26, unifiedLog.getDurableRecordId());
+        }
+    }
+
+    @Test
+    public void testNextBufferAcrossSegments() throws Exception {
+        String bufferTopic = "test_mmap_buffer_topic";
+        File dir = new File(filePath + File.separator + bufferTopic);
+        if (dir.exists()) {
+            deleteDir(dir);
+            dir.delete();
+        }
+
+        LogConfig config = new LogConfig();
+        config.setStorageEngine(StorageEngine.MMAP);
+        config.setSegmentBytes(1024);
+        config.setMaxOpenSegments(1);
+        try (UnifiedLog unifiedLog = new UnifiedLog(filePath, bufferTopic, config)) {
+            int lag = 60;
+            for (int i = 1; i <= lag; i++) {
+                unifiedLog.appendOne(String.format("mmap-%04d", i).getBytes());
+            }
+
+            // consumer 落后写入方一个多文件：正在读取的 mmap 文件滚动时放入缓存，再次滚动时被淘汰，
+            // hasNext 切换到下一个文件之后，视图在下一次读取之前仍然有效
+            UnifiedLogConsumer consumer = unifiedLog.openConsumer("mmap");
+            UnifiedLogIterator iterator = unifiedLog.getIterator();
+            for (int i = 1; i <= 300; i++) {
+                if (i <= 300 - lag) {
+                    unifiedLog.appendOne(String.format("mmap-%04d", i + lag).getBytes());
+                }
+                ByteBuffer buffer = consumer.nextBuffer();
+                consumer.hasNext();
+                byte[] bytes = new byte[buffer.remaining()];
+                buffer.get(bytes);
+                Assert.assertEquals(String.format("mmap-%04d", i), new String(bytes));
+
+                Assert.assertTrue(iterator.hasNext());
+                buffer = iterator.nextBuffer();
+                iterator.hasNext();
+                bytes = new byte[buffer.remaining()];
+                buffer.get(bytes);
+                Assert.assertEquals(String.format("mmap-%04d", i), new String(bytes));
+            }
+            Assert.assertFalse(consumer.hasNext());
+            Assert.assertFalse(iterator.hasNext());
+            consumer.close();
+        }
+    }
+
+    @Test
+    public void testAwaitDurableAfterRolling() throws Exception {
+        String rollingTopic = "test_flush_rolling_topic";
+        File dir = new File(filePath + File.separator + rollingTopic);
+        if (dir.exists()) {
+            deleteDir(dir);
+            dir.delete();
+        }
+
+        LogConfig config = new LogConfig();
+        config.setSegmentBytes(1024);
+        try (UnifiedLog unifiedLog = new UnifiedLog(filePath, rollingTopic, config)) {
+            long recordId = 0;
+            for (int i = 1; i <= 200; i++) {
+                recordId = unifiedLog.appendOne(String.format("rolling-%04d", i).getBytes());
+            }
+            Assert.assertTrue(unifiedLog.awaitDurable(recordId, 0, TimeUnit.SECONDS));
+
+            // NEVER 时滚动不写入磁盘，flush 之后所有文件头中已写入磁盘的位置都到达文件末尾
+            File[] recordFiles = dir.listFiles((file, name) -> name.endsWith("_Kubrick.log"));
+            Assert.assertTrue(recordFiles.length > 3);
+            for (File recordFile : recordFiles) {
+                try (RandomAccessFile file = new RandomAccessFile(recordFile, "r")) {
+                    file.seek(4 * Integer.BYTES);
+                    Assert.assertEquals(recordFile.getName(), file.length(), file.readLong());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testOpenAll() throws Exception {
+        String openAllPath = filePath + File.separator + "open_all";
+        File dir = new File(openAllPath);
+        if (dir.exists()) {
+            deleteDir(dir);
+            dir.delete();
+        }
+
+        List<String> topicNames = Arrays.asList("topic_a", "topic_b", "topic_c", "topic_d");
+        for (int t = 0; t < topicNames.size(); t++) {
+            try (UnifiedLog unifiedLog = new UnifiedLog(openAllPath, topicNames.get(t))) {
+                for (int i = 0; i <= t * 100; i++) {
+                    unifiedLog.appendOne(("msg-" + i).getBytes());
+                }
+            }
+        }
+
+        Map<String, UnifiedLog> unifiedLogs = UnifiedLog.openAll(openAllPath, topicNames, new LogConfig(), 2);
+        Assert.assertEquals(topicNames, new ArrayList<>(unifiedLogs.keySet()));
+        for (int t = 0; t < topicNames.size(); t++) {
+            UnifiedLog unifiedLog = unifiedLogs.get(topicNames.get(t));
+
+            // 打开时不打开 record 文件
+            Assert.assertEquals(0, unifiedLog.getSegmentCache().size());
+
+            unifiedLog.seek(t * 100 + 1);
+            Iterator<Record> iterator = unifiedLog.getIterator();
+            Assert.assertEquals("msg-" + t * 100, new String(iterator.next().getBytes()));
+
+            unifiedLog.appendOne("appended".getBytes());
+            unifiedLog.close();
+        }
+    }
+
+    @Test
+    public void testRetention() throws Exception {
+        String retentionTopic = "test_retention_topic";
+        File dir = new File(filePath + File.separator + retentionTopic);
+        if (dir.exists()) {
+            deleteDir(dir);
+            dir.delete();
+        }
+
+        LogConfig config = new LogConfig();
+        config.setSegmentBytes(1024);
+        config.setDeleteConsumedSegments(true);
+        config.setRetentionCheckIntervalMs(TimeUnit.HOURS.toMillis(1));
+
+        try (UnifiedLog unifiedLog = new UnifiedLog(filePath, retentionTopic, config)) {
+            for (int i = 1; i <= 200; i++) {
+                unifiedLog.appendOne(String.format("retention-%04d", i).getBytes());
+            }
+            int segments = dir.list((file, name) -> name.endsWith("_Kubrick.log")).length;
+            Assert.assertTrue(segments > 3);
+
+            // 没有 consumer group 时不删除
+            Assert.assertEquals(0, unifiedLog.deleteExpiredSegments());
+
+            UnifiedLogIterator iterator = unifiedLog.getIterator();
+            Assert.assertTrue(iterator.hasNext());
+            Assert.assertEquals(1, iterator.next().getId());
+
+            UnifiedLogConsumer consumer = unifiedLog.openConsumer("retention");
+            for (int i = 1; i <= 100; i++) {
+                consumer.next();
+            }
+            consumer.commit();
+
+            int deleted = unifiedLog.deleteExpiredSegments();
+            Assert.assertTrue(deleted > 0);
+            Assert.assertEquals(segments - deleted, dir.list((file, name) -> name.endsWith("_Kubrick.log")).length);
+            long firstRecordId = unifiedLog.getFirstRecordId();
+            Assert.assertTrue(firstRecordId > 1 && firstRecordId <= 101);
+
+            // 读取方正在读的文件被删除之后仍然可以读完，之后跳到剩余的第一个文件
+            long lastId = 1;
+            while (iterator.hasNext()) {
+                long id = iterator.next().getId();
+                Assert.assertTrue(id > lastId);
+                Assert.assertTrue(id == lastId + 1 || id == firstRecordId);
+                lastId = id;
+            }
+            Assert.assertEquals(200, lastId);
+
+            for (int i = 101; i <= 200; i++) {
+                Assert.assertEquals(String.format("retention-%04d", i), new String(consumer.next().getBytes()));
+            }
+            consumer.close();
+        }
+
+        config.setDeleteConsumedSegments(false);
+        config.setRetentionBytes(2048);
+        try (UnifiedLog unifiedLog = new UnifiedLog(filePath, retentionTopic, config)) {
+            UnifiedLogConsumer consumer = unifiedLog.openConsumer("retention");
+            Assert.assertEquals(201, consumer.position());
+
+            unifiedLog.appendOne("retention-0201".getBytes());
+            Assert.assertEquals("retention-0201", new String(consumer.next().getBytes()));
+
+            Assert.assertTrue(unifiedLog.deleteExpiredSegments() > 0);
+            long totalBytes = 0;
+            for (File file : dir.listFiles((file, name) -> name.endsWith("_Kubrick.log"))) {
+                totalBytes += file.length();
+            }
+            Assert.assertTrue(totalBytes <= 2048 + 1024);
+        }
+
+        // 后台线程按时间删除
+        config.setRetentionBytes(-1);
+        config.setRetentionMs(0);
+        config.setRetentionCheckIntervalMs(20);
+        try (UnifiedLog unifiedLog = new UnifiedLog(filePath, retentionTopic, config)) {
+            long deadline = System.currentTimeMillis() + 5000;
+            while (dir.list((file, name) -> name.endsWith("_Kubrick.log")).length > 1
+                    && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+            Assert.assertEquals(1, dir.list((file, name) -> name.endsWith("_Kubrick.log")).length);
+
+            unifiedLog.appendOne("retention-0202".getBytes());
+            unifiedLog.seek(202);
+            Assert.assertTrue(unifiedLog.getIterator().hasNext());
+            Assert.assertEquals("retention-0202", new String(unifiedLog.getIterator().next().getBytes()));
+        }
+    }
+
     @Test
     public void testRecover() throws Exception {
         try (UnifiedLog unifiedLog = new UnifiedLog(filePath, topicName)) {
@@ -59,4 +574,751 @@ public class UnifiedLogTest {
             }
         }
     }
+
+    @Test
+    public void testCompaction() throws Exception {
+        String compactTopic = "test_compact_topic";
+        File dir = new File(filePath + File.separator + compactTopic);
+        if (dir.exists()) {
+            deleteDir(dir);
+            dir.delete();
+        }
+
+        LogConfig config = new LogConfig();
+        config.setSegmentBytes(1024);
+        config.setCompactEnabled(true);
+        config.setCompactMapBytes(64 * 1024);
+        config.setRetentionCheckIntervalMs(TimeUnit.HOURS.toMillis(1));
+
+        try (UnifiedLog unifiedLog = new UnifiedLog(filePath, compactTopic, config)) {
+            for (int i = 1; i <= 300; i++) {
+                unifiedLog.appendKeyed(("key-" + i % 10).getBytes(), ("value-" + i).getBytes());
+            }
+            unifiedLog.appendKeyed("key-0".getBytes(), null);
+            unifiedLog.appendOne("no-key".getBytes());
+            for (int i = 301; i <= 400; i++) {
+                unifiedLog.appendKeyed(("key-" + (i % 10 + 10)).getBytes(), ("value-" + i).getBytes());
+            }
+
+            UnifiedLogConsumer reading = unifiedLog.openConsumer("reading");
+            for (int i = 1; i <= 50; i++) {
+                Assert.assertEquals(i, reading.next().getId());
+            }
+
+            long bytesBefore = recordFilesBytes(dir);
+            Assert.assertTrue(unifiedLog.compact() > 0);
+            Assert.assertTrue(recordFilesBytes(dir) < bytesBefore);
+            Assert.assertEquals(0, unifiedLog.compact());
+
+            // 压缩之前打开的文件仍然可以读完，之后读取压缩后的文件
+            long lastId = 50;
+            while (reading.hasNext()) {
+                long id = reading.next().getId();
+                Assert.assertTrue(id > lastId);
+                lastId = id;
+            }
+            Assert.assertEquals(402, lastId);
+            reading.close();
+
+            UnifiedLogConsumer consumer = unifiedLog.openConsumer("compacted");
+            Map<String, String> latest = new HashMap<>();
+            int count = 0;
+            boolean hasNoKey = false;
+            lastId = 0;
+            while (consumer.hasNext()) {
+                Record record = consumer.next();
+                Assert.assertTrue(record.getId() > lastId);
+                lastId = record.getId();
+                count++;
+
+                KeyedRecord keyedRecord = KeyedRecord.decode(record);
+                if (!keyedRecord.hasKey()) {
+                    hasNoKey = true;
+                    Assert.assertEquals("no-key", new String(keyedRecord.getValue()));
+                    continue;
+                }
+                String key = new String(keyedRecord.getKey());
+                latest.put(key, keyedRecord.isTombstone() ? null : new String(keyedRecord.getValue()));
+            }
+            Assert.assertTrue(count < 402);
+            Assert.assertTrue(hasNoKey);
+            Assert.assertTrue(latest.containsKey("key-0"));
+            Assert.assertNull(latest.get("key-0"));
+            for (int k = 1; k < 10; k++) {
+                Assert.assertEquals("value-" + (290 + k), latest.get("key-" + k));
+            }
+            for (int k = 10; k < 20; k++) {
+                Assert.assertEquals("value-" + (k == 10 ? 400 : 380 + k), latest.get("key-" + k));
+            }
+
+            // 压缩之后按 record id 定位到下一条保留的 record
+            consumer.seek(2);
+            Assert.assertTrue(consumer.hasNext());
+            Assert.assertTrue(consumer.next().getId() > 2);
+            consumer.close();
+        }
+
+        // 删除标记过期之后压缩时删除
+        config.setTombstoneRetentionMs(0);
+        try (UnifiedLog unifiedLog = new UnifiedLog(filePath, compactTopic, config)) {
+            Thread.sleep(10);
+            Assert.assertTrue(unifiedLog.compact() > 0);
+
+            UnifiedLogIterator iterator = unifiedLog.getIterator();
+            unifiedLog.seek(1);
+            long lastId = 0;
+            while (iterator.hasNext()) {
+                Record record = iterator.next();
+                Assert.assertTrue(record.getId() > lastId);
+                lastId = record.getId();
+
+                KeyedRecord keyedRecord = KeyedRecord.decode(record);
+                Assert.assertFalse(keyedRecord.hasKey() && "key-0".equals(new String(keyedRecord.getKey())));
+            }
+            Assert.assertEquals(402, lastId);
+        }
+    }
+
+    @Test
+    public void testCompression() throws Exception {
+        for (CompressionCodec codec : Arrays.asList(CompressionCodecs.LZ4, CompressionCodecs.DEFLATE)) {
+            String compressTopic = "test_compress_topic_" + codec.getName();
+            File dir = new File(filePath + File.separator + compressTopic);
+            if (dir.exists()) {
+                deleteDir(dir);
+                dir.delete();
+            }
+
+            LogConfig config = new LogConfig();
+            config.setSegmentBytes(4 * 1024);
+            config.setCompressionCodec(codec);
+            config.setCompressionBatchBytes(512);
+
+            try (UnifiedLog unifiedLog = new UnifiedLog(filePath, compressTopic, config)) {
+                List<byte[]> messages = new ArrayList<>();
+                for (int i = 1; i <= 1000; i++) {
+                    messages.add(String.format("compress-message-%04d", i).getBytes());
+                    if (messages.size() == 50) {
+                        unifiedLog.append(messages);
+                        messages.clear();
+                    }
+                }
+                unifiedLog.appendOne(String.format("compress-message-%04d", 1001).getBytes());
+
+                // 重复内容压缩之后小于原始 record 字节数
+                Assert.assertTrue(recordFilesBytes(dir) < 1001 * "compress-message-0000".length());
+
+                UnifiedLogConsumer consumer = unifiedLog.openConsumer("compress");
+                for (int i = 1; i <= 1001; i++) {
+                    Record record = consumer.next();
+                    Assert.assertEquals(i, record.getId());
+                    Assert.assertEquals(String.format("compress-message-%04d", i), new String(record.getBytes()));
+                }
+                Assert.assertFalse(consumer.hasNext());
+
+                // 定位到批次中间的 record
+                consumer.seek(777);
+                Assert.assertEquals("compress-message-0777", new String(consumer.next().getBytes()));
+                ByteBuffer buffer = consumer.nextBuffer();
+                byte[] bytes = new byte[buffer.remaining()];
+                buffer.get(bytes);
+                Assert.assertEquals("compress-message-0778", new String(bytes));
+                consumer.close();
+
+                unifiedLog.seek(333);
+                Iterator<Record> iterator = unifiedLog.getIterator();
+                for (int i = 333; i <= 1001; i++) {
+                    Assert.assertTrue(iterator.hasNext());
+                    Assert.assertEquals(i, iterator.next().getId());
+                }
+                Assert.assertFalse(iterator.hasNext());
+            }
+
+            // 重新打开之后按原压缩算法读取
+            try (UnifiedLog unifiedLog = new UnifiedLog(filePath, compressTopic, new LogConfig())) {
+                UnifiedLogConsumer consumer = unifiedLog.openConsumer("reopen");
+                consumer.seek(500);
+                for (int i = 500; i <= 1001; i++) {
+                    Assert.assertEquals(String.format("compress-message-%04d", i), new String(consumer.next().getBytes()));
+                }
+                Assert.assertFalse(consumer.hasNext());
+                consumer.close();
+            }
+        }
+    }
+
+    @Test
+    public void testReopenWithoutClose() throws Exception {
+        String uncleanTopic = "test_unclean_topic";
+        String haltTopic = "test_unclean_halt_topic";
+        for (String name : Arrays.asList(uncleanTopic, haltTopic)) {
+            File dir = new File(filePath + File.separator + name);
+            if (dir.exists()) {
+                deleteDir(dir);
+                dir.delete();
+            }
+        }
+
+        // 不调用 close，复制此时磁盘上的文件模拟进程退出：topic meta 只保存到 flush 时的 10 条
+        File haltDir = new File(filePath + File.separator + haltTopic);
+        haltDir.mkdirs();
+        UnifiedLog unifiedLog = new UnifiedLog(filePath, uncleanTopic);
+        try {
+            for (int i = 1; i <= 10; i++) {
+                unifiedLog.appendOne(("m" + i).getBytes());
+            }
+            unifiedLog.flush();
+            for (int i = 11; i <= 20; i++) {
+                unifiedLog.appendOne(("m" + i).getBytes());
+            }
+
+            for (File file : new File(filePath + File.separator + uncleanTopic).listFiles()) {
+                Files.copy(file.toPath(), new File(haltDir, file.getName()).toPath());
+            }
+        } finally {
+            unifiedLog.close();
+        }
+
+        try (UnifiedLog reopened = new UnifiedLog(filePath, haltTopic)) {
+            reopened.appendOne("after".getBytes());
+
+            UnifiedLogConsumer consumer = reopened.openConsumer("unclean");
+            for (int i = 1; i <= 20; i++) {
+                Record record = consumer.next();
+                Assert.assertEquals(i, record.getId());
+                Assert.assertEquals("m" + i, new String(record.getBytes()));
+            }
+            Record record = consumer.next();
+            Assert.assertEquals(21, record.getId());
+            Assert.assertEquals("after", new String(record.getBytes()));
+            Assert.assertFalse(consumer.hasNext());
+
+            consumer.seek(15);
+            Assert.assertEquals("m15", new String(consumer.next().getBytes()));
+            consumer.close();
+        }
+
+        // 最后一条 record 只写入一部分，恢复时截断之后回退 maxRecordId
+        File[] recordFiles = haltDir.listFiles((file, name) -> name.endsWith("_Kubrick.log"));
+        Assert.assertEquals(1, recordFiles.length);
+        try (RandomAccessFile file = new RandomAccessFile(recordFiles[0], "rw")) {
+            file.setLength(file.length() - 2);
+        }
+        try (UnifiedLog reopened = new UnifiedLog(filePath, haltTopic)) {
+            reopened.appendOne("again".getBytes());
+
+            UnifiedLogConsumer consumer = reopened.openConsumer("truncated");
+            consumer.seek(20);
+            Assert.assertEquals("m20", new String(consumer.next().getBytes()));
+            Record record = consumer.next();
+            Assert.assertEquals(21, record.getId());
+            Assert.assertEquals("again", new String(record.getBytes()));
+            Assert.assertFalse(consumer.hasNext());
+            consumer.close();
+        }
+    }
+
+    @Test
+    public void testMigrateLegacyTopic() throws Exception {
+        String legacyTopic = "test_migrate_topic";
+        File dir = new File(filePath + File.separator + legacyTopic);
+        if (dir.exists()) {
+            deleteDir(dir);
+            dir.delete();
+        }
+
+        LogConfig legacyConfig = new LogConfig();
+        legacyConfig.setSegmentFormat(SegmentFormat.V1);
+        legacyConfig.setSegmentBytes(256);
+        try (UnifiedLog unifiedLog = new UnifiedLog(filePath, legacyTopic, legacyConfig)) {
+            for (int i = 1; i <= 100; i++) {
+                unifiedLog.appendOne(("migrate-" + i).getBytes());
+            }
+        }
+
+        LogConfig config = new LogConfig();
+        config.setSegmentBytes(256);
+        config.setMigrateLegacySegments(true);
+        try (UnifiedLog unifiedLog = new UnifiedLog(filePath, legacyTopic, config)) {
+            UnifiedLogConsumer consumer = unifiedLog.openConsumer("migrate");
+            for (int i = 1; i <= 100; i++) {
+                Assert.assertEquals("migrate-" + i, new String(consumer.next().getBytes()));
+            }
+            consumer.close();
+        }
+
+        // 迁移之后 summary 中已写满文件的内容字节数与新格式的文件一致
+        File summaryFile = new File(dir, "Kubrick" + TopicMetaSummary.META_SUFFIX);
+        try (TopicMetaSummary topicMetaSummary = new TopicMetaSummary(legacyTopic, summaryFile)) {
+            List<TopicMetaData> metaList = topicMetaSummary.getMetaList();
+            Assert.assertTrue(metaList.size() > 1);
+            for (int i = 0; i < metaList.size() - 1; i++) {
+                File recordFile = new File(dir, metaList.get(i).getFileName());
+                Assert.assertEquals(recordFile.length() - SegmentMetaSummary.baseOffsetOf(SegmentFormat.V4),
+                        metaList.get(i).getContentBytesLength());
+            }
+        }
+    }
+
+    @Test
+    public void testConvertLegacyMeta() throws Exception {
+        String legacyTopic = "test_legacy_meta_topic";
+        File dir = new File(filePath + File.separator + legacyTopic);
+        if (dir.exists()) {
+            deleteDir(dir);
+            dir.delete();
+        }
+
+        LogConfig config = new LogConfig();
+        config.setSegmentFormat(SegmentFormat.V3);
+        try (UnifiedLog unifiedLog = new UnifiedLog(filePath, legacyTopic, config)) {
+            for (int i = 1; i <= 20; i++) {
+                unifiedLog.appendOne(("legacy-" + i).getBytes());
+            }
+
+            UnifiedLogConsumer consumer = unifiedLog.openConsumer("legacy");
+            consumer.seek(11);
+            consumer.close();
+        }
+
+        // 按旧格式改写 summary 文件：record id 与内容长度都只占用 4 B
+        File summaryFile = new File(dir, "Kubrick" + TopicMetaSummary.META_SUFFIX);
+        ByteBuffer summary = ByteBuffer.wrap(Files.readAllBytes(summaryFile.toPath()));
+        int metaOffset = 5 * Integer.BYTES;
+        ByteBuffer legacySummary = ByteBuffer.allocate(3 * Integer.BYTES + TopicMetaData.LEGACY_META_BYTES_LENGTH);
+        legacySummary.putInt(3 * Integer.BYTES);
+        legacySummary.putInt(3 * Integer.BYTES + TopicMetaData.LEGACY_META_BYTES_LENGTH);
+        legacySummary.putInt(20);
+        legacySummary.put(summary.array(), metaOffset, TopicMetaData.FILE_NAME_LENGTH_LIMIT);
+        int idOffset = metaOffset + TopicMetaData.FILE_NAME_LENGTH_LIMIT;
+        for (int i = 0; i < 3; i++) {
+            legacySummary.putInt((int) summary.getLong(idOffset + i * Long.BYTES));
+        }
+        Files.write(summaryFile.toPath(), legacySummary.array());
+
+        for (int round = 0; round < 2; round++) {
+            try (UnifiedLog unifiedLog = new UnifiedLog(filePath, legacyTopic, new LogConfig())) {
+                unifiedLog.appendOne(("legacy-" + (21 + round)).getBytes());
+
+                UnifiedLogConsumer consumer = unifiedLog.openConsumer("legacy");
+                for (int i = 11; i <= 21 + round; i++) {
+                    Record record = consumer.next();
+                    Assert.assertEquals(i, record.getId());
+                    Assert.assertEquals("legacy-" + i, new String(record.getBytes()));
+                }
+                Assert.assertFalse(consumer.hasNext());
+
+                // 第二轮从新格式的文件中恢复
+                consumer.seek(11);
+                consumer.close();
+            }
+        }
+    }
+
+    @Test
+    public void testLogManager() throws Exception {
+        File root = new File(filePath + File.separator + "test_manager");
+        if (root.exists()) {
+            deleteDir(root);
+        }
+
+        LogConfig logConfig = new LogConfig();
+        logConfig.setSegmentBytes(1024);
+        logConfig.setFlushPolicy(FlushPolicy.EVERY_BATCH);
+
+        LogManagerConfig managerConfig = new LogManagerConfig();
+        managerConfig.setLogConfig(logConfig);
+        managerConfig.setIoThreads(2);
+        // 每个 topic 预留当前写文件与两个 summary 文件，剩余 3 个句柄由已写满的文件共用
+        managerConfig.setMaxOpenFiles(4 * 3 + 3);
+
+        List<String> topicNames = Arrays.asList("topic-a", "topic-b", "topic-c", "topic-d");
+        LogManager logManager = new LogManager(root.getPath(), managerConfig);
+        try {
+            Map<String, UnifiedLog> unifiedLogs = logManager.openAll(topicNames);
+            Assert.assertEquals(topicNames, new ArrayList<>(unifiedLogs.keySet()));
+            Assert.assertSame(unifiedLogs.get("topic-a"), logManager.getLog("topic-a"));
+
+            for (String topicName : topicNames) {
+                UnifiedLog unifiedLog = unifiedLogs.get(topicName);
+                List<byte[]> messages = new ArrayList<>();
+                for (int i = 1; i <= 199; i++) {
+                    messages.add((topicName + "-" + i).getBytes());
+                }
+                Assert.assertEquals(199, unifiedLog.append(messages));
+                long recordId = unifiedLog.appendOne((topicName + "-200").getBytes());
+                // flush 在共用的后台线程中执行
+                Assert.assertTrue(unifiedLog.awaitDurable(recordId, 10, TimeUnit.SECONDS));
+            }
+
+            for (String topicName : topicNames) {
+                UnifiedLogConsumer consumer = logManager.getLog(topicName).openConsumer("manager");
+                for (int i = 1; i <= 200; i++) {
+                    Assert.assertEquals(topicName + "-" + i, new String(consumer.next().getBytes()));
+                }
+                consumer.close();
+            }
+            Assert.assertTrue(logManager.getSegmentCache().size() <= 3);
+            Assert.assertEquals(4 * 3, logManager.getSegmentCache().getReservedFileCount());
+            Assert.assertTrue(logManager.getSegmentCache().getOpenFileCount() <= 4 * 3 + 3);
+
+            for (Thread thread : Thread.getAllStackTraces().keySet()) {
+                Assert.assertFalse(thread.getName().startsWith("kubrick-flusher-topic-"));
+            }
+
+            // 关闭之后下次使用时重新打开
+            Assert.assertTrue(logManager.closeLog("topic-b"));
+            Assert.assertFalse(logManager.isOpened("topic-b"));
+            Assert.assertEquals(topicNames, logManager.listTopics());
+            UnifiedLogConsumer consumer = logManager.getLog("topic-b").openConsumer("manager");
+            Assert.assertFalse(consumer.hasNext());
+            consumer.close();
+
+            // 已写满的文件全部淘汰之后仍然超过 maxOpenFiles 时不再打开新的 topic
+            logManager.getLog("topic-e");
+            Assert.assertTrue(logManager.getSegmentCache().size() <= 1);
+            try {
+                logManager.getLog("topic-f");
+                Assert.fail();
+            } catch (IllegalStateException e) {
+                // expected
+            }
+            Assert.assertFalse(logManager.isOpened("topic-f"));
+            Assert.assertTrue(logManager.closeLog("topic-e"));
+            logManager.getLog("topic-f");
+            Assert.assertEquals(5 * 3, logManager.getSegmentCache().getReservedFileCount());
+        } finally {
+            logManager.close();
+        }
+
+        try {
+            logManager.getLog("topic-a");
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testPartitionedLog() throws Exception {
+        String partitionedTopic = "test_partitioned_topic";
+        File dir = new File(filePath + File.separator + partitionedTopic);
+        if (dir.exists()) {
+            deleteDir(dir);
+        }
+
+        int threads = 4;
+        int keys = 16;
+        int perThread = 1000;
+        try (PartitionedLog partitionedLog = new PartitionedLog(filePath, partitionedTopic, 4)) {
+            List<Thread> producers = new ArrayList<>();
+            List<Exception> errors = new CopyOnWriteArrayList<>();
+            Map<String, PartitionRecordId> noKeyRecordIds = new ConcurrentHashMap<>();
+            for (int t = 0; t < threads; t++) {
+                final int producer = t;
+                producers.add(new Thread(() -> {
+                    try {
+                        // 每个线程写入各自的 key，每个 key 的序号递增
+                        for (int i = 0; i < perThread; i++) {
+                            String key = "key-" + producer + "-" + (i % keys);
+                            partitionedLog.append(key.getBytes(), (key + ":" + i).getBytes());
+                        }
+                        String message = "no-key-" + producer;
+                        noKeyRecordIds.put(message, partitionedLog.appendOne(message.getBytes()));
+                    } catch (Exception e) {
+                        errors.add(e);
+                    }
+                }));
+            }
+            producers.forEach(Thread::start);
+            for (Thread producer : producers) {
+                producer.join();
+            }
+            Assert.assertTrue(errors.isEmpty());
+
+            // 每个分区的 consumer 读取到的同一个 key 的序号递增
+            Map<String, Integer> lastSequences = new HashMap<>();
+            int total = 0;
+            List<UnifiedLogConsumer> consumers = partitionedLog.openConsumers("partitioned");
+            for (int partition = 0; partition < consumers.size(); partition++) {
+                UnifiedLogConsumer consumer = consumers.get(partition);
+                while (consumer.hasNext()) {
+                    Record record = consumer.next();
+                    String message = new String(record.getBytes());
+                    total++;
+                    if (message.startsWith("no-key-")) {
+                        // 轮询追加返回写入的分区与 record id
+                        PartitionRecordId recordId = noKeyRecordIds.get(message);
+                        Assert.assertEquals(partition, recordId.getPartition());
+                        Assert.assertEquals(record.getId(), recordId.getRecordId());
+                        continue;
+                    }
+
+                    String key = message.substring(0, message.indexOf(':'));
+                    int sequence = Integer.parseInt(message.substring(key.length() + 1));
+                    Assert.assertEquals(partition, partitionedLog.partitionFor(key.getBytes()));
+                    Integer last = lastSequences.put(key, sequence);
+                    Assert.assertTrue(last == null || last < sequence);
+                }
+                consumer.close();
+            }
+            Assert.assertEquals(threads * (perThread + 1), total);
+            Assert.assertEquals(threads * keys, lastSequences.size());
+        }
+
+        // 分区个数不能修改
+        try (PartitionedLog partitionedLog = new PartitionedLog(filePath, partitionedTopic, 3)) {
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testMetrics() throws Exception {
+        String metricsTopic = "test_metrics_topic";
+        File dir = new File(filePath + File.separator + metricsTopic);
+        if (dir.exists()) {
+            deleteDir(dir);
+            dir.delete();
+        }
+
+        List<LogMetrics> registered = new CopyOnWriteArrayList<>();
+        MetricsReporter reporter = new MetricsReporter() {
+            @Override
+            public void register(LogMetrics metrics) {
+                registered.add(metrics);
+            }
+
+            @Override
+            public void deregister(LogMetrics metrics) {
+                registered.remove(metrics);
+            }
+        };
+
+        LogConfig config = new LogConfig();
+        config.setSegmentBytes(4096);
+        config.getMetricsReporters().add(reporter);
+
+        UnifiedLog unifiedLog = new UnifiedLog(filePath, metricsTopic, config);
+        LogMetrics metrics = unifiedLog.getMetrics();
+        MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        ObjectName objectName = JmxReporter.objectName(metrics);
+        try {
+            Assert.assertEquals(Collections.singletonList(metrics), registered);
+            Assert.assertTrue(mBeanServer.isRegistered(objectName));
+            Assert.assertTrue(metrics.getRecoveryNanos() > 0);
+
+            // 没有 record 时新的 group 没有积压
+            UnifiedLogConsumer idle = unifiedLog.openConsumer("idle");
+            Assert.assertEquals(0L, mBeanServer.getAttribute(objectName, "consumer.lag.idle.value"));
+            idle.close();
+
+            byte[] body = new byte[100];
+            for (int i = 0; i < 100; i++) {
+                unifiedLog.appendOne(body);
+            }
+            unifiedLog.append(Collections.nCopies(100, body));
+
+            Assert.assertEquals(200, metrics.getAppendRecords().getCount());
+            Assert.assertTrue(metrics.getAppendBytes().getCount() >= 200 * 100);
+            Assert.assertEquals(101, metrics.getAppendLatency().getCount());
+            Assert.assertTrue(metrics.getSegmentWriteLatency().getCount() >= 101);
+            Assert.assertTrue(metrics.getSegmentRollTime().getCount() > 1);
+            Assert.assertTrue(metrics.getAppendLatency().getQuantile(0.99) <= metrics.getAppendLatency().getMax());
+
+            // consumer 积压为 maxRecordId 减去已读取的最后一条 record id
+            UnifiedLogConsumer consumer = unifiedLog.openConsumer("metrics");
+            for (int i = 0; i < 50; i++) {
+                consumer.next();
+            }
+            Assert.assertEquals(50, metrics.getReadRecords().getCount());
+            Assert.assertEquals(50 * 100, metrics.getReadBytes().getCount());
+            Assert.assertEquals(150L, mBeanServer.getAttribute(objectName, "consumer.lag.metrics.value"));
+            UnifiedLogConsumer fresh = unifiedLog.openConsumer("fresh");
+            Assert.assertEquals(200L, mBeanServer.getAttribute(objectName, "consumer.lag.fresh.value"));
+            fresh.close();
+
+            // NEVER 时滚动之后的文件在 flush 时写入磁盘，每个文件一次
+            unifiedLog.flush();
+            Assert.assertEquals(recordFilesCount(dir), metrics.getSegmentFlushTime().getCount());
+            Assert.assertTrue(metrics.getMetaFlushTime().getCount() >= 1);
+
+            Assert.assertEquals(200L, mBeanServer.getAttribute(objectName, "append.records.count"));
+            Assert.assertTrue((Long) mBeanServer.getAttribute(objectName, "segment.open.value") >= 1);
+
+            consumer.close();
+            Assert.assertNull(metrics.getRegistry().getMetric(LogMetrics.CONSUMER_LAG_PREFIX + "metrics"));
+        } finally {
+            unifiedLog.close();
+        }
+
+        Assert.assertTrue(registered.isEmpty());
+        Assert.assertFalse(mBeanServer.isRegistered(objectName));
+    }
+
+    @Test
+    public void testAppendWithoutAllocation() throws Exception {
+        String allocationTopic = "test_allocation_topic";
+        File dir = new File(filePath + File.separator + allocationTopic);
+        if (dir.exists()) {
+            deleteDir(dir);
+            dir.delete();
+        }
+
+        com.sun.management.ThreadMXBean threadMXBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        byte[] body = new byte[100];
+        ByteBuffer directBody = ByteBuffer.allocateDirect(100);
+        UnifiedLog unifiedLog = new UnifiedLog(filePath, allocationTopic);
+        try {
+            // 预热：分配编码缓冲区与索引块，并让 JIT 完成编译
+            for (int i = 0; i < 10000; i++) {
+                unifiedLog.appendOne(body);
+                unifiedLog.appendOne(directBody);
+            }
+
+            // 索引每 16K 条分配一块，统计区间内不跨越块边界
+            int appends = 10000;
+            long before = threadMXBean.getThreadAllocatedBytes(threadId);
+            for (int i = 0; i < appends / 2; i++) {
+                unifiedLog.appendOne(body);
+                unifiedLog.appendOne(directBody);
+            }
+            long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - before;
+            Assert.assertTrue("allocated " + allocated + " bytes", allocated < appends);
+        } finally {
+            unifiedLog.close();
+        }
+    }
+
+    @Test
+    public void testAppendByteBuffer() throws Exception {
+        String bufferTopic = "test_buffer_topic";
+        File dir = new File(filePath + File.separator + bufferTopic);
+        if (dir.exists()) {
+            deleteDir(dir);
+            dir.delete();
+        }
+
+        LogConfig config = new LogConfig();
+        config.setSegmentBytes(4096);
+        config.setVerifyChecksumOnRead(true);
+
+        UnifiedLog unifiedLog = new UnifiedLog(filePath, bufferTopic, config);
+        try {
+            List<String> expected = new ArrayList<>();
+            ByteBuffer direct = ByteBuffer.allocateDirect(64);
+            for (int i = 0; i < 100; i++) {
+                String message = "direct-" + i;
+                direct.clear();
+                direct.put(message.getBytes());
+                direct.flip();
+                unifiedLog.appendOne(direct);
+                Assert.assertEquals(0, direct.position());
+                expected.add(message);
+            }
+
+            ByteBuffer[] buffers = new ByteBuffer[100];
+            for (int i = 0; i < buffers.length; i++) {
+                String message = "gather-" + i;
+                buffers[i] = ByteBuffer.allocateDirect(message.length());
+                buffers[i].put(message.getBytes());
+                buffers[i].flip();
+                expected.add(message);
+            }
+            unifiedLog.append(buffers);
+            Assert.assertEquals(0, buffers[0].position());
+
+            UnifiedLogConsumer consumer = unifiedLog.openConsumer("buffer");
+            for (String message : expected) {
+                Assert.assertEquals(message, new String(consumer.next().getBytes()));
+            }
+            Assert.assertFalse(consumer.hasNext());
+            consumer.close();
+        } finally {
+            unifiedLog.close();
+        }
+    }
+
+    @Test
+    public void testAsyncAppend() throws Exception {
+        String asyncTopic = "test_async_topic";
+        File dir = new File(filePath + File.separator + asyncTopic);
+        if (dir.exists()) {
+            deleteDir(dir);
+            dir.delete();
+        }
+
+        int threads = 4;
+        int perThread = 2000;
+        AsyncLogConfig config = new AsyncLogConfig();
+        config.setRingBufferSize(256);
+        config.setMaxBatchRecords(64);
+        config.getLogConfig().setSegmentBytes(16 * 1024);
+
+        AsyncUnifiedLog asyncLog = new AsyncUnifiedLog(filePath, asyncTopic, config);
+        Map<Long, String> messages = new ConcurrentHashMap<>();
+        try {
+            List<Thread> producers = new ArrayList<>();
+            List<Throwable> errors = new CopyOnWriteArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                final int producer = t;
+                producers.add(new Thread(() -> {
+                    List<CompletableFuture<Long>> futures = new ArrayList<>();
+                    for (int i = 0; i < perThread; i++) {
+                        String message = producer + "-" + i;
+                        futures.add(asyncLog.append(message.getBytes())
+                                .whenComplete((recordId, e) -> {
+                                    if (e != null) {
+                                        errors.add(e);
+                                    } else {
+                                        messages.put(recordId, message);
+                                    }
+                                }));
+                    }
+                    CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+                }));
+            }
+            producers.forEach(Thread::start);
+            for (Thread producer : producers) {
+                producer.join();
+            }
+            Assert.assertTrue(errors.isEmpty());
+            Assert.assertEquals(threads * perThread, messages.size());
+
+            // record id 连续，内容与 future 返回的 record id 一致
+            UnifiedLogConsumer consumer = asyncLog.getUnifiedLog().openConsumer("async");
+            for (long recordId = 1; recordId <= threads * perThread; recordId++) {
+                Record record = consumer.next();
+                Assert.assertEquals(recordId, record.getId());
+                Assert.assertEquals(messages.get(recordId), new String(record.getBytes()));
+            }
+            Assert.assertFalse(consumer.hasNext());
+            consumer.close();
+        } finally {
+            asyncLog.close();
+        }
+
+        try {
+            asyncLog.append("closed".getBytes()).join();
+            Assert.fail();
+        } catch (CompletionException e) {
+            Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+    }
+
+    private int recordFilesCount(File dir) {
+        return dir.listFiles((file, name) -> name.endsWith("_Kubrick.log")).length;
+    }
+
+    private long recordFilesBytes(File dir) {
+        long totalBytes = 0;
+        for (File file : dir.listFiles((file, name) -> name.endsWith("_Kubrick.log"))) {
+            totalBytes += file.length();
+        }
+        return totalBytes;
+    }
 }